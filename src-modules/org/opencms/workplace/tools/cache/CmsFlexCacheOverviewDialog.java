@@ -27,7 +27,7 @@
 
 package org.opencms.workplace.tools.cache;
 
-import org.opencms.cache.CmsLruCache;
+import org.opencms.cache.I_CmsLruCache;
 import org.opencms.flex.CmsFlexCache;
 import org.opencms.flex.CmsFlexController;
 import org.opencms.jsp.CmsJspActionElement;
@@ -291,7 +291,7 @@ public class CmsFlexCacheOverviewDialog extends CmsWidgetDialog {
 
         setVariations("" + cache.size());
         setKeys("" + cache.keySize());
-        CmsLruCache entryLruCache = cache.getEntryLruCache();
+        I_CmsLruCache entryLruCache = cache.getEntryLruCache();
 
         if (entryLruCache != null) {
             Locale locale = getLocale();
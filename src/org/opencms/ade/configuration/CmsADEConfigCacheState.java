@@ -31,6 +31,7 @@ import org.opencms.ade.configuration.CmsADEConfigData.DetailInfo;
 import org.opencms.ade.configuration.CmsADEConfigDataInternal.ConfigReference;
 import org.opencms.ade.configuration.CmsADEConfigDataInternal.ConfigReferenceInstance;
 import org.opencms.ade.configuration.CmsADEConfigDataInternal.ConfigReferenceMeta;
+import org.opencms.ade.configuration.formatters.CmsFormatterConfigurationCacheState;
 import org.opencms.ade.configuration.plugins.CmsSitePlugin;
 import org.opencms.ade.detailpage.CmsDetailPageInfo;
 import org.opencms.file.CmsObject;
@@ -39,7 +40,8 @@ import org.opencms.file.CmsResourceFilter;
 import org.opencms.file.types.CmsResourceTypeXmlContainerPage;
 import org.opencms.main.CmsException;
 import org.opencms.main.CmsLog;
-import org.opencms.util.CmsStringUtil;
+import org.opencms.main.OpenCms;
+import org.opencms.util.CmsPair;
 import org.opencms.util.CmsUUID;
 
 import java.util.ArrayList;
@@ -66,6 +68,22 @@ import com.google.common.collect.Maps;
  */
 public class CmsADEConfigCacheState {
 
+    /**
+     * A node in the tree of sitemap configurations, with one node for each folder name on the way to
+     * a sitemap configuration base path.<p>
+     */
+    private static class ConfigNode {
+
+        /** The child nodes, by folder name. */
+        Map<String, ConfigNode> m_children = new HashMap<String, ConfigNode>(4);
+
+        /** The sitemap configuration with this node as base path, or null. */
+        CmsADEConfigDataInternal m_config;
+
+        /** The memoized wrapped configuration, with the formatter state it was created for. */
+        volatile CmsPair<CmsFormatterConfigurationCacheState, CmsADEConfigData> m_wrapped;
+    }
+
     /** The logger instance for this class. */
     private static final Log LOG = CmsLog.getLog(CmsADEConfigCacheState.class);
 
@@ -111,6 +129,12 @@ public class CmsADEConfigCacheState {
     /** Cached set of names of content types anywhere in the configuration. */
     private volatile Set<String> m_contentTypes;
 
+    /** The root of the tree of sitemap configurations by base path. */
+    private ConfigNode m_configTree = new ConfigNode();
+
+    /** The memoized wrapped module configuration, with the formatter state it was created for. */
+    private volatile CmsPair<CmsFormatterConfigurationCacheState, CmsADEConfigData> m_wrappedModuleConfiguration;
+
     /**
      * Creates a new configuration cache state.<p>
      *
@@ -139,6 +163,7 @@ public class CmsADEConfigCacheState {
             if (data.getBasePath() != null) {
                 // In theory, the base path should never be null
                 m_siteConfigurationsByPath.put(data.getBasePath(), data);
+                addToConfigTree(data);
             } else {
                 LOG.info("Empty base path for sitemap configuration: " + data.getResource().getRootPath());
             }
@@ -421,14 +446,18 @@ public class CmsADEConfigCacheState {
      */
     public CmsADEConfigData lookupConfiguration(String rootPath) {
 
-        CmsADEConfigDataInternal internalSiteConfig = getSiteConfigData(rootPath);
-        CmsADEConfigData result;
-        if (internalSiteConfig == null) {
-            result = wrap(m_moduleConfiguration);
-        } else {
-            result = wrap(internalSiteConfig);
+        ConfigNode node = rootPath != null ? findConfigNode(rootPath) : null;
+        if (node == null) {
+            return getModuleConfiguration();
         }
-        return result;
+        // the wrapped configuration caches data derived from the formatters, which may change independently
+        CmsFormatterConfigurationCacheState formatters = getCurrentFormatters();
+        CmsPair<CmsFormatterConfigurationCacheState, CmsADEConfigData> wrapped = node.m_wrapped;
+        if ((wrapped == null) || (wrapped.getFirst() != formatters)) {
+            wrapped = CmsPair.create(formatters, wrap(node.m_config, formatters));
+            node.m_wrapped = wrapped;
+        }
+        return wrapped.getSecond();
     }
 
     /**
@@ -455,6 +484,20 @@ public class CmsADEConfigCacheState {
         return m_cms;
     }
 
+    /**
+     * Gets the current formatter configuration state matching the project of this configuration state.<p>
+     *
+     * @return the current formatter configuration state, or null if not available
+     */
+    protected CmsFormatterConfigurationCacheState getCurrentFormatters() {
+
+        if ((OpenCms.getADEManager() == null) || (m_cms == null)) {
+            return null;
+        }
+        return OpenCms.getADEManager().getCachedFormatters(
+            m_cms.getRequestContext().getCurrentProject().isOnlineProject());
+    }
+
     /**
      * Gets all the detail pages for a given type.<p>
      *
@@ -483,7 +526,13 @@ public class CmsADEConfigCacheState {
      */
     protected CmsADEConfigData getModuleConfiguration() {
 
-        return wrap(m_moduleConfiguration);
+        CmsFormatterConfigurationCacheState formatters = getCurrentFormatters();
+        CmsPair<CmsFormatterConfigurationCacheState, CmsADEConfigData> wrapped = m_wrappedModuleConfiguration;
+        if ((wrapped == null) || (wrapped.getFirst() != formatters)) {
+            wrapped = CmsPair.create(formatters, wrap(m_moduleConfiguration, formatters));
+            m_wrappedModuleConfiguration = wrapped;
+        }
+        return wrapped.getSecond();
     }
 
     /**
@@ -503,13 +552,8 @@ public class CmsADEConfigCacheState {
         if (path == null) {
             return null;
         }
-        List<String> prefixes = getSiteConfigPaths(path);
-        if (prefixes.size() == 0) {
-            return null;
-        }
-        // for any two prefixes of a string, one is a prefix of the other. so the alphabetically last
-        // prefix is the longest prefix of all.
-        return m_siteConfigurationsByPath.get(prefixes.get(prefixes.size() - 1));
+        ConfigNode node = findConfigNode(path);
+        return node != null ? node.m_config : null;
     }
 
     /**
@@ -521,22 +565,10 @@ public class CmsADEConfigCacheState {
      */
     protected List<String> getSiteConfigPaths(String path) {
 
-        String normalizedPath = CmsStringUtil.joinPaths("/", path, "/");
         List<String> prefixes = new ArrayList<String>();
-
-        List<String> parents = new ArrayList<String>();
-        String currentPath = normalizedPath;
-        while (currentPath != null) {
-            parents.add(currentPath);
-            currentPath = CmsResource.getParentFolder(currentPath);
-        }
-
-        for (String parent : parents) {
-            if (m_siteConfigurationsByPath.containsKey(parent)) {
-                prefixes.add(parent);
-            }
+        for (CmsADEConfigDataInternal config : getSiteConfigChain(path)) {
+            prefixes.add(config.getBasePath());
         }
-        Collections.sort(prefixes);
         return prefixes;
     }
 
@@ -596,6 +628,34 @@ public class CmsADEConfigCacheState {
         return result;
     }
 
+    /**
+     * Adds a sitemap configuration to the tree of configurations by base path.<p>
+     *
+     * @param data the sitemap configuration
+     */
+    private void addToConfigTree(CmsADEConfigDataInternal data) {
+
+        String path = data.getBasePath();
+        if (!path.startsWith("/") || !path.endsWith("/") || path.contains("//")) {
+            // not a normalized folder path, which can never be found by a lookup
+            return;
+        }
+        ConfigNode node = m_configTree;
+        int start = 1;
+        while (start < path.length()) {
+            int end = getSegmentEnd(path, start);
+            String name = path.substring(start, end);
+            ConfigNode child = node.m_children.get(name);
+            if (child == null) {
+                child = new ConfigNode();
+                node.m_children.put(name, child);
+            }
+            node = child;
+            start = end + 1;
+        }
+        node.m_config = data;
+    }
+
     /**
      * Internal method for collecting structure ids of all configured detail pages and their parent folders.
      *
@@ -668,6 +728,93 @@ public class CmsADEConfigCacheState {
         seen.remove(currentId);
     }
 
+    /**
+     * Finds the node of the sitemap configuration with the longest base path which is a parent folder of
+     * (or equal to) the given path.<p>
+     *
+     * @param path a root path
+     *
+     * @return the node of the best matching sitemap configuration, or null if there is none
+     */
+    private ConfigNode findConfigNode(String path) {
+
+        ConfigNode node = m_configTree;
+        ConfigNode result = null;
+        int start = 0;
+        while (node != null) {
+            if (node.m_config != null) {
+                result = node;
+            }
+            start = skipSlashes(path, start);
+            if (start >= path.length()) {
+                break;
+            }
+            int end = getSegmentEnd(path, start);
+            node = node.m_children.get(path.substring(start, end));
+            start = end;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the end index of the folder name starting at the given index of a path.<p>
+     *
+     * @param path the path
+     * @param start the start index of the folder name
+     *
+     * @return the index of the next slash, or the length of the path
+     */
+    private int getSegmentEnd(String path, int start) {
+
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.length() : end;
+    }
+
+    /**
+     * Gets the sitemap configurations whose base path is a parent folder of (or equal to) the given path,
+     * ordered from the top level configuration down to the best matching one.<p>
+     *
+     * @param path a root path
+     *
+     * @return the list of sitemap configurations
+     */
+    private List<CmsADEConfigDataInternal> getSiteConfigChain(String path) {
+
+        List<CmsADEConfigDataInternal> result = new ArrayList<CmsADEConfigDataInternal>(4);
+        ConfigNode node = m_configTree;
+        int start = 0;
+        while (node != null) {
+            if (node.m_config != null) {
+                result.add(node.m_config);
+            }
+            start = skipSlashes(path, start);
+            if (start >= path.length()) {
+                break;
+            }
+            int end = getSegmentEnd(path, start);
+            node = node.m_children.get(path.substring(start, end));
+            start = end;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the first character of a path at or after the given index which is not a slash.<p>
+     *
+     * @param path the path
+     * @param start the index to start at
+     *
+     * @return the index of the next character which is not a slash, or the length of the path
+     */
+    private int skipSlashes(String path, int start) {
+
+        int result = start;
+        while ((result < path.length()) && (path.charAt(result) == '/')) {
+            result++;
+        }
+        return result;
+    }
+
     /**
      * Wraps the internal config data into a bean which manages the lookup of inherited configurations.<p>
      *
@@ -677,16 +824,27 @@ public class CmsADEConfigCacheState {
      */
     private CmsADEConfigData wrap(CmsADEConfigDataInternal data) {
 
+        return wrap(data, null);
+    }
+
+    /**
+     * Wraps the internal config data into a bean which manages the lookup of inherited configurations.<p>
+     *
+     * @param data the config data to wrap
+     * @param formatters the formatter configuration of the wrapper, if null the current one is read when needed
+     *
+     * @return the wrapper object
+     */
+    private CmsADEConfigData wrap(CmsADEConfigDataInternal data, CmsFormatterConfigurationCacheState formatters) {
+
         String path = data.getBasePath();
         List<ConfigReferenceInstance> configList = Lists.newArrayList();
         configList.add(new ConfigReferenceInstance(m_moduleConfiguration));
         if (path != null) {
-            List<String> siteConfigPaths = getSiteConfigPaths(path);
-            for (String siteConfigPath : siteConfigPaths) {
-                CmsADEConfigDataInternal currentConfig = m_siteConfigurationsByPath.get(siteConfigPath);
+            for (CmsADEConfigDataInternal currentConfig : getSiteConfigChain(path)) {
                 fillMasterConfigurations(configList, new ConfigReferenceInstance(currentConfig), new HashSet<>());
             }
         }
-        return new CmsADEConfigData(data, this, new CmsADEConfigurationSequence(configList));
+        return new CmsADEConfigData(data, this, new CmsADEConfigurationSequence(configList), formatters);
     }
 }
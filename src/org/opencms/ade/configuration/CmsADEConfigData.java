@@ -76,6 +76,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
@@ -216,34 +217,34 @@ public class CmsADEConfigData {
     protected CmsADEConfigDataInternal m_data;
 
     /** Lazily initialized map of formatters. */
-    private Map<CmsUUID, I_CmsFormatterBean> m_activeFormatters;
+    private volatile Map<CmsUUID, I_CmsFormatterBean> m_activeFormatters;
 
     /** Lazily initialized cache for active formatters by formatter key. */
-    private Multimap<String, I_CmsFormatterBean> m_activeFormattersByKey;
+    private volatile Multimap<String, I_CmsFormatterBean> m_activeFormattersByKey;
 
     /** The sitemap attributes (may be null if not yet computed). */
-    private Map<String, AttributeValue> m_attributes;
+    private volatile Map<String, AttributeValue> m_attributes;
 
     /** The cache state to which the wrapped configuration bean belongs. */
     private CmsADEConfigCacheState m_cache;
 
     /** Current formatter configuration. */
-    private CmsFormatterConfigurationCacheState m_cachedFormatters;
+    private volatile CmsFormatterConfigurationCacheState m_cachedFormatters;
 
     /** The configuration sequence (contains the list of all sitemap configuration data beans to be used for inheritance). */
     private CmsADEConfigurationSequence m_configSequence;
 
     /** Cache for formatters by container type. */
-    private Map<String, List<I_CmsFormatterBean>> m_formattersByContainerType = new HashMap<>();
+    private Map<String, List<I_CmsFormatterBean>> m_formattersByContainerType = new ConcurrentHashMap<>();
 
     /** Cache for formatters by display type. */
-    private Map<String, List<I_CmsFormatterBean>> m_formattersByDisplayType = new HashMap<>();
+    private Map<String, List<I_CmsFormatterBean>> m_formattersByDisplayType = new ConcurrentHashMap<>();
 
     /** Lazily initialized cache for formatters by JSP id. */
-    private Multimap<CmsUUID, I_CmsFormatterBean> m_formattersByJspId;
+    private volatile Multimap<CmsUUID, I_CmsFormatterBean> m_formattersByJspId;
 
     /** Lazily initialized cache for formatters by formatter key. */
-    private Multimap<String, I_CmsFormatterBean> m_formattersByKey;
+    private volatile Multimap<String, I_CmsFormatterBean> m_formattersByKey;
 
     /** Loading cache for for formatters grouped by type. */
     private LoadingCache<String, List<I_CmsFormatterBean>> m_formattersByTypeCache = CacheBuilder.newBuilder().build(
@@ -266,13 +267,13 @@ public class CmsADEConfigData {
     private volatile ImmutableList<CmsUUID> m_sharedSettingOverrides;
 
     /** Set of names of active types.*/
-    private Set<String> m_typesAddable;
+    private volatile Set<String> m_typesAddable;
 
     /** Cache of (active) resource type configurations by name. */
-    private Map<String, CmsResourceTypeConfig> m_typesByName;
+    private volatile Map<String, CmsResourceTypeConfig> m_typesByName;
 
     /** Type names configured in this or ancestor sitemap configurations. */
-    private Set<String> m_typesInAncestors;
+    private volatile Set<String> m_typesInAncestors;
 
     /**
      * Creates a new configuration data object, based on an internal configuration data bean and a
@@ -292,6 +293,24 @@ public class CmsADEConfigData {
         m_configSequence = configSequence;
     }
 
+    /**
+     * Creates a new configuration data object for a given formatter configuration.<p>
+     *
+     * @param data the internal configuration data bean
+     * @param cache the configuration cache state
+     * @param configSequence the configuration sequence
+     * @param cachedFormatters the formatter configuration, if null the current one is read when needed
+     */
+    public CmsADEConfigData(
+        CmsADEConfigDataInternal data,
+        CmsADEConfigCacheState cache,
+        CmsADEConfigurationSequence configSequence,
+        CmsFormatterConfigurationCacheState cachedFormatters) {
+
+        this(data, cache, configSequence);
+        m_cachedFormatters = cachedFormatters;
+    }
+
     /**
      * Generic method to merge lists of named configuration objects.<p>
      *
@@ -559,15 +578,17 @@ public class CmsADEConfigData {
      */
     public Map<CmsUUID, I_CmsFormatterBean> getActiveFormatters() {
 
-        if (m_activeFormatters == null) {
+        Map<CmsUUID, I_CmsFormatterBean> result = m_activeFormatters;
+        if (result == null) {
             CmsFormatterIndex formatterIndex = new CmsFormatterIndex();
             for (I_CmsFormatterBean formatter : getCachedFormatters().getAutoEnabledFormatters().values()) {
                 formatterIndex.addFormatter(formatter);
             }
             applyAllFormatterChanges(formatterIndex, getCachedFormatters());
-            m_activeFormatters = Collections.unmodifiableMap(formatterIndex.getFormattersWithAdditionalKeys());
+            result = Collections.unmodifiableMap(formatterIndex.getFormattersWithAdditionalKeys());
+            m_activeFormatters = result;
         }
-        return m_activeFormatters;
+        return result;
     }
 
     /**
@@ -755,8 +776,9 @@ public class CmsADEConfigData {
      */
     public Map<String, AttributeValue> getAttributes() {
 
-        if (m_attributes != null) {
-            return m_attributes;
+        Map<String, AttributeValue> attributes = m_attributes;
+        if (attributes != null) {
+            return attributes;
         }
         CmsADEConfigData parentConfig = parent();
         Map<String, AttributeValue> result = new HashMap<>();
@@ -791,11 +813,13 @@ public class CmsADEConfigData {
      */
     public CmsFormatterConfigurationCacheState getCachedFormatters() {
 
-        if (m_cachedFormatters == null) {
-            m_cachedFormatters = OpenCms.getADEManager().getCachedFormatters(
+        CmsFormatterConfigurationCacheState result = m_cachedFormatters;
+        if (result == null) {
+            result = OpenCms.getADEManager().getCachedFormatters(
                 getCms().getRequestContext().getCurrentProject().isOnlineProject());
+            m_cachedFormatters = result;
         }
-        return m_cachedFormatters;
+        return result;
     }
 
     /**
@@ -1494,8 +1518,9 @@ public class CmsADEConfigData {
      */
     public Map<String, CmsResourceTypeConfig> getTypesByName() {
 
-        if (m_typesByName != null) {
-            return m_typesByName;
+        Map<String, CmsResourceTypeConfig> typesByName = m_typesByName;
+        if (typesByName != null) {
+            return typesByName;
         }
         Map<String, CmsResourceTypeConfig> result = new HashMap<>();
         for (CmsResourceTypeConfig type : getResourceTypes()) {
@@ -2063,16 +2088,18 @@ public class CmsADEConfigData {
      */
     private Multimap<String, I_CmsFormatterBean> getActiveFormattersByKey() {
 
-        if (m_activeFormattersByKey == null) {
+        Multimap<String, I_CmsFormatterBean> result = m_activeFormattersByKey;
+        if (result == null) {
             ArrayListMultimap<String, I_CmsFormatterBean> activeFormattersByKey = ArrayListMultimap.create();
             for (I_CmsFormatterBean formatter : getActiveFormatters().values()) {
                 for (String key : formatter.getAllKeys()) {
                     activeFormattersByKey.put(key, formatter);
                 }
             }
-            m_activeFormattersByKey = activeFormattersByKey;
+            result = activeFormattersByKey;
+            m_activeFormattersByKey = result;
         }
-        return m_activeFormattersByKey;
+        return result;
     }
 
     /**
@@ -2131,14 +2158,16 @@ public class CmsADEConfigData {
      */
     private Multimap<CmsUUID, I_CmsFormatterBean> getFormattersByJspId() {
 
-        if (m_formattersByJspId == null) {
+        Multimap<CmsUUID, I_CmsFormatterBean> result = m_formattersByJspId;
+        if (result == null) {
             ArrayListMultimap<CmsUUID, I_CmsFormatterBean> formattersByJspId = ArrayListMultimap.create();
             for (I_CmsFormatterBean formatter : getCachedFormatters().getFormatters().values()) {
                 formattersByJspId.put(formatter.getJspStructureId(), formatter);
             }
-            m_formattersByJspId = formattersByJspId;
+            result = formattersByJspId;
+            m_formattersByJspId = result;
         }
-        return m_formattersByJspId;
+        return result;
     }
 
     /**
@@ -2148,16 +2177,18 @@ public class CmsADEConfigData {
      */
     private Multimap<String, I_CmsFormatterBean> getFormattersByKey() {
 
-        if (m_formattersByKey == null) {
+        Multimap<String, I_CmsFormatterBean> result = m_formattersByKey;
+        if (result == null) {
             ArrayListMultimap<String, I_CmsFormatterBean> formattersByKey = ArrayListMultimap.create();
             for (I_CmsFormatterBean formatter : getCachedFormatters().getFormatters().values()) {
                 for (String key : formatter.getAllKeys()) {
                     formattersByKey.put(key, formatter);
                 }
             }
-            m_formattersByKey = formattersByKey;
+            result = formattersByKey;
+            m_formattersByKey = result;
         }
-        return m_formattersByKey;
+        return result;
     }
 
 }
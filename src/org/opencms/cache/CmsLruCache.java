@@ -49,10 +49,11 @@ import org.apache.commons.logging.Log;
  * are added/removed from the CmsFlexLruCache.<p>
  *
  * @see org.opencms.cache.I_CmsLruCacheObject
+ * @see org.opencms.cache.CmsSegmentedLruCache
  *
  * @since 6.0.0
  */
-public class CmsLruCache extends java.lang.Object {
+public class CmsLruCache extends java.lang.Object implements I_CmsLruCache {
 
     /** The log object for this class. */
     private static final Log LOG = CmsLog.getLog(CmsLruCache.class);
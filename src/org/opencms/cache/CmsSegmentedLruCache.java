@@ -0,0 +1,235 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.cache;
+
+/**
+ * Implements a segmented LRU cache with the same cost semantics as {@link CmsLruCache}.<p>
+ *
+ * The cached objects are distributed over a fixed number of independent {@link CmsLruCache} segments
+ * by their identity hash code. Every segment has its own monitor, so threads adding, touching or
+ * removing different objects rarely block each other, whereas a single {@link CmsLruCache} serializes
+ * all these operations on one lock.<p>
+ *
+ * The maximum and average cache costs are split evenly between the segments, the maximum costs per object
+ * apply to every segment unchanged. Since the last-recently-used objects are evicted per segment, the eviction
+ * order is only an approximation of a global LRU order. The number of segments is reduced if necessary, so that
+ * the cost budget of a single segment is never smaller than the maximum costs of one object.<p>
+ *
+ * @see org.opencms.cache.CmsLruCache
+ * @see org.opencms.cache.I_CmsLruCacheObject
+ */
+public class CmsSegmentedLruCache implements I_CmsLruCache {
+
+    /** The default number of segments. */
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    /** The average sum of costs the cached objects. */
+    private long m_avgCacheCosts;
+
+    /** The maximum sum of costs the cached objects might reach. */
+    private long m_maxCacheCosts;
+
+    /** The maximum costs of cacheable objects. */
+    private int m_maxObjectCosts;
+
+    /** The bit mask used to select a segment, the number of segments is always a power of 2. */
+    private int m_segmentMask;
+
+    /** The cache segments. */
+    private CmsLruCache[] m_segments;
+
+    /**
+     * The constructor with all options.<p>
+     *
+     * @param theMaxCacheCosts the maximum cache costs of all cached objects
+     * @param theAvgCacheCosts the average cache costs of all cached objects
+     * @param theMaxObjectCosts the maximum allowed cache costs per object. Set theMaxObjectCosts to -1 if you don't want to limit the max. allowed cache costs per object
+     * @param theSegments the requested number of segments, will be rounded down to a power of 2
+     */
+    public CmsSegmentedLruCache(long theMaxCacheCosts, long theAvgCacheCosts, int theMaxObjectCosts, int theSegments) {
+
+        m_maxCacheCosts = theMaxCacheCosts;
+        m_avgCacheCosts = theAvgCacheCosts;
+        m_maxObjectCosts = theMaxObjectCosts;
+
+        int segments = Math.max(1, theSegments);
+        if ((theMaxObjectCosts > 0) && (theMaxCacheCosts > 0)) {
+            // every single object must still fit into the budget of its segment
+            long maxSegments = Math.max(1, theMaxCacheCosts / theMaxObjectCosts);
+            segments = (int)Math.min(segments, maxSegments);
+        }
+        int count = 1;
+        while (count < segments) {
+            count <<= 1;
+        }
+        if (count > segments) {
+            // use the next lower power of 2 so the segment budget is not reduced below the computed limit
+            count >>= 1;
+        }
+        m_segments = new CmsLruCache[count];
+        for (int i = 0; i < count; i++) {
+            m_segments[i] = new CmsLruCache(theMaxCacheCosts / count, theAvgCacheCosts / count, theMaxObjectCosts);
+        }
+        m_segmentMask = count - 1;
+    }
+
+    /**
+     * @see org.opencms.cache.I_CmsLruCache#add(org.opencms.cache.I_CmsLruCacheObject)
+     */
+    public boolean add(I_CmsLruCacheObject theCacheObject) {
+
+        if (theCacheObject == null) {
+            // null can't be added or touched in the cache
+            return false;
+        }
+        return getSegment(theCacheObject).add(theCacheObject);
+    }
+
+    /**
+     * @see org.opencms.cache.I_CmsLruCache#clear()
+     */
+    public void clear() {
+
+        for (CmsLruCache segment : m_segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @see org.opencms.cache.I_CmsLruCache#getAvgCacheCosts()
+     */
+    public long getAvgCacheCosts() {
+
+        return m_avgCacheCosts;
+    }
+
+    /**
+     * @see org.opencms.cache.I_CmsLruCache#getMaxCacheCosts()
+     */
+    public long getMaxCacheCosts() {
+
+        return m_maxCacheCosts;
+    }
+
+    /**
+     * @see org.opencms.cache.I_CmsLruCache#getMaxObjectCosts()
+     */
+    public int getMaxObjectCosts() {
+
+        return m_maxObjectCosts;
+    }
+
+    /**
+     * @see org.opencms.cache.I_CmsLruCache#getObjectCosts()
+     */
+    public int getObjectCosts() {
+
+        long costs = 0;
+        for (CmsLruCache segment : m_segments) {
+            costs += segment.getObjectCosts();
+        }
+        return (int)Math.min(costs, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of segments of this cache.<p>
+     *
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+
+        return m_segments.length;
+    }
+
+    /**
+     * @see org.opencms.cache.I_CmsLruCache#remove(org.opencms.cache.I_CmsLruCacheObject)
+     */
+    public I_CmsLruCacheObject remove(I_CmsLruCacheObject theCacheObject) {
+
+        if (theCacheObject == null) {
+            return null;
+        }
+        return getSegment(theCacheObject).remove(theCacheObject);
+    }
+
+    /**
+     * @see org.opencms.cache.I_CmsLruCache#size()
+     */
+    public int size() {
+
+        int size = 0;
+        for (CmsLruCache segment : m_segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns a string representing the current state of the cache.<p>
+     *
+     * @return a string representing the current state of the cache
+     */
+    @Override
+    public String toString() {
+
+        StringBuffer buf = new StringBuffer();
+        buf.append("max. costs: " + m_maxCacheCosts).append(", ");
+        buf.append("avg. costs: " + m_avgCacheCosts).append(", ");
+        buf.append("max. costs/object: " + m_maxObjectCosts).append(", ");
+        buf.append("segments: " + m_segments.length).append(", ");
+        buf.append("costs: " + getObjectCosts()).append(", ");
+        buf.append("count: " + size());
+        return buf.toString();
+    }
+
+    /**
+     * @see org.opencms.cache.I_CmsLruCache#touch(org.opencms.cache.I_CmsLruCacheObject)
+     */
+    public boolean touch(I_CmsLruCacheObject theCacheObject) {
+
+        if (theCacheObject == null) {
+            return false;
+        }
+        return getSegment(theCacheObject).touch(theCacheObject);
+    }
+
+    /**
+     * Returns the segment responsible for the given cache object.<p>
+     *
+     * @param theCacheObject the cache object
+     *
+     * @return the segment for the cache object
+     */
+    private CmsLruCache getSegment(I_CmsLruCacheObject theCacheObject) {
+
+        int h = System.identityHashCode(theCacheObject);
+        // spread the higher bits, identity hash codes are not uniformly distributed in the lower bits
+        h ^= (h >>> 16);
+        return m_segments[h & m_segmentMask];
+    }
+}
@@ -129,6 +129,9 @@ public class CmsSearchConfiguration extends A_CmsXmlConfiguration {
     /** Node name constant. */
     public static final String N_EXTRACTION_CACHE_MAX_AGE = "extractionCacheMaxAge";
 
+    /** Node name constant. */
+    public static final String N_EXTRACTION_CACHE_MAX_SIZE = "extractionCacheMaxSize";
+
     /** Node name constant. */
     public static final String N_FIELD = "field";
 
@@ -159,6 +162,9 @@ public class CmsSearchConfiguration extends A_CmsXmlConfiguration {
     /** Node name constant. */
     public static final String N_INDEXES = "indexes";
 
+    /** Node name constant. */
+    public static final String N_INDEXING_THREADS = "indexingThreads";
+
     /** Node name constant. */
     public static final String N_INDEXSOURCE = "indexsource";
 
@@ -267,12 +273,18 @@ public class CmsSearchConfiguration extends A_CmsXmlConfiguration {
         // rule for the max. age of entries in the extraction cache
         digester.addCallMethod(XPATH_SEARCH + "/" + N_EXTRACTION_CACHE_MAX_AGE, "setExtractionCacheMaxAge", 0);
 
+        // rule for the max. size of the extraction cache
+        digester.addCallMethod(XPATH_SEARCH + "/" + N_EXTRACTION_CACHE_MAX_SIZE, "setExtractionCacheMaxSize", 0);
+
         // rule for max. number of modifications before commit
         digester.addCallMethod(
             XPATH_SEARCH + "/" + N_MAX_MODIFICATIONS_BEFORE_COMMIT,
             "setMaxModificationsBeforeCommit",
             0);
 
+        // rule for the number of threads extracting documents
+        digester.addCallMethod(XPATH_SEARCH + "/" + N_INDEXING_THREADS, "setIndexingThreads", 0);
+
         // rule for the highlighter to highlight the search terms in the excerpt of the search result
         digester.addCallMethod(XPATH_SEARCH + "/" + N_HIGHLIGHTER, "setHighlighter", 0);
 
@@ -429,9 +441,19 @@ public class CmsSearchConfiguration extends A_CmsXmlConfiguration {
         // add <extractionCacheMaxAge> element
         searchElement.addElement(N_EXTRACTION_CACHE_MAX_AGE).addText(
             String.valueOf(m_searchManager.getExtractionCacheMaxAge()));
+        // add <extractionCacheMaxSize> element
+        if (m_searchManager.getExtractionCacheMaxSize() != CmsSearchManager.DEFAULT_EXTRACTION_CACHE_MAX_SIZE) {
+            searchElement.addElement(N_EXTRACTION_CACHE_MAX_SIZE).addText(
+                String.valueOf(m_searchManager.getExtractionCacheMaxSize()));
+        }
         // add <maxModificationsBeforeCommit> element
         searchElement.addElement(N_MAX_MODIFICATIONS_BEFORE_COMMIT).addText(
             String.valueOf(m_searchManager.getMaxModificationsBeforeCommit()));
+        // add <indexingThreads> element
+        if (m_searchManager.getIndexingThreads() != CmsSearchManager.DEFAULT_INDEXING_THREADS) {
+            searchElement.addElement(N_INDEXING_THREADS).addText(
+                String.valueOf(m_searchManager.getIndexingThreads()));
+        }
         // add <highlighter> element
         searchElement.addElement(N_HIGHLIGHTER).addText(m_searchManager.getHighlighter().getClass().getName());
 
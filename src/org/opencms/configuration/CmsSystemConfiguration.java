@@ -262,12 +262,18 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
     /** The node name for the browser-based node. */
     public static final String N_BROWSER_BASED = "browser-based";
 
+    /** The node name for the cache-dependencies node. */
+    public static final String N_CACHE_DEPENDENCIES = "cache-dependencies";
+
     /** The node name for the cache-enabled node. */
     public static final String N_CACHE_ENABLED = "cache-enabled";
 
     /** The node name for the cache-offline node. */
     public static final String N_CACHE_OFFLINE = "cache-offline";
 
+    /** The node name for the cache-segments node. */
+    public static final String N_CACHE_SEGMENTS = "cache-segments";
+
     /** The node name for a job class. */
     public static final String N_CLASS = "class";
 
@@ -409,9 +415,15 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
     /** The duration after which responsibles will be notified about out-dated content. */
     public static final String N_NOTIFICATION_TIME = "notification-time";
 
+    /** The node name for the offheap-bytes node. */
+    public static final String N_OFFHEAP_BYTES = "offheap-bytes";
+
     /** The node name for the parameters. */
     public static final String N_PARAMETERS = "parameters";
 
+    /** The node name for the number of parallel publish jobs. */
+    public static final String N_PARALLEL_JOBS = "parallel-jobs";
+
     /** Node name for the password change interval. */
     public static final String N_PASSWORD_CHANGE_INTERVAL = "passwordChangeInterval";
 
@@ -430,6 +442,9 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
     /** The node name for the publish list remove mode. */
     public static final String N_PUBLISH_LIST_REMOVE_MODE = "publish-list-remove-mode";
 
+    /** The node name for the number of publish threads. */
+    public static final String N_PUBLISH_THREADS = "publish-threads";
+
     /** The node name for the "publishhistory" section. */
     public static final String N_PUBLISHMANAGER = "publishmanager";
 
@@ -1136,6 +1151,12 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
         digester.addCallParam("*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_AVGCACHEBYTES, 3);
         digester.addCallParam("*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_MAXENTRYBYTES, 4);
         digester.addCallParam("*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_MAXKEYS, 5);
+        digester.addCallMethod("*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_CACHE_SEGMENTS, "setCacheSegments", 0);
+        digester.addCallMethod(
+            "*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_CACHE_DEPENDENCIES,
+            "setCacheDependencies",
+            0);
+        digester.addCallMethod("*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_OFFHEAP_BYTES, "setOffHeapBytes", 0);
         // add flexcache device selector
         digester.addCallMethod(
             "*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_DEVICESELECTOR,
@@ -1278,6 +1299,14 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
             "*/" + N_SYSTEM + "/" + N_PUBLISHMANAGER + "/" + N_AUTO_CLEANUP_HISTORY_ENTRIES,
             "setAutoCleanupHistoryEntries",
             0);
+        digester.addCallMethod(
+            "*/" + N_SYSTEM + "/" + N_PUBLISHMANAGER + "/" + N_PUBLISH_THREADS,
+            "setPublishThreads",
+            0);
+        digester.addCallMethod(
+            "*/" + N_SYSTEM + "/" + N_PUBLISHMANAGER + "/" + N_PARALLEL_JOBS,
+            "setParallelJobs",
+            0);
         digester.addSetNext("*/" + N_SYSTEM + "/" + N_PUBLISHMANAGER, "setPublishManager");
 
         // add rule for session storage provider
@@ -1661,6 +1690,17 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
         flexcacheElement.addElement(N_MAXENTRYBYTES).addText(
             String.valueOf(m_cmsFlexCacheConfiguration.getMaxEntryBytes()));
         flexcacheElement.addElement(N_MAXKEYS).addText(String.valueOf(m_cmsFlexCacheConfiguration.getMaxKeys()));
+        if (m_cmsFlexCacheConfiguration.getCacheSegments() > 1) {
+            flexcacheElement.addElement(N_CACHE_SEGMENTS).addText(
+                String.valueOf(m_cmsFlexCacheConfiguration.getCacheSegments()));
+        }
+        if (m_cmsFlexCacheConfiguration.isCacheDependencies()) {
+            flexcacheElement.addElement(N_CACHE_DEPENDENCIES).addText(Boolean.TRUE.toString());
+        }
+        if (m_cmsFlexCacheConfiguration.getOffHeapBytes() > 0) {
+            flexcacheElement.addElement(N_OFFHEAP_BYTES).addText(
+                String.valueOf(m_cmsFlexCacheConfiguration.getOffHeapBytes()));
+        }
         if (m_cmsFlexCacheConfiguration.getDeviceSelectorConfiguration() != null) {
             Element flexcacheDeviceSelectorElement = flexcacheElement.addElement(N_DEVICESELECTOR);
             flexcacheDeviceSelectorElement.addAttribute(
@@ -1753,6 +1793,14 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
                 String.valueOf(m_publishManager.getPublishQueueShutdowntime()));
             pubHistElement.addElement(N_AUTO_CLEANUP_HISTORY_ENTRIES).setText(
                 String.valueOf(m_publishManager.isAutoCleanupHistoryEntries()));
+            if (m_publishManager.getPublishThreads() != CmsPublishManager.DEFAULT_PUBLISH_THREADS) {
+                pubHistElement.addElement(N_PUBLISH_THREADS).setText(
+                    String.valueOf(m_publishManager.getPublishThreads()));
+            }
+            if (m_publishManager.getParallelJobs() != CmsPublishManager.DEFAULT_PARALLEL_JOBS) {
+                pubHistElement.addElement(N_PARALLEL_JOBS).setText(
+                    String.valueOf(m_publishManager.getParallelJobs()));
+            }
         }
 
         // session storage provider
@@ -52,7 +52,9 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 
@@ -72,6 +74,12 @@ public class CmsAliasManager {
     /** The security manager for accessing the database. */
     protected CmsSecurityManager m_securityManager;
 
+    /** The cached rewrite alias matchers, by site root. */
+    private Map<String, CmsRewriteAliasMatcher> m_rewriteAliasMatchers = new ConcurrentHashMap<>();
+
+    /** The version of the rewrite aliases, incremented whenever they are changed. */
+    private long m_rewriteAliasVersion;
+
     /**
      * Creates a new alias manager instance.<p>
      *
@@ -162,6 +170,8 @@ public class CmsAliasManager {
     /**
      * Gets the rewrite alias matcher for the given site.<p>
      *
+     * The matcher is cached until the rewrite aliases are changed by this alias manager.<p>
+     *
      * @param cms the CMS context to use
      * @param siteRoot the site root
      *
@@ -171,8 +181,22 @@ public class CmsAliasManager {
      */
     public CmsRewriteAliasMatcher getRewriteAliasMatcher(CmsObject cms, String siteRoot) throws CmsException {
 
-        List<CmsRewriteAlias> aliases = getRewriteAliases(cms, siteRoot);
-        return new CmsRewriteAliasMatcher(aliases);
+        CmsRewriteAliasMatcher matcher = m_rewriteAliasMatchers.get(siteRoot);
+        if (matcher == null) {
+            long version;
+            synchronized (m_rewriteAliasMatchers) {
+                version = m_rewriteAliasVersion;
+            }
+            List<CmsRewriteAlias> aliases = getRewriteAliases(cms, siteRoot);
+            matcher = new CmsRewriteAliasMatcher(aliases);
+            synchronized (m_rewriteAliasMatchers) {
+                // don't cache a matcher built from aliases which have been changed in the meantime
+                if (version == m_rewriteAliasVersion) {
+                    m_rewriteAliasMatchers.put(siteRoot, matcher);
+                }
+            }
+        }
+        return matcher;
     }
 
     /**
@@ -257,7 +281,11 @@ public class CmsAliasManager {
     throws CmsException {
 
         checkPermissionsForMassEdit(cms, siteRoot);
-        m_securityManager.saveRewriteAliases(cms.getRequestContext(), siteRoot, newAliases);
+        try {
+            m_securityManager.saveRewriteAliases(cms.getRequestContext(), siteRoot, newAliases);
+        } finally {
+            clearRewriteAliasMatchers();
+        }
     }
 
     /**
@@ -520,6 +548,17 @@ public class CmsAliasManager {
         }
     }
 
+    /**
+     * Removes all cached rewrite alias matchers.<p>
+     */
+    private void clearRewriteAliasMatchers() {
+
+        synchronized (m_rewriteAliasMatchers) {
+            m_rewriteAliasVersion++;
+            m_rewriteAliasMatchers.clear();
+        }
+    }
+
     /**
      * Message accessor.<p>
      *
@@ -611,6 +650,8 @@ public class CmsAliasManager {
                 source,
                 target,
                 mode);
+        } finally {
+            clearRewriteAliasMatchers();
         }
 
     }
@@ -90,6 +90,7 @@ import org.opencms.main.CmsMultiException;
 import org.opencms.main.I_CmsEventListener;
 import org.opencms.main.OpenCms;
 import org.opencms.module.CmsModule;
+import org.opencms.monitor.CmsAclTreeCache;
 import org.opencms.monitor.CmsMemoryMonitor;
 import org.opencms.monitor.CmsMemoryMonitor.CacheType;
 import org.opencms.publish.CmsPublishEngine;
@@ -116,6 +117,7 @@ import org.opencms.security.CmsPrincipal;
 import org.opencms.security.CmsRole;
 import org.opencms.security.CmsSecurityException;
 import org.opencms.security.I_CmsPermissionHandler;
+import org.opencms.security.I_CmsPermissionHandler.CmsPermissionCheckResult;
 import org.opencms.security.I_CmsPermissionHandler.LockCheck;
 import org.opencms.security.I_CmsPrincipal;
 import org.opencms.security.twofactor.CmsSecondFactorInfo;
@@ -139,6 +141,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
@@ -430,9 +433,15 @@ public final class CmsDriverManager implements I_CmsEventListener {
     /** Attribute for signaling to the user driver that a specific OU should be initialized by fillDefaults. */
     public static final String ATTR_INIT_OU = "INIT_OU";
 
+    /** DB context attribute holding the inherited access control lists resolved during a bulk permission check. */
+    public static final String ATTR_PERMISSION_ACL_MEMO = "ATTR_PERMISSION_ACL_MEMO";
+
     /** DB context attribute used to communicate information about resource cacheability between various methods. */
     public static final String ATTR_PERMISSION_NOCACHE = "ATTR_PERMISSION_NOCACHE";
 
+    /** DB context attribute holding the searched property lists of folders resolved during a bulk property read. */
+    public static final String ATTR_PROPERTY_SEARCH_MEMO = "ATTR_PROPERTY_SEARCH_MEMO";
+
     /** Attribute login. */
     public static final String ATTRIBUTE_LOGIN = "A_LOGIN";
 
@@ -587,6 +596,9 @@ public final class CmsDriverManager implements I_CmsEventListener {
     /** The class used for cache key generation. */
     private I_CmsCacheKey m_keyGenerator;
 
+    /** The last publish tag handed out, used to keep parallel publish jobs from sharing a tag. */
+    private int m_lastPublishTag;
+
     /** The lock manager. */
     private CmsLockManager m_lockManager;
 
@@ -608,6 +620,9 @@ public final class CmsDriverManager implements I_CmsEventListener {
     /** Object used for synchronizing updates to the user publish list. */
     private Object m_publishListUpdateLock = new Object();
 
+    /** Object used for synchronizing the publish tag generation. */
+    private Object m_publishTagLock = new Object();
+
     /** The security manager (for access checks). */
     private CmsSecurityManager m_securityManager;
 
@@ -1379,7 +1394,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
         }
 
         // clear the cache
-        m_monitor.clearAccessControlListCache();
+        clearAccessControlListCache(dbc, destination);
 
         // fire a resource modification event
         Map<String, Object> data = new HashMap<String, Object>(2);
@@ -1539,7 +1554,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
         copyAccessControlEntries(dbc, source, newResource, false);
 
         // clear the cache
-        m_monitor.clearAccessControlListCache();
+        clearAccessControlListCache(dbc, newResource);
 
         List<CmsResource> modifiedResources = new ArrayList<CmsResource>();
         modifiedResources.add(source);
@@ -2243,7 +2258,11 @@ public final class CmsDriverManager implements I_CmsEventListener {
             }
         } finally {
             // clear the internal caches
-            m_monitor.clearAccessControlListCache();
+            if (newResource != null) {
+                clearAccessControlListCache(dbc, newResource);
+            } else {
+                m_monitor.clearAccessControlListCache(Collections.singletonList(resourcePath));
+            }
             m_monitor.flushCache(CmsMemoryMonitor.CacheType.PROPERTY, CmsMemoryMonitor.CacheType.PROPERTY_LIST);
 
             if (newResource != null) {
@@ -2410,7 +2429,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
         copyRelations(dbc, source, newResource);
 
         // clear the caches
-        m_monitor.clearAccessControlListCache();
+        clearAccessControlListCache(dbc, newResource);
 
         List<CmsResource> modifiedResources = new ArrayList<CmsResource>();
         modifiedResources.add(source);
@@ -2599,7 +2618,11 @@ public final class CmsDriverManager implements I_CmsEventListener {
             }
         } finally {
             // clear the driver manager cache
-            m_monitor.flushCache(CmsMemoryMonitor.CacheType.PROPERTY, CmsMemoryMonitor.CacheType.PROPERTY_LIST);
+            if (resource != null) {
+                clearPropertyListCache(dbc, resource);
+            } else {
+                m_monitor.flushCache(CmsMemoryMonitor.CacheType.PROPERTY, CmsMemoryMonitor.CacheType.PROPERTY_LIST);
+            }
 
             // fire an event that all properties of a resource have been deleted
             OpenCms.fireCmsEvent(
@@ -3369,7 +3392,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
         }
 
         // flush all caches
-        m_monitor.clearAccessControlListCache();
+        clearAccessControlListCache(dbc, resource);
         m_monitor.flushCache(
             CmsMemoryMonitor.CacheType.PROPERTY,
             CmsMemoryMonitor.CacheType.PROPERTY_LIST,
@@ -4490,13 +4513,19 @@ public final class CmsDriverManager implements I_CmsEventListener {
     /**
      * Returns the next publish tag for the published historical resources.<p>
      *
+     * A tag is never handed out twice, even if the job that got it has not written its history yet.<p>
+     *
      * @param dbc the current database context
      *
      * @return the next available publish tag
      */
     public int getNextPublishTag(CmsDbContext dbc) {
 
-        return getHistoryDriver(dbc).readNextPublishTag(dbc);
+        synchronized (m_publishTagLock) {
+            int publishTag = Math.max(getHistoryDriver(dbc).readNextPublishTag(dbc), m_lastPublishTag + 1);
+            m_lastPublishTag = publishTag;
+            return publishTag;
+        }
     }
 
     /**
@@ -5368,7 +5397,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
         while (i.hasNext()) {
             userDriver.writeAccessControlEntry(dbc, dbc.currentProject(), i.next());
         }
-        m_monitor.clearAccessControlListCache();
+        clearAccessControlListCache(dbc, resource);
     }
 
     /**
@@ -6203,7 +6232,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
         m_lockManager.moveResource(source.getRootPath(), destRes.getRootPath());
 
         // flush all relevant caches
-        m_monitor.clearAccessControlListCache();
+        clearAccessControlListCache(dbc, source, destRes);
         m_monitor.flushCache(
             CmsMemoryMonitor.CacheType.PROPERTY,
             CmsMemoryMonitor.CacheType.PROPERTY_LIST,
@@ -7000,6 +7029,8 @@ public final class CmsDriverManager implements I_CmsEventListener {
             }
         }
 
+        // listings of the folder change if resources are created, deleted or moved below it
+        updateContextDependencies(dbc, resource);
         // we must always apply the result filter and update the context dates
         return updateContextDates(dbc, resourceList, filter);
     }
@@ -7894,38 +7925,31 @@ public final class CmsDriverManager implements I_CmsEventListener {
 
         List<CmsProperty> properties = m_monitor.getCachedPropertyList(cacheKey);
 
+        CmsFlexRequestContextInfo info = dbc.getFlexRequestContextInfo();
+        if (search && (info != null)) {
+            // the searched properties depend on the ancestor folders, even if they are not read as resources
+            info.addFolderPropertiesDependency();
+        }
         if ((properties == null) || !dbc.getProjectId().isNullUUID()) {
             // result not cached, let's look it up in the DB
+            boolean cacheable = true;
             if (search) {
-                boolean cont;
+                List<CmsProperty> ownProperties = readPropertyObjects(dbc, resource, false);
                 properties = new ArrayList<CmsProperty>();
-                List<CmsProperty> parentProperties = null;
-
-                do {
+                String parentPath = CmsResource.getParentFolder(resource.getRootPath());
+                if (parentPath != null) {
                     try {
-                        parentProperties = readPropertyObjects(dbc, resource, false);
-
-                        // make sure properties from lower folders "overwrite" properties from upper folders
-                        parentProperties.removeAll(properties);
-                        parentProperties.addAll(properties);
-
-                        properties.clear();
-                        properties.addAll(parentProperties);
-
-                        cont = resource.getRootPath().length() > 1;
+                        // the searched properties of the parent folder are shared by all resources in the folder
+                        properties.addAll(readSearchedParentProperties(dbc, parentPath));
                     } catch (CmsSecurityException se) {
-                        // a security exception (probably no read permission) we return the current result
-                        cont = false;
-                    }
-                    if (cont) {
-                        // no permission check on parent folder is required since we must have "read"
-                        // permissions to read the child resource anyway
-                        resource = readResource(
-                            dbc,
-                            CmsResource.getParentFolder(resource.getRootPath()),
-                            CmsResourceFilter.ALL);
+                        // a security exception (probably no read permission) we return the properties of the resource,
+                        // this result depends on the current user, so it must not be cached
+                        cacheable = false;
                     }
-                } while (cont);
+                }
+                // make sure properties from lower folders "overwrite" properties from upper folders
+                properties.removeAll(ownProperties);
+                properties.addAll(ownProperties);
             } else {
                 properties = getVfsDriver(dbc).readPropertyObjects(dbc, dbc.currentProject(), resource);
                 //                for (CmsProperty prop : properties) {
@@ -7935,7 +7959,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
 
             // set all properties in the result list as frozen
             CmsProperty.setFrozen(properties);
-            if (dbc.getProjectId().isNullUUID()) {
+            if (cacheable && dbc.getProjectId().isNullUUID()) {
                 // store the result in the cache if needed
                 m_monitor.cachePropertyList(cacheKey, properties);
             }
@@ -7944,6 +7968,47 @@ public final class CmsDriverManager implements I_CmsEventListener {
         return new ArrayList<CmsProperty>(properties);
     }
 
+    /**
+     * Reads all property objects mapped to the given resources from the database.<p>
+     *
+     * The result is the same as reading the properties of every single resource with
+     * {@link #readPropertyObjects(CmsDbContext, CmsResource, boolean)}, but if <code>search</code>
+     * is <code>true</code>, the searched properties of every parent folder are only resolved once.<p>
+     *
+     * @param dbc the current database context
+     * @param resources the resources where the properties are read from
+     * @param search true, if the properties should be searched on all parent folders  if not found on the resource
+     *
+     * @return the properties of each resource, in the order of the given resources
+     *
+     * @throws CmsException if something goes wrong
+     *
+     * @see CmsObject#readPropertyObjects(List, boolean)
+     */
+    public Map<CmsResource, List<CmsProperty>> readPropertyObjects(
+        CmsDbContext dbc,
+        List<CmsResource> resources,
+        boolean search)
+    throws CmsException {
+
+        Map<CmsResource, List<CmsProperty>> result = new LinkedHashMap<CmsResource, List<CmsProperty>>();
+        boolean memoWasSet = false;
+        if (search && (dbc.getAttribute(ATTR_PROPERTY_SEARCH_MEMO) == null)) {
+            dbc.setAttribute(ATTR_PROPERTY_SEARCH_MEMO, new HashMap<String, List<CmsProperty>>());
+            memoWasSet = true;
+        }
+        try {
+            for (CmsResource resource : resources) {
+                result.put(resource, readPropertyObjects(dbc, resource, search));
+            }
+        } finally {
+            if (memoWasSet) {
+                dbc.removeAttribute(ATTR_PROPERTY_SEARCH_MEMO);
+            }
+        }
+        return result;
+    }
+
     /**
      * Reads the resources that were published in a publish task for a given publish history ID.<p>
      *
@@ -8174,6 +8239,8 @@ public final class CmsDriverManager implements I_CmsEventListener {
                 m_monitor.cacheResourceList(cacheKey, resourceList);
             }
         }
+        // listings of the folder change if resources are created, deleted or moved below it
+        updateContextDependencies(dbc, parent);
         // we must always apply the result filter and update the context dates
         return updateContextDates(dbc, resourceList, filter);
     }
@@ -8614,7 +8681,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
         setDateLastModified(dbc, resource, resource.getDateLastModified());
 
         // clear the cache
-        m_monitor.clearAccessControlListCache();
+        clearAccessControlListCache(dbc, resource);
 
         // fire a resource modification event
         Map<String, Object> data = new HashMap<String, Object>(2);
@@ -10107,7 +10174,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
         setDateLastModified(dbc, resource, resource.getDateLastModified());
 
         // clear the cache
-        m_monitor.clearAccessControlListCache();
+        clearAccessControlListCache(dbc, resource);
 
         // fire a resource modification event
         Map<String, Object> data = new HashMap<String, Object>(2);
@@ -10357,7 +10424,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
      * Writes the locks that are currently stored in-memory to the database to allow restoring them
      * in future server startups.<p>
      *
-     * This overwrites the locks previously stored in the underlying database table.<p>
+     * Only the locks changed since the last write are rewritten in the underlying database table.<p>
      *
      * @param dbc the current database context
      *
@@ -10489,7 +10556,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
         } finally {
             // update the driver manager cache
             m_monitor.clearResourceCache();
-            m_monitor.flushCache(CmsMemoryMonitor.CacheType.PROPERTY, CmsMemoryMonitor.CacheType.PROPERTY_LIST);
+            clearPropertyListCache(dbc, resource);
 
             // fire an event that a property of a resource has been modified
             Map<String, Object> data = new HashMap<String, Object>();
@@ -10573,7 +10640,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
         } finally {
             // update the driver manager cache
             m_monitor.clearResourceCache();
-            m_monitor.flushCache(CmsMemoryMonitor.CacheType.PROPERTY, CmsMemoryMonitor.CacheType.PROPERTY_LIST);
+            clearPropertyListCache(dbc, resource);
 
             // fire an event that the properties of a resource have been modified
             OpenCms.fireCmsEvent(
@@ -11335,6 +11402,56 @@ public final class CmsDriverManager implements I_CmsEventListener {
         return false;
     }
 
+    /**
+     * Clears the cached access control lists of the given resources, their siblings and all resources below them.<p>
+     *
+     * The access control lists of resources in other parts of the tree stay cached.<p>
+     *
+     * @param dbc the database context
+     * @param resources the resources whose access control entries have changed
+     */
+    private void clearAccessControlListCache(CmsDbContext dbc, CmsResource... resources) {
+
+        try {
+            m_monitor.clearAccessControlListCache(getRootPathsWithSiblings(dbc, resources));
+        } catch (CmsException e) {
+            LOG.warn(e.getLocalizedMessage(), e);
+            m_monitor.clearAccessControlListCache();
+        }
+    }
+
+    /**
+     * Clears the cached property lists of the given resources, their siblings and all resources below them.<p>
+     *
+     * The property lists of resources in other parts of the tree stay cached.<p>
+     *
+     * @param dbc the database context
+     * @param resources the resources whose properties have changed
+     */
+    private void clearPropertyListCache(CmsDbContext dbc, CmsResource... resources) {
+
+        try {
+            final List<String> rootPaths = getRootPathsWithSiblings(dbc, resources);
+            // the keys consist of the prefix, the search flag, the online flag and the root path
+            final int pathStart = CACHE_ALL_PROPERTIES.length() + 2;
+            m_monitor.uncachePropertyLists(key -> {
+                if (!key.startsWith(CACHE_ALL_PROPERTIES)) {
+                    return true;
+                }
+                for (String rootPath : rootPaths) {
+                    if (key.startsWith(rootPath, pathStart)) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        } catch (CmsException e) {
+            LOG.warn(e.getLocalizedMessage(), e);
+            m_monitor.flushCache(CmsMemoryMonitor.CacheType.PROPERTY_LIST);
+        }
+        m_monitor.flushCache(CmsMemoryMonitor.CacheType.PROPERTY);
+    }
+
     /**
      * Copies all relations from the source resource to the target resource.<p>
      *
@@ -11403,17 +11520,17 @@ public final class CmsDriverManager implements I_CmsEventListener {
             nocacheWasSet = true;
         }
         try {
+            // check the permission of all resources at once, so that shared parent folders are only resolved once
+            List<CmsPermissionCheckResult> permissions = m_securityManager.hasPermissions(
+                dbc,
+                resourceList,
+                CmsPermissionSet.ACCESS_READ,
+                LockCheck.yes,
+                filter);
             for (int i = 0; i < resourceList.size(); i++) {
-                // check the permission of all resources
-                CmsResource currentResource = resourceList.get(i);
-                if (m_securityManager.hasPermissions(
-                    dbc,
-                    currentResource,
-                    CmsPermissionSet.ACCESS_READ,
-                    LockCheck.yes,
-                    filter).isAllowed()) {
+                if (permissions.get(i).isAllowed()) {
                     // only return resources where permission was granted
-                    result.add(currentResource);
+                    result.add(resourceList.get(i));
                 }
             }
         } finally {
@@ -11589,19 +11706,17 @@ public final class CmsDriverManager implements I_CmsEventListener {
         int depth)
     throws CmsException {
 
-        String cacheKey = getCacheKey(
-            new String[] {
-                inheritedOnly ? "+" : "-",
-                forFolder ? "+" : "-",
-                Integer.toString(depth),
-                resource.getStructureId().toString()},
-            dbc);
+        boolean cacheable = dbc.getProjectId().isNullUUID();
+        boolean online = dbc.currentProject().isOnlineProject();
+        int slot = CmsAclTreeCache.getSlot(inheritedOnly, forFolder, depth);
 
-        CmsAccessControlList acl = m_monitor.getCachedACL(cacheKey);
-
-        // return the cached acl if already available
-        if ((acl != null) && dbc.getProjectId().isNullUUID()) {
-            return acl;
+        CmsAccessControlList acl = null;
+        if (cacheable) {
+            // return the cached acl if already available
+            acl = m_monitor.getCachedACL(online, resource.getRootPath(), resource.getStructureId(), slot);
+            if (acl != null) {
+                return acl;
+            }
         }
 
         List<CmsAccessControlEntry> aces = getUserDriver(dbc).readAccessControlEntries(
@@ -11615,28 +11730,44 @@ public final class CmsDriverManager implements I_CmsEventListener {
 
         // if no 'overwrite all' ace was found
         if (!overwriteAll) {
-            // get the acl of the parent
-            CmsResource parentResource = null;
-            try {
-                // try to recurse over the id
-                parentResource = getVfsDriver(dbc).readParentFolder(
-                    dbc,
-                    dbc.currentProject().getUuid(),
-                    resource.getStructureId());
-            } catch (CmsVfsResourceNotFoundException e) {
-                // should never happen, but try with the path
-                String parentPath = CmsResource.getParentFolder(resource.getRootPath());
-                if (parentPath != null) {
-                    parentResource = getVfsDriver(dbc).readFolder(dbc, dbc.currentProject().getUuid(), parentPath);
+            // during bulk permission checks, the inherited acl of each parent folder is only resolved once
+            @SuppressWarnings("unchecked")
+            Map<String, CmsAccessControlList> aclMemo = (Map<String, CmsAccessControlList>)dbc.getAttribute(
+                ATTR_PERMISSION_ACL_MEMO);
+            String parentPath = CmsResource.getParentFolder(resource.getRootPath());
+            String memoKey = null;
+            CmsAccessControlList parentAcl = null;
+            if ((aclMemo != null) && (parentPath != null)) {
+                memoKey = (inheritedOnly ? "+" : "-") + (forFolder ? "+" : "-") + (depth + 1) + parentPath;
+                parentAcl = aclMemo.get(memoKey);
+            }
+            if (parentAcl == null) {
+                // get the acl of the parent
+                CmsResource parentResource = null;
+                try {
+                    // try to recurse over the id
+                    parentResource = getVfsDriver(dbc).readParentFolder(
+                        dbc,
+                        dbc.currentProject().getUuid(),
+                        resource.getStructureId());
+                } catch (CmsVfsResourceNotFoundException e) {
+                    // should never happen, but try with the path
+                    if (parentPath != null) {
+                        parentResource = getVfsDriver(dbc).readFolder(
+                            dbc,
+                            dbc.currentProject().getUuid(),
+                            parentPath);
+                    }
+                }
+                if (parentResource != null) {
+                    parentAcl = getAccessControlList(dbc, parentResource, inheritedOnly, forFolder, depth + 1);
+                    if (memoKey != null) {
+                        aclMemo.put(memoKey, parentAcl);
+                    }
                 }
             }
-            if (parentResource != null) {
-                acl = (CmsAccessControlList)getAccessControlList(
-                    dbc,
-                    parentResource,
-                    inheritedOnly,
-                    forFolder,
-                    depth + 1).clone();
+            if (parentAcl != null) {
+                acl = (CmsAccessControlList)parentAcl.clone();
             }
         }
         if (acl == null) {
@@ -11672,8 +11803,8 @@ public final class CmsDriverManager implements I_CmsEventListener {
             acl.setExclusiveAccessPrincipals(exclusiveAccessPrincipals);
         }
 
-        if (dbc.getProjectId().isNullUUID()) {
-            m_monitor.cacheACL(cacheKey, acl);
+        if (cacheable) {
+            m_monitor.cacheACL(online, resource.getRootPath(), resource.getStructureId(), slot, acl);
         }
         return acl;
     }
@@ -11765,6 +11896,33 @@ public final class CmsDriverManager implements I_CmsEventListener {
         return projectId;
     }
 
+    /**
+     * Returns the root paths of the given resources and of all their siblings.<p>
+     *
+     * Access control entries and resource property values are stored per resource id, so a change
+     * of them affects all siblings of a resource.<p>
+     *
+     * @param dbc the database context
+     * @param resources the resources
+     *
+     * @return the root paths of the resources and their siblings
+     *
+     * @throws CmsException if reading the siblings fails
+     */
+    private List<String> getRootPathsWithSiblings(CmsDbContext dbc, CmsResource... resources) throws CmsException {
+
+        List<String> rootPaths = new ArrayList<String>();
+        for (CmsResource resource : resources) {
+            rootPaths.add(resource.getRootPath());
+            if (resource.isFile() && (resource.getSiblingCount() > 1)) {
+                for (CmsResource sibling : readSiblings(dbc, resource, CmsResourceFilter.ALL)) {
+                    rootPaths.add(sibling.getRootPath());
+                }
+            }
+        }
+        return rootPaths;
+    }
+
     /**
      * Returns if and what state needs to be updated.<p>
      *
@@ -12055,6 +12213,37 @@ public final class CmsDriverManager implements I_CmsEventListener {
         return result;
     }
 
+    /**
+     * Reads the searched properties of the given parent folder.<p>
+     *
+     * During a bulk property read, the result is memoized per folder path, so resources sharing
+     * an ancestor chain only resolve it once.<p>
+     *
+     * @param dbc the current database context
+     * @param parentPath the root path of the parent folder
+     *
+     * @return the properties of the parent folder, including the properties inherited from its ancestors
+     *
+     * @throws CmsException if something goes wrong
+     */
+    private List<CmsProperty> readSearchedParentProperties(CmsDbContext dbc, String parentPath) throws CmsException {
+
+        @SuppressWarnings("unchecked")
+        Map<String, List<CmsProperty>> memo = (Map<String, List<CmsProperty>>)dbc.getAttribute(
+            ATTR_PROPERTY_SEARCH_MEMO);
+        List<CmsProperty> result = (memo != null) ? memo.get(parentPath) : null;
+        if (result == null) {
+            // no permission check on parent folder is required since we must have "read"
+            // permissions to read the child resource anyway
+            CmsResource parent = readResource(dbc, parentPath, CmsResourceFilter.ALL);
+            result = readPropertyObjects(dbc, parent, true);
+            if (memo != null) {
+                memo.put(parentPath, result);
+            }
+        }
+        return result;
+    }
+
     /**
      * Sorts the given list of {@link CmsAccessControlEntry} objects.<p>
      *
@@ -12146,7 +12335,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
                 }
                 if (aceModified) {
                     // clear the cache
-                    m_monitor.clearAccessControlListCache();
+                    clearAccessControlListCache(dbc, resource);
                 }
             }
             if (attrModified || aceModified) {
@@ -12475,6 +12664,24 @@ public final class CmsDriverManager implements I_CmsEventListener {
         return result;
     }
 
+    /**
+     * Adds the given folder to the dependencies of the current users Flex request context.<p>
+     *
+     * Unlike {@link #updateContextDates(CmsDbContext, CmsResource)}, this does not change the context dates.
+     * It is used for folders whose listings are read, since these listings change whenever a resource
+     * is created, deleted or moved below the folder.<p>
+     *
+     * @param dbc the current database context
+     * @param folder the folder whose listing was read
+     */
+    private void updateContextDependencies(CmsDbContext dbc, CmsResource folder) {
+
+        CmsFlexRequestContextInfo info = dbc.getFlexRequestContextInfo();
+        if (info != null) {
+            info.addDependency(folder);
+        }
+    }
+
     /**
      * Updates the state of a resource, depending on the <code>resourceState</code> parameter.<p>
      *
@@ -305,6 +305,40 @@ public class CmsPublishList implements Externalizable {
         }
     }
 
+    /**
+     * Returns the online root paths of the resources in this publish list that have been moved.<p>
+     *
+     * @param cms the current CMS context, its current project is changed while reading the online resources
+     *
+     * @return the online root paths of the moved resources
+     *
+     * @throws CmsException if something goes wrong
+     */
+    public Set<String> getMovedOriginPaths(CmsObject cms) throws CmsException {
+
+        Set<String> result = new HashSet<String>();
+        CmsProject oldProject = cms.getRequestContext().getCurrentProject();
+        try {
+            cms.getRequestContext().setCurrentProject(cms.readProject(CmsProject.ONLINE_PROJECT_ID));
+            for (CmsResource resource : getAllResources()) {
+                if (!resource.getState().isChanged()) {
+                    continue;
+                }
+                try {
+                    CmsResource onlineResource = cms.readResource(resource.getStructureId());
+                    if (!onlineResource.getRootPath().equals(resource.getRootPath())) {
+                        result.add(onlineResource.getRootPath());
+                    }
+                } catch (CmsVfsResourceNotFoundException e) {
+                    // resource not found online, this means it doesn't matter whether it has been moved
+                }
+            }
+        } finally {
+            cms.getRequestContext().setCurrentProject(oldProject);
+        }
+        return result;
+    }
+
     /**
      * Returns the id of the project that should be published, or <code>-1</code> if this publish list
      * is initialized for a "direct publish" operation.<p>
@@ -31,7 +31,10 @@ import org.opencms.main.CmsLog;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -40,6 +43,10 @@ import org.apache.commons.logging.Log;
 
 /**
  * Helper class used for matching rewrite aliases to incoming request URIs.<p>
+ *
+ * The patterns are compiled once when the matcher is created. To avoid trying every pattern for every URI,
+ * the literal prefixes of the patterns are kept in a trie, and only the patterns whose prefix matches the
+ * beginning of the URI are evaluated.<p>
  */
 public class CmsRewriteAliasMatcher {
 
@@ -89,45 +96,166 @@ public class CmsRewriteAliasMatcher {
 
     }
 
+    /**
+     * A node of the trie of literal pattern prefixes.<p>
+     */
+    private static class PrefixNode {
+
+        /** The child nodes, by character. */
+        Map<Character, PrefixNode> m_children = new HashMap<Character, PrefixNode>(4);
+
+        /** The indexes of the rules whose literal prefix ends at this node. */
+        List<Integer> m_rules = new ArrayList<Integer>(1);
+    }
+
     /** The logger instance for this class. */
     private static final Log LOG = CmsLog.getLog(CmsRewriteAliasMatcher.class);
 
-    /** The list of rewrite aliases to use for matching. */
+    /** The characters which have a special meaning in regular expressions. */
+    private static final String REGEX_META_CHARS = "\\^$.|?*+()[]{}";
+
+    /** The characters which make the preceding character optional or repeatable. */
+    private static final String REGEX_QUANTIFIERS = "?*+{";
+
+    /** The rewrite aliases with a valid pattern, in the order in which they are tried. */
     private List<CmsRewriteAlias> m_aliases;
 
+    /** The compiled patterns of the rewrite aliases, with the same indexes as the aliases. */
+    private List<Pattern> m_patterns;
+
+    /** The root of the trie of the literal prefixes of all patterns. */
+    private PrefixNode m_prefixes = new PrefixNode();
+
     /**
      * Creates a new matcher instance for the given list of rewrite aliases.<p>
      *
+     * The patterns of the aliases are compiled once, aliases with invalid patterns are ignored.<p>
+     *
      * @param aliases the list of rewrite aliases to be used for matching
      */
     public CmsRewriteAliasMatcher(Collection<CmsRewriteAlias> aliases) {
 
-        m_aliases = new ArrayList<CmsRewriteAlias>(aliases);
+        m_aliases = new ArrayList<CmsRewriteAlias>(aliases.size());
+        m_patterns = new ArrayList<Pattern>(aliases.size());
+        for (CmsRewriteAlias alias : aliases) {
+            try {
+                Pattern pattern = Pattern.compile(alias.getPatternString());
+                addPrefix(getLiteralPrefix(alias.getPatternString()), m_patterns.size());
+                m_aliases.add(alias);
+                m_patterns.add(pattern);
+            } catch (PatternSyntaxException e) {
+                LOG.warn(e.getLocalizedMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns the literal prefix every string matched by the given regular expression has to start with.<p>
+     *
+     * The prefix may be shorter than the longest possible prefix, but never longer.<p>
+     *
+     * @param regex the regular expression
+     *
+     * @return the literal prefix, possibly empty
+     */
+    static String getLiteralPrefix(String regex) {
+
+        if (regex.indexOf('|') >= 0) {
+            // alternatives may start differently
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int next = i + 1;
+            if (c == '\\') {
+                if ((next >= regex.length()) || Character.isLetterOrDigit(regex.charAt(next))) {
+                    // character class, quotation or back reference
+                    break;
+                }
+                c = regex.charAt(next);
+                next++;
+            } else if (REGEX_META_CHARS.indexOf(c) >= 0) {
+                break;
+            }
+            if ((next < regex.length()) && (REGEX_QUANTIFIERS.indexOf(regex.charAt(next)) >= 0)) {
+                // the character is optional or repeated
+                break;
+            }
+            prefix.append(c);
+            i = next;
+        }
+        return prefix.toString();
     }
 
     /**
      * Tries to rewrite a given path, and either returns the rewrite result or null if no
      * rewrite alias matched the path.<p>
      *
+     * Only the aliases whose pattern can match the path, judging by the literal prefix of the pattern,
+     * are tried, in the order of the aliases given in the constructor.<p>
+     *
      * @param path the path to match
      * @return the rewrite result or null if no rewrite alias matched
      */
     public RewriteResult match(String path) {
 
-        for (CmsRewriteAlias alias : m_aliases) {
+        for (int index : getCandidates(path)) {
+            CmsRewriteAlias alias = m_aliases.get(index);
             try {
-                Pattern pattern = Pattern.compile(alias.getPatternString());
-                Matcher matcher = pattern.matcher(path);
+                Matcher matcher = m_patterns.get(index).matcher(path);
                 if (matcher.matches()) {
                     String newPath = matcher.replaceFirst(alias.getReplacementString());
                     return new RewriteResult(newPath, alias);
                 }
-            } catch (PatternSyntaxException e) {
-                LOG.warn(e.getLocalizedMessage(), e);
             } catch (IndexOutOfBoundsException e) {
                 LOG.warn(e.getLocalizedMessage(), e);
             }
         }
         return null;
     }
+
+    /**
+     * Adds the literal prefix of a pattern to the prefix trie.<p>
+     *
+     * @param prefix the literal prefix
+     * @param index the index of the rule
+     */
+    private void addPrefix(String prefix, int index) {
+
+        PrefixNode node = m_prefixes;
+        for (int i = 0; i < prefix.length(); i++) {
+            Character c = Character.valueOf(prefix.charAt(i));
+            PrefixNode child = node.m_children.get(c);
+            if (child == null) {
+                child = new PrefixNode();
+                node.m_children.put(c, child);
+            }
+            node = child;
+        }
+        node.m_rules.add(Integer.valueOf(index));
+    }
+
+    /**
+     * Returns the indexes of the rules whose literal prefix is a prefix of the given path, in ascending order.<p>
+     *
+     * @param path the path
+     *
+     * @return the indexes of the candidate rules
+     */
+    private List<Integer> getCandidates(String path) {
+
+        List<Integer> candidates = new ArrayList<Integer>(m_prefixes.m_rules);
+        PrefixNode node = m_prefixes;
+        for (int i = 0; i < path.length(); i++) {
+            node = node.m_children.get(Character.valueOf(path.charAt(i)));
+            if (node == null) {
+                break;
+            }
+            candidates.addAll(node.m_rules);
+        }
+        Collections.sort(candidates);
+        return candidates;
+    }
 }
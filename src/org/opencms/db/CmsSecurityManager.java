@@ -3123,6 +3123,90 @@ public final class CmsSecurityManager {
         return result;
     }
 
+    /**
+     * Performs a permission check for a list of resources at once.<p>
+     *
+     * The result is equivalent to calling
+     * {@link #hasPermissions(CmsRequestContext, CmsResource, CmsPermissionSet, LockCheck, CmsResourceFilter)}
+     * for every single resource, but the inherited access control lists of folders shared by the given
+     * resources are only resolved once.<p>
+     *
+     * @param context the current request context
+     * @param resources the resources on which permissions are required
+     * @param requiredPermissions the set of permissions required for the operation
+     * @param checkLock if true, a lock for the current user is required for
+     *      all write operations, if false it's ok to write as long as the resource
+     *      is not locked by another user
+     * @param filter the resource filter to use
+     *
+     * @return the permission check results, in the order of the given resources
+     *
+     * @throws CmsException in case of i/o errors (NOT because of insufficient permissions)
+     */
+    public List<I_CmsPermissionHandler.CmsPermissionCheckResult> hasPermissions(
+        CmsRequestContext context,
+        List<CmsResource> resources,
+        CmsPermissionSet requiredPermissions,
+        LockCheck checkLock,
+        CmsResourceFilter filter)
+    throws CmsException {
+
+        List<I_CmsPermissionHandler.CmsPermissionCheckResult> result = null;
+        CmsDbContext dbc = m_dbContextFactory.getDbContext(context);
+        try {
+            result = hasPermissions(dbc, resources, requiredPermissions, checkLock, filter);
+        } finally {
+            dbc.clear();
+        }
+        return result;
+    }
+
+    /**
+     * Performs a permission check for a list of resources at once.<p>
+     *
+     * While the check runs, the inherited access control list of every parent folder is memoized
+     * per folder path in the database context, so resources sharing an ancestor chain only resolve
+     * it once.<p>
+     *
+     * @param dbc the current database context
+     * @param resources the resources on which permissions are required
+     * @param requiredPermissions the set of permissions required for the operation
+     * @param checkLock if true, a lock for the current user is required for
+     *      all write operations, if false it's ok to write as long as the resource
+     *      is not locked by another user
+     * @param filter the resource filter to use
+     *
+     * @return the permission check results, in the order of the given resources
+     *
+     * @throws CmsException in case of i/o errors (NOT because of insufficient permissions)
+     */
+    public List<I_CmsPermissionHandler.CmsPermissionCheckResult> hasPermissions(
+        CmsDbContext dbc,
+        List<CmsResource> resources,
+        CmsPermissionSet requiredPermissions,
+        LockCheck checkLock,
+        CmsResourceFilter filter)
+    throws CmsException {
+
+        List<I_CmsPermissionHandler.CmsPermissionCheckResult> result = new ArrayList<>(resources.size());
+        boolean memoWasSet = false;
+        if (dbc.getAttribute(CmsDriverManager.ATTR_PERMISSION_ACL_MEMO) == null) {
+            dbc.setAttribute(CmsDriverManager.ATTR_PERMISSION_ACL_MEMO, new HashMap<String, CmsAccessControlList>());
+            // only remove the memo if it was set here, nested bulk checks share the outer one
+            memoWasSet = true;
+        }
+        try {
+            for (CmsResource resource : resources) {
+                result.add(hasPermissions(dbc, resource, requiredPermissions, checkLock, filter));
+            }
+        } finally {
+            if (memoWasSet) {
+                dbc.removeAttribute(CmsDriverManager.ATTR_PERMISSION_ACL_MEMO);
+            }
+        }
+        return result;
+    }
+
     /**
      * Checks if the given user has the given role in the given organizational unit.<p>
      *
@@ -5085,6 +5169,42 @@ public final class CmsSecurityManager {
         return result;
     }
 
+    /**
+     * Reads all property objects from a list of resources.<p>
+     *
+     * The result is the same as reading the properties of every single resource with
+     * {@link #readPropertyObjects(CmsRequestContext, CmsResource, boolean)}, but if <code>search</code>
+     * is <code>true</code>, the properties of parent folders shared by the resources are only read once.<p>
+     *
+     * @param context the context of the current request
+     * @param resources the resources where the properties are mapped to
+     * @param search <code>true</code>, if the properties should be searched on all parent folders  if not found on the resource
+     *
+     * @return the list of <code>{@link CmsProperty}</code> objects for each resource
+     *
+     * @throws CmsException if something goes wrong
+     */
+    public Map<CmsResource, List<CmsProperty>> readPropertyObjects(
+        CmsRequestContext context,
+        List<CmsResource> resources,
+        boolean search)
+    throws CmsException {
+
+        Map<CmsResource, List<CmsProperty>> result = null;
+        CmsDbContext dbc = m_dbContextFactory.getDbContext(context);
+        try {
+            result = m_driverManager.readPropertyObjects(dbc, resources, search);
+        } catch (Exception e) {
+            dbc.report(
+                null,
+                Messages.get().container(Messages.ERR_READ_PROPS_FOR_RESOURCES_1, Integer.valueOf(resources.size())),
+                e);
+        } finally {
+            dbc.clear();
+        }
+        return result;
+    }
+
     /**
      * Reads the resources that were published in a publish task for a given publish history ID.<p>
      *
@@ -6966,7 +7086,7 @@ public final class CmsSecurityManager {
      * Writes the locks that are currently stored in-memory to the database to allow restoring them in
      * later startups.<p>
      *
-     * This overwrites the locks previously stored in the underlying database table.<p>
+     * Only the locks changed since the last write are rewritten in the underlying database table.<p>
      *
      * @throws CmsException if something goes wrong
      */
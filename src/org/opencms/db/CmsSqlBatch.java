@@ -0,0 +1,350 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.db;
+
+import org.opencms.file.CmsRequestContext;
+import org.opencms.main.CmsLog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Collects write statements of the database drivers in JDBC batches, to save database round trips for bulk
+ * operations like imports.<p>
+ *
+ * The batch is activated for all operations of a user request context by setting it as the request context
+ * attribute {@link #ATTR_SQL_BATCH}. Drivers supporting batched writes then add their statements to the batch
+ * instead of executing them one by one.<p>
+ *
+ * Only a run of statements using the same SQL is collected, so the statements are always executed in the order
+ * in which they were issued. The pending statements are executed when the batch size is reached, when a statement
+ * with different SQL is added, before any other statement is executed for the request context (so reads always
+ * see the data written before), and when the batch is closed. The batch must be closed after use, which also
+ * returns the database connections it holds to the pool.<p>
+ *
+ * Since a JDBC batch usually is executed while another operation is running, failures of executing it are not
+ * thrown to that operation. They are collected together with the names of the resources written by the failed
+ * batch, and must be checked with {@link #takeFailures()}, at the latest after closing the batch.<p>
+ *
+ * A batch may only be used by the thread that created it; it is ignored in all other threads.<p>
+ */
+public class CmsSqlBatch implements AutoCloseable {
+
+    /**
+     * A failed execution of a JDBC batch.<p>
+     */
+    public static class CmsSqlBatchFailure {
+
+        /** The exception describing the failure. */
+        private CmsDbSqlException m_exception;
+
+        /** The names of the resources written by the failed batch. */
+        private List<String> m_resourceNames;
+
+        /**
+         * Creates a new batch failure.<p>
+         *
+         * @param exception the exception describing the failure
+         * @param resourceNames the names of the resources written by the failed batch
+         */
+        CmsSqlBatchFailure(CmsDbSqlException exception, List<String> resourceNames) {
+
+            m_exception = exception;
+            m_resourceNames = Collections.unmodifiableList(resourceNames);
+        }
+
+        /**
+         * Returns the exception describing the failure.<p>
+         *
+         * @return the exception describing the failure
+         */
+        public CmsDbSqlException getException() {
+
+            return m_exception;
+        }
+
+        /**
+         * Returns the names of the resources written by the failed batch.<p>
+         *
+         * Some of the statements of the batch may have been executed successfully.<p>
+         *
+         * @return the names of the resources written by the failed batch
+         */
+        public List<String> getResourceNames() {
+
+            return m_resourceNames;
+        }
+    }
+
+    /** Request context attribute name constant. */
+    public static final String ATTR_SQL_BATCH = "ATTR_SQL_BATCH";
+
+    /** The default maximum number of statements executed in one JDBC batch. */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsSqlBatch.class);
+
+    /** The maximum number of statements executed in one JDBC batch. */
+    private final int m_batchSize;
+
+    /** Indicates if this batch has been closed. */
+    private boolean m_closed;
+
+    /** The database connections by pool URL. */
+    private final Map<String, Connection> m_connections = new HashMap<String, Connection>();
+
+    /** The failed executions of JDBC batches not yet taken. */
+    private final List<CmsSqlBatchFailure> m_failures = new ArrayList<CmsSqlBatchFailure>();
+
+    /** The thread using this batch. */
+    private final Thread m_owner;
+
+    /** The number of statements in the current JDBC batch. */
+    private int m_pending;
+
+    /** The pool URL of the current statement. */
+    private String m_poolUrl;
+
+    /** The names of the resources written by the current JDBC batch. */
+    private final Set<String> m_resourceNames = new LinkedHashSet<String>();
+
+    /** The SQL of the current statement. */
+    private String m_sql;
+
+    /** The current statement. */
+    private PreparedStatement m_statement;
+
+    /**
+     * Creates a new batch with the default batch size.<p>
+     */
+    public CmsSqlBatch() {
+
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new batch.<p>
+     *
+     * @param batchSize the maximum number of statements executed in one JDBC batch
+     */
+    public CmsSqlBatch(int batchSize) {
+
+        m_batchSize = Math.max(1, batchSize);
+        m_owner = Thread.currentThread();
+    }
+
+    /**
+     * Returns the active batch for the given database context.<p>
+     *
+     * @param dbc the current database context
+     *
+     * @return the active batch, or <code>null</code> if writes should not be batched
+     */
+    public static CmsSqlBatch getBatch(CmsDbContext dbc) {
+
+        CmsRequestContext context = dbc != null ? dbc.getRequestContext() : null;
+        if (context == null) {
+            return null;
+        }
+        Object batch = context.getAttribute(ATTR_SQL_BATCH);
+        if ((batch instanceof CmsSqlBatch) && ((CmsSqlBatch)batch).isActive()) {
+            return (CmsSqlBatch)batch;
+        }
+        return null;
+    }
+
+    /**
+     * Adds the current statement with its parameters to the JDBC batch.<p>
+     *
+     * @param resourceName the name of the resource written by the statement, a failure of the batch is attributed to it
+     *
+     * @throws SQLException if adding the statement to the batch fails
+     *
+     * @see #prepareStatement(CmsSqlManager, String, String)
+     */
+    public void addBatch(String resourceName) throws SQLException {
+
+        m_statement.addBatch();
+        m_resourceNames.add(resourceName);
+        m_pending++;
+        if (m_pending >= m_batchSize) {
+            executeBatch();
+        }
+    }
+
+    /**
+     * Executes all pending statements and returns the database connections to the pool.<p>
+     *
+     * @see java.lang.AutoCloseable#close()
+     * @see #takeFailures()
+     */
+    public synchronized void close() {
+
+        if (m_closed) {
+            return;
+        }
+        m_closed = true;
+        try {
+            flush();
+        } finally {
+            for (Connection connection : m_connections.values()) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    LOG.debug(e.getLocalizedMessage(), e);
+                }
+            }
+            m_connections.clear();
+        }
+    }
+
+    /**
+     * Executes all pending statements.<p>
+     *
+     * @see #takeFailures()
+     */
+    public void flush() {
+
+        if (m_statement == null) {
+            return;
+        }
+        try {
+            executeBatch();
+        } finally {
+            try {
+                m_statement.close();
+            } catch (SQLException e) {
+                LOG.debug(e.getLocalizedMessage(), e);
+            }
+            m_statement = null;
+            m_sql = null;
+            m_poolUrl = null;
+            m_pending = 0;
+            m_resourceNames.clear();
+        }
+    }
+
+    /**
+     * Checks if this batch is open and may be used by the current thread.<p>
+     *
+     * @return <code>true</code> if this batch is active
+     */
+    public boolean isActive() {
+
+        return !m_closed && (m_owner == Thread.currentThread());
+    }
+
+    /**
+     * Returns the statement to set the parameters of the next batched statement on.<p>
+     *
+     * If the SQL differs from the one of the current statement, the pending statements are executed first.
+     * After setting the parameters, {@link #addBatch(String)} has to be called.<p>
+     *
+     * @param sqlManager the SQL manager used to get a connection from the pool
+     * @param poolUrl the URL of the connection pool to use
+     * @param sql the SQL of the statement
+     *
+     * @return the statement
+     *
+     * @throws SQLException if preparing the statement fails
+     */
+    public PreparedStatement prepareStatement(CmsSqlManager sqlManager, String poolUrl, String sql)
+    throws SQLException {
+
+        if ((m_statement != null) && sql.equals(m_sql) && poolUrl.equals(m_poolUrl)) {
+            return m_statement;
+        }
+        flush();
+        Connection connection = m_connections.get(poolUrl);
+        if (connection == null) {
+            connection = sqlManager.getConnectionByUrl(poolUrl);
+            m_connections.put(poolUrl, connection);
+        }
+        m_statement = connection.prepareStatement(sql);
+        m_sql = sql;
+        m_poolUrl = poolUrl;
+        return m_statement;
+    }
+
+    /**
+     * Returns the failed executions of JDBC batches since the last call and forgets them.<p>
+     *
+     * @return the failed executions of JDBC batches, in the order they happened
+     */
+    public List<CmsSqlBatchFailure> takeFailures() {
+
+        List<CmsSqlBatchFailure> result = new ArrayList<CmsSqlBatchFailure>(m_failures);
+        m_failures.clear();
+        return result;
+    }
+
+    /**
+     * Executes the current JDBC batch.<p>
+     *
+     * A failure is collected together with the names of the resources written by the batch.<p>
+     */
+    private void executeBatch() {
+
+        if (m_pending == 0) {
+            return;
+        }
+        int count = m_pending;
+        List<String> resourceNames = new ArrayList<String>(m_resourceNames);
+        m_pending = 0;
+        m_resourceNames.clear();
+        try {
+            m_statement.executeBatch();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Executed batch of " + count + " statements: " + m_sql);
+            }
+        } catch (SQLException e) {
+            CmsDbSqlException failure = new CmsDbSqlException(
+                Messages.get().container(Messages.ERR_EXECUTE_SQL_BATCH_2, m_sql, resourceNames),
+                e);
+            LOG.error(failure.getLocalizedMessage(), e);
+            m_failures.add(new CmsSqlBatchFailure(failure, resourceNames));
+            try {
+                // some drivers keep the statements of a failed batch
+                m_statement.clearBatch();
+            } catch (SQLException e1) {
+                LOG.debug(e1.getLocalizedMessage(), e1);
+            }
+        }
+    }
+}
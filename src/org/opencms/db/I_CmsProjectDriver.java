@@ -45,6 +45,7 @@ import org.opencms.publish.CmsPublishJobInfoBean;
 import org.opencms.report.I_CmsReport;
 import org.opencms.util.CmsUUID;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -656,6 +657,21 @@ public interface I_CmsProjectDriver {
      */
     void unmarkProjectResources(CmsDbContext dbc, CmsProject project) throws CmsDataAccessException;
 
+    /**
+     * Rewrites the persisted locks of the given root paths.<p>
+     *
+     * All lock entries of the given paths are deleted, then the given locks are written,
+     * both in batched statements.<p>
+     *
+     * @param dbc the current database context
+     * @param changedPaths the root paths of the locks that have been added, changed or removed
+     * @param locks the current locks of the changed paths
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    void writeLockChanges(CmsDbContext dbc, Collection<String> changedPaths, List<CmsLock> locks)
+    throws CmsDataAccessException;
+
     /**
      * Writes the <code>{@link List}&lt{@link org.opencms.lock.CmsLock};&gt; </code>
      * to the database for reuse in the next run of OpenCms.<p>
@@ -243,6 +243,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String ERR_ERROR_INITIALIZING_DRIVER_1 = "ERR_ERROR_INITIALIZING_DRIVER_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String ERR_EXECUTE_SQL_BATCH_2 = "ERR_EXECUTE_SQL_BATCH_2";
+
     /** Message constant for key in the resource bundle. */
     public static final String ERR_FORBIDDEN_PARENT_CURRENTLY_DELETING_0 = "ERR_FORBIDDEN_PARENT_CURRENTLY_DELETING_0";
 
@@ -519,6 +522,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String ERR_READ_PROPS_FOR_RESOURCE_1 = "ERR_READ_PROPS_FOR_RESOURCE_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String ERR_READ_PROPS_FOR_RESOURCES_1 = "ERR_READ_PROPS_FOR_RESOURCES_1";
+
     /** Message constant for key in the resource bundle. */
     public static final String ERR_READ_PUBLISHED_RESOURCES_FOR_ID_1 = "ERR_READ_PUBLISHED_RESOURCES_FOR_ID_1";
 
@@ -75,6 +75,7 @@ import org.opencms.main.I_CmsEventListener;
 import org.opencms.main.OpenCms;
 import org.opencms.publish.CmsPublishJobInfoBean;
 import org.opencms.relations.CmsRelationFilter;
+import org.opencms.report.CmsBufferedReport;
 import org.opencms.report.I_CmsReport;
 import org.opencms.security.CmsOrganizationalUnit;
 import org.opencms.security.I_CmsPrincipal;
@@ -98,13 +99,20 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Generic (ANSI-SQL) implementation of the project driver methods.<p>
@@ -188,6 +196,21 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
 
     }
 
+    /**
+     * The result of publishing a single file in a parallel publish worker.<p>
+     */
+    private static class CmsPublishFileResult {
+
+        /** The error, or <code>null</code> if the file was published successfully. */
+        Throwable m_error;
+
+        /** The buffered report output. */
+        CmsBufferedReport m_report;
+
+        /** Flag to indicate that the file was skipped because the publish job has been aborted. */
+        boolean m_skipped;
+    }
+
     /** Attribute name for reading the project of a resource. */
     public static final String DBC_ATTR_READ_PROJECT_FOR_RESOURCE = "DBC_ATTR_READ_PROJECT_FOR_RESOURCE";
 
@@ -1835,52 +1858,68 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
             Set<CmsUUID> changedAndDeletedResourceIds = Sets.intersection(deletedResourceIds, changedResourceIds);
             dbc.setAttribute(CmsDriverManager.KEY_CHANGED_AND_DELETED, changedAndDeletedResourceIds);
 
-            Iterator<CmsResource> itFiles = publishList.getFileList().iterator();
-            while (itFiles.hasNext()) {
-                CmsResource currentResource = itFiles.next();
-                try {
-                    // bounce the current publish task through all project drivers
-                    projectDriver.publishFile(
-                        dbc,
-                        report,
-                        ++publishedFileCount,
-                        filesSize,
-                        onlineProject,
-                        currentResource,
-                        publishedContentIds,
-                        publishList.getPublishHistoryId(),
-                        publishTag);
+            int publishThreads = OpenCms.getPublishManager().getPublishThreads();
+            if ((publishThreads > 1) && (filesSize > 1) && dbc.isDefaultDbContext()) {
+                // publish independent files in parallel, the results are processed in the original order
+                publishFilesParallel(
+                    dbc,
+                    report,
+                    onlineProject,
+                    publishList,
+                    publishTag,
+                    publishThreads,
+                    publishedContentIds,
+                    publishedIds);
+            } else {
+                Iterator<CmsResource> itFiles = publishList.getFileList().iterator();
+                while (itFiles.hasNext()) {
+                    CmsResource currentResource = itFiles.next();
+                    try {
+                        // bounce the current publish task through all project drivers
+                        projectDriver.publishFile(
+                            dbc,
+                            report,
+                            ++publishedFileCount,
+                            filesSize,
+                            onlineProject,
+                            currentResource,
+                            publishedContentIds,
+                            publishList.getPublishHistoryId(),
+                            publishTag);
 
-                    CmsResourceState state = currentResource.getState();
-                    if (!state.isDeleted()) {
-                        // reset the resource state to UNCHANGED and the last-modified-in-project-ID to 0
-                        internalResetResourceState(dbc, currentResource);
-                    }
+                        CmsResourceState state = currentResource.getState();
+                        if (!state.isDeleted()) {
+                            // reset the resource state to UNCHANGED and the last-modified-in-project-ID to 0
+                            internalResetResourceState(dbc, currentResource);
+                        }
 
-                    // unlock it
-                    m_driverManager.unlockResource(dbc, currentResource, true, true);
-                    // log it
-                    CmsLogEntryType type = state.isNew()
-                    ? CmsLogEntryType.RESOURCE_PUBLISHED_NEW
-                    : (state.isDeleted()
-                    ? CmsLogEntryType.RESOURCE_PUBLISHED_DELETED
-                    : CmsLogEntryType.RESOURCE_PUBLISHED_MODIFIED);
-                    m_driverManager.log(
-                        dbc,
-                        new CmsLogEntry(
+                        // unlock it
+                        m_driverManager.unlockResource(dbc, currentResource, true, true);
+                        // log it
+                        CmsLogEntryType type = state.isNew()
+                        ? CmsLogEntryType.RESOURCE_PUBLISHED_NEW
+                        : (state.isDeleted()
+                        ? CmsLogEntryType.RESOURCE_PUBLISHED_DELETED
+                        : CmsLogEntryType.RESOURCE_PUBLISHED_MODIFIED);
+                        m_driverManager.log(
                             dbc,
-                            currentResource.getStructureId(),
-                            type,
-                            new String[] {currentResource.getRootPath()}),
-                        true);
+                            new CmsLogEntry(
+                                dbc,
+                                currentResource.getStructureId(),
+                                type,
+                                new String[] {currentResource.getRootPath()}),
+                            true);
 
-                    publishedIds.add(currentResource.getStructureId());
-                    dbc.pop();
-                } catch (Throwable t) {
-                    dbc.report(
-                        report,
-                        Messages.get().container(Messages.ERR_ERROR_PUBLISHING_FILE_1, currentResource.getRootPath()),
-                        t);
+                        publishedIds.add(currentResource.getStructureId());
+                        dbc.pop();
+                    } catch (Throwable t) {
+                        dbc.report(
+                            report,
+                            Messages.get().container(
+                                Messages.ERR_ERROR_PUBLISHING_FILE_1,
+                                currentResource.getRootPath()),
+                            t);
+                    }
                 }
             }
 
@@ -2716,6 +2755,56 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
         }
     }
 
+    /**
+     * @see org.opencms.db.I_CmsProjectDriver#writeLockChanges(org.opencms.db.CmsDbContext, java.util.Collection, java.util.List)
+     */
+    public void writeLockChanges(CmsDbContext dbc, Collection<String> changedPaths, List<CmsLock> locks)
+    throws CmsDataAccessException {
+
+        if (changedPaths.isEmpty()) {
+            return;
+        }
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        boolean wasInTransaction = false;
+        try {
+            conn = m_sqlManager.getConnection(dbc);
+            wasInTransaction = internalBeginTransaction(conn);
+            stmt = m_sqlManager.getPreparedStatement(conn, "C_RESOURCE_LOCKS_DELETE_PATH");
+            for (String path : changedPaths) {
+                stmt.setString(1, path);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            m_sqlManager.closeAll(dbc, null, stmt, null);
+            stmt = m_sqlManager.getPreparedStatement(conn, "C_RESOURCE_LOCK_WRITE");
+            int count = 0;
+            for (CmsLock lock : locks) {
+                count += internalAddLockBatch(stmt, lock);
+            }
+            if (count > 0) {
+                stmt.executeBatch();
+            }
+            if (!wasInTransaction) {
+                conn.commit();
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(
+                    Messages.get().getBundle().key(
+                        Messages.LOG_DBG_WRITE_LOCK_CHANGES_2,
+                        Integer.valueOf(changedPaths.size()),
+                        Integer.valueOf(count)));
+            }
+        } catch (SQLException e) {
+            throw new CmsDbSqlException(
+                Messages.get().container(Messages.ERR_GENERIC_SQL_1, CmsDbSqlException.getErrorQuery(stmt)),
+                e);
+        } finally {
+            internalEndTransaction(conn, wasInTransaction);
+            m_sqlManager.closeAll(dbc, conn, stmt, null);
+        }
+    }
+
     /**
      * @see org.opencms.db.I_CmsProjectDriver#writeLocks(org.opencms.db.CmsDbContext, java.util.List)
      */
@@ -2723,13 +2812,16 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
 
         Connection conn = null;
         PreparedStatement stmt = null;
+        boolean wasInTransaction = false;
         try {
             conn = m_sqlManager.getConnection(dbc);
+            wasInTransaction = internalBeginTransaction(conn);
             stmt = m_sqlManager.getPreparedStatement(conn, "C_RESOURCE_LOCKS_DELETEALL");
             int deleted = stmt.executeUpdate();
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.get().getBundle().key(Messages.LOG_DBG_CLEAR_LOCKS_1, Integer.valueOf(deleted)));
             }
+            m_sqlManager.closeAll(dbc, null, stmt, null);
             stmt = m_sqlManager.getPreparedStatement(conn, "C_RESOURCE_LOCK_WRITE");
             if (LOG.isDebugEnabled()) {
                 LOG.debug("SQL :" + m_sqlManager.readQuery("C_RESOURCE_LOCK_WRITE"));
@@ -2737,28 +2829,13 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
             Iterator<CmsLock> i = locks.iterator();
             int count = 0;
             while (i.hasNext()) {
-                CmsLock lock = i.next();
-                // only persist locks that should be written to the DB
-                CmsLock sysLock = lock.getSystemLock();
-                if (sysLock.isPersistent()) {
-                    // persist system lock
-                    stmt.setString(1, sysLock.getResourceName());
-                    stmt.setString(2, sysLock.getUserId().toString());
-                    stmt.setString(3, sysLock.getProjectId().toString());
-                    stmt.setInt(4, sysLock.getType().hashCode());
-                    stmt.executeUpdate();
-                    count++;
-                }
-                CmsLock editLock = lock.getEditionLock();
-                if (editLock.isPersistent()) {
-                    // persist edition lock
-                    stmt.setString(1, editLock.getResourceName());
-                    stmt.setString(2, editLock.getUserId().toString());
-                    stmt.setString(3, editLock.getProjectId().toString());
-                    stmt.setInt(4, editLock.getType().hashCode());
-                    stmt.executeUpdate();
-                    count++;
-                }
+                count += internalAddLockBatch(stmt, i.next());
+            }
+            if (count > 0) {
+                stmt.executeBatch();
+            }
+            if (!wasInTransaction) {
+                conn.commit();
             }
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.get().getBundle().key(Messages.LOG_DBG_WRITE_LOCKS_1, Integer.valueOf(count)));
@@ -2768,6 +2845,7 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
                 Messages.get().container(Messages.ERR_GENERIC_SQL_1, CmsDbSqlException.getErrorQuery(stmt)),
                 e);
         } finally {
+            internalEndTransaction(conn, wasInTransaction);
             m_sqlManager.closeAll(dbc, conn, stmt, null);
         }
     }
@@ -3136,6 +3214,65 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
         return result;
     }
 
+    /**
+     * Adds the persistent parts of the given lock to the batch of the given lock write statement.<p>
+     *
+     * @param stmt the prepared lock write statement
+     * @param lock the lock to add
+     *
+     * @return the number of rows added to the batch
+     *
+     * @throws SQLException if something goes wrong
+     */
+    protected int internalAddLockBatch(PreparedStatement stmt, CmsLock lock) throws SQLException {
+
+        int count = 0;
+        // only persist locks that should be written to the DB
+        CmsLock sysLock = lock.getSystemLock();
+        if (sysLock.isPersistent()) {
+            // persist system lock
+            stmt.setString(1, sysLock.getResourceName());
+            stmt.setString(2, sysLock.getUserId().toString());
+            stmt.setString(3, sysLock.getProjectId().toString());
+            stmt.setInt(4, sysLock.getType().hashCode());
+            stmt.addBatch();
+            count++;
+        }
+        CmsLock editLock = lock.getEditionLock();
+        if (editLock.isPersistent()) {
+            // persist edition lock
+            stmt.setString(1, editLock.getResourceName());
+            stmt.setString(2, editLock.getUserId().toString());
+            stmt.setString(3, editLock.getProjectId().toString());
+            stmt.setInt(4, editLock.getType().hashCode());
+            stmt.addBatch();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Starts a transaction on the given connection, unless it is already part of one.<p>
+     *
+     * Used to delete and write the resource locks together, so that a failure does not lose the locks.<p>
+     *
+     * @param conn the connection
+     *
+     * @return <code>true</code> if the connection was already part of a transaction
+     *
+     * @throws SQLException if something goes wrong
+     *
+     * @see #internalEndTransaction(Connection, boolean)
+     */
+    protected boolean internalBeginTransaction(Connection conn) throws SQLException {
+
+        boolean wasInTransaction = !conn.getAutoCommit();
+        if (!wasInTransaction) {
+            conn.setAutoCommit(false);
+        }
+        return wasInTransaction;
+    }
+
     /**
      * Creates a new project from the current row of the given result set.<p>
      *
@@ -3177,6 +3314,134 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
         return (CmsPublishList)oin.readObject();
     }
 
+    /**
+     * Ends a transaction started with {@link #internalBeginTransaction(Connection)}.<p>
+     *
+     * All changes not committed so far are rolled back, and the connection is switched back to auto commit mode.<p>
+     *
+     * @param conn the connection, may be <code>null</code>
+     * @param wasInTransaction if the connection was already part of a transaction before
+     */
+    protected void internalEndTransaction(Connection conn, boolean wasInTransaction) {
+
+        if ((conn == null) || wasInTransaction) {
+            return;
+        }
+        try {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the representative of the group of the given index, used for grouping the files to publish.<p>
+     *
+     * @param parents the parent indexes of the groups
+     * @param index the index
+     *
+     * @return the index representing the group
+     */
+    protected int internalFindGroup(int[] parents, int index) {
+
+        int current = index;
+        while (parents[current] != current) {
+            parents[current] = parents[parents[current]];
+            current = parents[current];
+        }
+        return current;
+    }
+
+    /**
+     * Groups the files of a publish list for parallel publishing.<p>
+     *
+     * Files that share a resource id (siblings) or a root path (e.g. a deleted and a new file)
+     * are put into the same group, so that they are published by the same worker in their original order.
+     * For a moved file, its online root path counts as well, since another file of the publish list
+     * may be created at the path the file was moved away from.<p>
+     *
+     * @param files the files to publish
+     * @param originPaths the online root paths of the moved files, by structure id
+     *
+     * @return the groups, as lists of indexes in the given file list
+     */
+    protected List<List<Integer>> internalGroupPublishFiles(List<CmsResource> files, Map<CmsUUID, String> originPaths) {
+
+        int[] parents = new int[files.size()];
+        Map<Object, Integer> firstIndexes = new HashMap<Object, Integer>();
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+            CmsResource file = files.get(i);
+            List<Object> keys = new ArrayList<Object>(3);
+            keys.add(file.getResourceId());
+            keys.add(file.getRootPath());
+            String originPath = originPaths.get(file.getStructureId());
+            if (originPath != null) {
+                keys.add(originPath);
+            }
+            for (Object key : keys) {
+                Integer first = firstIndexes.get(key);
+                if (first == null) {
+                    firstIndexes.put(key, Integer.valueOf(i));
+                } else {
+                    // merge the groups, the group with the lower index stays the representative
+                    int a = internalFindGroup(parents, first.intValue());
+                    int b = internalFindGroup(parents, i);
+                    parents[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<Integer, List<Integer>>();
+        for (int i = 0; i < parents.length; i++) {
+            Integer group = Integer.valueOf(internalFindGroup(parents, i));
+            List<Integer> members = groups.get(group);
+            if (members == null) {
+                members = new ArrayList<Integer>();
+                groups.put(group, members);
+            }
+            members.add(Integer.valueOf(i));
+        }
+        return new ArrayList<List<Integer>>(groups.values());
+    }
+
+    /**
+     * Reads the online root paths of the files of a publish list that have been moved.<p>
+     *
+     * @param dbc the current database context
+     * @param onlineProject the online project
+     * @param files the files to publish
+     *
+     * @return the online root paths of the moved files, by structure id
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    protected Map<CmsUUID, String> internalReadOriginPaths(
+        CmsDbContext dbc,
+        CmsProject onlineProject,
+        List<CmsResource> files)
+    throws CmsDataAccessException {
+
+        Map<CmsUUID, String> result = new HashMap<CmsUUID, String>();
+        for (CmsResource file : files) {
+            if (file.getState().isNew()) {
+                continue;
+            }
+            try {
+                CmsResource onlineResource = m_driverManager.getVfsDriver(
+                    dbc).readResource(dbc, onlineProject.getUuid(), file.getStructureId(), true);
+                if (!onlineResource.getRootPath().equals(file.getRootPath())) {
+                    result.put(file.getStructureId(), onlineResource.getRootPath());
+                }
+            } catch (CmsVfsResourceNotFoundException e) {
+                // not online yet, so it can not have been moved
+            }
+        }
+        return result;
+    }
+
     /**
      * Creates a new {@link CmsLogEntry} object from the given result set entry.<p>
      *
@@ -3739,6 +4004,180 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
         }
     }
 
+    /**
+     * Publishes the files of a publish list using a pool of worker threads.<p>
+     *
+     * The files are grouped with {@link #internalGroupPublishFiles(List)}, and the groups are published in parallel,
+     * every worker using its own database context and thus its own database connections.
+     * The report output of every file is buffered, and the downstream steps (report output, unlocking,
+     * logging) are done in this thread in the original order of the files.<p>
+     *
+     * As in sequential publishing, the publish job fails with the first file that could not be published;
+     * workers do not start new files after a failure, but the files already published are still unlocked.<p>
+     *
+     * @param dbc the current database context
+     * @param report the report to write to
+     * @param onlineProject the online project
+     * @param publishList the publish list
+     * @param publishTag the publish tag
+     * @param threads the maximum number of worker threads
+     * @param publishedContentIds contains the UUIDs of already published content records
+     * @param publishedIds the set to add the structure ids of the published files to
+     *
+     * @throws CmsException if publishing a file fails
+     */
+    protected void publishFilesParallel(
+        final CmsDbContext dbc,
+        final I_CmsReport report,
+        final CmsProject onlineProject,
+        final CmsPublishList publishList,
+        final int publishTag,
+        int threads,
+        Set<CmsUUID> publishedContentIds,
+        Set<CmsUUID> publishedIds)
+    throws CmsException {
+
+        final List<CmsResource> files = publishList.getFileList();
+        final int filesSize = files.size();
+        final Set<CmsUUID> contentIds = ConcurrentHashMap.newKeySet();
+        contentIds.addAll(publishedContentIds);
+        final AtomicBoolean aborted = new AtomicBoolean(false);
+        final I_CmsProjectDriver projectDriver = m_driverManager.getProjectDriver(dbc);
+
+        final List<CompletableFuture<CmsPublishFileResult>> results = new ArrayList<>(filesSize);
+        for (int i = 0; i < filesSize; i++) {
+            results.add(new CompletableFuture<CmsPublishFileResult>());
+        }
+        Map<CmsUUID, String> originPaths = internalReadOriginPaths(dbc, onlineProject, files);
+        List<List<Integer>> groups = internalGroupPublishFiles(files, originPaths);
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(threads, groups.size()),
+            new ThreadFactoryBuilder().setNameFormat("OpenCms-publish-%d").setDaemon(true).build());
+        try {
+            for (final List<Integer> group : groups) {
+                executor.execute(new Runnable() {
+
+                    public void run() {
+
+                        CmsDbContext workerDbc = null;
+                        Throwable failure = null;
+                        try {
+                            // every worker uses its own database context
+                            workerDbc = new CmsDbContext(dbc.getRequestContext());
+                            workerDbc.setProjectId(dbc.getProjectId());
+                            workerDbc.setAttribute(
+                                CmsDriverManager.KEY_CHANGED_AND_DELETED,
+                                dbc.getAttribute(CmsDriverManager.KEY_CHANGED_AND_DELETED));
+                            for (Integer index : group) {
+                                CmsResource currentResource = files.get(index.intValue());
+                                CmsPublishFileResult result = new CmsPublishFileResult();
+                                result.m_report = new CmsBufferedReport(report);
+                                if (aborted.get()) {
+                                    result.m_skipped = true;
+                                } else {
+                                    try {
+                                        // bounce the current publish task through all project drivers
+                                        projectDriver.publishFile(
+                                            workerDbc,
+                                            result.m_report,
+                                            index.intValue() + 1,
+                                            filesSize,
+                                            onlineProject,
+                                            currentResource,
+                                            contentIds,
+                                            publishList.getPublishHistoryId(),
+                                            publishTag);
+                                        if (!currentResource.getState().isDeleted()) {
+                                            // reset the resource state and the last-modified-in-project-ID
+                                            internalResetResourceState(workerDbc, currentResource);
+                                        }
+                                        workerDbc.pop();
+                                    } catch (Throwable t) {
+                                        result.m_error = t;
+                                        aborted.set(true);
+                                    }
+                                }
+                                results.get(index.intValue()).complete(result);
+                            }
+                        } catch (Throwable t) {
+                            failure = t;
+                            aborted.set(true);
+                        } finally {
+                            // the publish thread waits for every file, so no result must be left open
+                            for (Integer index : group) {
+                                CmsPublishFileResult result = new CmsPublishFileResult();
+                                result.m_report = new CmsBufferedReport(report);
+                                result.m_error = failure;
+                                result.m_skipped = failure == null;
+                                results.get(index.intValue()).complete(result);
+                            }
+                            if (workerDbc != null) {
+                                workerDbc.clear();
+                            }
+                        }
+                    }
+                });
+            }
+
+            // process the results in the original order of the files
+            CmsException error = null;
+            for (int i = 0; i < filesSize; i++) {
+                CmsResource currentResource = files.get(i);
+                CmsPublishFileResult result = results.get(i).join();
+                if (result.m_skipped) {
+                    continue;
+                }
+                result.m_report.flush();
+                try {
+                    if (result.m_error != null) {
+                        throw result.m_error;
+                    }
+                    CmsResourceState state = currentResource.getState();
+                    // unlock it
+                    m_driverManager.unlockResource(dbc, currentResource, true, true);
+                    // log it
+                    CmsLogEntryType type = state.isNew()
+                    ? CmsLogEntryType.RESOURCE_PUBLISHED_NEW
+                    : (state.isDeleted()
+                    ? CmsLogEntryType.RESOURCE_PUBLISHED_DELETED
+                    : CmsLogEntryType.RESOURCE_PUBLISHED_MODIFIED);
+                    m_driverManager.log(
+                        dbc,
+                        new CmsLogEntry(
+                            dbc,
+                            currentResource.getStructureId(),
+                            type,
+                            new String[] {currentResource.getRootPath()}),
+                        true);
+
+                    publishedIds.add(currentResource.getStructureId());
+                    dbc.pop();
+                } catch (Throwable t) {
+                    if (error == null) {
+                        try {
+                            dbc.report(
+                                report,
+                                Messages.get().container(
+                                    Messages.ERR_ERROR_PUBLISHING_FILE_1,
+                                    currentResource.getRootPath()),
+                                t);
+                        } catch (CmsException e) {
+                            // fail after the files already published have been processed
+                            error = e;
+                            aborted.set(true);
+                        }
+                    }
+                }
+            }
+            publishedContentIds.addAll(contentIds);
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     /**
      * Publishes a new file.<p>
      *
@@ -28,6 +28,7 @@
 package org.opencms.db.generic;
 
 import org.opencms.db.CmsDbContext;
+import org.opencms.db.CmsSqlBatch;
 import org.opencms.file.CmsProject;
 import org.opencms.main.CmsLog;
 import org.opencms.main.CmsRuntimeException;
@@ -189,6 +190,26 @@ public class CmsSqlManager extends org.opencms.db.CmsSqlManager {
 
     }
 
+    /**
+     * Returns a batched PreparedStatement specified by the key of a SQL query and the project-ID.<p>
+     *
+     * After setting the parameters, the statement has to be added with {@link CmsSqlBatch#addBatch(String)}
+     * instead of being executed. The statement must not be closed.<p>
+     *
+     * @param batch the active batch
+     * @param projectId the ID of the specified CmsProject
+     * @param queryKey the key of the SQL query
+     *
+     * @return the PreparedStatement of the batch
+     *
+     * @throws SQLException if a database access error occurs
+     */
+    public PreparedStatement getBatchStatement(CmsSqlBatch batch, CmsUUID projectId, String queryKey)
+    throws SQLException {
+
+        return batch.prepareStatement(this, m_poolUrl, readQuery(projectId, queryKey));
+    }
+
     /**
      * Retrieves the value of the designated column in the current row of this ResultSet object as
      * a byte array in the Java programming language.<p>
@@ -213,6 +234,9 @@ public class CmsSqlManager extends org.opencms.db.CmsSqlManager {
      *
      * Use this method to get a connection for reading/writing project independent data.<p>
      *
+     * If writes are batched for the database context, all pending statements are executed first,
+     * so that the statements executed with the returned connection see their results.<p>
+     *
      * @param dbc the current database context
      *
      * @return a JDBC connection
@@ -224,6 +248,10 @@ public class CmsSqlManager extends org.opencms.db.CmsSqlManager {
         if (dbc == null) {
             LOG.error(Messages.get().getBundle().key(Messages.LOG_NULL_DB_CONTEXT_0));
         }
+        CmsSqlBatch batch = CmsSqlBatch.getBatch(dbc);
+        if (batch != null) {
+            batch.flush();
+        }
         // match the ID to a JDBC pool URL of the OpenCms JDBC pools {online|offline|backup}
         return getConnectionByUrl(m_poolUrl);
     }
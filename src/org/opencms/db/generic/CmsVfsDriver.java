@@ -42,6 +42,7 @@ import org.opencms.db.CmsPreparedStatementStringParameter;
 import org.opencms.db.CmsResourceState;
 import org.opencms.db.CmsRewriteAlias;
 import org.opencms.db.CmsRewriteAliasFilter;
+import org.opencms.db.CmsSqlBatch;
 import org.opencms.db.CmsVfsOnlineResourceAlreadyExistsException;
 import org.opencms.db.I_CmsDriver;
 import org.opencms.db.I_CmsPreparedStatementParameter;
@@ -566,10 +567,15 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
 
         Connection conn = null;
         PreparedStatement stmt = null;
+        CmsSqlBatch batch = CmsSqlBatch.getBatch(dbc);
 
         try {
-            conn = m_sqlManager.getConnection(dbc);
-            stmt = m_sqlManager.getPreparedStatement(conn, projectId, "C_CREATE_RELATION");
+            if (batch != null) {
+                stmt = m_sqlManager.getBatchStatement(batch, projectId, "C_CREATE_RELATION");
+            } else {
+                conn = m_sqlManager.getConnection(dbc);
+                stmt = m_sqlManager.getPreparedStatement(conn, projectId, "C_CREATE_RELATION");
+            }
             stmt.setString(1, relation.getSourceId().toString());
             stmt.setString(2, relation.getSourcePath());
             stmt.setString(3, relation.getTargetId().toString());
@@ -583,13 +589,19 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
                         String.valueOf(projectId),
                         relation));
             }
-            stmt.executeUpdate();
+            if (batch != null) {
+                batch.addBatch(relation.getSourcePath());
+            } else {
+                stmt.executeUpdate();
+            }
         } catch (SQLException e) {
             throw new CmsDbSqlException(
                 Messages.get().container(Messages.ERR_GENERIC_SQL_1, CmsDbSqlException.getErrorQuery(stmt)),
                 e);
         } finally {
-            m_sqlManager.closeAll(dbc, conn, stmt, null);
+            if (batch == null) {
+                m_sqlManager.closeAll(dbc, conn, stmt, null);
+            }
         }
 
         if (relation.getType().getId() == CmsRelationType.LOCALE_VARIANT.getId()) {
@@ -3232,147 +3244,11 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         ? project.getUuid()
         : dbc.getProjectId();
 
-        // TODO: check if we need autocreation for link property definition types too
-        CmsPropertyDefinition propertyDefinition = null;
-        try {
-            // read the property definition
-            propertyDefinition = readPropertyDefinition(dbc, property.getName(), projectId);
-        } catch (CmsDbEntryNotFoundException e) {
-            if (property.autoCreatePropertyDefinition()) {
-                propertyDefinition = createPropertyDefinition(
-                    dbc,
-                    projectId,
-                    property.getName(),
-                    CmsPropertyDefinition.TYPE_NORMAL);
-                try {
-                    readPropertyDefinition(dbc, property.getName(), CmsProject.ONLINE_PROJECT_ID);
-                } catch (CmsDataAccessException e1) {
-                    createPropertyDefinition(
-                        dbc,
-                        CmsProject.ONLINE_PROJECT_ID,
-                        property.getName(),
-                        CmsPropertyDefinition.TYPE_NORMAL);
-                }
-                try {
-                    m_driverManager.getHistoryDriver(dbc).readPropertyDefinition(dbc, property.getName());
-                } catch (CmsDataAccessException e1) {
-                    m_driverManager.getHistoryDriver(dbc).createPropertyDefinition(
-                        dbc,
-                        property.getName(),
-                        CmsPropertyDefinition.TYPE_NORMAL);
-                }
-                OpenCms.fireCmsEvent(
-                    new CmsEvent(
-                        I_CmsEventListener.EVENT_PROPERTY_DEFINITION_CREATED,
-                        Collections.<String, Object> singletonMap("propertyDefinition", propertyDefinition)));
-
-            } else {
-                throw new CmsDbEntryNotFoundException(
-                    Messages.get().container(Messages.ERR_NO_PROPERTYDEF_WITH_NAME_1, property.getName()));
-            }
-        }
-
-        PreparedStatement stmt = null;
-        Connection conn = null;
-
-        try {
-            // read the existing property to test if we need the
-            // insert or update query to write a property value
-            CmsProperty existingProperty = readPropertyObject(dbc, propertyDefinition.getName(), project, resource);
-
-            if (existingProperty.isIdentical(property)) {
-                // property already has the identical values set, no write required
-                return;
-            }
-
-            conn = m_sqlManager.getConnection(dbc);
-
-            for (int i = 0; i < 2; i++) {
-                int mappingType = -1;
-                String value = null;
-                CmsUUID id = null;
-                boolean existsPropertyValue = false;
-                boolean deletePropertyValue = false;
-
-                // 1) take any required decisions to choose and fill the correct SQL query
-
-                if (i == 0) {
-                    // write/delete the *structure value* on the first cycle
-                    if ((existingProperty.getStructureValue() != null) && property.isDeleteStructureValue()) {
-                        // this property value is marked to be deleted
-                        deletePropertyValue = true;
-                    } else {
-                        value = property.getStructureValue();
-                        if (CmsStringUtil.isEmptyOrWhitespaceOnly(value)) {
-                            // no structure value set or the structure value is an empty string,
-                            // continue with the resource value
-                            continue;
-                        }
-                    }
-
-                    // set the vars to be written to the database
-                    mappingType = CmsProperty.STRUCTURE_RECORD_MAPPING;
-                    id = resource.getStructureId();
-                    existsPropertyValue = existingProperty.getStructureValue() != null;
-                } else {
-                    // write/delete the *resource value* on the second cycle
-                    if ((existingProperty.getResourceValue() != null) && property.isDeleteResourceValue()) {
-                        // this property value is marked to be deleted
-                        deletePropertyValue = true;
-                    } else {
-                        value = property.getResourceValue();
-                        if (CmsStringUtil.isEmptyOrWhitespaceOnly(value)) {
-                            // no resource value set or the resource value is an empty string,
-                            // break out of the loop
-                            break;
-                        }
-                    }
-
-                    // set the vars to be written to the database
-                    mappingType = CmsProperty.RESOURCE_RECORD_MAPPING;
-                    id = resource.getResourceId();
-                    existsPropertyValue = existingProperty.getResourceValue() != null;
-                }
-
-                // 2) execute the SQL query
-                try {
-                    if (!deletePropertyValue) {
-                        // insert/update the property value
-                        if (existsPropertyValue) {
-                            // {structure|resource} property value already exists- use update statement
-                            stmt = m_sqlManager.getPreparedStatement(conn, projectId, "C_PROPERTIES_UPDATE");
-                            stmt.setString(1, m_sqlManager.validateEmpty(value));
-                            stmt.setString(2, id.toString());
-                            stmt.setInt(3, mappingType);
-                            stmt.setString(4, propertyDefinition.getId().toString());
-                        } else {
-                            // {structure|resource} property value doesn't exist- use create statement
-                            stmt = m_sqlManager.getPreparedStatement(conn, projectId, "C_PROPERTIES_CREATE");
-                            stmt.setString(1, new CmsUUID().toString());
-                            stmt.setString(2, propertyDefinition.getId().toString());
-                            stmt.setString(3, id.toString());
-                            stmt.setInt(4, mappingType);
-                            stmt.setString(5, m_sqlManager.validateEmpty(value));
-                        }
-                    } else {
-                        // {structure|resource} property value marked as deleted- use delete statement
-                        stmt = m_sqlManager.getPreparedStatement(conn, projectId, "C_PROPERTIES_DELETE");
-                        stmt.setString(1, propertyDefinition.getId().toString());
-                        stmt.setString(2, id.toString());
-                        stmt.setInt(3, mappingType);
-                    }
-                    stmt.executeUpdate();
-                } finally {
-                    m_sqlManager.closeAll(dbc, null, stmt, null);
-                }
-            }
-        } catch (SQLException e) {
-            throw new CmsDbSqlException(
-                Messages.get().container(Messages.ERR_GENERIC_SQL_1, CmsDbSqlException.getErrorQuery(stmt)),
-                e);
-        } finally {
-            m_sqlManager.closeAll(dbc, conn, stmt, null);
-        }
+        CmsPropertyDefinition propertyDefinition = readPropertyDefinitionForWrite(dbc, projectId, property);
+        // read the existing property to test if we need the
+        // insert or update query to write a property value
+        CmsProperty existingProperty = readPropertyObject(dbc, propertyDefinition.getName(), project, resource);
+        writePropertyValues(dbc, projectId, resource, propertyDefinition, existingProperty, property);
     }
 
     /**
@@ -3385,6 +3261,40 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         List<CmsProperty> properties)
     throws CmsDataAccessException {
 
+        if ((properties.size() > 1) && (CmsSqlBatch.getBatch(dbc) != null)) {
+            // do all reads first, so that the writes can be executed in a single batch
+            Map<String, CmsPropertyDefinition> definitions = new HashMap<String, CmsPropertyDefinition>();
+            CmsUUID projectId = ((dbc.getProjectId() == null) || dbc.getProjectId().isNullUUID())
+            ? project.getUuid()
+            : dbc.getProjectId();
+            for (CmsProperty property : properties) {
+                CmsPropertyDefinition propertyDefinition = readPropertyDefinitionForWrite(dbc, projectId, property);
+                if (definitions.put(property.getName(), propertyDefinition) != null) {
+                    // the same property is written more than once, so the order of the writes matters
+                    definitions = null;
+                    break;
+                }
+            }
+            if (definitions != null) {
+                Map<String, CmsProperty> existingProperties = new HashMap<String, CmsProperty>();
+                for (CmsProperty existingProperty : readPropertyObjects(dbc, project, resource)) {
+                    existingProperties.put(existingProperty.getName(), existingProperty);
+                }
+                for (CmsProperty property : properties) {
+                    CmsPropertyDefinition propertyDefinition = definitions.get(property.getName());
+                    CmsProperty existingProperty = existingProperties.get(propertyDefinition.getName());
+                    writePropertyValues(
+                        dbc,
+                        projectId,
+                        resource,
+                        propertyDefinition,
+                        existingProperty != null ? existingProperty : CmsProperty.getNullProperty(),
+                        property);
+                }
+                return;
+            }
+        }
+
         CmsProperty property = null;
 
         for (int i = 0; i < properties.size(); i++) {
@@ -4786,6 +4696,31 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         return CmsPair.create(conditionString, conditionParams);
     }
 
+    /**
+     * Returns the statement for writing a property value, either from the given batch or from the given connection.<p>
+     *
+     * @param batch the active batch, or <code>null</code> if the statement should not be batched
+     * @param conn the connection to use if the statement is not batched
+     * @param projectId the project id
+     * @param queryKey the key of the SQL query
+     *
+     * @return the statement
+     *
+     * @throws SQLException if something goes wrong
+     */
+    private PreparedStatement getPropertyStatement(
+        CmsSqlBatch batch,
+        Connection conn,
+        CmsUUID projectId,
+        String queryKey)
+    throws SQLException {
+
+        if (batch != null) {
+            return m_sqlManager.getBatchStatement(batch, projectId, queryKey);
+        }
+        return m_sqlManager.getPreparedStatement(conn, projectId, queryKey);
+    }
+
     /**
      * Helper method to prepare the SQL conditions for accessing rewrite aliases using a given filter.<p>
      *
@@ -4809,6 +4744,65 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         return CmsPair.create(CmsStringUtil.listAsString(conditions, " AND "), parameters);
     }
 
+    /**
+     * Reads the definition of a property to write, creating it if the property allows this.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the project id
+     * @param property the property to write
+     *
+     * @return the property definition
+     *
+     * @throws CmsDataAccessException if the definition does not exist and can not be created
+     */
+    private CmsPropertyDefinition readPropertyDefinitionForWrite(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        CmsProperty property)
+    throws CmsDataAccessException {
+
+        // TODO: check if we need autocreation for link property definition types too
+        CmsPropertyDefinition propertyDefinition = null;
+        try {
+            // read the property definition
+            propertyDefinition = readPropertyDefinition(dbc, property.getName(), projectId);
+        } catch (CmsDbEntryNotFoundException e) {
+            if (property.autoCreatePropertyDefinition()) {
+                propertyDefinition = createPropertyDefinition(
+                    dbc,
+                    projectId,
+                    property.getName(),
+                    CmsPropertyDefinition.TYPE_NORMAL);
+                try {
+                    readPropertyDefinition(dbc, property.getName(), CmsProject.ONLINE_PROJECT_ID);
+                } catch (CmsDataAccessException e1) {
+                    createPropertyDefinition(
+                        dbc,
+                        CmsProject.ONLINE_PROJECT_ID,
+                        property.getName(),
+                        CmsPropertyDefinition.TYPE_NORMAL);
+                }
+                try {
+                    m_driverManager.getHistoryDriver(dbc).readPropertyDefinition(dbc, property.getName());
+                } catch (CmsDataAccessException e1) {
+                    m_driverManager.getHistoryDriver(dbc).createPropertyDefinition(
+                        dbc,
+                        property.getName(),
+                        CmsPropertyDefinition.TYPE_NORMAL);
+                }
+                OpenCms.fireCmsEvent(
+                    new CmsEvent(
+                        I_CmsEventListener.EVENT_PROPERTY_DEFINITION_CREATED,
+                        Collections.<String, Object> singletonMap("propertyDefinition", propertyDefinition)));
+
+            } else {
+                throw new CmsDbEntryNotFoundException(
+                    Messages.get().container(Messages.ERR_NO_PROPERTYDEF_WITH_NAME_1, property.getName()));
+            }
+        }
+        return propertyDefinition;
+    }
+
     /**
      * Replaces the %(PROJECT) macro inside a query with either ONLINE or OFFLINE, depending on the value
      * of a flag.<p>
@@ -4826,4 +4820,136 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         return query.replace("%(PROJECT)", online ? ONLINE : OFFLINE);
     }
 
+    /**
+     * Writes the structure and resource values of a property, if they differ from the existing values.<p>
+     *
+     * If writes are batched for the database context, the statements are added to the batch.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the project id
+     * @param resource the resource to write the property for
+     * @param propertyDefinition the definition of the property
+     * @param existingProperty the currently stored property, or the null property
+     * @param property the property to write
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    private void writePropertyValues(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        CmsResource resource,
+        CmsPropertyDefinition propertyDefinition,
+        CmsProperty existingProperty,
+        CmsProperty property)
+    throws CmsDataAccessException {
+
+        if (existingProperty.isIdentical(property)) {
+            // property already has the identical values set, no write required
+            return;
+        }
+
+        PreparedStatement stmt = null;
+        Connection conn = null;
+        CmsSqlBatch batch = CmsSqlBatch.getBatch(dbc);
+
+        try {
+            if (batch == null) {
+                conn = m_sqlManager.getConnection(dbc);
+            }
+
+            for (int i = 0; i < 2; i++) {
+                int mappingType = -1;
+                String value = null;
+                CmsUUID id = null;
+                boolean existsPropertyValue = false;
+                boolean deletePropertyValue = false;
+
+                // 1) take any required decisions to choose and fill the correct SQL query
+
+                if (i == 0) {
+                    // write/delete the *structure value* on the first cycle
+                    if ((existingProperty.getStructureValue() != null) && property.isDeleteStructureValue()) {
+                        // this property value is marked to be deleted
+                        deletePropertyValue = true;
+                    } else {
+                        value = property.getStructureValue();
+                        if (CmsStringUtil.isEmptyOrWhitespaceOnly(value)) {
+                            // no structure value set or the structure value is an empty string,
+                            // continue with the resource value
+                            continue;
+                        }
+                    }
+
+                    // set the vars to be written to the database
+                    mappingType = CmsProperty.STRUCTURE_RECORD_MAPPING;
+                    id = resource.getStructureId();
+                    existsPropertyValue = existingProperty.getStructureValue() != null;
+                } else {
+                    // write/delete the *resource value* on the second cycle
+                    if ((existingProperty.getResourceValue() != null) && property.isDeleteResourceValue()) {
+                        // this property value is marked to be deleted
+                        deletePropertyValue = true;
+                    } else {
+                        value = property.getResourceValue();
+                        if (CmsStringUtil.isEmptyOrWhitespaceOnly(value)) {
+                            // no resource value set or the resource value is an empty string,
+                            // break out of the loop
+                            break;
+                        }
+                    }
+
+                    // set the vars to be written to the database
+                    mappingType = CmsProperty.RESOURCE_RECORD_MAPPING;
+                    id = resource.getResourceId();
+                    existsPropertyValue = existingProperty.getResourceValue() != null;
+                }
+
+                // 2) execute the SQL query
+                try {
+                    if (!deletePropertyValue) {
+                        // insert/update the property value
+                        if (existsPropertyValue) {
+                            // {structure|resource} property value already exists- use update statement
+                            stmt = getPropertyStatement(batch, conn, projectId, "C_PROPERTIES_UPDATE");
+                            stmt.setString(1, m_sqlManager.validateEmpty(value));
+                            stmt.setString(2, id.toString());
+                            stmt.setInt(3, mappingType);
+                            stmt.setString(4, propertyDefinition.getId().toString());
+                        } else {
+                            // {structure|resource} property value doesn't exist- use create statement
+                            stmt = getPropertyStatement(batch, conn, projectId, "C_PROPERTIES_CREATE");
+                            stmt.setString(1, new CmsUUID().toString());
+                            stmt.setString(2, propertyDefinition.getId().toString());
+                            stmt.setString(3, id.toString());
+                            stmt.setInt(4, mappingType);
+                            stmt.setString(5, m_sqlManager.validateEmpty(value));
+                        }
+                    } else {
+                        // {structure|resource} property value marked as deleted- use delete statement
+                        stmt = getPropertyStatement(batch, conn, projectId, "C_PROPERTIES_DELETE");
+                        stmt.setString(1, propertyDefinition.getId().toString());
+                        stmt.setString(2, id.toString());
+                        stmt.setInt(3, mappingType);
+                    }
+                    if (batch != null) {
+                        batch.addBatch(resource.getRootPath());
+                    } else {
+                        stmt.executeUpdate();
+                    }
+                } finally {
+                    if (batch == null) {
+                        m_sqlManager.closeAll(dbc, null, stmt, null);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new CmsDbSqlException(
+                Messages.get().container(Messages.ERR_GENERIC_SQL_1, CmsDbSqlException.getErrorQuery(stmt)),
+                e);
+        } finally {
+            if (batch == null) {
+                m_sqlManager.closeAll(dbc, conn, stmt, null);
+            }
+        }
+    }
 }
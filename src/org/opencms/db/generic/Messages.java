@@ -349,6 +349,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_DBG_WRITE_LOCKS_1 = "LOG_DBG_WRITE_LOCKS_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_DBG_WRITE_LOCK_CHANGES_2 = "LOG_DBG_WRITE_LOCK_CHANGES_2";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_DEL_FILE_3 = "LOG_DEL_FILE_3";
 
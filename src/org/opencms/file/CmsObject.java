@@ -3111,6 +3111,29 @@ public final class CmsObject {
         return m_securityManager.readPropertyObjects(m_context, resource, search);
     }
 
+    /**
+     * Reads all property objects from a list of resources.<p>
+     *
+     * This is more efficient than calling <code>{@link CmsObject#readPropertyObjects(CmsResource, boolean)}</code>
+     * for each resource, e.g. when building a navigation, since the properties of parent folders
+     * shared by the resources are only read once.<p>
+     *
+     * All properties in the result lists will be in frozen (read only) state, so you can't change the values.<p>
+     *
+     * @param resources the resources where the properties are mapped to
+     * @param search if <code>true</code>, the properties of all parent folders of each resource
+     *      are merged with the resource properties.
+     *
+     * @return the list of <code>{@link CmsProperty}</code> objects for each resource, in the order of the resources
+     *
+     * @throws CmsException if something goes wrong
+     */
+    public Map<CmsResource, List<CmsProperty>> readPropertyObjects(List<CmsResource> resources, boolean search)
+    throws CmsException {
+
+        return m_securityManager.readPropertyObjects(m_context, resources, search);
+    }
+
     /**
      * Reads all property objects from a resource.<p>
      *
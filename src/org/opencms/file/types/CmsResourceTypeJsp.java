@@ -297,6 +297,9 @@ public class CmsResourceTypeJsp extends A_CmsResourceTypeLinkParseable {
         } catch (ArrayIndexOutOfBoundsException e) {
             // ignore, loader not configured
         }
+        if (m_jspLoader != null) {
+            m_jspLoader.startWarmup(cms);
+        }
     }
 
     /**
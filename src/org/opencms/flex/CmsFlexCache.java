@@ -27,33 +27,43 @@
 
 package org.opencms.flex;
 
+import org.opencms.ade.configuration.CmsADEManager;
+import org.opencms.ade.configuration.formatters.CmsFormatterConfigurationCache;
 import org.opencms.cache.CmsLruCache;
+import org.opencms.cache.CmsSegmentedLruCache;
+import org.opencms.cache.I_CmsLruCache;
 import org.opencms.cache.I_CmsLruCacheObject;
 import org.opencms.db.CmsPublishedResource;
 import org.opencms.file.CmsObject;
+import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceFilter;
+import org.opencms.file.CmsVfsResourceNotFoundException;
+import org.opencms.file.types.CmsResourceTypeFunctionConfig;
+import org.opencms.file.types.CmsResourceTypeJsp;
+import org.opencms.file.types.CmsResourceTypeXmlContainerPage;
 import org.opencms.flex.CmsFlexBucketConfiguration.BucketSet;
+import org.opencms.i18n.CmsVfsBundleManager;
 import org.opencms.loader.CmsJspLoader;
+import org.opencms.loader.CmsLoaderException;
 import org.opencms.main.CmsException;
 import org.opencms.main.CmsLog;
 import org.opencms.main.I_CmsEventListener;
 import org.opencms.main.OpenCms;
+import org.opencms.monitor.CmsMemorySizeEstimator;
+import org.opencms.monitor.I_CmsMemoryMonitorable;
 import org.opencms.security.CmsRole;
-import org.opencms.util.CmsCollectionsGenericWrapper;
 import org.opencms.util.CmsStringUtil;
 import org.opencms.util.CmsUUID;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.logging.Log;
 
 import com.google.common.collect.Lists;
@@ -61,7 +71,7 @@ import com.google.common.collect.Lists;
 /**
  * This class implements the FlexCache.<p>
  *
- * The data structure used is a two-level hashtable.
+ * The data structure used is a two-level concurrent index, see {@link CmsFlexCacheIndex}.
  * This is optimized for the structure of the keys that are used to describe the
  * caching behaviour of the entries.
  * The first hash-level is calculated from the resource name, i.e. the
@@ -96,13 +106,16 @@ import com.google.common.collect.Lists;
  *
  * Cache clearing is handled using events.
  * The cache is fully flushed if an event {@link I_CmsEventListener#EVENT_PUBLISH_PROJECT}
- * or {@link I_CmsEventListener#EVENT_CLEAR_CACHES} is caught.<p>
+ * or {@link I_CmsEventListener#EVENT_CLEAR_CACHES} is caught.
+ * If dependency based invalidation is enabled in the {@link CmsFlexCacheConfiguration},
+ * a publish event only removes the entries that were generated from one of the published resources.<p>
  *
  * @since 6.0.0
  *
  * @see org.opencms.flex.CmsFlexCacheKey
  * @see org.opencms.flex.CmsFlexCacheEntry
  * @see org.opencms.cache.CmsLruCache
+ * @see org.opencms.cache.CmsSegmentedLruCache
  * @see org.opencms.cache.I_CmsLruCacheObject
  */
 public class CmsFlexCache extends Object implements I_CmsEventListener {
@@ -110,13 +123,13 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
     /**
      * A simple data container class for the FlexCache variations.<p>
      */
-    public static class CmsFlexCacheVariation extends Object {
+    public static class CmsFlexCacheVariation extends Object implements I_CmsMemoryMonitorable {
 
         /** The key belonging to the resource. */
         public CmsFlexCacheKey m_key;
 
         /** Maps variations to CmsFlexCacheEntries. */
-        public Map<String, I_CmsLruCacheObject> m_map;
+        public final Map<String, I_CmsLruCacheObject> m_map;
 
         /**
          * Generates a new instance of CmsFlexCacheVariation.<p>
@@ -126,61 +139,15 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         public CmsFlexCacheVariation(CmsFlexCacheKey theKey) {
 
             m_key = theKey;
-            m_map = new Hashtable<String, I_CmsLruCacheObject>(INITIAL_CAPACITY_VARIATIONS);
+            m_map = new ConcurrentHashMap<String, I_CmsLruCacheObject>(INITIAL_CAPACITY_VARIATIONS);
         }
-    }
-
-    /**
-     * Extended LRUMap that handles the variations in case a key is removed.<p>
-     */
-    class CmsFlexKeyMap extends LRUMap {
-
-        /** Serial version UID required for safe serialization. */
-        private static final long serialVersionUID = 6931995916013396902L;
 
         /**
-         * Initialize the map with the given size.<p>
-         *
-         * @param maxSize the maximum number of key to cache
+         * @see org.opencms.monitor.I_CmsMemoryMonitorable#getMemorySize()
          */
-        public CmsFlexKeyMap(int maxSize) {
-
-            super(maxSize);
-        }
-
-        /**
-         * Ensures that all variations that referenced by this key are released
-         * if the key is released.<p>
-         *
-         * @param entry the entry to remove
-         *
-         * @return <code>true</code> to actually delete the entry
-         *
-         * @see LRUMap#removeLRU(LinkEntry)
-         */
-        @Override
-        protected boolean removeLRU(LinkEntry entry) {
-
-            CmsFlexCacheVariation v = (CmsFlexCacheVariation)entry.getValue();
-            if (v == null) {
-                return true;
-            }
-            Map<String, I_CmsLruCacheObject> m = v.m_map;
-            if ((m == null) || (m.size() == 0)) {
-                return true;
-            }
+        public int getMemorySize() {
 
-            // make a copy to safely iterate over because the line "m_variationCache.remove(e)" modifies the variation map for the key
-            Collection<I_CmsLruCacheObject> entries = new ArrayList<I_CmsLruCacheObject>(m.values());
-            synchronized (m_variationCache) {
-                for (I_CmsLruCacheObject e : entries) {
-                    m_variationCache.remove(e);
-                }
-                v.m_map.clear();
-                v.m_map = null;
-                v.m_key = null;
-            }
-            return true;
+            return (int)CmsMemorySizeEstimator.sample(m_map, CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE);
         }
     }
 
@@ -229,12 +196,34 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
     /** The log object for this class. */
     private static final Log LOG = CmsLog.getLog(CmsFlexCache.class);
 
+    /** Resource types which clear the complete cache when published if dependency based invalidation is used. */
+    private static final Set<String> CLEAR_ALL_TYPES = new HashSet<String>(
+        Arrays.asList(
+            CmsADEManager.CONFIG_TYPE,
+            CmsADEManager.MODULE_CONFIG_TYPE,
+            CmsADEManager.ELEMENT_VIEW_TYPE,
+            "sitemap_master_config",
+            CmsFormatterConfigurationCache.TYPE_FORMATTER_CONFIG,
+            CmsFormatterConfigurationCache.TYPE_MACRO_FORMATTER,
+            CmsFormatterConfigurationCache.TYPE_FLEX_FORMATTER,
+            CmsFormatterConfigurationCache.TYPE_SETTINGS_CONFIG,
+            CmsResourceTypeFunctionConfig.TYPE_NAME,
+            CmsResourceTypeXmlContainerPage.INHERIT_CONTAINER_CONFIG_TYPE_NAME,
+            CmsVfsBundleManager.TYPE_PROPERTIES_BUNDLE,
+            CmsVfsBundleManager.TYPE_XML_BUNDLE));
+
+    /** The root path prefix of resources which clear the complete cache when published if dependency based invalidation is used. */
+    private static final String CLEAR_ALL_PATH = "/system/";
+
     /** The LRU cache to organize the cached entries. */
-    protected CmsLruCache m_variationCache;
+    protected I_CmsLruCache m_variationCache;
 
     /** The Flex bucket configuration. */
     private CmsFlexBucketConfiguration m_bucketConfiguration;
 
+    /** Indicates if cache entries are invalidated based on the resources they were generated from. */
+    private boolean m_cacheDependencies;
+
     /** Indicates if offline resources should be cached or not. */
     private boolean m_cacheOffline;
 
@@ -244,8 +233,11 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
     /** Indicates if the cache is enabled or not. */
     private boolean m_enabled;
 
-    /** Map to store the entries for fast lookup. */
-    private Map<String, CmsFlexCacheVariation> m_keyCache;
+    /** The concurrent index to store the entries for fast lookup. */
+    private CmsFlexCacheIndex m_keyCache;
+
+    /** The off-heap store for the output of the cached entries, <code>null</code> if the output is kept on the heap. */
+    private CmsFlexOffHeapStore m_offHeapStore;
 
     /** Counter for the size. */
     private int m_size;
@@ -265,20 +257,30 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
 
         m_enabled = configuration.isCacheEnabled();
         m_cacheOffline = configuration.isCacheOffline();
+        m_cacheDependencies = configuration.isCacheDependencies();
 
         long maxCacheBytes = configuration.getMaxCacheBytes();
         long avgCacheBytes = configuration.getAvgCacheBytes();
         int maxEntryBytes = configuration.getMaxEntryBytes();
         int maxKeys = configuration.getMaxKeys();
 
-        m_variationCache = new CmsLruCache(maxCacheBytes, avgCacheBytes, maxEntryBytes);
+        int segments = configuration.getCacheSegments();
+        if (segments > 1) {
+            m_variationCache = new CmsSegmentedLruCache(maxCacheBytes, avgCacheBytes, maxEntryBytes, segments);
+        } else {
+            m_variationCache = new CmsLruCache(maxCacheBytes, avgCacheBytes, maxEntryBytes);
+        }
         OpenCms.getMemoryMonitor().register(getClass().getName() + ".m_entryLruCache", m_variationCache);
 
         if (m_enabled) {
-            CmsFlexKeyMap flexKeyMap = new CmsFlexKeyMap(maxKeys);
-            m_keyCache = Collections.synchronizedMap(
-                CmsCollectionsGenericWrapper.<String, CmsFlexCacheVariation> map(flexKeyMap));
-            OpenCms.getMemoryMonitor().register(getClass().getName() + ".m_resourceMap", flexKeyMap);
+            if (configuration.getOffHeapBytes() > 0) {
+                m_offHeapStore = new CmsFlexOffHeapStore(configuration.getOffHeapBytes());
+            }
+            m_keyCache = new CmsFlexCacheIndex(maxKeys, m_variationCache);
+            OpenCms.getMemoryMonitor().register(
+                getClass().getName() + ".m_resourceMap",
+                m_keyCache.asMap(),
+                m_keyCache.getMaxKeys());
 
             OpenCms.addCmsEventListener(
                 this,
@@ -299,37 +301,100 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
     }
 
     /**
-     * Copies the key set of a map while synchronizing on the map.<p>
+     * Returns the ids that cache entries depending on the given published resources have collected.<p>
+     *
+     * These are the structure and resource ids of the published resources themselves,
+     * the structure ids of all ancestor folders of new, deleted or moved resources,
+     * since (recursive) listings of these folders have changed, and
+     * {@link CmsFlexRequestContextInfo#DEPENDENCY_FOLDER_PROPERTIES} if a folder has been published,
+     * since its properties may be inherited by any resource below it.<p>
+     *
+     * The same ids are used to find the static export files depending on the published resources.<p>
      *
-     * @param map the map whose key set should be copied
-     * @return the copied key set
+     * @param cms the OpenCms context used to read ancestor folders which have not been published themselves
+     * @param publishedResources the published resources
+     *
+     * @return the ids affected by publishing the resources
+     *
+     * @throws CmsException if reading an ancestor folder fails
      */
-    private static <K, V> Set<K> synchronizedCopyKeys(Map<K, V> map) {
-
-        if (map == null) {
-            return new HashSet<K>();
+    public static Set<CmsUUID> getPublishedDependencyIds(CmsObject cms, List<CmsPublishedResource> publishedResources)
+    throws CmsException {
+
+        Set<CmsUUID> publishedIds = new HashSet<CmsUUID>();
+        Map<String, CmsUUID> folderIds = new HashMap<String, CmsUUID>();
+        for (CmsPublishedResource pubRes : publishedResources) {
+            publishedIds.add(pubRes.getStructureId());
+            publishedIds.add(pubRes.getResourceId());
+            if (pubRes.isFolder()) {
+                folderIds.put(pubRes.getRootPath(), pubRes.getStructureId());
+                publishedIds.add(CmsFlexRequestContextInfo.DEPENDENCY_FOLDER_PROPERTIES);
+            }
         }
-        synchronized (map) {
-            return new HashSet<K>(map.keySet());
+        Set<String> ancestorPaths = new HashSet<String>();
+        for (CmsPublishedResource pubRes : publishedResources) {
+            if (pubRes.getState().isNew() || pubRes.getState().isDeleted() || pubRes.isMoved()) {
+                // the source of a moved resource is contained in the list with its old path
+                String ancestorPath = CmsResource.getParentFolder(pubRes.getRootPath());
+                while ((ancestorPath != null) && ancestorPaths.add(ancestorPath)) {
+                    ancestorPath = CmsResource.getParentFolder(ancestorPath);
+                }
+            }
         }
+        for (String ancestorPath : ancestorPaths) {
+            CmsUUID ancestorId = folderIds.get(ancestorPath);
+            if (ancestorId == null) {
+                try {
+                    ancestorId = cms.readResource(ancestorPath, CmsResourceFilter.ALL).getStructureId();
+                } catch (CmsVfsResourceNotFoundException e) {
+                    // the folder does not exist anymore, so no entry can depend on its current listing
+                    continue;
+                }
+            }
+            publishedIds.add(ancestorId);
+        }
+        return publishedIds;
     }
 
     /**
-     * Copies a map while synchronizing on it.<p>
+     * Checks if publishing the given resource requires clearing the complete cache,
+     * because it may influence cache entries without being read by them directly.<p>
+     *
+     * The same applies to any other output generated from VFS resources, e.g. static export files.<p>
+     *
+     * @param pubRes the published resource
      *
-     * @param map the map to copy
-     * @return the copied map
+     * @return true if the complete cache should be cleared
      */
-    private static <K, V> Map<K, V> synchronizedCopyMap(Map<K, V> map) {
+    public static boolean isClearAllResource(CmsPublishedResource pubRes) {
 
-        if (map == null) {
-            return new HashMap<K, V>();
+        if (pubRes.getRootPath().startsWith(CLEAR_ALL_PATH) || CmsResourceTypeJsp.isJspTypeId(pubRes.getType())) {
+            return true;
+        }
+        if (pubRes.isFolder()) {
+            return false;
+        }
+        try {
+            String typeName = OpenCms.getResourceManager().getResourceType(pubRes.getType()).getTypeName();
+            return CLEAR_ALL_TYPES.contains(typeName);
+        } catch (CmsLoaderException e) {
+            // unknown resource type, better clear everything
+            return true;
         }
+    }
 
-        synchronized (map) {
+    /**
+     * Checks if a cache entry with the given dependencies must be removed after publishing resources.<p>
+     *
+     * @param dependencies the dependencies of the cache entry, <code>null</code> if unknown
+     * @param publishedIds the ids affected by the publish operation,
+     *      see {@link #getPublishedDependencyIds(CmsObject, List)}
+     *
+     * @return true if the cache entry must be removed
+     */
+    static boolean isAffectedByPublish(Set<CmsUUID> dependencies, Set<CmsUUID> publishedIds) {
 
-            return new HashMap<K, V>(map);
-        }
+        return (dependencies == null) || !Collections.disjoint(dependencies, publishedIds);
     }
 
     /**
@@ -385,6 +450,14 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
                             }
                             // Make sure no entries built for the old configuration remain in the cache
                             clear();
+                        } else if (m_cacheDependencies) {
+                            boolean dependencyClearOk = clearDependenciesForPublishList(
+                                bucketConfig,
+                                publishId,
+                                publishedResources);
+                            if (!dependencyClearOk) {
+                                clear();
+                            }
                         } else if (bucketConfig != null) {
                             boolean bucketClearOk = clearBucketsForPublishList(
                                 bucketConfig,
@@ -470,21 +543,23 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
      */
     public void dumpKeys(StringBuffer buffer) {
 
-        synchronized (this) {
-            for (Map.Entry<String, CmsFlexCacheVariation> entry : synchronizedCopyMap(m_keyCache).entrySet()) {
-                String key = entry.getKey();
-                CmsFlexCacheVariation variations = entry.getValue();
-                Map<String, I_CmsLruCacheObject> variationMap = variations.m_map;
-                for (Map.Entry<String, I_CmsLruCacheObject> varEntry : variationMap.entrySet()) {
-                    String varKey = varEntry.getKey();
-                    I_CmsLruCacheObject value = varEntry.getValue();
-                    buffer.append(key + " VAR " + varKey + "\n");
-                    if (value instanceof CmsFlexCacheEntry) {
-                        CmsFlexCacheEntry singleCacheEntry = (CmsFlexCacheEntry)value;
-                        BucketSet buckets = singleCacheEntry.getBucketSet();
-                        if (buckets != null) {
-                            buffer.append("buckets = " + buckets.toString() + "\n");
-                        }
+        if (!isEnabled()) {
+            return;
+        }
+        // the iteration is weakly consistent, so no locks or copies are required
+        for (Map.Entry<String, CmsFlexCacheVariation> entry : m_keyCache.asMap().entrySet()) {
+            String key = entry.getKey();
+            CmsFlexCacheVariation variations = entry.getValue();
+            Map<String, I_CmsLruCacheObject> variationMap = variations.m_map;
+            for (Map.Entry<String, I_CmsLruCacheObject> varEntry : variationMap.entrySet()) {
+                String varKey = varEntry.getKey();
+                I_CmsLruCacheObject value = varEntry.getValue();
+                buffer.append(key + " VAR " + varKey + "\n");
+                if (value instanceof CmsFlexCacheEntry) {
+                    CmsFlexCacheEntry singleCacheEntry = (CmsFlexCacheEntry)value;
+                    BucketSet buckets = singleCacheEntry.getBucketSet();
+                    if (buckets != null) {
+                        buffer.append("buckets = " + buckets.toString() + "\n");
                     }
                 }
             }
@@ -510,9 +585,9 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         if (!isEnabled() || !OpenCms.getRoleManager().hasRole(cms, CmsRole.WORKPLACE_MANAGER)) {
             return null;
         }
-        Object o = m_keyCache.get(key);
-        if (o != null) {
-            return ((CmsFlexCacheVariation)o).m_key;
+        CmsFlexCacheVariation v = m_keyCache.getVariations(key);
+        if (v != null) {
+            return v.m_key;
         }
         return null;
     }
@@ -534,7 +609,7 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         if (!isEnabled() || !OpenCms.getRoleManager().hasRole(cms, CmsRole.WORKPLACE_MANAGER)) {
             return null;
         }
-        return synchronizedCopyKeys(m_keyCache);
+        return new HashSet<String>(m_keyCache.keySet());
     }
 
     /**
@@ -556,9 +631,9 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         if (!isEnabled() || !OpenCms.getRoleManager().hasRole(cms, CmsRole.WORKPLACE_MANAGER)) {
             return null;
         }
-        Object o = m_keyCache.get(key);
-        if (o != null) {
-            return synchronizedCopyKeys(((CmsFlexCacheVariation)o).m_map);
+        CmsFlexCacheVariation v = m_keyCache.getVariations(key);
+        if (v != null) {
+            return new HashSet<String>(v.m_map.keySet());
         }
         return null;
     }
@@ -568,11 +643,21 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
      *
      * @return the LRU cache where the CacheEntries are cached
      */
-    public CmsLruCache getEntryLruCache() {
+    public I_CmsLruCache getEntryLruCache() {
 
         return m_variationCache;
     }
 
+    /**
+     * Returns the off-heap store for the output of the cached entries.<p>
+     *
+     * @return the off-heap store, or <code>null</code> if the output of the cached entries is kept on the heap
+     */
+    public CmsFlexOffHeapStore getOffHeapStore() {
+
+        return m_offHeapStore;
+    }
+
     /**
      * Initializes the flex cache.<p>
      *
@@ -637,6 +722,9 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
      * In case the timeout of the entry has been reached, it will be removed from
      * the cache (and null will be returned in this case).<p>
      *
+     * A returned entry must be released with {@link CmsFlexCacheEntry#releaseBodies()}
+     * after it has been written to the response, so that its off-heap output is not freed while in use.<p>
+     *
      * @param key The key to look for in the cache
      * @return the entry found for the key, or null if key is not in the cache
      */
@@ -646,10 +734,9 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
             // cache is disabled
             return null;
         }
-        Object o = m_keyCache.get(key.getResource());
-        if (o != null) {
+        CmsFlexCacheVariation v = m_keyCache.getVariations(key.getResource());
+        if (v != null) {
             // found a matching key in the cache
-            CmsFlexCacheVariation v = (CmsFlexCacheVariation)o;
             String variation = v.m_key.matchRequestKey(key);
 
             if (CmsStringUtil.isEmpty(variation)) {
@@ -663,7 +750,11 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
             }
             if (entry.getDateExpires() < System.currentTimeMillis()) {
                 // cache entry avaiable but expired, remove entry
-                m_variationCache.remove(entry);
+                m_keyCache.remove(entry);
+                return null;
+            }
+            if (!entry.acquireBodies()) {
+                // entry has been removed from the cache concurrently and its output is already freed
                 return null;
             }
             // return the found cache entry
@@ -684,12 +775,12 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         if (!isEnabled()) {
             return null;
         }
-        Object o = m_keyCache.get(resource);
-        if (o != null) {
+        CmsFlexCacheVariation v = m_keyCache.getVariations(resource);
+        if (v != null) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHEKEY_FOUND_1, resource));
             }
-            return ((CmsFlexCacheVariation)o).m_key;
+            return v.m_key;
         } else {
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHEKEY_NOT_FOUND_1, resource));
@@ -779,22 +870,14 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         if (!isEnabled()) {
             return;
         }
-        Object o = m_keyCache.get(key.getResource());
-        if (o == null) {
-            // No variation map for this resource yet, so create one
-            CmsFlexCacheVariation variationMap = new CmsFlexCacheVariation(key);
-            m_keyCache.put(key.getResource(), variationMap);
-            if (LOG.isDebugEnabled()) {
-                LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHE_ADD_KEY_1, key.getResource()));
-            }
-        }
-        // If != null the key is already in the cache, so we just do nothing
+        // if the key is already in the cache, nothing is changed
+        m_keyCache.getOrCreateVariations(key);
     }
 
     /**
      * Empties the cache completely.<p>
      */
-    private synchronized void clear() {
+    private void clear() {
 
         if (!isEnabled()) {
             return;
@@ -802,8 +885,6 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         m_keyCache.clear();
         m_size = 0;
 
-        m_variationCache.clear();
-
         if (LOG.isInfoEnabled()) {
             LOG.info(Messages.get().getBundle().key(Messages.LOG_FLEXCACHE_CLEAR_0));
         }
@@ -821,40 +902,10 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
      * @param entriesOnly if <code>true</code>, only entries will be cleared, otherwise
      *         the entries and the keys will be cleared
      */
-    private synchronized void clearAccordingToSuffix(String suffix, boolean entriesOnly) {
-
-        Set<String> keys = synchronizedCopyKeys(m_keyCache);
-        Iterator<String> i = keys.iterator();
-        while (i.hasNext()) {
-            String s = i.next();
-            if (s.endsWith(suffix)) {
-                CmsFlexCacheVariation v = m_keyCache.get(s);
-                if (entriesOnly) {
-                    // Clear only entry
-                    m_size -= v.m_map.size();
-                    Iterator<I_CmsLruCacheObject> allEntries = v.m_map.values().iterator();
-                    while (allEntries.hasNext()) {
-                        I_CmsLruCacheObject nextObject = allEntries.next();
-                        allEntries.remove();
-                        m_variationCache.remove(nextObject);
-                    }
-                    v.m_map = new Hashtable<String, I_CmsLruCacheObject>(INITIAL_CAPACITY_VARIATIONS);
-                } else {
-                    // Clear key and entry
-                    m_size -= v.m_map.size();
-                    Iterator<I_CmsLruCacheObject> allEntries = v.m_map.values().iterator();
-                    while (allEntries.hasNext()) {
-                        I_CmsLruCacheObject nextObject = allEntries.next();
-                        allEntries.remove();
-                        m_variationCache.remove(nextObject);
-                    }
+    private void clearAccordingToSuffix(String suffix, boolean entriesOnly) {
 
-                    v.m_map = null;
-                    v.m_key = null;
-                    m_keyCache.remove(s);
-                }
-            }
-        }
+        // this only locks the variations being cleared, so requests for the other half of the cache are not blocked
+        m_size -= m_keyCache.clearEntries(suffix, entriesOnly);
         if (LOG.isInfoEnabled()) {
             LOG.info(
                 Messages.get().getBundle().key(
@@ -898,48 +949,45 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
                 if (LOG.isInfoEnabled()) {
                     LOG.info(p + "Flex cache buckets for publish list: " + publishListBucketSet.toString());
                 }
-                synchronized (this) {
-                    List<CmsFlexCacheEntry> entriesToDelete = Lists.newArrayList();
-                    for (Map.Entry<String, CmsFlexCacheVariation> entry : synchronizedCopyMap(m_keyCache).entrySet()) {
-                        CmsFlexCacheVariation variation = entry.getValue();
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug(p + "Processing entries for " + entry.getKey());
-                        }
-                        entriesToDelete.clear();
-
-                        for (Map.Entry<String, I_CmsLruCacheObject> variationEntry : synchronizedCopyMap(
-                            variation.m_map).entrySet()) {
-                            CmsFlexCacheEntry flexEntry = (CmsFlexCacheEntry)(variationEntry.getValue());
-                            totalEntries += 1;
-                            BucketSet entryBucketSet = flexEntry.getBucketSet();
-                            if (publishListBucketSet.matchForDeletion(entryBucketSet)) {
-                                entriesToDelete.add(flexEntry);
-                                if (LOG.isInfoEnabled()) {
-                                    LOG.info(p + "Match: " + variationEntry.getKey());
-                                }
-                            } else {
-                                if (LOG.isDebugEnabled()) {
-                                    LOG.debug(p + "No match: " + variationEntry.getKey());
-                                }
+                List<CmsFlexCacheEntry> entriesToDelete = Lists.newArrayList();
+                for (Map.Entry<String, CmsFlexCacheVariation> entry : m_keyCache.asMap().entrySet()) {
+                    CmsFlexCacheVariation variation = entry.getValue();
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(p + "Processing entries for " + entry.getKey());
+                    }
+                    entriesToDelete.clear();
+
+                    for (Map.Entry<String, I_CmsLruCacheObject> variationEntry : variation.m_map.entrySet()) {
+                        CmsFlexCacheEntry flexEntry = (CmsFlexCacheEntry)(variationEntry.getValue());
+                        totalEntries += 1;
+                        BucketSet entryBucketSet = flexEntry.getBucketSet();
+                        if (publishListBucketSet.matchForDeletion(entryBucketSet)) {
+                            entriesToDelete.add(flexEntry);
+                            if (LOG.isInfoEnabled()) {
+                                LOG.info(p + "Match: " + variationEntry.getKey());
+                            }
+                        } else {
+                            if (LOG.isDebugEnabled()) {
+                                LOG.debug(p + "No match: " + variationEntry.getKey());
                             }
                         }
-                        for (CmsFlexCacheEntry entryToDelete : entriesToDelete) {
-                            m_variationCache.remove(entryToDelete);
-                            removedEntries += 1;
-                        }
                     }
-                    long endTime = System.currentTimeMillis();
-                    LOG.info(
-                        p
-                            + "Removed "
-                            + removedEntries
-                            + " of "
-                            + totalEntries
-                            + " Flex cache entries, took "
-                            + (endTime - startTime)
-                            + " milliseconds");
-                    return true;
+                    for (CmsFlexCacheEntry entryToDelete : entriesToDelete) {
+                        m_keyCache.remove(entryToDelete);
+                        removedEntries += 1;
+                    }
                 }
+                long endTime = System.currentTimeMillis();
+                LOG.info(
+                    p
+                        + "Removed "
+                        + removedEntries
+                        + " of "
+                        + totalEntries
+                        + " Flex cache entries, took "
+                        + (endTime - startTime)
+                        + " milliseconds");
+                return true;
             }
         } catch (Exception e) {
             LOG.error(p + "Exception while trying to selectively purge flex cache: " + e.getLocalizedMessage(), e);
@@ -947,6 +995,71 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         }
     }
 
+    /**
+     * Removes the Flex cache entries which depend on one of the resources in the given publish list.<p>
+     *
+     * @param bucketConfig the bucket configuration, used to check if the complete cache should be cleared (may be null)
+     * @param publishId the publish id
+     * @param publishedResources the published resources
+     *
+     * @return true if the entries could be removed selectively (if this returns false, the flex cache should be cleared completely)
+     */
+    private boolean clearDependenciesForPublishList(
+        CmsFlexBucketConfiguration bucketConfig,
+        CmsUUID publishId,
+        List<CmsPublishedResource> publishedResources) {
+
+        long startTime = System.currentTimeMillis();
+        String p = "[" + publishId + "] "; // Prefix for log messages
+        try {
+            if ((bucketConfig != null) && bucketConfig.shouldClearAll(publishedResources)) {
+                LOG.info(p + "Clearing Flex cache completely based on Flex bucket configuration.");
+                return false;
+            }
+            for (CmsPublishedResource pubRes : publishedResources) {
+                if (isClearAllResource(pubRes)) {
+                    LOG.info(p + "Clearing Flex cache completely because of published resource " + pubRes.getRootPath());
+                    return false;
+                }
+            }
+            Set<CmsUUID> publishedIds = getPublishedDependencyIds(m_cmsObject, publishedResources);
+            long totalEntries = 0;
+            long removedEntries = 0;
+            List<CmsFlexCacheEntry> entriesToDelete = Lists.newArrayList();
+            for (Map.Entry<String, CmsFlexCacheVariation> entry : m_keyCache.asMap().entrySet()) {
+                entriesToDelete.clear();
+                for (Map.Entry<String, I_CmsLruCacheObject> variationEntry : entry.getValue().m_map.entrySet()) {
+                    CmsFlexCacheEntry flexEntry = (CmsFlexCacheEntry)(variationEntry.getValue());
+                    totalEntries += 1;
+                    if (isAffectedByPublish(flexEntry.getDependencies(), publishedIds)) {
+                        entriesToDelete.add(flexEntry);
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug(p + "Dependency match: " + entry.getKey() + " " + variationEntry.getKey());
+                        }
+                    }
+                }
+                for (CmsFlexCacheEntry entryToDelete : entriesToDelete) {
+                    m_keyCache.remove(entryToDelete);
+                    removedEntries += 1;
+                }
+            }
+            long endTime = System.currentTimeMillis();
+            LOG.info(
+                p
+                    + "Removed "
+                    + removedEntries
+                    + " of "
+                    + totalEntries
+                    + " Flex cache entries based on dependencies, took "
+                    + (endTime - startTime)
+                    + " milliseconds");
+            return true;
+        } catch (Exception e) {
+            LOG.error(p + "Exception while trying to purge flex cache by dependencies: " + e.getLocalizedMessage(), e);
+            return false;
+        }
+    }
+
     /**
      * Clears all entries in the cache, online or offline.<p>
      *
@@ -955,7 +1068,7 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
      * Only users with administrator permissions are allowed
      * to perform this operation.<p>
      */
-    private synchronized void clearEntries() {
+    private void clearEntries() {
 
         if (!isEnabled()) {
             return;
@@ -963,19 +1076,7 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         if (LOG.isInfoEnabled()) {
             LOG.info(Messages.get().getBundle().key(Messages.LOG_FLEXCACHE_CLEAR_ALL_0));
         }
-        // create new set to avoid ConcurrentModificationExceptions
-        Set<String> cacheKeys = synchronizedCopyKeys(m_keyCache);
-        Iterator<String> i = cacheKeys.iterator();
-        while (i.hasNext()) {
-            CmsFlexCacheVariation v = m_keyCache.get(i.next());
-            Iterator<I_CmsLruCacheObject> allEntries = v.m_map.values().iterator();
-            while (allEntries.hasNext()) {
-                I_CmsLruCacheObject nextObject = allEntries.next();
-                allEntries.remove();
-                m_variationCache.remove(nextObject);
-            }
-            v.m_map = new Hashtable<String, I_CmsLruCacheObject>(INITIAL_CAPACITY_VARIATIONS);
-        }
+        m_keyCache.clearEntries(null, true);
         m_size = 0;
     }
 
@@ -1091,32 +1192,12 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
      */
     private void put(CmsFlexCacheKey key, CmsFlexCacheEntry theCacheEntry, String variation) {
 
-        CmsFlexCacheVariation o = m_keyCache.get(key.getResource());
-        if (o != null) {
-            // We already have a variation map for this resource
-            Map<String, I_CmsLruCacheObject> m = o.m_map;
-            boolean wasAdded = true;
-            if (!m.containsKey(variation)) {
-                wasAdded = m_variationCache.add(theCacheEntry);
-            } else {
-                wasAdded = m_variationCache.touch(theCacheEntry);
-            }
-
-            if (wasAdded) {
-                theCacheEntry.setVariationData(variation, m);
-                m.put(variation, theCacheEntry);
-            }
-        } else {
-            // No variation map for this resource yet, so create one
-            CmsFlexCacheVariation list = new CmsFlexCacheVariation(key);
-
-            boolean wasAdded = m_variationCache.add(theCacheEntry);
-
-            if (wasAdded) {
-                theCacheEntry.setVariationData(variation, list.m_map);
-                list.m_map.put(variation, theCacheEntry);
-                m_keyCache.put(key.getResource(), list);
-            }
+        if (m_offHeapStore != null) {
+            theCacheEntry.moveToOffHeap(m_offHeapStore);
+        }
+        if (!m_keyCache.put(key, variation, theCacheEntry)) {
+            // entry was not added, so the cache does not keep its off-heap output
+            theCacheEntry.releaseCacheReference();
         }
 
         if (LOG.isDebugEnabled()) {
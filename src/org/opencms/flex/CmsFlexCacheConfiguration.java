@@ -52,6 +52,12 @@ public class CmsFlexCacheConfiguration {
     /** Indicates if offline resources should be cached or not. */
     private boolean m_cacheOffline;
 
+    /** Indicates if cache entries should be invalidated based on the resources they were generated from. */
+    private boolean m_cacheDependencies;
+
+    /** The number of segments of the LRU cache, values smaller than 2 select the non-segmented LRU cache. */
+    private int m_cacheSegments;
+
     /** The device selector. */
     private I_CmsJspDeviceSelector m_deviceSelector;
 
@@ -74,6 +80,9 @@ public class CmsFlexCacheConfiguration {
     /** The maximum key. */
     private int m_maxKeys;
 
+    /** The maximum number of bytes of direct memory used for the output of cached entries, 0 keeps the output on the heap. */
+    private long m_offHeapBytes;
+
     /**
      * Empty public constructor for the digester.
      */
@@ -92,6 +101,19 @@ public class CmsFlexCacheConfiguration {
         return m_avgCacheBytes;
     }
 
+    /**
+     * Returns the number of segments of the LRU cache for the cached entries.<p>
+     *
+     * A value smaller than 2 means the entries are organized by a single {@link org.opencms.cache.CmsLruCache},
+     * otherwise a {@link org.opencms.cache.CmsSegmentedLruCache} with the given number of segments is used.<p>
+     *
+     * @return the number of segments of the LRU cache
+     */
+    public int getCacheSegments() {
+
+        return m_cacheSegments;
+    }
+
     /**
      * Returns the deviceSelector.<p>
      *
@@ -145,6 +167,18 @@ public class CmsFlexCacheConfiguration {
         return m_maxKeys;
     }
 
+    /**
+     * Returns the maximum number of bytes of direct memory used to store the output of the cached entries.<p>
+     *
+     * A value of 0 means the output of the cached entries is kept on the heap.<p>
+     *
+     * @return the maximum number of bytes of direct memory used for the cached output
+     */
+    public long getOffHeapBytes() {
+
+        return m_offHeapBytes;
+    }
+
     /**
      * Initializes the flex cache configuration with required parameters.<p>
      *
@@ -171,6 +205,19 @@ public class CmsFlexCacheConfiguration {
         setMaxKeys(Integer.parseInt(maxKeys));
     }
 
+    /**
+     * Checks if the cache entries are invalidated based on the VFS resources they were generated from.<p>
+     *
+     * If this is enabled, a publish job only removes the cache entries depending on the published resources,
+     * instead of clearing the complete cache.<p>
+     *
+     * @return true if dependency based invalidation is enabled
+     */
+    public boolean isCacheDependencies() {
+
+        return m_cacheDependencies;
+    }
+
     /**
      * Checks if flexcache is enabled or not.<p>
      *
@@ -221,6 +268,30 @@ public class CmsFlexCacheConfiguration {
         m_cacheOffline = cacheOffline;
     }
 
+    /**
+     * Enables or disables the dependency based invalidation of cache entries.<p>
+     *
+     * @param cacheDependencies the dependency based invalidation flag to set
+     */
+    public void setCacheDependencies(String cacheDependencies) {
+
+        m_cacheDependencies = Boolean.valueOf(cacheDependencies.trim()).booleanValue();
+    }
+
+    /**
+     * Sets the number of segments of the LRU cache for the cached entries.<p>
+     *
+     * @param cacheSegments the number of segments to set
+     */
+    public void setCacheSegments(String cacheSegments) {
+
+        try {
+            m_cacheSegments = Integer.parseInt(cacheSegments.trim());
+        } catch (NumberFormatException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+        }
+    }
+
     /**
      * Sets the device selector configuration.<p>
      *
@@ -287,4 +358,14 @@ public class CmsFlexCacheConfiguration {
 
         m_maxKeys = maxKeys;
     }
+
+    /**
+     * Sets the maximum number of bytes of direct memory used to store the output of the cached entries.<p>
+     *
+     * @param offHeapBytes the maximum number of bytes of direct memory, 0 keeps the output on the heap
+     */
+    public void setOffHeapBytes(String offHeapBytes) {
+
+        m_offHeapBytes = Long.parseLong(offHeapBytes.trim());
+    }
 }
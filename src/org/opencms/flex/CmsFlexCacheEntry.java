@@ -30,12 +30,14 @@ package org.opencms.flex;
 import org.opencms.cache.I_CmsLruCacheObject;
 import org.opencms.file.CmsResource;
 import org.opencms.flex.CmsFlexBucketConfiguration.BucketSet;
+import org.opencms.flex.CmsFlexOffHeapStore.OffHeapBody;
 import org.opencms.i18n.CmsMessageContainer;
 import org.opencms.jsp.util.CmsJspStandardContextBean;
 import org.opencms.main.CmsLog;
 import org.opencms.monitor.CmsMemoryMonitor;
 import org.opencms.monitor.I_CmsMemoryMonitorable;
 import org.opencms.util.CmsCollectionsGenericWrapper;
+import org.opencms.util.CmsUUID;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -45,6 +47,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletException;
 
@@ -61,7 +66,8 @@ import org.apache.commons.logging.Log;
  * A CmsFlexCacheEntry might also describe a redirect-call, but in this case
  * nothing else will be cached.<p>
  *
- * The pre-generated output is saved in <code>byte[]</code> arrays.
+ * The pre-generated output is saved in <code>byte[]</code> arrays,
+ * or in an off-heap arena once the entry has been stored in a cache with an off-heap store.
  * The include() calls are saved as Strings of the included resource name,
  * the parameters for the calls are saved in a HashMap.
  * The headers are saved in a HashMap.
@@ -97,6 +103,9 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
     /** The "last modified" date for this Flex cache entry. */
     private long m_dateLastModified;
 
+    /** The structure and resource ids of the VFS resources this entry was generated from, <code>null</code> if unknown. */
+    private Set<CmsUUID> m_dependencies;
+
     /** The list of items for this resource. */
     private List<Object> m_elements;
 
@@ -106,6 +115,15 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
     /** Pointer to the next cache entry in the LRU cache. */
     private I_CmsLruCacheObject m_next;
 
+    /** Indicates if the reference of the cache to the off-heap bodies is still held. */
+    private AtomicBoolean m_offHeapCacheReference;
+
+    /** The number of references to the off-heap bodies of this entry, <code>null</code> if the output is on the heap. */
+    private AtomicInteger m_offHeapReferences;
+
+    /** The off-heap store holding the output of this entry, <code>null</code> if the output is on the heap. */
+    private CmsFlexOffHeapStore m_offHeapStore;
+
     /** Pointer to the previous cache entry in the LRU cache. */
     private I_CmsLruCacheObject m_previous;
 
@@ -243,7 +261,7 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
     /**
      * Returns the list of data entries of this cache entry.<p>
      *
-     * Data entries are byte arrays representing some kind of output
+     * Data entries are byte arrays (or off-heap bodies) representing some kind of output
      * or Strings representing include calls to other resources.<p>
      *
      * @return the list of data elements of this cache entry
@@ -263,6 +281,16 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
         return m_bucketSet;
     }
 
+    /**
+     * Returns the structure and resource ids of the VFS resources this entry was generated from.<p>
+     *
+     * @return the ids of the resources this entry depends on, or <code>null</code> if the dependencies are unknown
+     */
+    public Set<CmsUUID> getDependencies() {
+
+        return m_dependencies;
+    }
+
     /**
      * Returns the expiration date of this cache entry,
      * this is set to the time when the entry becomes invalid.<p>
@@ -342,8 +370,10 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
     public void removeFromLruCache() {
 
         if ((m_variationMap != null) && (m_variationKey != null)) {
-            m_variationMap.remove(m_variationKey);
+            // only remove the mapping if it still points to this entry
+            m_variationMap.remove(m_variationKey, this);
         }
+        releaseCacheReference();
         if (LOG.isDebugEnabled()) {
             LOG.debug(
                 Messages.get().getBundle().key(
@@ -417,7 +447,11 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
                     }
                 } else {
                     try {
-                        res.writeToOutputStream((byte[])o, hasNoSubElements);
+                        if (o instanceof OffHeapBody) {
+                            res.writeToOutputStream((OffHeapBody)o, hasNoSubElements);
+                        } else {
+                            res.writeToOutputStream((byte[])o, hasNoSubElements);
+                        }
                     } catch (IOException e) {
                         CmsMessageContainer message = Messages.get().container(
                             Messages.LOG_FLEXCACHEKEY_NOT_FOUND_1,
@@ -443,6 +477,24 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
         m_bucketSet = bucketSet;
     }
 
+    /**
+     * Sets the structure and resource ids of the VFS resources this entry was generated from.<p>
+     *
+     * This must be called before the entry is added to the cache, since the dependencies
+     * are included in the cache costs of the entry.<p>
+     *
+     * @param dependencies the ids of the resources this entry depends on, or <code>null</code> if unknown
+     */
+    public void setDependencies(Set<CmsUUID> dependencies) {
+
+        m_dependencies = dependencies;
+        if (dependencies != null) {
+            for (CmsUUID id : dependencies) {
+                m_byteSize += CmsMemoryMonitor.getMemorySize(id);
+            }
+        }
+    }
+
     /**
      * Sets the expiration date of this Flex cache entry exactly to the
      * given time.<p>
@@ -588,6 +640,8 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
                     str += "" + count + " - <cms:include target=" + o + ">\n";
                 } else if (o instanceof byte[]) {
                     str += "" + count + " - <![CDATA[" + new String((byte[])o) + "]]>\n";
+                } else if (o instanceof OffHeapBody) {
+                    str += "" + count + " - <![CDATA[" + o + "]]>\n";
                 } else {
                     str += "<!--[" + o.toString() + "]-->";
                 }
@@ -598,6 +652,104 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
         return str;
     }
 
+    /**
+     * Acquires a reference to the off-heap bodies of this entry, which prevents them from being freed
+     * while the entry is written to a response.<p>
+     *
+     * Every successful call must be followed by a call to {@link #releaseBodies()}.<p>
+     *
+     * @return <code>false</code> if the off-heap bodies have already been freed, so the entry can not be used anymore
+     */
+    boolean acquireBodies() {
+
+        if (m_offHeapReferences == null) {
+            return true;
+        }
+        while (true) {
+            int references = m_offHeapReferences.get();
+            if (references <= 0) {
+                return false;
+            }
+            if (m_offHeapReferences.compareAndSet(references, references + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Moves the output of this completed entry to the given off-heap store.<p>
+     *
+     * This must be called before the entry is made visible to other threads by adding it to the cache.
+     * The LRU cache costs of the entry are not changed.<p>
+     *
+     * @param store the off-heap store
+     *
+     * @return <code>true</code> if the output was moved, <code>false</code> if it stays on the heap
+     */
+    boolean moveToOffHeap(CmsFlexOffHeapStore store) {
+
+        if (!m_completed || (m_elements == null) || (m_offHeapStore != null)) {
+            return false;
+        }
+        List<Object> elements = new ArrayList<Object>(m_elements.size());
+        List<OffHeapBody> bodies = new ArrayList<OffHeapBody>();
+        for (Object o : m_elements) {
+            if (o instanceof byte[]) {
+                OffHeapBody body = store.store((byte[])o);
+                if (body == null) {
+                    // arena is full, keep the output of this entry on the heap
+                    for (OffHeapBody stored : bodies) {
+                        store.free(stored);
+                    }
+                    return false;
+                }
+                bodies.add(body);
+                elements.add(body);
+            } else {
+                elements.add(o);
+            }
+        }
+        if (bodies.isEmpty()) {
+            return false;
+        }
+        m_elements = Collections.unmodifiableList(elements);
+        m_offHeapStore = store;
+        m_offHeapReferences = new AtomicInteger(1);
+        m_offHeapCacheReference = new AtomicBoolean(true);
+        return true;
+    }
+
+    /**
+     * Releases a reference to the off-heap bodies of this entry.<p>
+     *
+     * The off-heap memory is given back to the store when the last reference is released.<p>
+     *
+     * @see #acquireBodies()
+     */
+    void releaseBodies() {
+
+        if ((m_offHeapReferences != null) && (m_offHeapReferences.decrementAndGet() == 0)) {
+            for (Object o : m_elements) {
+                if (o instanceof OffHeapBody) {
+                    m_offHeapStore.free((OffHeapBody)o);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the reference of the cache to the off-heap bodies of this entry.<p>
+     *
+     * This is called when the entry is removed from the cache, or could not be added to it.
+     * The off-heap memory is freed as soon as no request is writing it anymore.<p>
+     */
+    void releaseCacheReference() {
+
+        if ((m_offHeapCacheReference != null) && m_offHeapCacheReference.getAndSet(false)) {
+            releaseBodies();
+        }
+    }
+
     /**
      * Clones the attribute instances if possible.<p>
      *
@@ -0,0 +1,326 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import org.opencms.cache.I_CmsLruCache;
+import org.opencms.cache.I_CmsLruCacheObject;
+import org.opencms.flex.CmsFlexCache.CmsFlexCacheVariation;
+import org.opencms.main.CmsLog;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * Concurrent two-level index of the Flex cache (resource key -> variation -> entry).<p>
+ *
+ * The first level maps resource names (including the online / offline suffix) to {@link CmsFlexCacheVariation}
+ * objects and is bounded by the configured maximum number of keys. The second level is the concurrent variation
+ * map of each {@link CmsFlexCacheVariation}.<p>
+ *
+ * Lookups on both levels do not lock, so cache hits are never blocked by writers, eviction or clearing.
+ * Iteration over the index is weakly consistent, i.e. it never throws a {@link java.util.ConcurrentModificationException}
+ * and reflects the state of the index at some point at or after the creation of the iterator.<p>
+ *
+ * The cost based eviction of the entries is still handled by the {@link I_CmsLruCache} given in the constructor.
+ * If a resource key is evicted from the index because the maximum number of keys is reached,
+ * all entries of that key are removed from the LRU cache as well.<p>
+ *
+ * Adding an entry to the variation map and to the LRU cache is atomic with respect to removing the entries
+ * of the same {@link CmsFlexCacheVariation}, so an entry is either in both or in none of them after the index
+ * has been cleared. Only the variations being cleared are locked, so clearing e.g. the offline entries
+ * never blocks adding online entries.<p>
+ */
+public class CmsFlexCacheIndex {
+
+    /** The concurrency level of the first index level. */
+    private static final int CONCURRENCY_LEVEL = 16;
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsFlexCacheIndex.class);
+
+    /** The LRU cache organizing the entries. */
+    private I_CmsLruCache m_entryCache;
+
+    /** The first level of the index, mapping resource names to variations. */
+    private Cache<String, CmsFlexCacheVariation> m_keyCache;
+
+    /** Map view of the first index level. */
+    private ConcurrentMap<String, CmsFlexCacheVariation> m_keyMap;
+
+    /** The maximum number of resource keys. */
+    private int m_maxKeys;
+
+    /**
+     * Creates a new index.<p>
+     *
+     * @param maxKeys the maximum number of resource keys
+     * @param entryCache the LRU cache organizing the entries
+     */
+    public CmsFlexCacheIndex(int maxKeys, I_CmsLruCache entryCache) {
+
+        m_entryCache = entryCache;
+        m_maxKeys = maxKeys;
+        m_keyCache = CacheBuilder.newBuilder().concurrencyLevel(CONCURRENCY_LEVEL).maximumSize(maxKeys).removalListener(
+            new RemovalListener<String, CmsFlexCacheVariation>() {
+
+                public void onRemoval(RemovalNotification<String, CmsFlexCacheVariation> notification) {
+
+                    if (notification.wasEvicted() && (notification.getValue() != null)) {
+                        // ensure that all variations referenced by this key are released if the key is evicted
+                        removeEntries(notification.getValue());
+                    }
+                }
+            }).build();
+        m_keyMap = m_keyCache.asMap();
+    }
+
+    /**
+     * Returns a map view of the first index level.<p>
+     *
+     * Iteration over the map is weakly consistent.<p>
+     *
+     * @return a map view of the first index level
+     */
+    public Map<String, CmsFlexCacheVariation> asMap() {
+
+        return m_keyMap;
+    }
+
+    /**
+     * Removes all keys and entries from the index.<p>
+     */
+    public void clear() {
+
+        // entries added to the removed variations concurrently are released by the check in put()
+        m_keyMap.clear();
+        m_entryCache.clear();
+    }
+
+    /**
+     * Removes all entries from the index for which the resource name ends with the given suffix.<p>
+     *
+     * @param suffix the suffix of the resource names to clear, or <code>null</code> to clear all resource names
+     * @param entriesOnly if <code>true</code>, only the entries will be removed, otherwise the keys will be removed as well
+     *
+     * @return the number of removed entries
+     */
+    public int clearEntries(String suffix, boolean entriesOnly) {
+
+        int removed = 0;
+        for (Map.Entry<String, CmsFlexCacheVariation> entry : m_keyMap.entrySet()) {
+            if ((suffix == null) || entry.getKey().endsWith(suffix)) {
+                CmsFlexCacheVariation variation = entry.getValue();
+                if (!entriesOnly) {
+                    // remove the key first, so that entries added to the removed variation are released by put()
+                    m_keyMap.remove(entry.getKey(), variation);
+                }
+                removed += removeEntries(variation);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Looks up the entry for the given resource name and variation.<p>
+     *
+     * @param resource the resource name
+     * @param variation the variation
+     *
+     * @return the entry, or <code>null</code> if there is no such entry
+     */
+    public CmsFlexCacheEntry getEntry(String resource, String variation) {
+
+        CmsFlexCacheVariation v = m_keyMap.get(resource);
+        if (v == null) {
+            return null;
+        }
+        return (CmsFlexCacheEntry)v.m_map.get(variation);
+    }
+
+    /**
+     * Returns the maximum number of resource keys in the index.<p>
+     *
+     * @return the maximum number of resource keys in the index
+     */
+    public int getMaxKeys() {
+
+        return m_maxKeys;
+    }
+
+    /**
+     * Returns the variations for the given resource name.<p>
+     *
+     * @param resource the resource name
+     *
+     * @return the variations for the resource name, or <code>null</code> if the resource name is not in the index
+     */
+    public CmsFlexCacheVariation getVariations(String resource) {
+
+        return m_keyMap.get(resource);
+    }
+
+    /**
+     * Returns the variations for the given key, creating them if the key is not in the index yet.<p>
+     *
+     * @param key the Flex cache key
+     *
+     * @return the variations for the key
+     */
+    public CmsFlexCacheVariation getOrCreateVariations(CmsFlexCacheKey key) {
+
+        CmsFlexCacheVariation v = m_keyMap.get(key.getResource());
+        if (v == null) {
+            CmsFlexCacheVariation newVariation = new CmsFlexCacheVariation(key);
+            v = m_keyMap.putIfAbsent(key.getResource(), newVariation);
+            if (v == null) {
+                v = newVariation;
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHE_ADD_KEY_1, key.getResource()));
+                }
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Returns true if the index contains no keys.<p>
+     *
+     * @return true if the index contains no keys
+     */
+    public boolean isEmpty() {
+
+        return m_keyMap.isEmpty();
+    }
+
+    /**
+     * Returns the resource names in the index.<p>
+     *
+     * The returned set is a weakly consistent view of the index.<p>
+     *
+     * @return the resource names in the index
+     */
+    public Set<String> keySet() {
+
+        return m_keyMap.keySet();
+    }
+
+    /**
+     * Adds an entry for the given key and variation.<p>
+     *
+     * If there already is an entry for the variation, the existing entry is kept and the new one is discarded.<p>
+     *
+     * @param key the Flex cache key
+     * @param variation the variation
+     * @param entry the entry to add
+     *
+     * @return true if the entry was added
+     */
+    public boolean put(CmsFlexCacheKey key, String variation, CmsFlexCacheEntry entry) {
+
+        CmsFlexCacheVariation v = getOrCreateVariations(key);
+        Map<String, I_CmsLruCacheObject> map = v.m_map;
+        I_CmsLruCacheObject existing = map.get(variation);
+        if (existing != null) {
+            // keep the existing entry, but update its LRU state
+            m_entryCache.touch(existing);
+            return false;
+        }
+        synchronized (v) {
+            // register the entry in the variation map before adding it to the LRU cache,
+            // so that an immediate eviction by the LRU cache can remove it from the map again
+            entry.setVariationData(variation, map);
+            if (map.putIfAbsent(variation, entry) != null) {
+                // another thread was faster
+                return false;
+            }
+            if (!m_entryCache.add(entry)) {
+                map.remove(variation, entry);
+                return false;
+            }
+        }
+        // checked without holding the lock of the variation, since looking up the key may evict other keys
+        if (m_keyMap.get(key.getResource()) != v) {
+            // the key has been removed from the index in the meantime, the entry can not be found anymore
+            m_entryCache.remove(entry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the given entry from the index and the LRU cache.<p>
+     *
+     * @param entry the entry to remove
+     */
+    public void remove(CmsFlexCacheEntry entry) {
+
+        m_entryCache.remove(entry);
+    }
+
+    /**
+     * Returns the number of keys in the index.<p>
+     *
+     * @return the number of keys in the index
+     */
+    public int size() {
+
+        return m_keyMap.size();
+    }
+
+    /**
+     * Removes all entries of the given variations from the LRU cache and the variation map.<p>
+     *
+     * Holds the lock of the variations, so no entry is added to them at the same time.<p>
+     *
+     * @param variation the variations
+     *
+     * @return the number of removed entries
+     */
+    int removeEntries(CmsFlexCacheVariation variation) {
+
+        int removed = 0;
+        Map<String, I_CmsLruCacheObject> map = variation.m_map;
+        synchronized (variation) {
+            for (Map.Entry<String, I_CmsLruCacheObject> entry : map.entrySet()) {
+                // removing the entry from the LRU cache also removes it from the variation map
+                m_entryCache.remove(entry.getValue());
+                map.remove(entry.getKey(), entry.getValue());
+                removed++;
+            }
+        }
+        return removed;
+    }
+}
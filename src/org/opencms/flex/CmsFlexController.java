@@ -32,6 +32,7 @@ import org.opencms.file.CmsObject;
 import org.opencms.file.CmsResource;
 import org.opencms.main.CmsLog;
 import org.opencms.util.CmsRequestUtil;
+import org.opencms.util.CmsUUID;
 
 import java.util.HashSet;
 import java.util.List;
@@ -429,6 +430,23 @@ public class CmsFlexController {
         }
     }
 
+    /**
+     * Adds the given ids to the dependencies of the current include level of this request.<p>
+     *
+     * This is used for included elements served from the Flex cache, whose resources are not read again.<p>
+     *
+     * @param dependencies the structure and resource ids to add, <code>null</code> if they are unknown
+     */
+    public void addDependencies(Set<CmsUUID> dependencies) {
+
+        int pos = m_flexContextInfoList.size() - 1;
+        if (pos < 0) {
+            // ensure a valid position is used
+            return;
+        }
+        (m_flexContextInfoList.get(pos)).addDependencies(dependencies);
+    }
+
     /**
      * Clears all data of this controller.<p>
      */
@@ -539,6 +557,23 @@ public class CmsFlexController {
         return (m_flexContextInfoList.get(pos)).getDateLastModified();
     }
 
+    /**
+     * Returns the structure and resource ids of all resources read during the current include level of this request.<p>
+     *
+     * The returned set is a copy and may be modified by the caller.<p>
+     *
+     * @return the ids of the resources read, or <code>null</code> if they are unknown
+     */
+    public Set<CmsUUID> getDependencies() {
+
+        int pos = m_flexContextInfoList.size() - 1;
+        if (pos < 0) {
+            // no context info available, so the dependencies are unknown
+            return null;
+        }
+        return (m_flexContextInfoList.get(pos)).getDependencies();
+    }
+
     /**
      * Gets the information about where to redirect to.
      *
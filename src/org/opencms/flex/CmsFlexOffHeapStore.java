@@ -0,0 +1,404 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import org.opencms.main.CmsLog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Off-heap slab arena for the output bodies of Flex cache entries.<p>
+ *
+ * The memory is allocated in slabs of direct memory. Each slab is split into chunks of one of the
+ * {@link #CHUNK_SIZES} size classes, from {@link #MIN_CHUNK_SIZE} up to {@link #CHUNK_SIZE} bytes.
+ * A stored body occupies as many full chunks of the largest class as needed, plus one chunk of the smallest class
+ * that holds the remaining bytes, so small fragments do not waste a full chunk of the largest class.
+ * The chunks are returned to the free list of their class when the body is freed.
+ * Slabs are allocated lazily until the configured maximum size is reached, they are never given back to the
+ * operating system, but reused for other bodies.<p>
+ *
+ * This keeps large amounts of long living cached output out of the Java heap, so it does not have to be
+ * traversed and copied by the garbage collector.<p>
+ *
+ * @see org.opencms.flex.CmsFlexCacheEntry
+ */
+public class CmsFlexOffHeapStore {
+
+    /**
+     * The output body of a cache entry stored in the off-heap arena.<p>
+     */
+    public static final class OffHeapBody {
+
+        /** The chunks holding the data. */
+        private ByteBuffer[] m_chunks;
+
+        /** The length of the data in bytes. */
+        private int m_length;
+
+        /**
+         * Creates a new body.<p>
+         *
+         * @param chunks the chunks holding the data
+         * @param length the length of the data in bytes
+         */
+        OffHeapBody(ByteBuffer[] chunks, int length) {
+
+            m_chunks = chunks;
+            m_length = length;
+        }
+
+        /**
+         * Returns the number of bytes used by this body in the arena.<p>
+         *
+         * @return the number of bytes used by this body in the arena
+         */
+        public int getCapacity() {
+
+            int capacity = 0;
+            for (ByteBuffer chunk : m_chunks) {
+                capacity += chunk.capacity();
+            }
+            return capacity;
+        }
+
+        /**
+         * Returns the length of the data in bytes.<p>
+         *
+         * @return the length of the data in bytes
+         */
+        public int getLength() {
+
+            return m_length;
+        }
+
+        /**
+         * Copies the data of this body into a new byte array.<p>
+         *
+         * @return the data of this body
+         */
+        public byte[] toByteArray() {
+
+            byte[] result = new byte[m_length];
+            int offset = 0;
+            for (ByteBuffer chunk : m_chunks) {
+                int length = Math.min(chunk.capacity(), m_length - offset);
+                chunk.duplicate().get(result, offset, length);
+                offset += length;
+            }
+            return result;
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+
+            return new String(toByteArray());
+        }
+
+        /**
+         * Writes the data of this body to the given stream.<p>
+         *
+         * The servlet API offers no way to write a buffer directly, so the data is transferred
+         * chunk by chunk through a small per thread buffer instead of creating a heap copy of the whole body.<p>
+         *
+         * @param out the stream to write to
+         *
+         * @throws IOException in case writing to the stream fails
+         */
+        public void writeTo(OutputStream out) throws IOException {
+
+            byte[] buffer = TRANSFER_BUFFER.get();
+            int offset = 0;
+            for (ByteBuffer chunk : m_chunks) {
+                int length = Math.min(chunk.capacity(), m_length - offset);
+                chunk.duplicate().get(buffer, 0, length);
+                out.write(buffer, 0, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * Returns the chunks holding the data.<p>
+         *
+         * @return the chunks holding the data
+         */
+        ByteBuffer[] getChunks() {
+
+            return m_chunks;
+        }
+    }
+
+    /** The size of a chunk of the largest size class in bytes. */
+    public static final int CHUNK_SIZE = 4096;
+
+    /** The number of chunks of the largest size class per slab. */
+    public static final int CHUNKS_PER_SLAB = 256;
+
+    /** The size of a chunk of the smallest size class in bytes. */
+    public static final int MIN_CHUNK_SIZE = 64;
+
+    /** The chunk sizes of the size classes in bytes, in ascending order. */
+    public static final int[] CHUNK_SIZES = {MIN_CHUNK_SIZE, 128, 256, 512, 1024, 2048, CHUNK_SIZE};
+
+    /** The size of a single slab in bytes. */
+    public static final int SLAB_SIZE = CHUNK_SIZE * CHUNKS_PER_SLAB;
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsFlexOffHeapStore.class);
+
+    /** The per thread buffer used to transfer the data to an output stream. */
+    static final ThreadLocal<byte[]> TRANSFER_BUFFER = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+    /** The number of bytes allocated in slabs. */
+    private AtomicLong m_allocatedBytes;
+
+    /** The chunks currently not in use, by size class. */
+    private ConcurrentLinkedQueue<ByteBuffer>[] m_freeChunks;
+
+    /** The maximum number of bytes to allocate. */
+    private long m_maxBytes;
+
+    /** Lock used when allocating a new slab. */
+    private Object m_slabLock;
+
+    /** The number of bytes currently used by stored bodies. */
+    private AtomicLong m_usedBytes;
+
+    /**
+     * Creates a new off-heap store.<p>
+     *
+     * @param maxBytes the maximum number of bytes to allocate, rounded down to a multiple of {@link #SLAB_SIZE}
+     */
+    @SuppressWarnings("unchecked")
+    public CmsFlexOffHeapStore(long maxBytes) {
+
+        m_maxBytes = (maxBytes / SLAB_SIZE) * SLAB_SIZE;
+        m_allocatedBytes = new AtomicLong();
+        m_usedBytes = new AtomicLong();
+        m_freeChunks = new ConcurrentLinkedQueue[CHUNK_SIZES.length];
+        for (int i = 0; i < CHUNK_SIZES.length; i++) {
+            m_freeChunks[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+        }
+        m_slabLock = new Object();
+    }
+
+    /**
+     * Returns the number of bytes a body of the given length occupies in the arena.<p>
+     *
+     * @param length the length of the body in bytes
+     *
+     * @return the number of bytes the body occupies
+     */
+    public static int getCapacity(int length) {
+
+        int capacity = (length / CHUNK_SIZE) * CHUNK_SIZE;
+        int rest = length % CHUNK_SIZE;
+        if (rest > 0) {
+            capacity += CHUNK_SIZES[getSizeClass(rest)];
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the index of the smallest size class with chunks of at least the given number of bytes.<p>
+     *
+     * @param length the number of bytes, at most {@link #CHUNK_SIZE}
+     *
+     * @return the index of the size class
+     */
+    static int getSizeClass(int length) {
+
+        int sizeClass = 0;
+        while (CHUNK_SIZES[sizeClass] < length) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    /**
+     * Returns the number of bytes allocated in slabs.<p>
+     *
+     * @return the number of bytes allocated in slabs
+     */
+    public long getAllocatedBytes() {
+
+        return m_allocatedBytes.get();
+    }
+
+    /**
+     * Returns the maximum number of bytes this store allocates.<p>
+     *
+     * @return the maximum number of bytes this store allocates
+     */
+    public long getMaxBytes() {
+
+        return m_maxBytes;
+    }
+
+    /**
+     * Returns the number of bytes currently used by stored bodies.<p>
+     *
+     * @return the number of bytes currently used by stored bodies
+     */
+    public long getUsedBytes() {
+
+        return m_usedBytes.get();
+    }
+
+    /**
+     * Returns the chunks of the given body to the arena.<p>
+     *
+     * The body must not be used anymore after calling this method.<p>
+     *
+     * @param body the body to free
+     */
+    public void free(OffHeapBody body) {
+
+        int capacity = 0;
+        for (ByteBuffer chunk : body.getChunks()) {
+            release(chunk);
+            capacity += chunk.capacity();
+        }
+        m_usedBytes.addAndGet(-capacity);
+    }
+
+    /**
+     * Copies the given bytes into the arena.<p>
+     *
+     * @param bytes the bytes to store
+     *
+     * @return the stored body, or <code>null</code> if there is not enough free memory in the arena
+     */
+    public OffHeapBody store(byte[] bytes) {
+
+        List<ByteBuffer> chunks = new ArrayList<ByteBuffer>((bytes.length / CHUNK_SIZE) + 1);
+        int capacity = 0;
+        int offset = 0;
+        while (offset < bytes.length) {
+            ByteBuffer chunk = acquire(getSizeClass(Math.min(CHUNK_SIZE, bytes.length - offset)));
+            if (chunk == null) {
+                // arena is exhausted, give back what we got so far
+                for (ByteBuffer acquired : chunks) {
+                    release(acquired);
+                }
+                return null;
+            }
+            int length = Math.min(chunk.capacity(), bytes.length - offset);
+            ByteBuffer target = chunk.duplicate();
+            target.clear();
+            target.put(bytes, offset, length);
+            chunks.add(chunk);
+            capacity += chunk.capacity();
+            offset += length;
+        }
+        m_usedBytes.addAndGet(capacity);
+        return new OffHeapBody(chunks.toArray(new ByteBuffer[chunks.size()]), bytes.length);
+    }
+
+    /**
+     * Takes a free chunk, preferably of the given size class.<p>
+     *
+     * If there is no chunk of that class left and no slab can be allocated for it, a chunk of the next larger
+     * class is used, and if there is none either, the largest available smaller chunk.<p>
+     *
+     * @param sizeClass the preferred size class
+     *
+     * @return the chunk, or <code>null</code> if the arena is exhausted
+     */
+    private ByteBuffer acquire(int sizeClass) {
+
+        ByteBuffer chunk = m_freeChunks[sizeClass].poll();
+        while ((chunk == null) && allocateSlab(sizeClass)) {
+            chunk = m_freeChunks[sizeClass].poll();
+        }
+        for (int i = sizeClass + 1; (chunk == null) && (i < CHUNK_SIZES.length); i++) {
+            chunk = m_freeChunks[i].poll();
+        }
+        for (int i = sizeClass - 1; (chunk == null) && (i >= 0); i--) {
+            chunk = m_freeChunks[i].poll();
+        }
+        return chunk;
+    }
+
+    /**
+     * Allocates a new slab for the given size class and adds its chunks to the free list of that class,
+     * if the maximum size is not yet reached.<p>
+     *
+     * @param sizeClass the size class
+     *
+     * @return <code>true</code> if a slab was allocated, or another thread made chunks available in the meantime
+     */
+    private boolean allocateSlab(int sizeClass) {
+
+        ConcurrentLinkedQueue<ByteBuffer> freeChunks = m_freeChunks[sizeClass];
+        synchronized (m_slabLock) {
+            if (!freeChunks.isEmpty()) {
+                return true;
+            }
+            if ((m_allocatedBytes.get() + SLAB_SIZE) > m_maxBytes) {
+                return false;
+            }
+            ByteBuffer slab;
+            try {
+                slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+            } catch (OutOfMemoryError e) {
+                // direct memory limit of the JVM reached
+                LOG.warn(e.getLocalizedMessage(), e);
+                return false;
+            }
+            int chunkSize = CHUNK_SIZES[sizeClass];
+            for (int i = 0; i < (SLAB_SIZE / chunkSize); i++) {
+                slab.limit((i + 1) * chunkSize);
+                slab.position(i * chunkSize);
+                freeChunks.offer(slab.slice());
+            }
+            m_allocatedBytes.addAndGet(SLAB_SIZE);
+            return true;
+        }
+    }
+
+    /**
+     * Returns a chunk to the free list of its size class.<p>
+     *
+     * @param chunk the chunk
+     */
+    private void release(ByteBuffer chunk) {
+
+        m_freeChunks[getSizeClass(chunk.capacity())].offer(chunk);
+    }
+}
@@ -28,6 +28,10 @@
 package org.opencms.flex;
 
 import org.opencms.file.CmsResource;
+import org.opencms.util.CmsUUID;
+
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Contains information about the OpenCms request context required by the
@@ -38,16 +42,31 @@ import org.opencms.file.CmsResource;
  * Information about the "last modified" and "expire" times of VFS resources are
  * stored in this Object.<p>
  *
+ * In addition, the structure and resource ids of all VFS resources read in the context are collected,
+ * so that Flex cache entries can be invalidated selectively if one of these resources is published.
+ * Reads that can not be described by single resources are recorded as well: properties searched on
+ * the parent folders add {@link #DEPENDENCY_FOLDER_PROPERTIES}, and search index queries make the
+ * dependencies unknown.<p>
+ *
  * @since 6.0.0
  */
 public class CmsFlexRequestContextInfo {
 
+    /** Dependency id for properties searched on parent folders, affected by publishing any folder. */
+    public static final CmsUUID DEPENDENCY_FOLDER_PROPERTIES = new CmsUUID("00000000-0000-0000-0000-00000000f01d");
+
+    /** The maximum number of collected dependencies, if more resources are read the dependencies are considered unknown. */
+    public static final int MAX_DEPENDENCIES = 2000;
+
     /** The currently calculated "expires" date for this request context .*/
     private long m_dateExpires;
 
     /** The currently calculated "last modified" date for this request context.  */
     private long m_dateLastModified;
 
+    /** The structure and resource ids of the resources read in this request context, <code>null</code> if unknown. */
+    private Set<CmsUUID> m_dependencies;
+
     /**
      * Public constructor.<p>
      */
@@ -55,6 +74,49 @@ public class CmsFlexRequestContextInfo {
 
         // by default the expiration date is the max long value
         m_dateExpires = CmsResource.DATE_EXPIRED_DEFAULT;
+        m_dependencies = new HashSet<CmsUUID>();
+    }
+
+    /**
+     * Adds the given ids to the dependencies of this context.<p>
+     *
+     * @param dependencies the structure and resource ids to add, <code>null</code> if they are unknown
+     */
+    public void addDependencies(Set<CmsUUID> dependencies) {
+
+        if (dependencies == null) {
+            m_dependencies = null;
+        } else if (m_dependencies != null) {
+            m_dependencies.addAll(dependencies);
+            checkDependencyLimit();
+        }
+    }
+
+    /**
+     * Adds the structure and resource id of the given resource to the dependencies of this context.<p>
+     *
+     * @param resource the resource to add
+     */
+    public void addDependency(CmsResource resource) {
+
+        if (m_dependencies != null) {
+            m_dependencies.add(resource.getStructureId());
+            m_dependencies.add(resource.getResourceId());
+            checkDependencyLimit();
+        }
+    }
+
+    /**
+     * Records that properties have been searched on the parent folders in this context.<p>
+     *
+     * The property values found depend on the properties of all ancestor folders,
+     * which are not necessarily read as resources in this context.<p>
+     */
+    public void addFolderPropertiesDependency() {
+
+        if (m_dependencies != null) {
+            m_dependencies.add(DEPENDENCY_FOLDER_PROPERTIES);
+        }
     }
 
     /**
@@ -67,6 +129,19 @@ public class CmsFlexRequestContextInfo {
         return m_dateExpires;
     }
 
+    /**
+     * Returns a copy of the structure and resource ids of all resources read in this context.<p>
+     *
+     * @return the ids of the resources read in this context, or <code>null</code> if they are unknown because too many resources were read
+     */
+    public Set<CmsUUID> getDependencies() {
+
+        if (m_dependencies == null) {
+            return null;
+        }
+        return new HashSet<CmsUUID>(m_dependencies);
+    }
+
     /**
      * Returns the "last modified" date for this context.<p>
      *
@@ -77,6 +152,16 @@ public class CmsFlexRequestContextInfo {
         return m_dateLastModified;
     }
 
+    /**
+     * Returns if the dependencies of this context are still known.<p>
+     *
+     * @return <code>true</code> if the dependencies of this context are still known
+     */
+    public boolean hasKnownDependencies() {
+
+        return m_dependencies != null;
+    }
+
     /**
      * Merges this context info with the values from the other context info.<p>
      *
@@ -86,6 +171,23 @@ public class CmsFlexRequestContextInfo {
 
         updateDateLastModified(other.getDateLastModified());
         updateDateExpires(other.getDateExpires());
+        if ((m_dependencies != null) && (other.m_dependencies != null)) {
+            m_dependencies.addAll(other.m_dependencies);
+            checkDependencyLimit();
+        } else {
+            m_dependencies = null;
+        }
+    }
+
+    /**
+     * Marks the dependencies of this context as unknown.<p>
+     *
+     * This must be called if the output depends on resources which are not read as such,
+     * e.g. the results of a search index query which may change with any published resource.<p>
+     */
+    public void setDependenciesUnknown() {
+
+        m_dependencies = null;
     }
 
     /**
@@ -150,5 +252,17 @@ public class CmsFlexRequestContextInfo {
         // now use both release and expiration date from the resource to update the expires info
         updateDateExpires(resource.getDateReleased());
         updateDateExpires(resource.getDateExpired());
+        // finally remember the resource as dependency
+        addDependency(resource);
+    }
+
+    /**
+     * Discards the collected dependencies if the limit is exceeded.<p>
+     */
+    private void checkDependencyLimit() {
+
+        if ((m_dependencies != null) && (m_dependencies.size() > MAX_DEPENDENCIES)) {
+            m_dependencies = null;
+        }
     }
 }
@@ -35,10 +35,12 @@ import org.opencms.loader.I_CmsResourceLoader;
 import org.opencms.main.CmsException;
 import org.opencms.main.CmsLog;
 import org.opencms.main.OpenCms;
+import org.opencms.util.CmsUUID;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
@@ -317,6 +319,7 @@ public class CmsFlexRequestDispatcher implements RequestDispatcher {
                                     m_vfsTarget));
                         }
                         controller.updateDates(entry.getDateLastModified(), entry.getDateExpires());
+                        controller.addDependencies(entry.getDependencies());
                         entry.service(w_req, w_res);
                     } catch (CmsException e) {
                         Throwable t;
@@ -331,6 +334,8 @@ public class CmsFlexRequestDispatcher implements RequestDispatcher {
                                 Messages.ERR_FLEXREQUESTDISPATCHER_ERROR_LOADING_RESOURCE_FROM_CACHE_1,
                                 m_vfsTarget),
                             t);
+                    } finally {
+                        entry.releaseBodies();
                     }
                 } else {
                     // cache is on and resource is not yet cached, so we need to read the cache key for the response
@@ -468,6 +473,13 @@ public class CmsFlexRequestDispatcher implements RequestDispatcher {
                         entry.setDateLastModified(controller.getDateLastModified());
                         entry.setDateExpires(controller.getDateExpires());
                     }
+                    // remember the resources the entry was generated from, including the included resource itself
+                    Set<CmsUUID> dependencies = controller.getDependencies();
+                    if (dependencies != null) {
+                        dependencies.add(resource.getStructureId());
+                        dependencies.add(resource.getResourceId());
+                    }
+                    entry.setDependencies(dependencies);
                     cache.put(w_res.getCmsCacheKey(), entry, variation, w_req.getCmsCacheKey());
                 } else if (!ignore) {
                     // result can not be cached, do not use "last modified" optimization
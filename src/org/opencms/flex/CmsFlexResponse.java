@@ -28,6 +28,7 @@
 package org.opencms.flex;
 
 import org.opencms.flex.CmsFlexController.RedirectInfo;
+import org.opencms.flex.CmsFlexOffHeapStore.OffHeapBody;
 import org.opencms.jsp.util.CmsJspStandardContextBean;
 import org.opencms.main.CmsIllegalArgumentException;
 import org.opencms.main.CmsLog;
@@ -1018,6 +1019,40 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
         m_suspended = value;
     }
 
+    /**
+     * Writes an off-heap body to the current output stream,
+     * this method should be called from CmsFlexCacheEntry.service() only.<p>
+     *
+     * The body is written chunk by chunk, without creating a heap copy of the whole body,
+     * unless the bytes are needed as the result of a buffered "leaf" entry.<p>
+     *
+     * @param body the off-heap body to write
+     * @param useArray indicates that the body is the only output of the cached entry
+     *
+     * @throws IOException in case something goes wrong while writing to the stream
+     */
+    void writeToOutputStream(OffHeapBody body, boolean useArray) throws IOException {
+
+        if (isSuspended()) {
+            return;
+        }
+        if (m_writeOnlyToBuffer) {
+            if (useArray) {
+                // the parent needs the bytes of this "leaf" as an array anyway
+                m_cacheBytes = body.toByteArray();
+            } else {
+                if (m_out == null) {
+                    initStream();
+                }
+                body.writeTo(m_out);
+            }
+        } else {
+            // The request is not buffered, so we can write directly to it's parents output stream
+            body.writeTo(m_res.getOutputStream());
+            m_res.getOutputStream().flush();
+        }
+    }
+
     /**
      * Writes some bytes to the current output stream,
      * this method should be called from CmsFlexCacheEntry.service() only.<p>
@@ -30,6 +30,8 @@ package org.opencms.importexport;
 import org.opencms.configuration.CmsConfigurationManager;
 import org.opencms.configuration.CmsParameterConfiguration;
 import org.opencms.db.CmsDbEntryNotFoundException;
+import org.opencms.db.CmsSqlBatch;
+import org.opencms.db.CmsSqlBatch.CmsSqlBatchFailure;
 import org.opencms.db.log.CmsLogEntry;
 import org.opencms.file.CmsDataAccessException;
 import org.opencms.file.CmsFile;
@@ -537,6 +539,9 @@ public class CmsImportVersion10 implements I_CmsImport {
     /** The source value. */
     protected String m_source;
 
+    /** The batch collecting the database writes of the import. */
+    protected CmsSqlBatch m_sqlBatch;
+
     /** Possible exception during xml parsing. */
     protected Throwable m_throwable;
 
@@ -1605,6 +1610,9 @@ public class CmsImportVersion10 implements I_CmsImport {
 
         InputStream stream = null;
         m_helper = new CmsImportHelper(m_parameters);
+        // batch the database writes of the import
+        m_sqlBatch = new CmsSqlBatch();
+        cms.getRequestContext().setAttribute(CmsSqlBatch.ATTR_SQL_BATCH, m_sqlBatch);
         try {
             m_helper.openFile();
             m_helper.cacheDtdSystemId(DTD_LOCATION, DTD_FILENAME, CmsConfigurationManager.DEFAULT_DTD_PREFIX);
@@ -1622,6 +1630,10 @@ public class CmsImportVersion10 implements I_CmsImport {
             }
             getReport().println(ioe);
         } finally {
+            cms.getRequestContext().removeAttribute(CmsSqlBatch.ATTR_SQL_BATCH);
+            m_sqlBatch.close();
+            reportBatchFailures();
+            m_sqlBatch = null;
             try {
                 if (stream != null) {
                     stream.close();
@@ -2198,6 +2210,7 @@ public class CmsImportVersion10 implements I_CmsImport {
             importResource();
             importAccessControlEntries();
             increaseCounter();
+            reportBatchFailures();
         } finally {
             m_destination = null;
             m_source = null;
@@ -3608,6 +3621,23 @@ public class CmsImportVersion10 implements I_CmsImport {
         return false;
     }
 
+    /**
+     * Reports the failed database writes of the import as import errors.<p>
+     *
+     * The writes are executed in batches, so a failure is reported with the names of all resources
+     * written by the failed batch, which may have been imported before the current resource.<p>
+     */
+    protected void reportBatchFailures() {
+
+        if (m_sqlBatch == null) {
+            return;
+        }
+        for (CmsSqlBatchFailure failure : m_sqlBatch.takeFailures()) {
+            getReport().println(failure.getException());
+            getReport().addError(failure.getException());
+        }
+    }
+
     /**
      * Fills the unset fields for an imported resource with default values.<p>
      *
@@ -42,13 +42,24 @@ import org.opencms.scheduler.jobs.CmsImageCacheCleanupJob;
 import org.opencms.util.CmsStringUtil;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.logging.Log;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Loader for images from the OpenCms VSF with integrated image scaling and processing capabilities.<p>
  *
@@ -72,12 +83,18 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
     /** The configuration parameter for the OpenCms XML configuration to set the maximum image blur size. */
     public static final String CONFIGURATION_MAX_BLUR_SIZE = "image.scaling.maxblursize";
 
+    /** The configuration parameter for the OpenCms XML configuration to set the maximum pixels decoded at once. */
+    public static final String CONFIGURATION_MAX_SCALE_PIXELS = "image.scaling.maxpixels";
+
     /** The configuration parameter for the OpenCms XML configuration to set the maximum image scale size. */
     public static final String CONFIGURATION_MAX_SCALE_SIZE = "image.scaling.maxsize";
 
     /** The configuration parameter for the OpenCms XML configuration to enable the image scaling. */
     public static final String CONFIGURATION_SCALING_ENABLED = "image.scaling.enabled";
 
+    /** The configuration parameter for the OpenCms XML configuration to set the number of image scaling threads. */
+    public static final String CONFIGURATION_SCALING_THREADS = "image.scaling.threads";
+
     /** Default name for the image cache repository. */
     public static final String IMAGE_REPOSITORY_DEFAULT = "/WEB-INF/imagecache/";
 
@@ -87,9 +104,18 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
     /** The id of this loader. */
     public static final int RESOURCE_LOADER_ID_IMAGE_LOADER = 2;
 
+    /** The default for the maximum number of pixels of all images decoded at once. */
+    public static final int SCALE_DEFAULT_MAX_PIXELS = 4 * CmsImageScaler.SCALE_DEFAULT_MAX_BLUR_SIZE;
+
     /** The log object for this class. */
     protected static final Log LOG = CmsLog.getLog(CmsImageLoader.class);
 
+    /** The number of pixels represented by one permit of the scaling semaphore. */
+    private static final int PIXELS_PER_PERMIT = 1024;
+
+    /** The scale operations currently running, by the name of the variant in the disk cache. */
+    private static final ConcurrentMap<String, CompletableFuture<byte[]>> SCALING_TASKS = new ConcurrentHashMap<>();
+
     /** The (optional) image down scale parameters for image write operations. */
     protected static String m_downScaleParams;
 
@@ -99,6 +125,18 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
     /** The maximum image size (width * height) to apply image blurring when down scaling (setting this to high may cause "out of memory" errors). */
     protected static int m_maxBlurSize = CmsImageScaler.SCALE_DEFAULT_MAX_BLUR_SIZE;
 
+    /** The maximum number of pixels of all images decoded at once by the scaling threads. */
+    protected static int m_maxScalePixels = SCALE_DEFAULT_MAX_PIXELS;
+
+    /** The permits for decoding images, one permit for every {@link #PIXELS_PER_PERMIT} pixels. */
+    protected static Semaphore m_scalingPermits;
+
+    /** The thread pool used for scaling images. */
+    protected static ExecutorService m_scalingPool;
+
+    /** The number of threads used for scaling images. */
+    protected static int m_scalingThreads = Runtime.getRuntime().availableProcessors();
+
     /** The disk cache to use for saving scaled image versions. */
     protected static CmsVfsNameBasedDiskCache m_vfsDiskCache;
 
@@ -201,6 +239,15 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
             if (CONFIGURATION_DOWNSCALE.equals(paramName)) {
                 m_downScaleParams = paramValue.trim();
             }
+            if (CONFIGURATION_MAX_SCALE_PIXELS.equals(paramName)) {
+                m_maxScalePixels = CmsStringUtil.getIntValue(paramValue, SCALE_DEFAULT_MAX_PIXELS, paramName);
+            }
+            if (CONFIGURATION_SCALING_THREADS.equals(paramName)) {
+                m_scalingThreads = CmsStringUtil.getIntValue(
+                    paramValue,
+                    Runtime.getRuntime().availableProcessors(),
+                    paramName);
+            }
         }
         super.addConfigurationParameter(paramName, paramValue);
     }
@@ -245,6 +292,10 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
         m_enabled = false;
         m_imageRepositoryFolder = null;
         m_vfsDiskCache = null;
+        if (m_scalingPool != null) {
+            m_scalingPool.shutdown();
+            m_scalingPool = null;
+        }
     }
 
     /**
@@ -272,6 +323,67 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
         return RESOURCE_LOADER_ID_IMAGE_LOADER;
     }
 
+    /**
+     * Returns the scaled content of the given image, stored in the disk cache under the given name.<p>
+     *
+     * Concurrent requests for the same variant are coalesced: the first request reads the image
+     * and scales it on the image scaling thread pool, all other requests wait for its result.
+     * The scaling threads only decode as many images at once as fit into the
+     * {@link #CONFIGURATION_MAX_SCALE_PIXELS} limit.<p>
+     *
+     * @param cms the current users OpenCms context
+     * @param resource the base VFS resource for the image
+     * @param scaler the configured image scaler, must be valid
+     * @param cacheName the name of the scaled variant in the disk cache
+     *
+     * @return the scaled content of the image
+     *
+     * @throws IOException in case of errors accessing the disk based cache
+     * @throws CmsException in case of errors accessing the OpenCms VFS
+     */
+    protected byte[] getScaledContent(CmsObject cms, CmsResource resource, CmsImageScaler scaler, String cacheName)
+    throws IOException, CmsException {
+
+        CompletableFuture<byte[]> result = new CompletableFuture<byte[]>();
+        CompletableFuture<byte[]> running = SCALING_TASKS.putIfAbsent(cacheName, result);
+        if (running != null) {
+            // this variant is already being scaled for another request
+            return waitForScaling(running);
+        }
+        try {
+            // the variant may have been written to the cache by a task that finished after our cache lookup
+            byte[] content = m_vfsDiskCache.getCacheContent(cacheName);
+            if (content != null) {
+                SCALING_TASKS.remove(cacheName, result);
+                result.complete(content);
+                return content;
+            }
+            CmsFile file = cms.readFile(resource);
+            if (scaler.getType() == 8) {
+                // only need the focal point for mode 8
+                scaler.setFocalPoint(CmsPreviewService.readFocalPoint(cms, resource));
+            }
+            int permits = getScalingPermits(new CmsImageScaler(cms, resource), scaler);
+            Runnable task = () -> scale(file, scaler, cacheName, permits, result);
+            ExecutorService pool = m_scalingPool;
+            try {
+                if (pool == null) {
+                    throw new RejectedExecutionException();
+                }
+                pool.execute(task);
+            } catch (RejectedExecutionException e) {
+                // no scaling pool available (not initialized or shutting down), scale in this thread
+                task.run();
+            }
+        } catch (Throwable t) {
+            // also complete in case of errors, e.g. out of memory, so waiting requests are not blocked forever
+            SCALING_TASKS.remove(cacheName, result);
+            result.completeExceptionally(t);
+            throw t;
+        }
+        return waitForScaling(result);
+    }
+
     /**
      * Returns a scaled version of the given OpenCms VFS image resource.<p>
      *
@@ -294,6 +406,10 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
         String cacheParam = scaler.isValid() ? scaler.toString() : null;
         String cacheName = m_vfsDiskCache.getCacheName(resource, cacheParam);
         byte[] content = m_vfsDiskCache.getCacheContent(cacheName);
+        if ((content == null) && scaler.isValid()) {
+            // valid scaling parameters found, scale the content (or wait until another request has done so)
+            content = getScaledContent(cms, resource, scaler, cacheName);
+        }
 
         CmsFile file;
         if (content != null) {
@@ -309,17 +425,6 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
         } else {
             // we must read the content from the VFS (if this has not been done yet)
             file = cms.readFile(resource);
-            // upgrade the file (load the content)
-            if (scaler.isValid()) {
-                if (scaler.getType() == 8) {
-                    // only need the focal point for mode 8
-                    scaler.setFocalPoint(CmsPreviewService.readFocalPoint(cms, resource));
-                }
-                // valid scaling parameters found, scale the content
-                content = scaler.scaleImage(file);
-                // exchange the content of the file with the scaled version
-                file.setContents(content);
-            }
             // save the file content in the cache
             m_vfsDiskCache.saveCacheFile(cacheName, file.getContents());
         }
@@ -341,6 +446,15 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
                 OpenCms.getSystemInfo().getWebApplicationRfsPath(),
                 m_imageRepositoryFolder);
         }
+        // initialize the image scaling threads
+        if (m_scalingPool == null) {
+            m_scalingThreads = Math.max(1, m_scalingThreads);
+            m_maxScalePixels = Math.max(PIXELS_PER_PERMIT, m_maxScalePixels);
+            m_scalingPermits = new Semaphore(m_maxScalePixels / PIXELS_PER_PERMIT, true);
+            m_scalingPool = Executors.newFixedThreadPool(
+                m_scalingThreads,
+                new ThreadFactoryBuilder().setNameFormat("OpenCms-image-scaling-%d").setDaemon(true).build());
+        }
         OpenCms.addCmsEventListener(this);
         // output setup information
         if (CmsLog.INIT.isInfoEnabled()) {
@@ -350,6 +464,11 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
                     m_vfsDiskCache.getRepositoryPath()));
             CmsLog.INIT.info(
                 Messages.get().getBundle().key(Messages.INIT_IMAGE_SCALING_ENABLED_1, Boolean.valueOf(m_enabled)));
+            CmsLog.INIT.info(
+                Messages.get().getBundle().key(
+                    Messages.INIT_IMAGE_SCALING_LIMITS_2,
+                    Integer.valueOf(m_scalingThreads),
+                    Integer.valueOf(m_maxScalePixels)));
         }
     }
 
@@ -376,4 +495,102 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
             super.load(cms, resource, req, res);
         }
     }
+
+    /**
+     * Returns the number of scaling permits required for decoding the given image.<p>
+     *
+     * The larger one of the original and the target image size is used, since both have to be
+     * kept in memory during the scale operation. If the original size is unknown, only the
+     * target size is used. Never returns more permits than available in total.<p>
+     *
+     * @param original the scaler with the size of the original image
+     * @param target the scaler with the size of the scaled image
+     *
+     * @return the number of scaling permits required for decoding the image
+     */
+    private int getScalingPermits(CmsImageScaler original, CmsImageScaler target) {
+
+        int maxPermits = m_maxScalePixels / PIXELS_PER_PERMIT;
+        long pixels = target.getPixelCount();
+        if (original.isValid()) {
+            pixels = Math.max(pixels, original.getPixelCount());
+        }
+        if (pixels <= 0) {
+            // pixel count overflow, the image is huge
+            return maxPermits;
+        }
+        return (int)Math.max(1, Math.min(maxPermits, pixels / PIXELS_PER_PERMIT));
+    }
+
+    /**
+     * Scales the given image, saves the result in the disk cache and completes the result.<p>
+     *
+     * @param file the image to scale
+     * @param scaler the image scaler
+     * @param cacheName the name of the scaled variant in the disk cache
+     * @param permits the number of scaling permits required for decoding the image
+     * @param result the result to complete
+     */
+    private void scale(
+        CmsFile file,
+        CmsImageScaler scaler,
+        String cacheName,
+        int permits,
+        CompletableFuture<byte[]> result) {
+
+        Semaphore scalingPermits = m_scalingPermits;
+        boolean acquired = false;
+        try {
+            if (scalingPermits != null) {
+                scalingPermits.acquire(permits);
+                acquired = true;
+            }
+            byte[] content = scaler.scaleImage(file);
+            m_vfsDiskCache.saveCacheFile(cacheName, content);
+            result.complete(content);
+        } catch (Throwable t) {
+            // also complete in case of errors, e.g. out of memory, so waiting requests are not blocked forever
+            result.completeExceptionally(t);
+        } finally {
+            if (acquired) {
+                scalingPermits.release(permits);
+            }
+            // remove the task only after saving the cache file, so later requests find the variant there
+            SCALING_TASKS.remove(cacheName, result);
+        }
+    }
+
+    /**
+     * Waits until the given scale operation has finished and returns its result.<p>
+     *
+     * @param result the result of the scale operation
+     *
+     * @return the scaled image content
+     *
+     * @throws IOException in case the operation failed with an I/O error or waiting was interrupted
+     * @throws CmsException in case the operation failed with an OpenCms error
+     */
+    private byte[] waitForScaling(CompletableFuture<byte[]> result) throws IOException, CmsException {
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ioe = new InterruptedIOException(e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof CmsException) {
+                throw (CmsException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
 }
\ No newline at end of file
@@ -30,16 +30,19 @@ package org.opencms.loader;
 import org.opencms.configuration.CmsParameterConfiguration;
 import org.opencms.file.CmsFile;
 import org.opencms.file.CmsObject;
+import org.opencms.file.CmsProject;
 import org.opencms.file.CmsPropertyDefinition;
 import org.opencms.file.CmsRequestContext;
 import org.opencms.file.CmsResource;
 import org.opencms.file.CmsResourceFilter;
 import org.opencms.file.CmsVfsResourceNotFoundException;
 import org.opencms.file.history.CmsHistoryResourceHandler;
+import org.opencms.file.types.CmsResourceTypeJsp;
 import org.opencms.flex.CmsFlexCache;
 import org.opencms.flex.CmsFlexController;
 import org.opencms.flex.CmsFlexController.RedirectInfo;
 import org.opencms.flex.CmsFlexRequest;
+import org.opencms.flex.CmsFlexRequestContextInfo;
 import org.opencms.flex.CmsFlexResponse;
 import org.opencms.gwt.shared.CmsGwtConstants;
 import org.opencms.i18n.CmsEncoder;
@@ -59,6 +62,7 @@ import org.opencms.relations.CmsRelationFilter;
 import org.opencms.relations.CmsRelationType;
 import org.opencms.staticexport.CmsLinkManager;
 import org.opencms.util.CmsFileUtil;
+import org.opencms.util.CmsInternalRequestUtil;
 import org.opencms.util.CmsRequestUtil;
 import org.opencms.util.CmsStringUtil;
 import org.opencms.util.I_CmsRegexSubstitution;
@@ -71,19 +75,25 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.net.SocketException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
@@ -94,6 +104,7 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 
 import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * The JSP loader which enables the execution of JSP in OpenCms.<p>
@@ -166,9 +177,24 @@ public class CmsJspLoader implements I_CmsResourceLoader, I_CmsFlexCacheEnabledL
     /** Jsp repository parameter name. */
     public static final String PARAM_JSP_REPOSITORY = "jsp.repository";
 
+    /** Parameter name for the comma separated VFS folders whose JSPs are updated in the background after startup. */
+    public static final String PARAM_JSP_WARMUP_FOLDERS = "jsp.warmup.folders";
+
+    /** Parameter name for the number of threads updating JSPs in the background, 0 disables the warm-up. */
+    public static final String PARAM_JSP_WARMUP_THREADS = "jsp.warmup.threads";
+
     /** The id of this loader. */
     public static final int RESOURCE_LOADER_ID = 6;
 
+    /** The default number of threads updating JSPs in the background. */
+    private static final int DEFAULT_WARMUP_THREADS = 2;
+
+    /** The query string that makes the servlet container compile a JSP without executing it. */
+    private static final String QUERY_JSP_PRECOMPILE = "jsp_precompile";
+
+    /** The interval in which the startup warm-up checks if OpenCms has finished initializing. */
+    private static final long WARMUP_STARTUP_POLL_INTERVAL = 1000;
+
     /** The log object for this class. */
     private static final Log LOG = CmsLog.getLog(CmsJspLoader.class);
 
@@ -205,6 +231,18 @@ public class CmsJspLoader implements I_CmsResourceLoader, I_CmsFlexCacheEnabledL
     /** Lock used to prevent JSP repository from being accessed while it is purged. The read lock is needed for accessing the JSP repository, the write lock is needed for purging it. */
     private ReentrantReadWriteLock m_purgeLock = new ReentrantReadWriteLock(true);
 
+    /** The VFS folders whose JSPs are updated in the background after startup. */
+    private List<String> m_warmupFolders = Collections.emptyList();
+
+    /** The thread pool updating JSPs in the background, created on first use. */
+    private ExecutorService m_warmupPool;
+
+    /** Flag indicating if the startup warm-up has already been scheduled. */
+    private boolean m_warmupStarted;
+
+    /** The number of threads updating JSPs in the background. */
+    private int m_warmupThreads = DEFAULT_WARMUP_THREADS;
+
     /**
      * The constructor of the class is empty, the initial instance will be
      * created by the resource manager upon startup of OpenCms.<p>
@@ -278,11 +316,14 @@ public class CmsJspLoader implements I_CmsResourceLoader, I_CmsFlexCacheEnabledL
     }
 
     /**
-     * Destroy this ResourceLoder, this is a NOOP so far.
+     * Destroy this ResourceLoder, stops the background JSP warm-up.
      */
-    public void destroy() {
+    public synchronized void destroy() {
 
-        // NOOP
+        if (m_warmupPool != null) {
+            m_warmupPool.shutdownNow();
+            m_warmupPool = null;
+        }
     }
 
     /**
@@ -471,6 +512,9 @@ public class CmsJspLoader implements I_CmsResourceLoader, I_CmsFlexCacheEnabledL
             initCaches(cacheSize);
         }
 
+        m_warmupThreads = m_configuration.getInteger(PARAM_JSP_WARMUP_THREADS, DEFAULT_WARMUP_THREADS);
+        m_warmupFolders = m_configuration.getList(PARAM_JSP_WARMUP_FOLDERS, Collections.<String> emptyList());
+
         // output setup information
         if (CmsLog.INIT.isInfoEnabled()) {
             CmsLog.INIT.info(Messages.get().getBundle().key(Messages.INIT_JSP_REPOSITORY_ABS_PATH_1, m_jspRepository));
@@ -708,6 +752,65 @@ public class CmsJspLoader implements I_CmsResourceLoader, I_CmsFlexCacheEnabledL
         }
     }
 
+    /**
+     * Schedules the update of all JSPs in the configured warm-up folders of the online project.<p>
+     *
+     * The update starts in the background as soon as OpenCms has finished initializing.
+     * Only the first call has an effect.<p>
+     *
+     * @param cms an initialized OpenCms user context with read permissions on the warm-up folders
+     *
+     * @see #PARAM_JSP_WARMUP_FOLDERS
+     */
+    public synchronized void startWarmup(CmsObject cms) {
+
+        if (m_warmupStarted || m_warmupFolders.isEmpty() || (m_warmupThreads <= 0)) {
+            return;
+        }
+        m_warmupStarted = true;
+        final CmsObject warmupCms;
+        try {
+            warmupCms = OpenCms.initCmsObject(cms);
+            warmupCms.getRequestContext().setCurrentProject(warmupCms.readProject(CmsProject.ONLINE_PROJECT_ID));
+            warmupCms.getRequestContext().setSiteRoot("");
+        } catch (CmsException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+            return;
+        }
+        getWarmupPool().execute(new Runnable() {
+
+            @SuppressWarnings("synthetic-access")
+            public void run() {
+
+                try {
+                    while (OpenCms.getRunLevel() == OpenCms.RUNLEVEL_2_INITIALIZING) {
+                        Thread.sleep(WARMUP_STARTUP_POLL_INTERVAL);
+                    }
+                    if (OpenCms.getRunLevel() != OpenCms.RUNLEVEL_4_SERVLET_ACCESS) {
+                        // no servlet container, so the JSPs will never be requested
+                        return;
+                    }
+                    Set<String> rootPaths = new LinkedHashSet<String>();
+                    for (String folder : m_warmupFolders) {
+                        for (CmsResource resource : warmupCms.readResources(
+                            folder,
+                            CmsResourceFilter.DEFAULT_FILES,
+                            true)) {
+                            if (CmsResourceTypeJsp.isJsp(resource)) {
+                                rootPaths.add(resource.getRootPath());
+                            }
+                        }
+                    }
+                    warmUp(warmupCms, rootPaths);
+                } catch (InterruptedException e) {
+                    // the loader has been destroyed
+                } catch (Exception e) {
+                    LOG.error(e.getLocalizedMessage(), e);
+                }
+            }
+        });
+    }
+
     /**
      * Triggers an asynchronous purge of the JSP repository.<p>
      *
@@ -899,20 +1002,18 @@ public class CmsJspLoader implements I_CmsResourceLoader, I_CmsFlexCacheEnabledL
                                             Boolean.valueOf(jspFile.isFile()),
                                             Boolean.valueOf(jspFile.canWrite())}));
                             }
-                            // write the parsed JSP content to the real FS
-                            synchronized (CmsJspLoader.class) {
-                                // this must be done only one file at a time
-                                FileOutputStream fs = new FileOutputStream(jspFile);
+                            // write the parsed JSP content to the real FS, the write lock of the file
+                            // makes sure this is done by only one thread at a time
+                            try (FileOutputStream fs = new FileOutputStream(jspFile)) {
                                 fs.write(contents);
-                                fs.close();
+                            }
 
-                                // we set the modification date to (approximately) that of the VFS resource. This is needed because in the Online project, the old version of a JSP
-                                // may be generated in the RFS JSP repository *after* the JSP has been changed, but *before* it has been published, which would lead
-                                // to it not being updated after the changed JSP is published.
+                            // we set the modification date to (approximately) that of the VFS resource. This is needed because in the Online project, the old version of a JSP
+                            // may be generated in the RFS JSP repository *after* the JSP has been changed, but *before* it has been published, which would lead
+                            // to it not being updated after the changed JSP is published.
 
-                                // Note: the RFS may only support second precision for the last modification date
-                                jspFile.setLastModified((1 + (resource.getDateLastModified() / 1000)) * 1000);
-                            }
+                            // Note: the RFS may only support second precision for the last modification date
+                            jspFile.setLastModified((1 + (resource.getDateLastModified() / 1000)) * 1000);
                             if (controller.getCurrentRequest().isOnline()) {
                                 m_onlineJsps.put(jspVfsName, Boolean.TRUE);
                             } else {
@@ -1003,6 +1104,35 @@ public class CmsJspLoader implements I_CmsResourceLoader, I_CmsFlexCacheEnabledL
         }
     }
 
+    /**
+     * Updates the given JSPs of the online project in the "real" file system in the background.<p>
+     *
+     * This performs the same update as the first request of a JSP would do, including all files the JSP
+     * includes, so that requests do not have to wait for it. If OpenCms runs in a servlet container, the
+     * updated JSPs are also compiled by the container without being executed. The JSPs are updated in parallel by
+     * at most {@link #PARAM_JSP_WARMUP_THREADS} threads. Paths of resources that are no JSPs are ignored.<p>
+     *
+     * @param cms an initialized OpenCms user context with read permissions on the JSPs
+     * @param rootPaths the root paths of the JSPs to update
+     */
+    public void warmUp(CmsObject cms, Collection<String> rootPaths) {
+
+        if ((m_warmupThreads <= 0) || (rootPaths == null) || rootPaths.isEmpty()) {
+            return;
+        }
+        ExecutorService pool = getWarmupPool();
+        for (final String rootPath : new ArrayList<String>(rootPaths)) {
+            pool.execute(new Runnable() {
+
+                @SuppressWarnings("synthetic-access")
+                public void run() {
+
+                    warmUpJsp(cms, rootPath);
+                }
+            });
+        }
+    }
+
     /**
      * Dispatches the current request to the OpenCms internal JSP.<p>
      *
@@ -1063,6 +1193,12 @@ public class CmsJspLoader implements I_CmsResourceLoader, I_CmsFlexCacheEnabledL
                         req.setAttribute(
                             CmsRequestUtil.HEADER_OPENCMS_EXPORT,
                             Long.valueOf(controller.getDateLastModified()));
+                        // collect the resources read if requested by the static export
+                        CmsFlexRequestContextInfo exportDependencies = (CmsFlexRequestContextInfo)req.getAttribute(
+                            CmsRequestUtil.ATTRIBUTE_EXPORT_DEPENDENCIES);
+                        if (exportDependencies != null) {
+                            exportDependencies.addDependencies(controller.getDependencies());
+                        }
                     } else if (controller.isTop()) {
                         // process headers and write output if this is the "top" request/response
                         res.setContentLength(result.length);
@@ -1836,4 +1972,57 @@ public class CmsJspLoader implements I_CmsResourceLoader, I_CmsFlexCacheEnabledL
         String jspPath = CmsFileUtil.getRepositoryName(m_jspRepository, jspVfsName + extension, online);
         return jspPath;
     }
+
+    /**
+     * Returns the thread pool used for updating JSPs in the background, creating it if necessary.<p>
+     *
+     * @return the thread pool
+     */
+    private synchronized ExecutorService getWarmupPool() {
+
+        if (m_warmupPool == null) {
+            m_warmupPool = Executors.newFixedThreadPool(
+                m_warmupThreads,
+                new ThreadFactoryBuilder().setNameFormat("OpenCms-jsp-warmup-%d").setDaemon(true).build());
+        }
+        return m_warmupPool;
+    }
+
+    /**
+     * Updates a single JSP of the online project in the "real" file system and lets the container compile it.<p>
+     *
+     * @param cms the user context to use
+     * @param rootPath the root path of the JSP
+     */
+    private void warmUpJsp(CmsObject cms, String rootPath) {
+
+        try {
+            CmsObject jspCms = OpenCms.initCmsObject(cms);
+            jspCms.getRequestContext().setSiteRoot("");
+            CmsResource resource = jspCms.readResource(rootPath);
+            if (!CmsResourceTypeJsp.isJsp(resource)) {
+                return;
+            }
+            ServletContext servletContext = OpenCms.getSystemInfo().getServletContainerSettings().getServletContext();
+            HttpServletRequest req = CmsInternalRequestUtil.createRequest(servletContext, QUERY_JSP_PRECOMPILE);
+            CmsFlexController controller = new CmsFlexController(jspCms, resource, m_cache, req, null, false, true);
+            controller.push(new CmsFlexRequest(req, controller), null);
+            String jspTargetName = updateJsp(resource, controller, new HashSet<String>(8));
+            RequestDispatcher dispatcher = servletContext != null
+            ? servletContext.getRequestDispatcher(jspTargetName)
+            : null;
+            if (dispatcher != null) {
+                // let the servlet container translate and compile the JSP, it is not executed
+                dispatcher.include(
+                    req,
+                    CmsInternalRequestUtil.createResponse(OpenCms.getSystemInfo().getDefaultEncoding()));
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("JSP warm-up updated " + rootPath);
+            }
+        } catch (Exception e) {
+            // the JSP will be updated on the first request
+            LOG.warn("JSP warm-up failed for " + rootPath + ": " + e.getLocalizedMessage(), e);
+        }
+    }
 }
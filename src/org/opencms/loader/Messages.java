@@ -178,6 +178,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String INIT_IMAGE_SCALING_ENABLED_1 = "INIT_IMAGE_SCALING_ENABLED_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String INIT_IMAGE_SCALING_LIMITS_2 = "INIT_IMAGE_SCALING_LIMITS_2";
+
     /** Message constant for key in the resource bundle. */
     public static final String INIT_JSP_CACHE_SIZE_1 = "INIT_JSP_CACHE_SIZE_1";
 
@@ -0,0 +1,514 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.lock;
+
+import org.opencms.util.CmsUUID;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Path tree index over the cached resource locks.<p>
+ *
+ * The index stores every lock in a tree node addressed by the segments of the locked root path,
+ * and keeps per subtree counters for the locks and the system locks below each node. This allows to answer
+ * "is there a locked ancestor folder", "is there a (system) locked descendant" and "which locks are in a subtree"
+ * in time proportional to the path depth or the size of the subtree instead of scanning all locks.<p>
+ *
+ * Additionally the root paths of all locks are indexed by the ids of the projects and users owning the
+ * edition and the system lock, so that locks of a project or user can be found without a full scan.<p>
+ *
+ * The index is thread safe, it does not check the lock semantics and just mirrors the content of
+ * the lock cache in the {@link org.opencms.monitor.CmsMemoryMonitor}. The monitor changes the lock cache
+ * and the index together with {@link #update(Runnable)}, so the write lock of the index is the only lock
+ * guarding both.<p>
+ */
+public class CmsLockIndex {
+
+    /**
+     * A node of the lock tree.<p>
+     */
+    private static final class Node {
+
+        /** The child nodes by path segment, lazily initialized. */
+        Map<String, Node> m_children;
+
+        /** The lock set on this node, or <code>null</code>. */
+        CmsLock m_lock;
+
+        /** The number of locks in the subtree of this node, including this node. */
+        int m_lockCount;
+
+        /** The name of this node (the path segment). */
+        final String m_name;
+
+        /** The owner ids this node was indexed with. */
+        Set<CmsUUID> m_owners;
+
+        /** The parent node. */
+        final Node m_parent;
+
+        /** The number of system locks in the subtree of this node, including this node. */
+        int m_systemLockCount;
+
+        /**
+         * Creates a new node.<p>
+         *
+         * @param parent the parent node
+         * @param name the path segment
+         */
+        Node(Node parent, String name) {
+
+            m_parent = parent;
+            m_name = name;
+        }
+    }
+
+    /** The read write lock guarding the index. */
+    private final ReadWriteLock m_guard = new ReentrantReadWriteLock();
+
+    /** The root paths of the locks by the ids of the owning projects and users. */
+    private final Map<CmsUUID, Set<String>> m_pathsByOwner = new HashMap<CmsUUID, Set<String>>();
+
+    /** The root node of the tree. */
+    private Node m_root = new Node(null, "");
+
+    /**
+     * Adds the project and user id of the given lock to the given set, if the lock is set.<p>
+     *
+     * @param owners the set of owner ids
+     * @param lock the lock
+     */
+    private static void addOwners(Set<CmsUUID> owners, CmsLock lock) {
+
+        if (lock.isUnlocked()) {
+            return;
+        }
+        if (lock.getUserId() != null) {
+            owners.add(lock.getUserId());
+        }
+        if ((lock.getProject() != null) && (lock.getProjectId() != null)) {
+            owners.add(lock.getProjectId());
+        }
+    }
+
+    /**
+     * Returns the ids of the projects and users owning the given lock.<p>
+     *
+     * @param lock the lock
+     *
+     * @return the owner ids
+     */
+    private static Set<CmsUUID> getOwners(CmsLock lock) {
+
+        Set<CmsUUID> result = new HashSet<CmsUUID>(4);
+        addOwners(result, lock.getEditionLock());
+        addOwners(result, lock.getSystemLock());
+        return result;
+    }
+
+    /**
+     * Splits a root path into its segments, ignoring empty segments.<p>
+     *
+     * @param rootPath the root path to split
+     *
+     * @return the path segments
+     */
+    private static List<String> getSegments(String rootPath) {
+
+        List<String> result = new ArrayList<String>();
+        int start = 0;
+        int length = rootPath.length();
+        while (start < length) {
+            int end = rootPath.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                result.add(rootPath.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Removes all locks from the index.<p>
+     */
+    public void clear() {
+
+        m_guard.writeLock().lock();
+        try {
+            m_root = new Node(null, "");
+            m_pathsByOwner.clear();
+        } finally {
+            m_guard.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the locks set on the ancestor folders of the given root path, the nearest first.<p>
+     *
+     * The lock of the given path itself is not included.<p>
+     *
+     * @param rootPath the root path
+     *
+     * @return the locks of the ancestor folders
+     */
+    public List<CmsLock> getAncestorLocks(String rootPath) {
+
+        List<String> segments = getSegments(rootPath);
+        List<CmsLock> result = new ArrayList<CmsLock>();
+        m_guard.readLock().lock();
+        try {
+            Node node = m_root;
+            if (node.m_lock != null) {
+                result.add(node.m_lock);
+            }
+            for (int i = 0; i < (segments.size() - 1); i++) {
+                node = getChild(node, segments.get(i));
+                if ((node == null) || (node.m_lockCount == 0)) {
+                    break;
+                }
+                if (node.m_lock != null) {
+                    result.add(node.m_lock);
+                }
+            }
+        } finally {
+            m_guard.readLock().unlock();
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Returns the locks set on the descendants of the given root path.<p>
+     *
+     * The lock of the given path itself is not included.<p>
+     *
+     * @param rootPath the root path
+     *
+     * @return the locks of the descendants
+     */
+    public List<CmsLock> getDescendantLocks(String rootPath) {
+
+        List<CmsLock> result = new ArrayList<CmsLock>();
+        m_guard.readLock().lock();
+        try {
+            Node node = findNode(rootPath);
+            if (node != null) {
+                int own = node.m_lock != null ? 1 : 0;
+                if (node.m_lockCount > own) {
+                    collectDescendants(node, result);
+                }
+            }
+        } finally {
+            m_guard.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the locks whose edition or system lock is owned by the given project or user.<p>
+     *
+     * @param ownerId the id of a project or of a user
+     *
+     * @return the locks owned by the given project or user
+     */
+    public List<CmsLock> getLocksByOwner(CmsUUID ownerId) {
+
+        List<CmsLock> result = new ArrayList<CmsLock>();
+        m_guard.readLock().lock();
+        try {
+            Set<String> paths = m_pathsByOwner.get(ownerId);
+            if (paths != null) {
+                for (String path : paths) {
+                    Node node = findNode(path);
+                    if ((node != null) && (node.m_lock != null)) {
+                        result.add(node.m_lock);
+                    }
+                }
+            }
+        } finally {
+            m_guard.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if the given root path or one of its descendants has a system lock.<p>
+     *
+     * @param rootPath the root path
+     *
+     * @return <code>true</code> if there is a system lock in the subtree of the given path
+     */
+    public boolean hasSystemLocks(String rootPath) {
+
+        m_guard.readLock().lock();
+        try {
+            Node node = findNode(rootPath);
+            return (node != null) && (node.m_systemLockCount > 0);
+        } finally {
+            m_guard.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the given lock to the index, replacing a lock previously indexed with the same root path.<p>
+     *
+     * This has also to be called again if the related lock of an indexed lock has been changed.<p>
+     *
+     * @param lock the lock to add
+     */
+    public void put(CmsLock lock) {
+
+        List<String> segments = getSegments(lock.getResourceName());
+        m_guard.writeLock().lock();
+        try {
+            Node node = m_root;
+            for (String segment : segments) {
+                Node child = getChild(node, segment);
+                if (child == null) {
+                    child = new Node(node, segment);
+                    if (node.m_children == null) {
+                        node.m_children = new HashMap<String, Node>(4);
+                    }
+                    node.m_children.put(segment, child);
+                }
+                node = child;
+            }
+            if (node.m_lock != null) {
+                unindex(node);
+            }
+            node.m_lock = lock;
+            node.m_owners = getOwners(lock);
+            for (CmsUUID owner : node.m_owners) {
+                Set<String> paths = m_pathsByOwner.get(owner);
+                if (paths == null) {
+                    paths = new LinkedHashSet<String>();
+                    m_pathsByOwner.put(owner, paths);
+                }
+                paths.add(lock.getResourceName());
+            }
+            updateCounts(node, 1, lock.getSystemLock().isUnlocked() ? 0 : 1);
+        } finally {
+            m_guard.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds all given locks to the index.<p>
+     *
+     * @param locks the locks to add
+     */
+    public void putAll(Collection<CmsLock> locks) {
+
+        for (CmsLock lock : locks) {
+            put(lock);
+        }
+    }
+
+    /**
+     * Removes the lock with the given root path from the index.<p>
+     *
+     * @param rootPath the root path of the lock to remove
+     */
+    public void remove(String rootPath) {
+
+        m_guard.writeLock().lock();
+        try {
+            Node node = findNode(rootPath);
+            if ((node == null) || (node.m_lock == null) || !node.m_lock.getResourceName().equals(rootPath)) {
+                return;
+            }
+            unindex(node);
+            // prune the nodes that have no locks in their subtree any more
+            while ((node.m_parent != null) && (node.m_lockCount == 0)) {
+                node.m_parent.m_children.remove(node.m_name);
+                if (node.m_parent.m_children.isEmpty()) {
+                    node.m_parent.m_children = null;
+                }
+                node = node.m_parent;
+            }
+        } finally {
+            m_guard.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed locks.<p>
+     *
+     * @return the number of indexed locks
+     */
+    public int size() {
+
+        m_guard.readLock().lock();
+        try {
+            return m_root.m_lockCount;
+        } finally {
+            m_guard.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs the given action while holding the write lock of the index.<p>
+     *
+     * The action may call the modifying methods of the index, and is used to change the index together with
+     * the data it mirrors, so that readers of the index never see a state in between.<p>
+     *
+     * @param action the action to run
+     */
+    public void update(Runnable action) {
+
+        m_guard.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            m_guard.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Collects the locks of all descendants of the given node.<p>
+     *
+     * @param node the node
+     * @param result the list to add the locks to
+     */
+    private void collectDescendants(Node node, List<CmsLock> result) {
+
+        if (node.m_children == null) {
+            return;
+        }
+        for (Node child : node.m_children.values()) {
+            if (child.m_lock != null) {
+                result.add(child.m_lock);
+            }
+            collectDescendants(child, result);
+        }
+    }
+
+    /**
+     * Finds the node for the given root path.<p>
+     *
+     * @param rootPath the root path
+     *
+     * @return the node, or <code>null</code> if not found
+     */
+    private Node findNode(String rootPath) {
+
+        Node node = m_root;
+        for (String segment : getSegments(rootPath)) {
+            node = getChild(node, segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the child of the given node with the given name.<p>
+     *
+     * @param node the parent node
+     * @param name the name of the child
+     *
+     * @return the child node, or <code>null</code> if not found
+     */
+    private Node getChild(Node node, String name) {
+
+        return node.m_children == null ? null : node.m_children.get(name);
+    }
+
+    /**
+     * Returns the sum of the system lock counters of the children of the given node.<p>
+     *
+     * @param node the node
+     *
+     * @return the number of system locks below the given node
+     */
+    private int getChildSystemLockCount(Node node) {
+
+        int result = 0;
+        if (node.m_children != null) {
+            for (Node child : node.m_children.values()) {
+                result += child.m_systemLockCount;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the lock of the given node from the owner index and the counters.<p>
+     *
+     * @param node the node to remove the lock from
+     */
+    private void unindex(Node node) {
+
+        CmsLock lock = node.m_lock;
+        for (CmsUUID owner : node.m_owners) {
+            Set<String> paths = m_pathsByOwner.get(owner);
+            if (paths != null) {
+                paths.remove(lock.getResourceName());
+                if (paths.isEmpty()) {
+                    m_pathsByOwner.remove(owner);
+                }
+            }
+        }
+        // the system lock count has to be reverted with the state the lock was counted with
+        int systemLocks = node.m_systemLockCount - getChildSystemLockCount(node);
+        node.m_lock = null;
+        node.m_owners = null;
+        updateCounts(node, -1, -systemLocks);
+    }
+
+    /**
+     * Updates the counters of the given node and all of its ancestors.<p>
+     *
+     * @param node the node
+     * @param locks the change of the lock count
+     * @param systemLocks the change of the system lock count
+     */
+    private void updateCounts(Node node, int locks, int systemLocks) {
+
+        Node current = node;
+        while (current != null) {
+            current.m_lockCount += locks;
+            current.m_systemLockCount += systemLocks;
+            current = current.m_parent;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.lock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Journal of the changes made to the cached resource locks since they have been persisted the last time.<p>
+ *
+ * The journal records the root paths of the added, changed and removed locks, so that only the rows of these
+ * paths have to be rewritten in the database. If the whole lock cache has been replaced or cleared,
+ * the journal requires a full rewrite of the locks instead.<p>
+ *
+ * The journal is filled by the lock cache methods of the {@link org.opencms.monitor.CmsMemoryMonitor} and
+ * drained by {@link CmsLockManager#writeLocks(org.opencms.db.CmsDbContext)}.<p>
+ */
+public class CmsLockJournal {
+
+    /** The root paths of the changed locks. */
+    private Set<String> m_changedPaths = new LinkedHashSet<String>();
+
+    /** Flag to indicate that all locks have to be rewritten. */
+    private boolean m_fullWrite;
+
+    /**
+     * Removes all changes from this journal and returns them in a new journal instance.<p>
+     *
+     * @return a journal containing the changes recorded so far
+     */
+    public synchronized CmsLockJournal drain() {
+
+        CmsLockJournal result = new CmsLockJournal();
+        result.m_changedPaths = m_changedPaths;
+        result.m_fullWrite = m_fullWrite;
+        m_changedPaths = new LinkedHashSet<String>();
+        m_fullWrite = false;
+        return result;
+    }
+
+    /**
+     * Returns the root paths of the changed locks.<p>
+     *
+     * @return the root paths of the changed locks
+     */
+    public synchronized List<String> getChangedPaths() {
+
+        return new ArrayList<String>(m_changedPaths);
+    }
+
+    /**
+     * Returns <code>true</code> if no changes have been recorded.<p>
+     *
+     * @return <code>true</code> if no changes have been recorded
+     */
+    public synchronized boolean isEmpty() {
+
+        return !m_fullWrite && m_changedPaths.isEmpty();
+    }
+
+    /**
+     * Returns <code>true</code> if all locks have to be rewritten.<p>
+     *
+     * @return <code>true</code> if all locks have to be rewritten
+     */
+    public synchronized boolean isFullWrite() {
+
+        return m_fullWrite;
+    }
+
+    /**
+     * Adds the changes of the given journal to this journal again, used if writing the changes failed.<p>
+     *
+     * @param changes the changes to add
+     */
+    public synchronized void merge(CmsLockJournal changes) {
+
+        if (m_fullWrite) {
+            return;
+        }
+        if (changes.isFullWrite()) {
+            recordReset();
+        } else {
+            m_changedPaths.addAll(changes.getChangedPaths());
+        }
+    }
+
+    /**
+     * Records that the lock of the given root path has been added, changed or removed.<p>
+     *
+     * @param rootPath the root path of the changed lock
+     */
+    public synchronized void recordChange(String rootPath) {
+
+        if (!m_fullWrite) {
+            m_changedPaths.add(rootPath);
+        }
+    }
+
+    /**
+     * Records that the whole lock cache has been replaced, so all locks have to be rewritten.<p>
+     */
+    public synchronized void recordReset() {
+
+        m_fullWrite = true;
+        m_changedPaths.clear();
+    }
+}
@@ -29,6 +29,7 @@ package org.opencms.lock;
 
 import org.opencms.db.CmsDbContext;
 import org.opencms.db.CmsDriverManager;
+import org.opencms.db.I_CmsProjectDriver;
 import org.opencms.file.CmsProject;
 import org.opencms.file.CmsResource;
 import org.opencms.file.CmsResourceFilter;
@@ -65,9 +66,6 @@ public final class CmsLockManager {
     /** The driver manager instance. */
     private CmsDriverManager m_driverManager;
 
-    /** The flag to indicate if the locks should be written to the db. */
-    private boolean m_isDirty;
-
     /** The flag to indicate if the lock manager has been started in run level 4. */
     private boolean m_runningInServlet;
 
@@ -129,14 +127,9 @@ public final class CmsLockManager {
 
         // handle collisions with exclusive locked sub-resources in case of a folder
         if (resource.isFolder() && newLock.getSystemLock().isUnlocked() && !type.isShallow()) {
-            String resourceName = resource.getRootPath();
-            Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+            Iterator<CmsLock> itLocks = getLockIndex().getDescendantLocks(resource.getRootPath()).iterator();
             while (itLocks.hasNext()) {
-                CmsLock lock = itLocks.next();
-                String lockedPath = lock.getResourceName();
-                if (lockedPath.startsWith(resourceName) && !lockedPath.equals(resourceName)) {
-                    unlockResource(lockedPath, false);
-                }
+                unlockResource(itLocks.next().getResourceName(), false);
             }
         }
     }
@@ -151,7 +144,7 @@ public final class CmsLockManager {
     public int countExclusiveLocksInProject(CmsProject project) {
 
         int count = 0;
-        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+        Iterator<CmsLock> itLocks = getLockIndex().getLocksByOwner(project.getUuid()).iterator();
         while (itLocks.hasNext()) {
             CmsLock lock = itLocks.next();
             if (lock.getEditionLock().isInProject(project)) {
@@ -409,43 +402,7 @@ public final class CmsLockManager {
         if (resource == null) {
             return false;
         }
-        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
-        while (itLocks.hasNext()) {
-            CmsLock lock = itLocks.next();
-            if (lock.getSystemLock().isUnlocked()) {
-                // only system locks matter here
-                continue;
-            }
-            if (lock.getResourceName().startsWith(resource.getRootPath())) {
-                if (lock.getResourceName().startsWith(resource.getRootPath())) {
-                    return true;
-                }
-                try {
-                    resource = m_driverManager.readResource(dbc, lock.getResourceName(), CmsResourceFilter.ALL);
-                } catch (CmsVfsResourceNotFoundException e) {
-                    OpenCms.getMemoryMonitor().uncacheLock(lock.getResourceName());
-                    continue;
-                }
-                CmsResource lockedResource;
-                try {
-                    lockedResource = m_driverManager.readResource(dbc, lock.getResourceName(), CmsResourceFilter.ALL);
-                } catch (CmsVfsResourceNotFoundException e) {
-                    OpenCms.getMemoryMonitor().uncacheLock(lock.getResourceName());
-                    continue;
-                }
-                if (lockedResource.getSiblingCount() > 1) {
-                    Iterator<CmsResource> itSiblings = internalReadSiblings(dbc, lockedResource).iterator();
-                    while (itSiblings.hasNext()) {
-                        CmsResource sibling = itSiblings.next();
-                        CmsLock siblingLock = internalSiblingLock(lock, sibling.getRootPath());
-                        if (siblingLock.getResourceName().startsWith(resource.getRootPath())) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
+        return getLockIndex().hasSystemLocks(resource.getRootPath());
     }
 
     /**
@@ -481,14 +438,7 @@ public final class CmsLockManager {
 
         if (OpenCms.getRunLevel() > OpenCms.RUNLEVEL_3_SHELL_ACCESS) {
             // read the locks only if the wizard is not enabled
-            Map<String, CmsLock> lockCache = new HashMap<String, CmsLock>();
-            List<CmsLock> locks = m_driverManager.getProjectDriver(dbc).readLocks(dbc);
-            Iterator<CmsLock> itLocks = locks.iterator();
-            while (itLocks.hasNext()) {
-                CmsLock lock = itLocks.next();
-                internalLockResource(lock, lockCache);
-            }
-            OpenCms.getMemoryMonitor().flushLocks(lockCache);
+            readLocks(dbc, m_driverManager.getProjectDriver(dbc));
             m_runningInServlet = true;
         }
     }
@@ -524,7 +474,7 @@ public final class CmsLockManager {
      */
     public void removeLocks(CmsUUID userId) {
 
-        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+        Iterator<CmsLock> itLocks = getLockIndex().getLocksByOwner(userId).iterator();
         while (itLocks.hasNext()) {
             CmsLock currentLock = itLocks.next();
             boolean editLock = currentLock.getEditionLock().getUserId().equals(userId);
@@ -581,13 +531,10 @@ public final class CmsLockManager {
             if (resource.isFolder() && !lock.getType().isShallow()) {
                 // in case of a folder, remove any exclusive locks on sub-resources that probably have
                 // been upgraded from an inherited lock when the user edited a resource
-                Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+                Iterator<CmsLock> itLocks = getLockIndex().getDescendantLocks(resourcename).iterator();
                 while (itLocks.hasNext()) {
-                    String lockedPath = (itLocks.next()).getResourceName();
-                    if (lockedPath.startsWith(resourcename) && !lockedPath.equals(resourcename)) {
-                        // remove the exclusive locked sub-resource
-                        unlockResource(lockedPath, false);
-                    }
+                    // remove the exclusive locked sub-resource
+                    unlockResource(itLocks.next().getResourceName(), false);
                 }
             }
             if (removeSystemLock) {
@@ -631,7 +578,7 @@ public final class CmsLockManager {
      */
     public void removeResourcesInProject(CmsUUID projectId, boolean removeSystemLocks) {
 
-        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+        Iterator<CmsLock> itLocks = getLockIndex().getLocksByOwner(projectId).iterator();
         while (itLocks.hasNext()) {
             CmsLock currentLock = itLocks.next();
             if (removeSystemLocks && currentLock.getSystemLock().getProjectId().equals(projectId)) {
@@ -652,7 +599,7 @@ public final class CmsLockManager {
      */
     public void removeTempLocks(CmsUUID userId) {
 
-        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+        Iterator<CmsLock> itLocks = getLockIndex().getLocksByOwner(userId).iterator();
         while (itLocks.hasNext()) {
             CmsLock currentLock = itLocks.next();
             if (currentLock.isTemporary() && currentLock.getUserId().equals(userId)) {
@@ -683,10 +630,11 @@ public final class CmsLockManager {
     }
 
     /**
-     * Writes the locks that are currently stored in-memory to the database to allow restoring them in
+     * Writes the locks that have been changed in-memory to the database to allow restoring them in
      * later startups.<p>
      *
-     * This overwrites the locks previously stored in the underlying database table.<p>
+     * Only the lock entries of the resources recorded in the lock journal of the memory monitor are rewritten,
+     * using batched statements. All locks are rewritten only if the lock cache has been replaced as a whole.<p>
      *
      *  @param dbc the current database context
      *
@@ -694,13 +642,72 @@ public final class CmsLockManager {
      */
     public void writeLocks(CmsDbContext dbc) throws CmsException {
 
-        if (m_isDirty // only if something changed
-            && m_runningInServlet // only if started in run level 4
-            && OpenCms.getMemoryMonitor().requiresPersistency()) { // only if persistency is required
+        if (!m_runningInServlet // only if started in run level 4
+            || !OpenCms.getMemoryMonitor().requiresPersistency()) { // only if persistency is required
+            return;
+        }
+        writeLocks(dbc, m_driverManager.getProjectDriver(dbc));
+    }
 
-            List<CmsLock> locks = OpenCms.getMemoryMonitor().getAllCachedLocks();
-            m_driverManager.getProjectDriver(dbc).writeLocks(dbc, locks);
-            m_isDirty = false;
+    /**
+     * Reads the saved locks with the given project driver and installs them to this lock manager.<p>
+     *
+     * @param dbc the current database context
+     * @param projectDriver the project driver to read the locks with
+     *
+     * @throws CmsException if something goes wrong
+     */
+    void readLocks(CmsDbContext dbc, I_CmsProjectDriver projectDriver) throws CmsException {
+
+        Map<String, CmsLock> lockCache = new HashMap<String, CmsLock>();
+        List<CmsLock> locks = projectDriver.readLocks(dbc);
+        Iterator<CmsLock> itLocks = locks.iterator();
+        while (itLocks.hasNext()) {
+            CmsLock lock = itLocks.next();
+            internalLockResource(lock, lockCache);
+        }
+        OpenCms.getMemoryMonitor().flushLocks(lockCache);
+        // the locks have just been read from the database, so there is nothing to write back
+        OpenCms.getMemoryMonitor().getCachedLockJournal().drain();
+    }
+
+    /**
+     * Writes the locks recorded in the lock journal with the given project driver.<p>
+     *
+     * If writing fails, the changes are added to the journal again, so they are written with the next attempt.<p>
+     *
+     * @param dbc the current database context
+     * @param projectDriver the project driver to write the locks with
+     *
+     * @throws CmsException if something goes wrong
+     */
+    void writeLocks(CmsDbContext dbc, I_CmsProjectDriver projectDriver) throws CmsException {
+
+        CmsLockJournal journal = OpenCms.getMemoryMonitor().getCachedLockJournal();
+        if (journal.isEmpty()) {
+            // nothing changed
+            return;
+        }
+        CmsLockJournal changes = journal.drain();
+        try {
+            if (changes.isFullWrite()) {
+                List<CmsLock> locks = OpenCms.getMemoryMonitor().getAllCachedLocks();
+                projectDriver.writeLocks(dbc, locks);
+            } else {
+                List<String> changedPaths = changes.getChangedPaths();
+                List<CmsLock> locks = new ArrayList<CmsLock>(changedPaths.size());
+                for (String path : changedPaths) {
+                    CmsLock lock = OpenCms.getMemoryMonitor().getCachedLock(path);
+                    if (lock != null) {
+                        locks.add(lock);
+                    }
+                }
+                projectDriver.writeLockChanges(dbc, changedPaths, locks);
+            }
+        } catch (CmsException e) {
+            // keep the changes for the next attempt
+            journal.merge(changes);
+            throw e;
         }
     }
 
@@ -763,6 +770,16 @@ public final class CmsLockManager {
         return OpenCms.getMemoryMonitor().getCachedLock(resourcename);
     }
 
+    /**
+     * Returns the path index over the cached locks.<p>
+     *
+     * @return the lock index
+     */
+    private CmsLockIndex getLockIndex() {
+
+        return OpenCms.getMemoryMonitor().getCachedLockIndex();
+    }
+
     /**
      * Returns the lock of a possible locked parent folder of a resource, system locks are ignored.<p>
      *
@@ -772,13 +789,13 @@ public final class CmsLockManager {
      */
     private CmsLock getParentFolderLock(String resourceName) {
 
-        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+        // the index returns the locks of the ancestor folders only, the nearest first
+        Iterator<CmsLock> itLocks = getLockIndex().getAncestorLocks(resourceName).iterator();
         while (itLocks.hasNext()) {
             CmsLock lock = itLocks.next();
             if (lock.getResourceName().endsWith("/")
                 && !lock.getType().isShallow()
-                && resourceName.startsWith(lock.getResourceName())
-                && !resourceName.equals(lock.getResourceName())) {
+                && resourceName.startsWith(lock.getResourceName())) {
                 // system locks does not get inherited
                 lock = lock.getEditionLock();
                 // check the lock
@@ -861,6 +878,10 @@ public final class CmsLockManager {
                 }
             } else if (currentLock.getSystemLock().isUnlocked() && !lock.getSystemLock().isUnlocked()) {
                 currentLock.setRelatedLock(lock);
+                if (locks == null) {
+                    // re-cache the changed lock to keep the lock index up to date
+                    OpenCms.getMemoryMonitor().cacheLock(currentLock);
+                }
             } else {
                 throw new CmsLockException(
                     Messages.get().container(Messages.ERR_LOCK_ILLEGAL_STATE_2, currentLock, lock));
@@ -945,7 +966,6 @@ public final class CmsLockManager {
      */
     private void lockResource(CmsLock lock) throws CmsLockException {
 
-        m_isDirty = true;
         internalLockResource(lock, null);
     }
 
@@ -960,8 +980,6 @@ public final class CmsLockManager {
      */
     private CmsLock unlockResource(String resourceName, boolean systemLocks) {
 
-        m_isDirty = true;
-
         // get the current lock
         CmsLock lock = OpenCms.getMemoryMonitor().getCachedLock(resourceName);
         if (lock == null) {
@@ -991,10 +1009,8 @@ public final class CmsLockManager {
                     CmsLock tmp = lock.getEditionLock();
                     CmsLock sysLock = lock.getSystemLock();
                     sysLock.setRelatedLock(null);
-                    if (!sysLock.equals(lock)) {
-                        // replace the lock entry if needed
-                        OpenCms.getMemoryMonitor().cacheLock(sysLock);
-                    }
+                    // replace the lock entry, this is also needed to keep the lock index up to date
+                    OpenCms.getMemoryMonitor().cacheLock(sysLock);
                     return tmp;
                 } else {
                     // if there is no edition lock, only a system lock, do nothing
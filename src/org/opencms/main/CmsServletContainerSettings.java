@@ -189,6 +189,9 @@ public class CmsServletContainerSettings {
     /** The name of the servlet container running OpenCms. */
     private String m_servletContainerName;
 
+    /** The servlet context, or <code>null</code> if OpenCms is not running in a servlet container. */
+    private ServletContext m_servletContext;
+
     /** The servlet path for the OpenCms servlet. */
     private String m_servletPath;
 
@@ -208,6 +211,7 @@ public class CmsServletContainerSettings {
      */
     public CmsServletContainerSettings(ServletContext context) {
 
+        m_servletContext = context;
         // CmsSystemInfo<init> has to call this with null (for setup)
         if (context != null) {
             // check for OpenCms home (base) directory path
@@ -371,6 +375,17 @@ public class CmsServletContainerSettings {
         return m_servletContainerName;
     }
 
+    /**
+     * Returns the servlet context of the OpenCms web application.<p>
+     *
+     * @return the servlet context, or <code>null</code> if OpenCms is not running in a servlet container,
+     *      e.g. in the shell
+     */
+    public ServletContext getServletContext() {
+
+        return m_servletContext;
+    }
+
     /**
      * Returns the OpenCms servlet path, e.g. "/opencms".<p>
      *
@@ -516,6 +516,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_THREADSTORE_POOL_CONTENT_2 = "LOG_THREADSTORE_POOL_CONTENT_2";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_THREADSTORE_UPDATE_LOG_ERROR_0 = "LOG_THREADSTORE_UPDATE_LOG_ERROR_0";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_WRONG_INIT_SEQUENCE_2 = "LOG_WRONG_INIT_SEQUENCE_2";
 
@@ -0,0 +1,413 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.monitor;
+
+import org.opencms.file.CmsResource;
+import org.opencms.main.CmsLog;
+import org.opencms.security.CmsAccessControlList;
+import org.opencms.util.CmsUUID;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Cache for the access control lists computed by the driver manager, organized as a tree of root paths.<p>
+ *
+ * Lookups only need the root path, the structure id and a slot number, so no cache key has to be built for them.
+ * Since the access control list of a resource depends on the access control entries of all its ancestors,
+ * a change of the entries of a resource only invalidates the subtree below the resource, instead of the whole cache.<p>
+ *
+ * The online and the offline project are cached in separate trees.<p>
+ *
+ * If the maximum number of cached root paths is reached, the least recently used leaves of the trees are removed,
+ * so all ancestors of a cached root path always stay in the tree.<p>
+ */
+public class CmsAclTreeCache implements I_CmsMemoryMonitorable {
+
+    /**
+     * A cached access control list, together with the structure id of the resource it was computed for.<p>
+     */
+    private static final class Entry {
+
+        /** The cached access control list. */
+        final CmsAccessControlList m_acl;
+
+        /** The structure id of the resource. */
+        final CmsUUID m_structureId;
+
+        /**
+         * Creates a new entry.<p>
+         *
+         * @param structureId the structure id of the resource
+         * @param acl the access control list
+         */
+        Entry(CmsUUID structureId, CmsAccessControlList acl) {
+
+            m_structureId = structureId;
+            m_acl = acl;
+        }
+    }
+
+    /**
+     * A node of the path tree, holding the access control lists cached for one root path.<p>
+     */
+    private static final class Node {
+
+        /** The child nodes, by root path. */
+        final Map<String, Node> m_children = new ConcurrentHashMap<String, Node>();
+
+        /** The cached entries, by slot. */
+        final AtomicReferenceArray<Entry> m_entries = new AtomicReferenceArray<Entry>(SLOTS);
+
+        /** The value of the access clock at the last access. */
+        volatile long m_lastAccess;
+
+        /** The parent node, <code>null</code> for the root folder. */
+        final Node m_parent;
+
+        /** The root path of the node. */
+        final String m_path;
+
+        /**
+         * Creates a new node.<p>
+         *
+         * @param parent the parent node
+         * @param path the root path
+         * @param lastAccess the value of the access clock
+         */
+        Node(Node parent, String path, long lastAccess) {
+
+            m_parent = parent;
+            m_path = path;
+            m_lastAccess = lastAccess;
+        }
+    }
+
+    /** The number of entries per root path, one per combination of inherited only flag, folder flag and depth 0, 1 or more. */
+    public static final int SLOTS = 12;
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsAclTreeCache.class);
+
+    /** The access clock, advanced whenever a node is created or written. */
+    private final AtomicLong m_clock = new AtomicLong();
+
+    /** The maximum number of nodes, if reached the least recently used leaves are removed. */
+    private final int m_maxSize;
+
+    /** The nodes of the offline tree, by root path. */
+    private final Map<String, Node> m_offlineNodes = new ConcurrentHashMap<String, Node>();
+
+    /** The nodes of the online tree, by root path. */
+    private final Map<String, Node> m_onlineNodes = new ConcurrentHashMap<String, Node>();
+
+    /**
+     * Creates a new cache instance.<p>
+     *
+     * @param maxSize the maximum number of cached root paths
+     */
+    public CmsAclTreeCache(int maxSize) {
+
+        m_maxSize = Math.max(maxSize, 1);
+    }
+
+    /**
+     * Returns the slot used to cache an access control list computed with the given parameters.<p>
+     *
+     * Depths greater than 1 share a slot, since the access control list of a resource is computed the same way
+     * for all of them.<p>
+     *
+     * @param inheritedOnly flag indicating that only inherited entries were collected
+     * @param forFolder flag indicating that the list was computed for a folder
+     * @param depth the depth of the resource, relative to the resource the permissions were requested for
+     *
+     * @return the slot
+     */
+    public static int getSlot(boolean inheritedOnly, boolean forFolder, int depth) {
+
+        return (inheritedOnly ? 6 : 0) + (forFolder ? 3 : 0) + Math.min(depth, 2);
+    }
+
+    /**
+     * Removes all cache entries.<p>
+     */
+    public synchronized void clear() {
+
+        m_onlineNodes.clear();
+        m_offlineNodes.clear();
+    }
+
+    /**
+     * Returns the cached access control list for the given resource and slot, or <code>null</code> if not cached.<p>
+     *
+     * @param online <code>true</code> for the online project
+     * @param rootPath the root path of the resource
+     * @param structureId the structure id of the resource
+     * @param slot the slot, see {@link #getSlot(boolean, boolean, int)}
+     *
+     * @return the cached access control list, or <code>null</code>
+     */
+    public CmsAccessControlList get(boolean online, String rootPath, CmsUUID structureId, int slot) {
+
+        Node node = getNodes(online).get(rootPath);
+        if (node == null) {
+            return null;
+        }
+        Entry entry = node.m_entries.get(slot);
+        if ((entry == null) || !entry.m_structureId.equals(structureId)) {
+            // a different resource may have been created under the same path
+            return null;
+        }
+        // reading the clock without advancing it keeps lookups free of contention
+        node.m_lastAccess = m_clock.get();
+        return entry.m_acl;
+    }
+
+    /**
+     * @see org.opencms.monitor.I_CmsMemoryMonitorable#getMemorySize()
+     */
+    public int getMemorySize() {
+
+        return (int)(getMemorySize(m_onlineNodes) + getMemorySize(m_offlineNodes));
+    }
+
+    /**
+     * Caches the access control list for the given resource and slot.<p>
+     *
+     * @param online <code>true</code> for the online project
+     * @param rootPath the root path of the resource
+     * @param structureId the structure id of the resource
+     * @param slot the slot, see {@link #getSlot(boolean, boolean, int)}
+     * @param acl the access control list to cache
+     */
+    public void put(boolean online, String rootPath, CmsUUID structureId, int slot, CmsAccessControlList acl) {
+
+        Node node = getNodes(online).get(rootPath);
+        if (node == null) {
+            node = createNode(online, rootPath);
+        }
+        node.m_lastAccess = m_clock.incrementAndGet();
+        node.m_entries.set(slot, new Entry(structureId, acl));
+    }
+
+    /**
+     * Removes the entries of the given root path and all paths below it, in the online and in the offline tree.<p>
+     *
+     * @param rootPath the root path
+     */
+    public synchronized void removeSubtree(String rootPath) {
+
+        removeSubtree(m_onlineNodes, rootPath);
+        removeSubtree(m_offlineNodes, rootPath);
+    }
+
+    /**
+     * Returns the number of cached root paths.<p>
+     *
+     * @return the number of cached root paths
+     */
+    public int size() {
+
+        return m_onlineNodes.size() + m_offlineNodes.size();
+    }
+
+    /**
+     * Creates the node for the given root path, together with the missing nodes of its ancestors.<p>
+     *
+     * @param online <code>true</code> for the online project
+     * @param rootPath the root path
+     *
+     * @return the node
+     */
+    private synchronized Node createNode(boolean online, String rootPath) {
+
+        if (size() >= m_maxSize) {
+            evict();
+        }
+        return getOrCreateNode(getNodes(online), rootPath);
+    }
+
+    /**
+     * Removes the least recently used leaves of both trees, until 10 percent of the maximum size are free.<p>
+     *
+     * Only leaves are removed, so the ancestors of the remaining nodes stay in the tree. A parent becomes a leaf
+     * once its children are removed and is then removed in the next pass if it is still among the oldest nodes.<p>
+     *
+     * Must only be called while holding the lock of this cache.<p>
+     */
+    private void evict() {
+
+        int targetSize = m_maxSize - Math.max(1, m_maxSize / 10);
+        List<Node> candidates = new ArrayList<Node>(size());
+        candidates.addAll(m_onlineNodes.values());
+        candidates.addAll(m_offlineNodes.values());
+        candidates.sort(Comparator.comparingLong(node -> node.m_lastAccess));
+        boolean removed = true;
+        while (removed && (size() > targetSize)) {
+            removed = false;
+            for (Node node : candidates) {
+                if (size() <= targetSize) {
+                    break;
+                }
+                if (node.m_children.isEmpty() && removeLeaf(node)) {
+                    removed = true;
+                }
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("CmsAclTreeCache reached " + m_maxSize + " entries, reduced to " + size() + " entries");
+        }
+    }
+
+    /**
+     * Estimates the memory size of the access control lists in the given tree.<p>
+     *
+     * @param nodes the nodes of the tree
+     *
+     * @return the estimated memory size
+     */
+    private long getMemorySize(Map<String, Node> nodes) {
+
+        int total = nodes.size();
+        long size = 0;
+        int count = 0;
+        Iterator<Node> it = nodes.values().iterator();
+        while (it.hasNext() && (count < CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE)) {
+            Node node = it.next();
+            size += CmsMemoryMonitor.getMemorySize(node.m_path);
+            for (int i = 0; i < SLOTS; i++) {
+                Entry entry = node.m_entries.get(i);
+                if (entry != null) {
+                    size += CmsMemorySizeEstimator.getEntrySize(null, entry.m_acl);
+                }
+            }
+            count++;
+        }
+        return count == 0 ? 0 : (size / count) * total;
+    }
+
+    /**
+     * Returns the nodes of the online or the offline tree.<p>
+     *
+     * @param online <code>true</code> for the online tree
+     *
+     * @return the nodes of the tree, by root path
+     */
+    private Map<String, Node> getNodes(boolean online) {
+
+        return online ? m_onlineNodes : m_offlineNodes;
+    }
+
+    /**
+     * Returns the node for the given root path, creating it and its missing ancestors if necessary.<p>
+     *
+     * Must only be called while holding the lock of this cache.<p>
+     *
+     * @param nodes the nodes of the tree
+     * @param rootPath the root path
+     *
+     * @return the node
+     */
+    private Node getOrCreateNode(Map<String, Node> nodes, String rootPath) {
+
+        Node node = nodes.get(rootPath);
+        if (node == null) {
+            String parentPath = CmsResource.getParentFolder(rootPath);
+            Node parent = parentPath != null ? getOrCreateNode(nodes, parentPath) : null;
+            node = new Node(parent, rootPath, m_clock.incrementAndGet());
+            if (parent != null) {
+                parent.m_children.put(rootPath, node);
+            }
+            nodes.put(rootPath, node);
+        }
+        return node;
+    }
+
+    /**
+     * Removes the given leaf node from the tree it belongs to.<p>
+     *
+     * @param node the node to remove
+     *
+     * @return <code>false</code> if the node has already been removed
+     */
+    private boolean removeLeaf(Node node) {
+
+        if (!m_onlineNodes.remove(node.m_path, node) && !m_offlineNodes.remove(node.m_path, node)) {
+            return false;
+        }
+        if (node.m_parent != null) {
+            node.m_parent.m_children.remove(node.m_path, node);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the given node and all its descendants from the tree.<p>
+     *
+     * @param nodes the nodes of the tree
+     * @param node the node to remove
+     */
+    private void removeNodes(Map<String, Node> nodes, Node node) {
+
+        nodes.remove(node.m_path);
+        for (Node child : node.m_children.values()) {
+            removeNodes(nodes, child);
+        }
+    }
+
+    /**
+     * Removes the entries of the given root path and all paths below it from the given tree.<p>
+     *
+     * @param nodes the nodes of the tree
+     * @param rootPath the root path
+     */
+    private void removeSubtree(Map<String, Node> nodes, String rootPath) {
+
+        Node node = nodes.get(rootPath);
+        if ((node == null) && !rootPath.endsWith("/")) {
+            // the path may denote a folder without trailing slash
+            node = nodes.get(rootPath + "/");
+        }
+        if (node == null) {
+            // nothing cached at or below the path, since all ancestors of a cached path are nodes of the tree
+            return;
+        }
+        if (node.m_parent != null) {
+            node.m_parent.m_children.remove(node.m_path);
+        }
+        removeNodes(nodes, node);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.monitor;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Immutable snapshot of the statistics of one of the caches of the memory monitor.<p>
+ *
+ * The bean getters make the statistics available as composite data through JMX.<p>
+ *
+ * @see org.opencms.monitor.CmsMemoryMonitor#getCacheStatistics()
+ */
+public class CmsCacheStatistics {
+
+    /** The number of evicted entries. */
+    private long m_evictionCount;
+
+    /** The sum of the weights of the evicted entries. */
+    private long m_evictionWeight;
+
+    /** The number of cache hits. */
+    private long m_hitCount;
+
+    /** The ratio of cache hits to all lookups. */
+    private double m_hitRate;
+
+    /** The maximum weight of the cache. */
+    private long m_maximumWeight;
+
+    /** The number of cache misses. */
+    private long m_missCount;
+
+    /** The name of the cache type. */
+    private String m_name;
+
+    /** The approximate number of entries. */
+    private long m_size;
+
+    /** The current weight of the cache. */
+    private long m_weight;
+
+    /**
+     * Creates a new statistics snapshot.<p>
+     *
+     * @param name the name of the cache type
+     * @param stats the Caffeine statistics
+     * @param size the approximate number of entries
+     * @param weight the current weight of the cache
+     * @param maximumWeight the maximum weight of the cache
+     */
+    public CmsCacheStatistics(String name, CacheStats stats, long size, long weight, long maximumWeight) {
+
+        m_name = name;
+        m_hitCount = stats.hitCount();
+        m_missCount = stats.missCount();
+        m_hitRate = stats.hitRate();
+        m_evictionCount = stats.evictionCount();
+        m_evictionWeight = stats.evictionWeight();
+        m_size = size;
+        m_weight = weight;
+        m_maximumWeight = maximumWeight;
+    }
+
+    /**
+     * Returns the number of evicted entries.<p>
+     *
+     * @return the number of evicted entries
+     */
+    public long getEvictionCount() {
+
+        return m_evictionCount;
+    }
+
+    /**
+     * Returns the sum of the weights of the evicted entries.<p>
+     *
+     * @return the sum of the weights of the evicted entries
+     */
+    public long getEvictionWeight() {
+
+        return m_evictionWeight;
+    }
+
+    /**
+     * Returns the number of cache hits.<p>
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+
+        return m_hitCount;
+    }
+
+    /**
+     * Returns the ratio of cache hits to all lookups, or 1 if there were no lookups yet.<p>
+     *
+     * @return the hit rate
+     */
+    public double getHitRate() {
+
+        return m_hitRate;
+    }
+
+    /**
+     * Returns the maximum weight of the cache.<p>
+     *
+     * @return the maximum weight of the cache
+     */
+    public long getMaximumWeight() {
+
+        return m_maximumWeight;
+    }
+
+    /**
+     * Returns the number of cache misses.<p>
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+
+        return m_missCount;
+    }
+
+    /**
+     * Returns the name of the cache type.<p>
+     *
+     * @return the name of the cache type
+     */
+    public String getName() {
+
+        return m_name;
+    }
+
+    /**
+     * Returns the approximate number of entries.<p>
+     *
+     * @return the approximate number of entries
+     */
+    public long getSize() {
+
+        return m_size;
+    }
+
+    /**
+     * Returns the current weight of the cache.<p>
+     *
+     * @return the current weight of the cache
+     */
+    public long getWeight() {
+
+        return m_weight;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return String.format(
+            "%-20s hits: %d misses: %d hit rate: %.3f evictions: %d (weight %d) size: %d weight: %d/%d",
+            m_name,
+            Long.valueOf(m_hitCount),
+            Long.valueOf(m_missCount),
+            Double.valueOf(m_hitRate),
+            Long.valueOf(m_evictionCount),
+            Long.valueOf(m_evictionWeight),
+            Long.valueOf(m_size),
+            Long.valueOf(m_weight),
+            Long.valueOf(m_maximumWeight));
+    }
+}
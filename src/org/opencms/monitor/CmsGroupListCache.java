@@ -255,7 +255,9 @@ public class CmsGroupListCache implements I_CmsMemoryMonitorable {
      */
     public int getMemorySize() {
 
-        return (int)CmsMemoryMonitor.getValueSize(m_internalCache.asMap());
+        return (int)CmsMemorySizeEstimator.sample(
+            m_internalCache.asMap(),
+            CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE);
     }
 
     /**
@@ -27,9 +27,9 @@
 
 package org.opencms.monitor;
 
-import org.opencms.cache.CmsLruCache;
 import org.opencms.cache.CmsMemoryObjectCache;
 import org.opencms.cache.CmsVfsMemoryObjectCache;
+import org.opencms.cache.I_CmsLruCache;
 import org.opencms.configuration.CmsSystemConfiguration;
 import org.opencms.db.CmsCacheSettings;
 import org.opencms.db.CmsDriverManager;
@@ -48,6 +48,8 @@ import org.opencms.file.CmsUser;
 import org.opencms.flex.CmsFlexCache.CmsFlexCacheVariation;
 import org.opencms.i18n.CmsLocaleManager;
 import org.opencms.lock.CmsLock;
+import org.opencms.lock.CmsLockIndex;
+import org.opencms.lock.CmsLockJournal;
 import org.opencms.lock.CmsLockManager;
 import org.opencms.mail.CmsMailTransport;
 import org.opencms.mail.CmsSimpleMail;
@@ -73,6 +75,7 @@ import org.opencms.xml.CmsXmlContentDefinition;
 import org.opencms.xml.CmsXmlEntityResolver;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Date;
@@ -81,8 +84,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 import javax.mail.internet.InternetAddress;
 
@@ -91,6 +96,9 @@ import org.apache.commons.collections.buffer.SynchronizedBuffer;
 import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.logging.Log;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -164,6 +172,9 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     /** Set interval for clearing the caches to 10 minutes. */
     private static final int INTERVAL_CLEAR = 1000 * 60 * 10;
 
+    /** The number of list elements which add one to the weight of a cached list. */
+    private static final int LIST_WEIGHT_DIVISOR = 32;
+
     /** The log object for this class. */
     private static final Log LOG = CmsLog.getLog(CmsMemoryMonitor.class);
 
@@ -173,17 +184,20 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     /** Maximum depth for object size recursion. */
     private static final int MAX_DEPTH = 5;
 
+    /** The bounded system caches, by cache type. */
+    private Map<CacheType, Cache<String, ?>> m_caches;
+
     /** Cache for access control lists. */
-    private Map<String, CmsAccessControlList> m_cacheAccessControlList;
+    private CmsAclTreeCache m_cacheAccessControlList;
 
     /** A temporary cache for XML content definitions. */
-    private Map<String, CmsXmlContentDefinition> m_cacheContentDefinitions;
+    private Cache<String, CmsXmlContentDefinition> m_cacheContentDefinitions;
 
     /** Cache for groups. */
-    private Map<String, CmsGroup> m_cacheGroup;
+    private Cache<String, CmsGroup> m_cacheGroup;
 
     /** Cache for roles. */
-    private Map<String, Boolean> m_cacheHasRoles;
+    private Cache<String, Boolean> m_cacheHasRoles;
 
     /** A cache for accelerated locale lookup. */
     private Map<String, Locale> m_cacheLocale;
@@ -191,47 +205,53 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     /** Cache for the resource locks. */
     private Map<String, CmsLock> m_cacheLock;
 
+    /** The path index over the cached resource locks. */
+    private final CmsLockIndex m_lockIndex = new CmsLockIndex();
+
+    /** The journal of the lock changes not yet persisted. */
+    private final CmsLockJournal m_lockJournal = new CmsLockJournal();
+
     /** The memory object cache map. */
     private Map<String, Object> m_cacheMemObject;
 
     /** Cache for organizational units. */
-    private Map<String, CmsOrganizationalUnit> m_cacheOrgUnit;
+    private Cache<String, CmsOrganizationalUnit> m_cacheOrgUnit;
 
     /** Cache for permission checks. */
-    private Map<String, I_CmsPermissionHandler.CmsPermissionCheckResult> m_cachePermission;
+    private Cache<String, I_CmsPermissionHandler.CmsPermissionCheckResult> m_cachePermission;
 
     /** Cache for offline projects. */
-    private Map<String, CmsProject> m_cacheProject;
+    private Cache<String, CmsProject> m_cacheProject;
 
     /** Cache for project resources. */
-    private Map<String, List<CmsResource>> m_cacheProjectResources;
+    private Cache<String, List<CmsResource>> m_cacheProjectResources;
 
     /** Cache for properties. */
-    private Map<String, CmsProperty> m_cacheProperty;
+    private Cache<String, CmsProperty> m_cacheProperty;
 
     /** Cache for property lists. */
-    private Map<String, List<CmsProperty>> m_cachePropertyList;
+    private Cache<String, List<CmsProperty>> m_cachePropertyList;
 
     /** Cache for published resources. */
-    private Map<String, List<CmsPublishedResource>> m_cachePublishedResources;
+    private Cache<String, List<CmsPublishedResource>> m_cachePublishedResources;
 
     /** Cache for resources. */
-    private Map<String, CmsResource> m_cacheResource;
+    private Cache<String, CmsResource> m_cacheResource;
 
     /** Cache for resource lists. */
-    private Map<String, List<CmsResource>> m_cacheResourceList;
+    private Cache<String, List<CmsResource>> m_cacheResourceList;
 
     /** Cache for role lists. */
-    private Map<String, List<CmsRole>> m_cacheRoleLists;
+    private Cache<String, List<CmsRole>> m_cacheRoleLists;
 
     /** Cache for user data. */
-    private Map<String, CmsUser> m_cacheUser;
+    private Cache<String, CmsUser> m_cacheUser;
 
     /** Cache for user groups. */
     private CmsGroupListCache m_cacheUserGroups;
 
     /** Cache for user lists. */
-    private Map<String, List<CmsUser>> m_cacheUserList;
+    private Cache<String, List<CmsUser>> m_cacheUserList;
 
     /** The vfs memory cache map. */
     private Map<String, Object> m_cacheVfsObject;
@@ -240,7 +260,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     private Map<String, byte[]> m_cacheXmlPermanentEntity;
 
     /** A temporary cache to avoid multiple readings of often used files from the VFS. */
-    private Map<String, byte[]> m_cacheXmlTemporaryEntity;
+    private Cache<String, byte[]> m_cacheXmlTemporaryEntity;
 
     /** The memory monitor configuration. */
     private CmsMemoryMonitorConfiguration m_configuration;
@@ -284,9 +304,15 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     /** The current memory status. */
     private CmsMemoryStatus m_memoryCurrent;
 
+    /** The limits of monitored objects that do not provide their limit themselves, by monitoring key. */
+    private Map<String, Long> m_monitoredLimits;
+
     /** Contains the object to be monitored. */
     private Map<String, Object> m_monitoredObjects;
 
+    /** The bounded system caches, by monitoring key. */
+    private Map<String, Cache<String, ?>> m_weightedCaches;
+
     /** Buffer for publish history. */
     private Buffer m_publishHistory;
 
@@ -308,6 +334,9 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     public CmsMemoryMonitor() {
 
         m_monitoredObjects = new HashMap<String, Object>();
+        m_monitoredLimits = new HashMap<String, Long>();
+        m_caches = new ConcurrentHashMap<CacheType, Cache<String, ?>>();
+        m_weightedCaches = new ConcurrentHashMap<String, Cache<String, ?>>();
         LoadingCache<ResourceOUCacheKey, ResourceOUMap> resourceOUCache = CacheBuilder.newBuilder().expireAfterWrite(
             60,
             TimeUnit.SECONDS).build(new CacheLoader<ResourceOUCacheKey, ResourceOUMap>() {
@@ -324,19 +353,83 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     }
 
     /**
-     * Creates a thread safe LRU cache map based on the guava cache builder.<p>
+     * Creates a thread safe LRU cache map based on the Caffeine cache builder.<p>
      * Use this instead of synchronized maps for better performance.<p>
      *
      * @param capacity the cache capacity
      *
      * @return the cache map
      */
-    @SuppressWarnings("unchecked")
     public static <T, V> Map<T, V> createLRUCacheMap(int capacity) {
 
-        CacheBuilder<?, ?> builder = CacheBuilder.newBuilder().concurrencyLevel(CONCURRENCY_LEVEL).maximumSize(
-            capacity);
-        return (Map<T, V>)(builder.build().asMap());
+        return Caffeine.newBuilder().maximumSize(capacity).<T, V> build().asMap();
+    }
+
+    /**
+     * Creates a statistics snapshot for the given cache.<p>
+     *
+     * @param name the name of the cache
+     * @param cache the cache
+     *
+     * @return the statistics snapshot
+     */
+    static <K, V> CmsCacheStatistics createStatistics(String name, Cache<K, V> cache) {
+
+        long size = cache.estimatedSize();
+        long maximumWeight = -1;
+        Optional<Policy.Eviction<K, V>> eviction = cache.policy().eviction();
+        if (eviction.isPresent()) {
+            maximumWeight = eviction.get().getMaximum();
+        }
+        return new CmsCacheStatistics(name, cache.stats(), size, getWeightedSize(cache), maximumWeight);
+    }
+
+    /**
+     * Returns the weight of a value in one of the bounded system caches.<p>
+     *
+     * Lists weigh 1 plus 1 for every {@link #LIST_WEIGHT_DIVISOR} elements, all other values weigh 1.<p>
+     *
+     * @param value the cached value
+     *
+     * @return the weight of the value
+     */
+    static int getCacheWeight(Object value) {
+
+        if (value instanceof List) {
+            return 1 + (((List<?>)value).size() / LIST_WEIGHT_DIVISOR);
+        }
+        return 1;
+    }
+
+    /**
+     * Looks up a value in one of the bounded system caches, recording a hit or a miss.<p>
+     *
+     * @param cache the cache
+     * @param key the key, may be <code>null</code>
+     *
+     * @return the cached value, or <code>null</code> if there is none
+     */
+    private static <V> V getIfPresent(Cache<String, V> cache, String key) {
+
+        if (key == null) {
+            // unlike the guava cache maps used before, Caffeine does not accept null keys
+            return null;
+        }
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Returns the running total weight of the entries of the given cache.<p>
+     *
+     * @param cache the cache
+     *
+     * @return the total weight, or the number of entries if the cache is not weighted
+     */
+    private static <K, V> long getWeightedSize(Cache<K, V> cache) {
+
+        long size = cache.estimatedSize();
+        Optional<Policy.Eviction<K, V>> eviction = cache.policy().eviction();
+        return eviction.isPresent() ? eviction.get().weightedSize().orElse(size) : size;
     }
 
     /**
@@ -545,8 +638,8 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public static long getValueSize(Object obj) {
 
-        if (obj instanceof CmsLruCache) {
-            return ((CmsLruCache)obj).size();
+        if (obj instanceof I_CmsLruCache) {
+            return ((I_CmsLruCache)obj).size();
         }
 
         if (obj instanceof Map) {
@@ -565,17 +658,20 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     }
 
     /**
-     * Caches the given acl under the given cache key.<p>
+     * Caches the given acl for the given resource.<p>
      *
-     * @param key the cache key
+     * @param online <code>true</code> if the acl was computed in the online project
+     * @param rootPath the root path of the resource
+     * @param structureId the structure id of the resource
+     * @param slot the slot of the acl, see {@link CmsAclTreeCache#getSlot(boolean, boolean, int)}
      * @param acl the acl to cache
      */
-    public void cacheACL(String key, CmsAccessControlList acl) {
+    public void cacheACL(boolean online, String rootPath, CmsUUID structureId, int slot, CmsAccessControlList acl) {
 
         if (m_disabled.get(CacheType.ACL) != null) {
             return;
         }
-        m_cacheAccessControlList.put(key, acl);
+        m_cacheAccessControlList.put(online, rootPath, structureId, slot, acl);
     }
 
     /**
@@ -635,7 +731,11 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         if (m_disabled.get(CacheType.LOCK) != null) {
             return;
         }
-        m_cacheLock.put(lock.getResourceName(), lock);
+        m_lockIndex.update(() -> {
+            m_cacheLock.put(lock.getResourceName(), lock);
+            m_lockIndex.put(lock);
+            m_lockJournal.recordChange(lock.getResourceName());
+        });
     }
 
     /**
@@ -748,7 +848,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
             return;
         }
         if (publishedResources == null) {
-            m_cachePublishedResources.remove(cacheKey);
+            m_cachePublishedResources.invalidate(cacheKey);
         } else {
             m_cachePublishedResources.put(cacheKey, publishedResources);
         }
@@ -922,6 +1022,21 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         clearResourceCache();
     }
 
+    /**
+     * Clears the access control list cache for the given resources and the resources below them
+     * when their access control entries are changed.<p>
+     *
+     * @param rootPaths the root paths of the changed resources
+     */
+    public void clearAccessControlListCache(Collection<String> rootPaths) {
+
+        for (String rootPath : rootPaths) {
+            m_cacheAccessControlList.removeSubtree(rootPath);
+        }
+        flushCache(CacheType.PERMISSION);
+        clearResourceCache();
+    }
+
     /**
      * Clears almost all internal caches.<p>
      */
@@ -1058,43 +1173,47 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
                     m_cacheAccessControlList.clear();
                     break;
                 case CONTENT_DEFINITION:
-                    m_cacheContentDefinitions.clear();
+                    m_cacheContentDefinitions.invalidateAll();
                     break;
                 case GROUP:
-                    m_cacheGroup.clear();
+                    m_cacheGroup.invalidateAll();
                     break;
                 case HAS_ROLE:
-                    m_cacheHasRoles.clear();
+                    m_cacheHasRoles.invalidateAll();
                     break;
                 case LOCALE:
                     m_cacheLocale.clear();
                     break;
                 case LOCK:
-                    m_cacheLock.clear();
+                    m_lockIndex.update(() -> {
+                        m_cacheLock.clear();
+                        m_lockIndex.clear();
+                        m_lockJournal.recordReset();
+                    });
                     break;
                 case MEMORY_OBJECT:
                     m_cacheMemObject.clear();
                     break;
                 case ORG_UNIT:
-                    m_cacheOrgUnit.clear();
+                    m_cacheOrgUnit.invalidateAll();
                     break;
                 case PERMISSION:
-                    m_cachePermission.clear();
+                    m_cachePermission.invalidateAll();
                     break;
                 case PROJECT:
-                    m_cacheProject.clear();
+                    m_cacheProject.invalidateAll();
                     break;
                 case PROJECT_RESOURCES:
-                    m_cacheProjectResources.clear();
+                    m_cacheProjectResources.invalidateAll();
                     break;
                 case PROPERTY:
-                    m_cacheProperty.clear();
+                    m_cacheProperty.invalidateAll();
                     break;
                 case PROPERTY_LIST:
-                    m_cachePropertyList.clear();
+                    m_cachePropertyList.invalidateAll();
                     break;
                 case PUBLISHED_RESOURCES:
-                    m_cachePublishedResources.clear();
+                    m_cachePublishedResources.invalidateAll();
                     break;
                 case PUBLISH_HISTORY:
                     m_publishHistory.clear();
@@ -1103,23 +1222,23 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
                     m_publishQueue.clear();
                     break;
                 case RESOURCE:
-                    m_cacheResource.clear();
+                    m_cacheResource.invalidateAll();
                     break;
                 case RESOURCE_LIST:
-                    m_cacheResourceList.clear();
+                    m_cacheResourceList.invalidateAll();
                     break;
                 case ROLE_LIST:
-                    m_cacheRoleLists.clear();
+                    m_cacheRoleLists.invalidateAll();
                     m_resourceOuCache.invalidateAll();
                     break;
                 case USER:
-                    m_cacheUser.clear();
+                    m_cacheUser.invalidateAll();
                     break;
                 case USERGROUPS:
                     m_cacheUserGroups.clear();
                     break;
                 case USER_LIST:
-                    m_cacheUserList.clear();
+                    m_cacheUserList.invalidateAll();
                     break;
                 case VFS_OBJECT:
                     m_cacheVfsObject.clear();
@@ -1128,7 +1247,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
                     m_cacheXmlPermanentEntity.clear();
                     break;
                 case XML_ENTITY_TEMP:
-                    m_cacheXmlTemporaryEntity.clear();
+                    m_cacheXmlTemporaryEntity.invalidateAll();
                     break;
                 default:
                     // can't happen
@@ -1184,12 +1303,18 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         Map<String, CmsLock> newLockCache = new ConcurrentHashMap<String, CmsLock>(newLocks);
         // register it
         register(CmsLockManager.class.getName(), newLockCache);
-        // save the old cache
-        Map<String, CmsLock> oldCache = m_cacheLock;
-        // replace the old by the new cache
-        m_cacheLock = newLockCache;
-        // clean up the old cache
-        oldCache.clear();
+        m_lockIndex.update(() -> {
+            // save the old cache
+            Map<String, CmsLock> oldCache = m_cacheLock;
+            // replace the old by the new cache
+            m_cacheLock = newLockCache;
+            // rebuild the lock index
+            m_lockIndex.clear();
+            m_lockIndex.putAll(newLockCache.values());
+            m_lockJournal.recordReset();
+            // clean up the old cache
+            oldCache.clear();
+        });
     }
 
     /**
@@ -1455,15 +1580,18 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     }
 
     /**
-     * Returns the ACL cached with the given cache key or <code>null</code> if not found.<p>
+     * Returns the ACL cached for the given resource or <code>null</code> if not found.<p>
      *
-     * @param key the cache key to look for
+     * @param online <code>true</code> to look up the acl computed in the online project
+     * @param rootPath the root path of the resource
+     * @param structureId the structure id of the resource
+     * @param slot the slot of the acl, see {@link CmsAclTreeCache#getSlot(boolean, boolean, int)}
      *
-     * @return the ACL cached with the given cache key
+     * @return the ACL cached for the given resource
      */
-    public CmsAccessControlList getCachedACL(String key) {
+    public CmsAccessControlList getCachedACL(boolean online, String rootPath, CmsUUID structureId, int slot) {
 
-        return m_cacheAccessControlList.get(key);
+        return m_cacheAccessControlList.get(online, rootPath, structureId, slot);
     }
 
     /**
@@ -1475,7 +1603,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public CmsXmlContentDefinition getCachedContentDefinition(String key) {
 
-        return m_cacheContentDefinitions.get(key);
+        return getIfPresent(m_cacheContentDefinitions, key);
     }
 
     /**
@@ -1487,7 +1615,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public CmsGroup getCachedGroup(String key) {
 
-        return m_cacheGroup.get(key);
+        return getIfPresent(m_cacheGroup, key);
     }
 
     /**
@@ -1518,6 +1646,28 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         return m_cacheLock.get(rootPath);
     }
 
+    /**
+     * Returns the path index over the cached locks.<p>
+     *
+     * The index must only be read, it is maintained by the lock cache methods of this monitor.<p>
+     *
+     * @return the lock index
+     */
+    public CmsLockIndex getCachedLockIndex() {
+
+        return m_lockIndex;
+    }
+
+    /**
+     * Returns the journal of the lock changes that have not been persisted yet.<p>
+     *
+     * @return the lock journal
+     */
+    public CmsLockJournal getCachedLockJournal() {
+
+        return m_lockJournal;
+    }
+
     /**
      * Returns the memory object cached with the given cache key or <code>null</code> if not found.<p>
      *
@@ -1539,7 +1689,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public CmsOrganizationalUnit getCachedOrgUnit(String key) {
 
-        return m_cacheOrgUnit.get(key);
+        return getIfPresent(m_cacheOrgUnit, key);
     }
 
     /**
@@ -1551,7 +1701,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public I_CmsPermissionHandler.CmsPermissionCheckResult getCachedPermission(String key) {
 
-        return m_cachePermission.get(key);
+        return getIfPresent(m_cachePermission, key);
     }
 
     /**
@@ -1563,7 +1713,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public CmsProject getCachedProject(String key) {
 
-        return m_cacheProject.get(key);
+        return getIfPresent(m_cacheProject, key);
     }
 
     /**
@@ -1575,7 +1725,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public List<CmsResource> getCachedProjectResources(String key) {
 
-        return m_cacheProjectResources.get(key);
+        return getIfPresent(m_cacheProjectResources, key);
     }
 
     /**
@@ -1587,7 +1737,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public CmsProperty getCachedProperty(String key) {
 
-        return m_cacheProperty.get(key);
+        return getIfPresent(m_cacheProperty, key);
     }
 
     /**
@@ -1599,7 +1749,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public List<CmsProperty> getCachedPropertyList(String key) {
 
-        return m_cachePropertyList.get(key);
+        return getIfPresent(m_cachePropertyList, key);
     }
 
     /**
@@ -1611,7 +1761,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public List<CmsPublishedResource> getCachedPublishedResources(String cacheKey) {
 
-        return m_cachePublishedResources.get(cacheKey);
+        return getIfPresent(m_cachePublishedResources, cacheKey);
     }
 
     /**
@@ -1662,7 +1812,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public CmsResource getCachedResource(String key) {
 
-        return m_cacheResource.get(key);
+        return getIfPresent(m_cacheResource, key);
     }
 
     /**
@@ -1674,7 +1824,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public List<CmsResource> getCachedResourceList(String key) {
 
-        return m_cacheResourceList.get(key);
+        return getIfPresent(m_cacheResourceList, key);
     }
 
     /**
@@ -1686,7 +1836,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public Boolean getCachedRole(String key) {
 
-        return m_cacheHasRoles.get(key);
+        return getIfPresent(m_cacheHasRoles, key);
     }
 
     /**
@@ -1698,7 +1848,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public List<CmsRole> getCachedRoleList(String key) {
 
-        return m_cacheRoleLists.get(key);
+        return getIfPresent(m_cacheRoleLists, key);
     }
 
     /**
@@ -1710,7 +1860,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public CmsUser getCachedUser(String key) {
 
-        return m_cacheUser.get(key);
+        return getIfPresent(m_cacheUser, key);
     }
 
     /**
@@ -1735,7 +1885,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public List<CmsUser> getCachedUserList(String key) {
 
-        return m_cacheUserList.get(key);
+        return getIfPresent(m_cacheUserList, key);
     }
 
     /**
@@ -1771,7 +1921,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public byte[] getCachedXmlTemporaryEntity(String key) {
 
-        return m_cacheXmlTemporaryEntity.get(key);
+        return getIfPresent(m_cacheXmlTemporaryEntity, key);
     }
 
     /**
@@ -1800,6 +1950,26 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         }
     }
 
+    /**
+     * Returns the hit, miss and eviction statistics of the bounded system caches.<p>
+     *
+     * The unbounded caches (locks, locales, VFS and memory objects, permanent XML entities),
+     * the user groups cache and the access control list cache have no statistics.<p>
+     *
+     * @return the statistics of the bounded system caches, in the order of the cache types
+     */
+    public List<CmsCacheStatistics> getCacheStatistics() {
+
+        List<CmsCacheStatistics> result = new ArrayList<CmsCacheStatistics>();
+        for (CacheType type : CacheType.values()) {
+            Cache<String, ?> cache = m_caches.get(type);
+            if (cache != null) {
+                result.add(createStatistics(type.name(), cache));
+            }
+        }
+        return result;
+    }
+
     /**
      * Gets the group list cache.
      *
@@ -1907,19 +2077,24 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         // create and register all system caches
 
         // temporary xml entities cache
-        m_cacheXmlTemporaryEntity = createLRUCacheMap(128);
-        register(CmsXmlEntityResolver.class.getName() + ".xmlEntityTemporaryCache", m_cacheXmlTemporaryEntity);
+        m_cacheXmlTemporaryEntity = createCache(
+            CacheType.XML_ENTITY_TEMP,
+            128,
+            CmsXmlEntityResolver.class.getName() + ".xmlEntityTemporaryCache");
 
         // permanent xml entities cache
         m_cacheXmlPermanentEntity = new ConcurrentHashMap<String, byte[]>(32);
         register(CmsXmlEntityResolver.class.getName() + ".xmlEntityPermanentCache", m_cacheXmlPermanentEntity);
 
         // xml content definitions cache
-        m_cacheContentDefinitions = createLRUCacheMap(64);
-        register(CmsXmlEntityResolver.class.getName() + ".contentDefinitionsCache", m_cacheContentDefinitions);
+        m_cacheContentDefinitions = createCache(
+            CacheType.CONTENT_DEFINITION,
+            64,
+            CmsXmlEntityResolver.class.getName() + ".contentDefinitionsCache");
 
         // lock cache
         m_cacheLock = new ConcurrentHashMap<String, CmsLock>();
+        m_lockIndex.clear();
         register(CmsLockManager.class.getName(), m_cacheLock);
 
         // locale cache
@@ -1927,36 +2102,50 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         register(CmsLocaleManager.class.getName(), m_cacheLocale);
 
         // permissions cache
-        m_cachePermission = createLRUCacheMap(cacheSettings.getPermissionCacheSize());
-        register(CmsSecurityManager.class.getName(), m_cachePermission);
+        m_cachePermission = createCache(
+            CacheType.PERMISSION,
+            cacheSettings.getPermissionCacheSize(),
+            CmsSecurityManager.class.getName());
 
         // user cache
-        m_cacheUser = createLRUCacheMap(cacheSettings.getUserCacheSize());
-        register(CmsDriverManager.class.getName() + ".userCache", m_cacheUser);
+        m_cacheUser = createCache(
+            CacheType.USER,
+            cacheSettings.getUserCacheSize(),
+            CmsDriverManager.class.getName() + ".userCache");
 
         // user list cache
-        m_cacheUserList = createLRUCacheMap(cacheSettings.getUserCacheSize());
-        register(CmsDriverManager.class.getName() + ".userListCache", m_cacheUserList);
+        m_cacheUserList = createCache(
+            CacheType.USER_LIST,
+            cacheSettings.getUserCacheSize(),
+            CmsDriverManager.class.getName() + ".userListCache");
 
         // group cache
-        m_cacheGroup = createLRUCacheMap(cacheSettings.getGroupCacheSize());
-        register(CmsDriverManager.class.getName() + ".groupCache", m_cacheGroup);
+        m_cacheGroup = createCache(
+            CacheType.GROUP,
+            cacheSettings.getGroupCacheSize(),
+            CmsDriverManager.class.getName() + ".groupCache");
 
         // organizational unit cache
-        m_cacheOrgUnit = createLRUCacheMap(cacheSettings.getOrgUnitCacheSize());
-        register(CmsDriverManager.class.getName() + ".orgUnitCache", m_cacheOrgUnit);
+        m_cacheOrgUnit = createCache(
+            CacheType.ORG_UNIT,
+            cacheSettings.getOrgUnitCacheSize(),
+            CmsDriverManager.class.getName() + ".orgUnitCache");
 
         // user groups list cache
         m_cacheUserGroups = new CmsGroupListCache(cacheSettings.getUserGroupsCacheSize());
         register(CmsDriverManager.class.getName() + ".userGroupsCache", m_cacheUserGroups);
 
         // project cache
-        m_cacheProject = createLRUCacheMap(cacheSettings.getProjectCacheSize());
-        register(CmsDriverManager.class.getName() + ".projectCache", m_cacheProject);
+        m_cacheProject = createCache(
+            CacheType.PROJECT,
+            cacheSettings.getProjectCacheSize(),
+            CmsDriverManager.class.getName() + ".projectCache");
 
         // project resources cache cache
-        m_cacheProjectResources = createLRUCacheMap(cacheSettings.getProjectResourcesCacheSize());
-        register(CmsDriverManager.class.getName() + ".projectResourcesCache", m_cacheProjectResources);
+        m_cacheProjectResources = createCache(
+            CacheType.PROJECT_RESOURCES,
+            cacheSettings.getProjectResourcesCacheSize(),
+            CmsDriverManager.class.getName() + ".projectResourcesCache");
 
         // publish history
         int size = configuration.getPublishManager().getPublishHistorySize();
@@ -1970,35 +2159,49 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         register(CmsPublishQueue.class.getName() + ".publishQueue", buffer);
 
         // resource cache
-        m_cacheResource = createLRUCacheMap(cacheSettings.getResourceCacheSize());
-        register(CmsDriverManager.class.getName() + ".resourceCache", m_cacheResource);
+        m_cacheResource = createCache(
+            CacheType.RESOURCE,
+            cacheSettings.getResourceCacheSize(),
+            CmsDriverManager.class.getName() + ".resourceCache");
 
         // roles cache
-        m_cacheHasRoles = createLRUCacheMap(cacheSettings.getRolesCacheSize());
-        register(CmsDriverManager.class.getName() + ".rolesCache", m_cacheHasRoles);
+        m_cacheHasRoles = createCache(
+            CacheType.HAS_ROLE,
+            cacheSettings.getRolesCacheSize(),
+            CmsDriverManager.class.getName() + ".rolesCache");
 
         // role lists cache
-        m_cacheRoleLists = createLRUCacheMap(cacheSettings.getRolesCacheSize());
-        register(CmsDriverManager.class.getName() + ".roleListsCache", m_cacheRoleLists);
+        m_cacheRoleLists = createCache(
+            CacheType.ROLE_LIST,
+            cacheSettings.getRolesCacheSize(),
+            CmsDriverManager.class.getName() + ".roleListsCache");
 
         // resource list cache
-        m_cacheResourceList = createLRUCacheMap(cacheSettings.getResourcelistCacheSize());
-        register(CmsDriverManager.class.getName() + ".resourceListCache", m_cacheResourceList);
+        m_cacheResourceList = createCache(
+            CacheType.RESOURCE_LIST,
+            cacheSettings.getResourcelistCacheSize(),
+            CmsDriverManager.class.getName() + ".resourceListCache");
 
         // property cache
-        m_cacheProperty = createLRUCacheMap(cacheSettings.getPropertyCacheSize());
-        register(CmsDriverManager.class.getName() + ".propertyCache", m_cacheProperty);
+        m_cacheProperty = createCache(
+            CacheType.PROPERTY,
+            cacheSettings.getPropertyCacheSize(),
+            CmsDriverManager.class.getName() + ".propertyCache");
 
         // property list cache
-        m_cachePropertyList = createLRUCacheMap(cacheSettings.getPropertyListsCacheSize());
-        register(CmsDriverManager.class.getName() + ".propertyListCache", m_cachePropertyList);
+        m_cachePropertyList = createCache(
+            CacheType.PROPERTY_LIST,
+            cacheSettings.getPropertyListsCacheSize(),
+            CmsDriverManager.class.getName() + ".propertyListCache");
 
         // published resources list cache
-        m_cachePublishedResources = createLRUCacheMap(5);
-        register(CmsDriverManager.class.getName() + ".publishedResourcesCache", m_cachePublishedResources);
+        m_cachePublishedResources = createCache(
+            CacheType.PUBLISHED_RESOURCES,
+            5,
+            CmsDriverManager.class.getName() + ".publishedResourcesCache");
 
         // acl cache
-        m_cacheAccessControlList = createLRUCacheMap(cacheSettings.getAclCacheSize());
+        m_cacheAccessControlList = new CmsAclTreeCache(cacheSettings.getAclCacheSize());
         register(CmsDriverManager.class.getName() + ".accessControlListCache", m_cacheAccessControlList);
 
         // vfs object cache
@@ -2160,6 +2363,23 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         }
     }
 
+    /**
+     * Adds a new object with the given limit to the monitor.<p>
+     *
+     * Use this for objects like maps bounded by their number of entries, which do not provide their own limit.<p>
+     *
+     * @param objectName name of the object
+     * @param object the object for monitoring
+     * @param limit the limit of the object, e.g. the maximum number of entries
+     */
+    public void register(String objectName, Object object, long limit) {
+
+        if (enabled()) {
+            m_monitoredLimits.put(objectName, Long.valueOf(limit));
+            m_monitoredObjects.put(objectName, object);
+        }
+    }
+
     /**
      * Checks if some kind of persistence is required.<p>
      *
@@ -2259,7 +2479,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public void uncacheContentDefinition(String key) {
 
-        m_cacheContentDefinitions.remove(key);
+        m_cacheContentDefinitions.invalidate(key);
     }
 
     /**
@@ -2271,8 +2491,8 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public void uncacheGroup(CmsGroup group) {
 
-        m_cacheGroup.remove(group.getId().toString());
-        m_cacheGroup.remove(group.getName());
+        m_cacheGroup.invalidate(group.getId().toString());
+        m_cacheGroup.invalidate(group.getName());
     }
 
     /**
@@ -2282,7 +2502,12 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public void uncacheLock(String rootPath) {
 
-        m_cacheLock.remove(rootPath);
+        m_lockIndex.update(() -> {
+            if (m_cacheLock.remove(rootPath) != null) {
+                m_lockIndex.remove(rootPath);
+                m_lockJournal.recordChange(rootPath);
+            }
+        });
     }
 
     /**
@@ -2294,8 +2519,8 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public void uncacheOrgUnit(CmsOrganizationalUnit orgUnit) {
 
-        m_cacheOrgUnit.remove(orgUnit.getId().toString());
-        m_cacheOrgUnit.remove(orgUnit.getName());
+        m_cacheOrgUnit.invalidate(orgUnit.getId().toString());
+        m_cacheOrgUnit.invalidate(orgUnit.getName());
     }
 
     /**
@@ -2307,8 +2532,18 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public void uncacheProject(CmsProject project) {
 
-        m_cacheProject.remove(project.getUuid().toString());
-        m_cacheProject.remove(project.getName());
+        m_cacheProject.invalidate(project.getUuid().toString());
+        m_cacheProject.invalidate(project.getName());
+    }
+
+    /**
+     * Removes all cached property lists whose cache key matches the given filter.<p>
+     *
+     * @param keyFilter the filter for the cache keys to remove
+     */
+    public void uncachePropertyLists(Predicate<String> keyFilter) {
+
+        m_cachePropertyList.asMap().keySet().removeIf(keyFilter);
     }
 
     /**
@@ -2340,8 +2575,8 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public void uncacheUser(CmsUser user) {
 
-        m_cacheUser.remove(user.getId().toString());
-        m_cacheUser.remove(user.getName());
+        m_cacheUser.invalidate(user.getId().toString());
+        m_cacheUser.invalidate(user.getName());
     }
 
     /**
@@ -2361,7 +2596,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public void uncacheXmlTemporaryEntity(String key) {
 
-        m_cacheXmlTemporaryEntity.remove(key);
+        m_cacheXmlTemporaryEntity.invalidate(key);
     }
 
     /**
@@ -2384,10 +2619,33 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         System.gc();
     }
 
+    /**
+     * Creates one of the bounded system caches and registers it for monitoring.<p>
+     *
+     * The cache is bounded by the weight of its values (see {@link #getCacheWeight(Object)}),
+     * so a cache of large lists holds fewer entries than a cache of small ones.
+     * Hit, miss and eviction statistics are recorded.<p>
+     *
+     * @param type the cache type
+     * @param capacity the maximum weight of the cache
+     * @param monitorKey the key to register the cache with for monitoring
+     *
+     * @return the new cache
+     */
+    protected <V> Cache<String, V> createCache(CacheType type, int capacity, String monitorKey) {
+
+        Cache<String, V> cache = Caffeine.newBuilder().maximumWeight(capacity).weigher(
+            (String key, V value) -> getCacheWeight(value)).recordStats().build();
+        m_caches.put(type, cache);
+        m_weightedCaches.put(monitorKey, cache);
+        register(monitorKey, cache.asMap());
+        return cache;
+    }
+
     /**
      * Returns the cache costs of a monitored object.<p>
      *
-     * <code>obj</code> must be of type {@link CmsLruCache}.<p>
+     * <code>obj</code> must be of type {@link I_CmsLruCache}.<p>
      *
      * @param obj the object
      *
@@ -2396,8 +2654,8 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     protected long getCosts(Object obj) {
 
         long costs = 0;
-        if (obj instanceof CmsLruCache) {
-            costs = ((CmsLruCache)obj).getObjectCosts();
+        if (obj instanceof I_CmsLruCache) {
+            costs = ((I_CmsLruCache)obj).getObjectCosts();
             if (costs < 0) {
                 costs = 0;
             }
@@ -2406,10 +2664,53 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         return costs;
     }
 
+    /**
+     * Returns the estimated memory size of a monitored object.<p>
+     *
+     * The size is calculated in time proportional to the sample size, not to the size of the object:
+     * objects implementing {@link I_CmsMemoryMonitorable} report their own size, LRU caches report
+     * their costs, the bounded system caches multiply the sampled size per weight unit with their running
+     * weight, and all other maps and collections are estimated from a bounded number of their entries.<p>
+     *
+     * @param key the key the object is monitored with
+     * @param obj the object
+     *
+     * @return the estimated memory size of the object
+     */
+    protected long getEstimatedSize(String key, Object obj) {
+
+        if (obj instanceof I_CmsMemoryMonitorable) {
+            return ((I_CmsMemoryMonitorable)obj).getMemorySize();
+        }
+        if (obj instanceof I_CmsLruCache) {
+            return getCosts(obj);
+        }
+        if (obj instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>)obj;
+            Cache<String, ?> cache = m_weightedCaches.get(key);
+            if (cache != null) {
+                return CmsMemorySizeEstimator.estimate(
+                    map,
+                    getWeightedSize(cache),
+                    CmsMemoryMonitor::getCacheWeight,
+                    CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE);
+            }
+            return CmsMemorySizeEstimator.sample(map, CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE);
+        }
+        if (obj instanceof Collection) {
+            return CmsMemorySizeEstimator.sample((Collection<?>)obj, CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE);
+        }
+        try {
+            return getMemorySize(obj);
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
     /**
      * Returns the number of items within a monitored object.<p>
      *
-     * <code>obj</code> must be of type {@link CmsLruCache} or {@link Map}.<p>
+     * <code>obj</code> must be of type {@link I_CmsLruCache} or {@link Map}.<p>
      *
      * @param obj the object
      *
@@ -2417,8 +2718,8 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     protected String getItems(Object obj) {
 
-        if (obj instanceof CmsLruCache) {
-            return Integer.toString(((CmsLruCache)obj).size());
+        if (obj instanceof I_CmsLruCache) {
+            return Integer.toString(((I_CmsLruCache)obj).size());
         }
         if (obj instanceof Map) {
             return Integer.toString(((Map<?, ?>)obj).size());
@@ -2426,6 +2727,9 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         if (obj instanceof CmsGroupListCache) {
             return "" + ((CmsGroupListCache)obj).size();
         }
+        if (obj instanceof CmsAclTreeCache) {
+            return "" + ((CmsAclTreeCache)obj).size();
+        }
         return "-";
     }
 
@@ -2498,7 +2802,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     /**
      * Returns the max costs for all items within a monitored object.<p>
      *
-     * <code>obj</code> must be of type {@link CmsLruCache} or {@link LRUMap}.<p>
+     * <code>obj</code> must be of type {@link I_CmsLruCache} or {@link LRUMap}.<p>
      *
      * @param obj the object
      *
@@ -2506,8 +2810,8 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     protected String getLimit(Object obj) {
 
-        if (obj instanceof CmsLruCache) {
-            return Long.toString(((CmsLruCache)obj).getMaxCacheCosts());
+        if (obj instanceof I_CmsLruCache) {
+            return Long.toString(((I_CmsLruCache)obj).getMaxCacheCosts());
         }
         if (obj instanceof LRUMap) {
             return Integer.toString(((LRUMap)obj).maxSize());
@@ -2516,6 +2820,23 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         return "-";
     }
 
+    /**
+     * Returns the limit of a monitored object.<p>
+     *
+     * @param key the key the object is monitored with
+     * @param obj the object
+     *
+     * @return the limit registered for the object, or the result of {@link #getLimit(Object)}
+     */
+    protected String getLimit(String key, Object obj) {
+
+        Long limit = m_monitoredLimits.get(key);
+        if (limit != null) {
+            return limit.toString();
+        }
+        return getLimit(obj);
+    }
+
     /**
      * Sends a warning or status email with OpenCms Memory information.<p>
      *
@@ -2610,7 +2931,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
             PrintfFormat form = new PrintfFormat("%9s");
             Object obj = m_monitoredObjects.get(key);
 
-            long size = getKeySize(obj) + getValueSize(obj) + getCosts(obj);
+            long size = getEstimatedSize(key, obj);
             totalSize += size;
 
             content += new PrintfFormat("%-42.42s").sprintf(shortKey)
@@ -2619,7 +2940,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
                 + form.sprintf(getItems(obj))
                 + "   "
                 + "Limit: "
-                + form.sprintf(getLimit(obj))
+                + form.sprintf(getLimit(key, obj))
                 + "   "
                 + "Size: "
                 + form.sprintf(Long.toString(size))
@@ -2719,7 +3040,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
                 String key = keys.next();
                 Object obj = m_monitoredObjects.get(key);
 
-                long size = getKeySize(obj) + getValueSize(obj) + getCosts(obj);
+                long size = getEstimatedSize(key, obj);
                 totalSize += size;
 
                 PrintfFormat name1 = new PrintfFormat("%-80s");
@@ -2732,10 +3053,14 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
                             name1.sprintf(key),
                             name2.sprintf(obj.getClass().getName()),
                             form.sprintf(getItems(obj)),
-                            form.sprintf(getLimit(obj)),
+                            form.sprintf(getLimit(key, obj)),
                             form.sprintf(Long.toString(size))}));
             }
 
+            for (CmsCacheStatistics stats : getCacheStatistics()) {
+                LOG.info(Messages.get().getBundle().key(Messages.LOG_MM_CACHE_STATS_1, stats.toString()));
+            }
+
             LOG.info(
                 Messages.get().getBundle().key(
                     Messages.LOG_MM_WARNING_MEM_STATUS_6,
@@ -0,0 +1,216 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.monitor;
+
+import org.opencms.main.CmsLog;
+import org.opencms.security.CmsAccessControlList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToIntFunction;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Estimates the memory size of monitored caches from a sample of their entries.<p>
+ *
+ * The sizes are only calculated when the monitor asks for them, never when an entry is added to a cache,
+ * and only for a bounded number of the entries currently contained in the cache. For a weighted cache,
+ * the sampled entries give the average size per weight unit, which is multiplied with the running weight
+ * the cache keeps of all its entries. For other maps and collections, the average sampled entry size is
+ * multiplied with the number of entries.<p>
+ *
+ * The sampled entries are a uniform random selection of all entries (reservoir sampling), so that the sample
+ * is not biased by the iteration order, e.g. by always sizing the entries of the same hash bins.<p>
+ *
+ * @see org.opencms.monitor.CmsMemoryMonitor
+ */
+public final class CmsMemorySizeEstimator {
+
+    /** The default number of samples. */
+    public static final int DEFAULT_SAMPLE_SIZE = 64;
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsMemorySizeEstimator.class);
+
+    /** The maximum recursion depth used to calculate the size of a sampled entry. */
+    private static final int SAMPLE_DEPTH = 3;
+
+    /**
+     * Hide constructor to prevent generation of class instances.<p>
+     */
+    private CmsMemorySizeEstimator() {
+
+        // empty
+    }
+
+    /**
+     * Estimates the memory size of a weighted cache by inspecting at most <code>sampleSize</code> of its entries.<p>
+     *
+     * @param map the entries of the cache
+     * @param totalWeight the current total weight of all entries of the cache
+     * @param weigher the weigher of the cache
+     * @param sampleSize the maximum number of entries to inspect
+     *
+     * @return the estimated memory size of the cache
+     */
+    public static long estimate(Map<?, ?> map, long totalWeight, ToIntFunction<Object> weigher, int sampleSize) {
+
+        if ((totalWeight <= 0) || map.isEmpty()) {
+            return 0;
+        }
+        long size = 0;
+        long weight = 0;
+        try {
+            for (Map.Entry<?, ?> entry : selectSample(map.entrySet().iterator(), sampleSize)) {
+                size += getEntrySize(entry.getKey(), entry.getValue());
+                weight += weigher.applyAsInt(entry.getValue());
+            }
+        } catch (Throwable t) {
+            // catch all other exceptions otherwise the whole monitor will stop working
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(Messages.get().getBundle().key(Messages.LOG_CAUGHT_THROWABLE_1, t.getMessage()));
+            }
+        }
+        return weight == 0 ? 0 : (size * totalWeight) / weight;
+    }
+
+    /**
+     * Returns the estimated memory size of a single cache entry.<p>
+     *
+     * The size of nested maps and lists is calculated up to a limited depth.<p>
+     *
+     * @param key the key of the entry, may be <code>null</code>
+     * @param value the value of the entry
+     *
+     * @return the estimated memory size of the entry
+     */
+    public static long getEntrySize(Object key, Object value) {
+
+        long size = (key instanceof String) ? CmsMemoryMonitor.getMemorySize(key) : 0;
+        Object obj = value;
+        if (obj instanceof CmsAccessControlList) {
+            obj = ((CmsAccessControlList)obj).getPermissionMap();
+        }
+        if (obj instanceof Map) {
+            size += CmsMemoryMonitor.getValueSize((Map<?, ?>)obj, SAMPLE_DEPTH);
+        } else if (obj instanceof List) {
+            size += CmsMemoryMonitor.getValueSize((List<?>)obj, SAMPLE_DEPTH);
+        } else {
+            size += CmsMemoryMonitor.getMemorySize(obj);
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the memory size of a collection by inspecting at most <code>sampleSize</code> of its elements.<p>
+     *
+     * @param collection the collection
+     * @param sampleSize the maximum number of elements to inspect
+     *
+     * @return the estimated memory size of the collection
+     */
+    public static long sample(Collection<?> collection, int sampleSize) {
+
+        int total = collection.size();
+        if (total == 0) {
+            return 0;
+        }
+        long size = 0;
+        int count = 0;
+        try {
+            for (Object element : selectSample(collection.iterator(), sampleSize)) {
+                size += getEntrySize(null, element);
+                count++;
+            }
+        } catch (Throwable t) {
+            // catch all other exceptions otherwise the whole monitor will stop working
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(Messages.get().getBundle().key(Messages.LOG_CAUGHT_THROWABLE_1, t.getMessage()));
+            }
+        }
+        return count == 0 ? 0 : (size / count) * total;
+    }
+
+    /**
+     * Estimates the memory size of a map by inspecting at most <code>sampleSize</code> of its entries.<p>
+     *
+     * @param map the map
+     * @param sampleSize the maximum number of entries to inspect
+     *
+     * @return the estimated memory size of the map
+     */
+    public static long sample(Map<?, ?> map, int sampleSize) {
+
+        return estimate(map, map.size(), value -> 1, sampleSize);
+    }
+
+    /**
+     * Selects a uniform random sample of at most <code>sampleSize</code> elements from the given iterator.<p>
+     *
+     * This uses reservoir sampling (Algorithm R): all elements are iterated, but only the sampled ones are kept,
+     * and the sizes are calculated for the sampled elements only.<p>
+     *
+     * @param it the iterator over all elements
+     * @param sampleSize the maximum number of elements to select
+     *
+     * @return the selected elements
+     */
+    private static <T> List<T> selectSample(Iterator<T> it, int sampleSize) {
+
+        List<T> sample = new ArrayList<T>(Math.max(0, Math.min(sampleSize, 1024)));
+        if (sampleSize <= 0) {
+            return sample;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long seen = 0;
+        try {
+            while (it.hasNext()) {
+                T element = it.next();
+                seen++;
+                if (sample.size() < sampleSize) {
+                    sample.add(element);
+                } else {
+                    // replace a sampled element with probability sampleSize / seen
+                    long pos = random.nextLong(seen);
+                    if (pos < sampleSize) {
+                        sample.set((int)pos, element);
+                    }
+                }
+            }
+        } catch (ConcurrentModificationException e) {
+            // the collection was changed while sampling, use what we have
+        }
+        return sample;
+    }
+}
@@ -27,11 +27,15 @@
 
 package org.opencms.mx;
 
+import org.opencms.main.OpenCms;
 import org.opencms.main.OpenCmsServlet;
 import org.opencms.main.OpenCmsServlet.RequestInfo;
+import org.opencms.monitor.CmsCacheStatistics;
+import org.opencms.monitor.CmsMemoryMonitor;
 
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.management.MBeanServer;
@@ -57,6 +61,18 @@ public class CmsDiagnosticsMXBean implements I_CmsDiagnosticsMXBean {
         mbs.registerMBean(INSTANCE, mxbeanName);
     }
 
+    /**
+     * @see org.opencms.mx.I_CmsDiagnosticsMXBean#getCacheStatistics()
+     */
+    public List<CmsCacheStatistics> getCacheStatistics() {
+
+        CmsMemoryMonitor monitor = OpenCms.getMemoryMonitor();
+        if (monitor == null) {
+            return Collections.emptyList();
+        }
+        return monitor.getCacheStatistics();
+    }
+
     /**
      * @see org.opencms.mx.I_CmsDiagnosticsMXBean#listActiveRequests()
      */
@@ -74,4 +90,17 @@ public class CmsDiagnosticsMXBean implements I_CmsDiagnosticsMXBean {
         return result.toString();
     }
 
+    /**
+     * @see org.opencms.mx.I_CmsDiagnosticsMXBean#listCacheStatistics()
+     */
+    public String listCacheStatistics() {
+
+        StringBuilder result = new StringBuilder();
+        for (CmsCacheStatistics stats : getCacheStatistics()) {
+            result.append(stats.toString());
+            result.append("\n");
+        }
+        return result.toString();
+    }
+
 }
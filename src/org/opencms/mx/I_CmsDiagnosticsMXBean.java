@@ -27,11 +27,29 @@
 
 package org.opencms.mx;
 
+import org.opencms.monitor.CmsCacheStatistics;
+
+import java.util.List;
+
 /**
  * Bean interface for special diagnostic information retrievable via JMX.
  */
 public interface I_CmsDiagnosticsMXBean {
 
+    /**
+     * Returns the hit, miss and eviction statistics of the memory monitor caches, one entry per cache type.
+     *
+     * @return the statistics of the memory monitor caches
+     */
+    public List<CmsCacheStatistics> getCacheStatistics();
+
+    /**
+     * Contains a textual representation of the statistics of the memory monitor caches, one line per cache type.
+     *
+     * @return a textual representation of the cache statistics
+     */
+    public String listCacheStatistics();
+
     /**
      * Contains a textual representation of the current requests running in the OpenCmsServlet.
      * <p>
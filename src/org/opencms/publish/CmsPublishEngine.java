@@ -51,10 +51,12 @@ import org.opencms.security.CmsAuthentificationException;
 import org.opencms.security.CmsRole;
 import org.opencms.util.CmsUUID;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.logging.Log;
 
@@ -71,9 +73,6 @@ public final class CmsPublishEngine {
     /** The id of the admin user. */
     private CmsUUID m_adminUserId;
 
-    /** The current running publish job. */
-    private CmsPublishThread m_currentPublishThread;
-
     /** The runtime info factory used during publishing. */
     private final I_CmsDbContextFactory m_dbContextFactory;
 
@@ -86,6 +85,9 @@ public final class CmsPublishEngine {
     /** The publish listeners. */
     private final CmsPublishListenerCollection m_listeners;
 
+    /** The maximum number of publish jobs running at the same time. */
+    private int m_parallelJobs = 1;
+
     /** The publish history list with already published jobs. */
     private final CmsPublishHistory m_publishHistory;
 
@@ -95,6 +97,9 @@ public final class CmsPublishEngine {
     /** The amount of time the system will wait for a running publish job during shutdown. */
     private int m_publishQueueShutdowntime;
 
+    /** The running publish jobs, in the order they were started. */
+    private final List<CmsPublishThread> m_publishThreads = new CopyOnWriteArrayList<CmsPublishThread>();
+
     /** Is set during shutdown. */
     private boolean m_shuttingDown;
 
@@ -133,34 +138,38 @@ public final class CmsPublishEngine {
     }
 
     /**
-     * Abandons the given publish thread.<p>
+     * Abandons the thread of the current publish job.<p>
      */
     public void abandonThread() {
 
-        if (!m_currentPublishThread.isAlive()) {
-            // thread is dead
-            if (LOG.isDebugEnabled()) {
-                LOG.debug(Messages.get().getBundle().key(Messages.LOG_PUBLISH_ENGINE_DEAD_JOB_0));
-            }
-        } else {
-            // thread is not dead, and we suppose it hangs :(
-            if (LOG.isWarnEnabled()) {
-                LOG.warn(
-                    Messages.get().getBundle().key(
-                        Messages.LOG_THREADSTORE_PUBLISH_THREAD_INTERRUPT_2,
-                        m_currentPublishThread.getName(),
-                        m_currentPublishThread.getUUID()));
-            }
-            m_currentPublishThread.interrupt();
+        CmsPublishThread publishThread = getCurrentPublishJob();
+        if (publishThread != null) {
+            abandonThread(publishThread);
+        }
+        // and try again
+        checkCurrentPublishJobThread();
+    }
+
+    /**
+     * Abandons the thread of the running publish job with the given publish history id.<p>
+     *
+     * @param publishHistoryId the publish history id of the running publish job
+     */
+    public void abandonThread(CmsUUID publishHistoryId) {
+
+        CmsPublishThread publishThread = getPublishThread(publishHistoryId);
+        if (publishThread != null) {
+            abandonThread(publishThread);
         }
-        // just throw it away
-        m_currentPublishThread = null;
         // and try again
         checkCurrentPublishJobThread();
     }
 
     /**
      * Controls the publish process.<p>
+     *
+     * Starts waiting publish jobs as long as less than the configured number of parallel jobs are running
+     * and the next job does not touch the resources of a running job.<p>
      */
     public synchronized void checkCurrentPublishJobThread() {
 
@@ -187,31 +196,39 @@ public final class CmsPublishEngine {
             return;
         }
 
-        // there is no running publish job
-        if (m_currentPublishThread == null) {
-            // but something is waiting in the queue
-            if (!m_publishQueue.isEmpty()) {
-                // start the next waiting publish job
-                CmsPublishJobInfoBean publishJob = m_publishQueue.next();
-                m_currentPublishThread = new CmsPublishThread(this, publishJob);
-                m_currentPublishThread.start();
-            } else {
-                // nothing to do
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug(Messages.get().getBundle().key(Messages.LOG_PUBLISH_ENGINE_NO_RUNNING_JOB_0));
-                }
+        // clean up the dead threads
+        for (CmsPublishThread publishThread : m_publishThreads) {
+            if (!publishThread.isAlive()) {
+                abandonThread(publishThread);
             }
-            return;
         }
-        if (m_currentPublishThread.isAlive()) {
-            // normal running
-            // wait until it is finished
-            if (LOG.isDebugEnabled()) {
+
+        // start the waiting publish jobs that do not conflict with a running one
+        while ((m_publishThreads.size() < m_parallelJobs) && !m_publishQueue.isEmpty()) {
+            List<CmsPublishJobInfoBean> runningJobs = new ArrayList<CmsPublishJobInfoBean>();
+            for (CmsPublishThread publishThread : m_publishThreads) {
+                runningJobs.add(publishThread.getPublishJob());
+            }
+            CmsPublishJobInfoBean publishJob = m_publishQueue.next(runningJobs);
+            if (publishJob == null) {
+                break;
+            }
+            // read the origin paths of the moved resources before publishing changes them
+            publishJob.getOriginPaths();
+            CmsPublishThread publishThread = new CmsPublishThread(this, publishJob);
+            // register the thread before starting it, a short job may finish immediately
+            m_publishThreads.add(publishThread);
+            publishThread.start();
+        }
+
+        if (LOG.isDebugEnabled()) {
+            if (m_publishThreads.isEmpty()) {
+                // nothing to do
+                LOG.debug(Messages.get().getBundle().key(Messages.LOG_PUBLISH_ENGINE_NO_RUNNING_JOB_0));
+            } else {
+                // normal running, wait until the jobs are finished
                 LOG.debug(Messages.get().getBundle().key(Messages.LOG_PUBLISH_ENGINE_WAITING_0));
             }
-        } else {
-            // clean up the dead thread
-            abandonThread();
         }
     }
 
@@ -273,10 +290,10 @@ public final class CmsPublishEngine {
      */
     public CmsPublishJobBase getJobByPublishHistoryId(CmsUUID publishHistoryId) {
 
-        // try current running job
-        if ((m_currentPublishThread != null)
-            && m_currentPublishThread.getPublishJob().getPublishHistoryId().equals(publishHistoryId)) {
-            return new CmsPublishJobRunning(m_currentPublishThread.getPublishJob());
+        // try running jobs
+        CmsPublishThread publishThread = getPublishThread(publishHistoryId);
+        if (publishThread != null) {
+            return new CmsPublishJobRunning(publishThread.getPublishJob());
         }
         // try enqueued jobs
         Iterator<CmsPublishJobEnqueued> itEnqueuedJobs = getPublishQueue().asList().iterator();
@@ -335,10 +352,10 @@ public final class CmsPublishEngine {
         // prevent new publish jobs are accepted
         m_shuttingDown = true;
 
-        // if a job is currently running,
+        // if jobs are currently running,
         // wait the specified amount of time,
-        // then write an abort message to the report
-        if (m_currentPublishThread != null) {
+        // then write an abort message to the reports
+        if (!m_publishThreads.isEmpty()) {
 
             // if a shutdown time is defined, wait  if a publish process is running
             if (m_publishQueueShutdowntime > 0) {
@@ -351,8 +368,8 @@ public final class CmsPublishEngine {
                 }
             }
 
-            if (m_currentPublishThread != null) {
-                CmsPublishJobInfoBean publishJob = m_currentPublishThread.getPublishJob();
+            for (CmsPublishThread publishThread : m_publishThreads) {
+                CmsPublishJobInfoBean publishJob = publishThread.getPublishJob();
                 try {
                     abortPublishJob(m_adminUserId, new CmsPublishJobEnqueued(publishJob), false);
                 } catch (CmsException e) {
@@ -399,9 +416,9 @@ public final class CmsPublishEngine {
         // abort event should be raised before the job is removed implicitly
         m_listeners.fireAbort(userId, publishJob);
 
-        if ((m_currentPublishThread == null)
-            || !publishJob.m_publishJob.equals(m_currentPublishThread.getPublishJob())) {
-            // engine is currently publishing another job or is not publishing
+        CmsPublishThread publishThread = getPublishThread(publishJob.m_publishJob.getPublishHistoryId());
+        if ((publishThread == null) || !publishJob.m_publishJob.equals(publishThread.getPublishJob())) {
+            // engine is currently publishing other jobs or is not publishing
             if (!m_publishQueue.abortPublishJob(publishJob.m_publishJob)) {
                 // job not found
                 throw new CmsPublishException(
@@ -409,10 +426,10 @@ public final class CmsPublishEngine {
             }
         } else if (!m_shuttingDown) {
             // engine is currently publishing the job to abort
-            m_currentPublishThread.abort();
-        } else if (m_shuttingDown && (m_currentPublishThread != null)) {
+            publishThread.abort();
+        } else if (m_shuttingDown) {
             // aborting the current job during shut down
-            I_CmsReport report = m_currentPublishThread.getReport();
+            I_CmsReport report = publishThread.getReport();
             report.println();
             report.println();
             report.println(
@@ -460,7 +477,7 @@ public final class CmsPublishEngine {
 
         m_engineState = CmsPublishEngineState.ENGINE_STARTED;
         // start publish job if jobs waiting
-        if ((m_currentPublishThread == null) && !m_publishQueue.isEmpty()) {
+        if ((m_publishThreads.size() < m_parallelJobs) && !m_publishQueue.isEmpty()) {
             checkCurrentPublishJobThread();
         }
     }
@@ -468,11 +485,14 @@ public final class CmsPublishEngine {
     /**
      * Returns the current running publish job.<p>
      *
-     * @return the current running publish job
+     * If several publish jobs are running, this is the one that was started first.<p>
+     *
+     * @return the current running publish job, or <code>null</code> if no publish job is running
      */
     protected CmsPublishThread getCurrentPublishJob() {
 
-        return m_currentPublishThread;
+        Iterator<CmsPublishThread> it = m_publishThreads.iterator();
+        return it.hasNext() ? it.next() : null;
     }
 
     /**
@@ -541,6 +561,16 @@ public final class CmsPublishEngine {
         return result;
     }
 
+    /**
+     * Returns the running publish jobs, in the order they were started.<p>
+     *
+     * @return the running publish jobs
+     */
+    protected List<CmsPublishThread> getRunningPublishJobs() {
+
+        return new ArrayList<CmsPublishThread>(m_publishThreads);
+    }
+
     /**
      * Returns the user identified by the given id.<p>
      *
@@ -568,10 +598,15 @@ public final class CmsPublishEngine {
      * @param adminCms the admin cms
      * @param publishQueuePersistance flag if the queue is persisted
      * @param publishQueueShutdowntime amount of time to wait for a publish job during shutdown
+     * @param parallelJobs the maximum number of publish jobs running at the same time
      *
      * @throws CmsException if something goes wrong
      */
-    protected void initialize(CmsObject adminCms, boolean publishQueuePersistance, int publishQueueShutdowntime)
+    protected void initialize(
+        CmsObject adminCms,
+        boolean publishQueuePersistance,
+        int publishQueueShutdowntime,
+        int parallelJobs)
     throws CmsException {
 
         // check the driver manager
@@ -580,6 +615,7 @@ public final class CmsPublishEngine {
         }
 
         m_publishQueueShutdowntime = publishQueueShutdowntime;
+        m_parallelJobs = Math.max(1, parallelJobs);
 
         // initially the engine is stopped, must be restartet after full system initialization
         m_engineState = CmsPublishEngineState.ENGINE_STOPPED;
@@ -599,7 +635,7 @@ public final class CmsPublishEngine {
     protected boolean isRunning() {
 
         return (((m_engineState == CmsPublishEngineState.ENGINE_STARTED) && !m_publishQueue.isEmpty())
-            || (m_currentPublishThread != null));
+            || !m_publishThreads.isEmpty());
     }
 
     /**
@@ -680,6 +716,9 @@ public final class CmsPublishEngine {
             // log failure, most likely a database problem
             LOG.error(t.getLocalizedMessage(), t);
         }
+        // wipe the thread before finishing the job, finishing drops the publish list
+        // that is needed to check other publish jobs for conflicts with this one
+        m_publishThreads.remove(Thread.currentThread());
         try {
             // finish the job
             publishJob.finish();
@@ -694,10 +733,6 @@ public final class CmsPublishEngine {
             // log failure, most likely a database problem
             LOG.error(t.getLocalizedMessage(), t);
         }
-        if (Thread.currentThread() == m_currentPublishThread) {
-            // wipe the dead thread, only if this thread has not been abandoned
-            m_currentPublishThread = null;
-        }
         // clear the published resources cache
         OpenCms.getMemoryMonitor().flushCache(CmsMemoryMonitor.CacheType.PUBLISHED_RESOURCES);
         // try to start a new publish job
@@ -772,7 +807,7 @@ public final class CmsPublishEngine {
         if (m_engineState != CmsPublishEngineState.ENGINE_STARTED) {
             m_engineState = CmsPublishEngineState.ENGINE_STARTED;
             // start publish job if jobs waiting
-            if ((m_currentPublishThread == null) && !m_publishQueue.isEmpty()) {
+            if ((m_publishThreads.size() < m_parallelJobs) && !m_publishQueue.isEmpty()) {
                 checkCurrentPublishJobThread();
             }
         }
@@ -813,6 +848,50 @@ public final class CmsPublishEngine {
         }
     }
 
+    /**
+     * Abandons the given publish thread.<p>
+     *
+     * @param publishThread the publish thread to abandon
+     */
+    private void abandonThread(CmsPublishThread publishThread) {
+
+        if (!publishThread.isAlive()) {
+            // thread is dead
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(Messages.get().getBundle().key(Messages.LOG_PUBLISH_ENGINE_DEAD_JOB_0));
+            }
+        } else {
+            // thread is not dead, and we suppose it hangs :(
+            if (LOG.isWarnEnabled()) {
+                LOG.warn(
+                    Messages.get().getBundle().key(
+                        Messages.LOG_THREADSTORE_PUBLISH_THREAD_INTERRUPT_2,
+                        publishThread.getName(),
+                        publishThread.getUUID()));
+            }
+            publishThread.interrupt();
+        }
+        // just throw it away
+        m_publishThreads.remove(publishThread);
+    }
+
+    /**
+     * Returns the thread of the running publish job with the given publish history id.<p>
+     *
+     * @param publishHistoryId the publish history id to search for
+     *
+     * @return the publish thread, or <code>null</code> if the publish job is not running
+     */
+    private CmsPublishThread getPublishThread(CmsUUID publishHistoryId) {
+
+        for (CmsPublishThread publishThread : m_publishThreads) {
+            if (publishThread.getPublishJob().getPublishHistoryId().equals(publishHistoryId)) {
+                return publishThread;
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns <code>true</code> if the login manager allows login.<p>
      *
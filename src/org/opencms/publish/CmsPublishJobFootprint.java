@@ -0,0 +1,155 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.publish;
+
+import org.opencms.db.CmsPublishList;
+import org.opencms.file.CmsResource;
+import org.opencms.util.CmsUUID;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The resources touched by one or more publish jobs.<p>
+ *
+ * Two publish jobs conflict if they contain the same resource, a sibling of the same resource,
+ * or if a folder of one job contains a resource of the other job. For moved resources, the online root path
+ * they are moved away from is taken into account as well. Only publish jobs that do not
+ * conflict with any running publish job are allowed to run in parallel.<p>
+ */
+final class CmsPublishJobFootprint {
+
+    /** The root paths of the resources, sorted to find the resources below a folder. */
+    private final TreeSet<String> m_paths = new TreeSet<String>();
+
+    /** The resource ids of the resources. */
+    private final Set<CmsUUID> m_resourceIds = new HashSet<CmsUUID>();
+
+    /**
+     * Adds the resources of the given publish job to this footprint.<p>
+     *
+     * @param publishJob the publish job to add
+     */
+    protected void add(CmsPublishJobInfoBean publishJob) {
+
+        CmsPublishList publishList = publishJob.getPublishList();
+        if (publishList == null) {
+            return;
+        }
+        add(publishList.getAllResources(), publishJob.getOriginPaths());
+    }
+
+    /**
+     * Adds the given resources to this footprint.<p>
+     *
+     * @param resources the resources to add
+     * @param originPaths the online root paths of the moved resources
+     */
+    protected void add(Collection<CmsResource> resources, Collection<String> originPaths) {
+
+        for (CmsResource resource : resources) {
+            m_paths.add(resource.getRootPath());
+            m_resourceIds.add(resource.getResourceId());
+        }
+        m_paths.addAll(originPaths);
+    }
+
+    /**
+     * Checks if the given publish job conflicts with the publish jobs of this footprint.<p>
+     *
+     * @param publishJob the publish job to check
+     *
+     * @return <code>true</code> if the given publish job must not run in parallel with the jobs of this footprint
+     */
+    protected boolean conflicts(CmsPublishJobInfoBean publishJob) {
+
+        CmsPublishList publishList = publishJob.getPublishList();
+        if ((publishList == null) || m_paths.isEmpty()) {
+            return false;
+        }
+        return conflicts(publishList.getAllResources(), publishJob.getOriginPaths());
+    }
+
+    /**
+     * Checks if the given resources conflict with the resources of this footprint.<p>
+     *
+     * @param resources the resources to check
+     * @param originPaths the online root paths of the moved resources
+     *
+     * @return <code>true</code> if the given resources must not be published in parallel with this footprint
+     */
+    protected boolean conflicts(Collection<CmsResource> resources, Collection<String> originPaths) {
+
+        for (CmsResource resource : resources) {
+            if (m_resourceIds.contains(resource.getResourceId())) {
+                return true;
+            }
+            if (conflicts(resource.getRootPath())) {
+                return true;
+            }
+        }
+        for (String originPath : originPaths) {
+            if (conflicts(originPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the given root path conflicts with the paths of this footprint.<p>
+     *
+     * @param rootPath the root path to check
+     *
+     * @return <code>true</code> if the path, a resource below it or a folder above it is part of this footprint
+     */
+    private boolean conflicts(String rootPath) {
+
+        if (m_paths.contains(rootPath)) {
+            return true;
+        }
+        if (CmsResource.isFolder(rootPath)) {
+            // check for resources below the folder
+            String next = m_paths.ceiling(rootPath);
+            if ((next != null) && next.startsWith(rootPath)) {
+                return true;
+            }
+        }
+        // check for folders above the resource
+        String parent = CmsResource.getParentFolder(rootPath);
+        while (parent != null) {
+            if (m_paths.contains(parent)) {
+                return true;
+            }
+            parent = CmsResource.getParentFolder(parent);
+        }
+        return false;
+    }
+}
@@ -33,12 +33,17 @@ import org.opencms.file.CmsProject;
 import org.opencms.i18n.CmsLocaleManager;
 import org.opencms.main.CmsContextInfo;
 import org.opencms.main.CmsException;
+import org.opencms.main.CmsLog;
 import org.opencms.main.CmsRuntimeException;
 import org.opencms.main.OpenCms;
 import org.opencms.report.I_CmsReport;
 import org.opencms.util.CmsUUID;
 
+import java.util.Collections;
 import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
 
 /**
  * Publish job information bean.<p>
@@ -50,12 +55,18 @@ public final class CmsPublishJobInfoBean {
     /** The flag used to indicate a direct publish job. */
     public static final int C_PUBLISH_FLAG = 1;
 
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsPublishJobInfoBean.class);
+
     /** The cms context to use for publishing, will be set to <code>null</code> after publishing. */
     private CmsObject m_cms;
 
     /** If this is a "direct publish" operation. */
     private boolean m_directPublish;
 
+    /** The online root paths of the moved resources, lazily initialized. */
+    private Set<String> m_originPaths;
+
     /** Time of creation of this object. */
     private long m_enqueueTime;
 
@@ -443,6 +454,29 @@ public final class CmsPublishJobInfoBean {
         return m_cms;
     }
 
+    /**
+     * Returns the online root paths of the resources of this publish job that have been moved.<p>
+     *
+     * The paths are read once, while the publish list is available, and are kept after the job has finished.<p>
+     *
+     * @return the online root paths of the moved resources
+     */
+    protected synchronized Set<String> getOriginPaths() {
+
+        if (m_originPaths == null) {
+            m_originPaths = Collections.emptySet();
+            if ((m_publishList != null) && (m_cms != null)) {
+                try {
+                    // use a copy, the context of the job must not change while it is published
+                    m_originPaths = m_publishList.getMovedOriginPaths(OpenCms.initCmsObject(m_cms));
+                } catch (CmsException e) {
+                    LOG.error(e.getLocalizedMessage(), e);
+                }
+            }
+        }
+        return m_originPaths;
+    }
+
     /**
      * Returns <code>true</code> if this is a "direct publish" operation.<p>
      *
@@ -80,6 +80,12 @@ public class CmsPublishManager {
     /** The default history size. */
     public static final int DEFAULT_HISTORY_SIZE = 100;
 
+    /** The default number of publish jobs running at the same time. */
+    public static final int DEFAULT_PARALLEL_JOBS = 1;
+
+    /** The default number of threads used to publish the files of a publish job. */
+    public static final int DEFAULT_PUBLISH_THREADS = 1;
+
     /** The default persistence setting for the publish queue. */
     public static final boolean DEFAULT_QUEUE_PERSISTANCE = false;
 
@@ -98,6 +104,9 @@ public class CmsPublishManager {
     /** Indicates if the configuration can be modified. */
     private boolean m_frozen;
 
+    /** The maximum number of publish jobs running at the same time. */
+    private int m_parallelJobs = DEFAULT_PARALLEL_JOBS;
+
     /** The underlying publish engine. */
     private CmsPublishEngine m_publishEngine;
 
@@ -110,6 +119,9 @@ public class CmsPublishManager {
     /** Publish job verifier. */
     private CmsPublishListVerifier m_publishListVerifier = new CmsPublishListVerifier();
 
+    /** The number of threads used to publish the files of a publish job. */
+    private int m_publishThreads = DEFAULT_PUBLISH_THREADS;
+
     /** Indicates if the publish queue is re-initialized on startup. */
     private boolean m_publishQueuePersistance;
 
@@ -163,6 +175,16 @@ public class CmsPublishManager {
         m_publishEngine.abandonThread();
     }
 
+    /**
+     * Abandons the thread of the given running publish job.<p>
+     *
+     * @param publishJob the running publish job
+     */
+    public void abandonThread(CmsPublishJobRunning publishJob) {
+
+        m_publishEngine.abandonThread(publishJob.getPublishHistoryId());
+    }
+
     /**
      * Aborts the given publish job.<p>
      *
@@ -275,7 +297,11 @@ public class CmsPublishManager {
     /**
      * Returns the current running publish job.<p>
      *
+     * If several publish jobs are running, this is the one that was started first.<p>
+     *
      * @return the current running publish job
+     *
+     * @see #getRunningPublishJobs()
      */
     public CmsPublishJobRunning getCurrentPublishJob() {
 
@@ -299,6 +325,18 @@ public class CmsPublishManager {
         return m_publishEngine.getJobByPublishHistoryId(publishHistoryId);
     }
 
+    /**
+     * Returns the maximum number of publish jobs running at the same time.<p>
+     *
+     * Publish jobs run in parallel only if they do not share any resources.<p>
+     *
+     * @return the maximum number of parallel publish jobs
+     */
+    public int getParallelJobs() {
+
+        return m_parallelJobs;
+    }
+
     /**
      * Returns the publish history list with already publish jobs.<p>
      *
@@ -494,6 +532,18 @@ public class CmsPublishManager {
         return m_publishQueueShutdowntime;
     }
 
+    /**
+     * Returns the number of threads used to publish the files of a publish job.<p>
+     *
+     * With more than one thread, files that do not depend on each other are published in parallel.<p>
+     *
+     * @return the number of publish threads
+     */
+    public int getPublishThreads() {
+
+        return m_publishThreads;
+    }
+
     /**
      * Returns a new publish list that contains the unpublished resources related
      * to all resources in the given publish list, the related resources exclude
@@ -527,6 +577,20 @@ public class CmsPublishManager {
         return m_publishEngine.getReportContents(publishJob);
     }
 
+    /**
+     * Returns the running publish jobs, in the order they were started.<p>
+     *
+     * @return a list of {@link CmsPublishJobRunning} objects
+     */
+    public List<CmsPublishJobRunning> getRunningPublishJobs() {
+
+        List<CmsPublishJobRunning> result = new ArrayList<CmsPublishJobRunning>();
+        for (CmsPublishThread publishThread : m_publishEngine.getRunningPublishJobs()) {
+            result.add(new CmsPublishJobRunning(publishThread.getPublishJob()));
+        }
+        return result;
+    }
+
     /**
      * Returns the current user's publish list.<p>
      *
@@ -550,7 +614,7 @@ public class CmsPublishManager {
      */
     public void initialize(CmsObject cms) throws CmsException {
 
-        m_publishEngine.initialize(cms, m_publishQueuePersistance, m_publishQueueShutdowntime);
+        m_publishEngine.initialize(cms, m_publishQueuePersistance, m_publishQueueShutdowntime, m_parallelJobs);
         // Ensure publish history gets written to DB regularly,
         OpenCms.getExecutor().scheduleWithFixedDelay(new Runnable() {
 
@@ -766,6 +830,19 @@ public class CmsPublishManager {
 
     }
 
+    /**
+     * Sets the maximum number of publish jobs running at the same time.<p>
+     *
+     * @param parallelJobs the maximum number of parallel publish jobs
+     */
+    public void setParallelJobs(String parallelJobs) {
+
+        if (m_frozen) {
+            throw new CmsRuntimeException(Messages.get().container(Messages.ERR_CONFIG_FROZEN_0));
+        }
+        m_parallelJobs = Math.max(1, Integer.parseInt(parallelJobs.trim()));
+    }
+
     /**
      * Sets the publish engine during initialization.<p>
      *
@@ -831,6 +908,19 @@ public class CmsPublishManager {
         m_publishQueueShutdowntime = Integer.parseInt(publishQueueShutdowntime);
     }
 
+    /**
+     * Sets the number of threads used to publish the files of a publish job.<p>
+     *
+     * @param publishThreads the number of publish threads
+     */
+    public void setPublishThreads(String publishThreads) {
+
+        if (m_frozen) {
+            throw new CmsRuntimeException(Messages.get().container(Messages.ERR_CONFIG_FROZEN_0));
+        }
+        m_publishThreads = Math.max(1, Integer.parseInt(publishThreads.trim()));
+    }
+
     /**
      * Sets the security manager during initialization.<p>
      *
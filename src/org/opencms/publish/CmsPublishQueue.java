@@ -283,6 +283,37 @@ public class CmsPublishQueue {
         return publishJob;
     }
 
+    /**
+     * Returns the next publish job that can be published in parallel with the given running jobs,
+     * removing it from the queue, or <code>null</code> if there is no such job.<p>
+     *
+     * A job is skipped if it conflicts with a running job, or with a job waiting before it in the queue,
+     * so conflicting jobs are still published in the order they were enqueued.<p>
+     *
+     * @param runningJobs the currently running publish jobs
+     *
+     * @return the next publish job to be published
+     */
+    protected CmsPublishJobInfoBean next(List<CmsPublishJobInfoBean> runningJobs) {
+
+        if (runningJobs.isEmpty()) {
+            return next();
+        }
+        CmsPublishJobFootprint footprint = new CmsPublishJobFootprint();
+        for (CmsPublishJobInfoBean runningJob : runningJobs) {
+            footprint.add(runningJob);
+        }
+        for (CmsPublishJobInfoBean publishJob : OpenCms.getMemoryMonitor().getAllCachedPublishJobs()) {
+            if (!footprint.conflicts(publishJob)) {
+                OpenCms.getMemoryMonitor().uncachePublishJob(publishJob);
+                return publishJob;
+            }
+            // a later job must not overtake this one
+            footprint.add(publishJob);
+        }
+        return null;
+    }
+
     /**
      * Removes the given job from the list.<p>
      *
@@ -41,6 +41,7 @@ import org.opencms.report.I_CmsReport;
 
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -149,9 +150,11 @@ import org.apache.commons.logging.Log;
         }
         try {
             CmsDbContext dbc = m_publishEngine.getDbContext(getCms().getRequestContext());
+            boolean published = false;
             try {
                 // publish
                 m_publishEngine.getDriverManager().publishJob(getCms(), dbc, m_publishJob.getPublishList(), m_report);
+                published = true;
             } catch (Throwable e) {
                 // catch every thing including runtime exceptions
                 dbc.rollback();
@@ -166,6 +169,10 @@ import org.apache.commons.logging.Log;
                 if (m_jspLoader != null) {
                     // update jsp loader cache
                     m_jspLoader.removeFromCache(includingFiles, true);
+                    if (published) {
+                        // the online project is only consistent if the publish succeeded
+                        warmUpJsps(includingFiles);
+                    }
                 }
                 m_report.println(
                     Messages.get().container(Messages.RPT_PUBLISH_RESOURCE_END_0),
@@ -267,4 +274,29 @@ import org.apache.commons.logging.Log;
         }
         return includingFiles;
     }
-}
\ No newline at end of file
+
+    /**
+     * Updates the published JSPs and all JSPs including them in the background,
+     * so that the first request after publishing does not have to wait for it.<p>
+     *
+     * @param includingFiles the root paths of the JSPs including the published files
+     */
+    protected void warmUpJsps(Set<String> includingFiles) {
+
+        try {
+            CmsObject jspCms = OpenCms.initCmsObject(m_publishJob.getCmsObject());
+            jspCms.getRequestContext().setCurrentProject(jspCms.readProject(CmsProject.ONLINE_PROJECT_ID));
+            Set<String> rootPaths = new LinkedHashSet<String>();
+            for (CmsResource resource : m_publishJob.getPublishList().getFileList()) {
+                if (CmsResourceTypeJsp.isJsp(resource) && !resource.getState().isDeleted()) {
+                    rootPaths.add(resource.getRootPath());
+                }
+            }
+            rootPaths.addAll(includingFiles);
+            m_jspLoader.warmUp(jspCms, rootPaths);
+        } catch (Throwable e) {
+            // the JSPs will be updated on the first request
+            LOG.error(e.getLocalizedMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.report;
+
+import org.opencms.i18n.CmsMessageContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Report that buffers all output and writes it to a target report on request.<p>
+ *
+ * This is used by tasks that run in parallel threads but should produce the same report output
+ * as if they had been processed one after the other: every task writes to its own buffered report,
+ * and the buffers are flushed to the target report in the original order of the tasks.<p>
+ *
+ * Errors and warnings added directly are forwarded to the target report immediately.<p>
+ */
+public class CmsBufferedReport extends A_CmsReport {
+
+    /**
+     * A buffered report entry.<p>
+     */
+    private static final class Entry {
+
+        /** The message container, or <code>null</code>. */
+        CmsMessageContainer m_container;
+
+        /** The format. */
+        int m_format;
+
+        /** Flag to indicate a line break after the output. */
+        boolean m_newLine;
+
+        /** The throwable, or <code>null</code>. */
+        Throwable m_throwable;
+
+        /** The string value, or <code>null</code>. */
+        String m_value;
+    }
+
+    /** The buffered entries. */
+    private List<Entry> m_entries = new ArrayList<Entry>();
+
+    /** The target report. */
+    private I_CmsReport m_target;
+
+    /**
+     * Creates a new buffered report for the given target report.<p>
+     *
+     * @param target the target report
+     */
+    public CmsBufferedReport(I_CmsReport target) {
+
+        m_target = target;
+        init(target.getLocale(), target.getSiteRoot());
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#addError(java.lang.Object)
+     */
+    @Override
+    public void addError(Object obj) {
+
+        synchronized (m_target) {
+            m_target.addError(obj);
+        }
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#addWarning(java.lang.Object)
+     */
+    @Override
+    public void addWarning(Object obj) {
+
+        synchronized (m_target) {
+            m_target.addWarning(obj);
+        }
+    }
+
+    /**
+     * Writes all buffered output to the target report and clears the buffer.<p>
+     */
+    public synchronized void flush() {
+
+        for (Entry entry : m_entries) {
+            if (entry.m_throwable != null) {
+                m_target.println(entry.m_throwable);
+            } else if (entry.m_container != null) {
+                if (entry.m_newLine) {
+                    m_target.println(entry.m_container, entry.m_format);
+                } else {
+                    m_target.print(entry.m_container, entry.m_format);
+                }
+            } else if (entry.m_value != null) {
+                if (m_target instanceof A_CmsReport) {
+                    ((A_CmsReport)m_target).print(entry.m_value, entry.m_format);
+                }
+                if (entry.m_newLine) {
+                    m_target.println();
+                }
+            } else {
+                m_target.println();
+            }
+        }
+        m_entries.clear();
+    }
+
+    /**
+     * @see org.opencms.report.I_CmsReport#getReportUpdate()
+     */
+    public String getReportUpdate() {
+
+        return "";
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#print(org.opencms.i18n.CmsMessageContainer)
+     */
+    @Override
+    public void print(CmsMessageContainer container) {
+
+        print(container, FORMAT_DEFAULT);
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#print(org.opencms.i18n.CmsMessageContainer, int)
+     */
+    @Override
+    public void print(CmsMessageContainer container, int format) {
+
+        Entry entry = new Entry();
+        entry.m_container = container;
+        entry.m_format = format;
+        addEntry(entry);
+    }
+
+    /**
+     * @see org.opencms.report.I_CmsReport#println()
+     */
+    public void println() {
+
+        addEntry(new Entry());
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#println(org.opencms.i18n.CmsMessageContainer)
+     */
+    @Override
+    public void println(CmsMessageContainer container) {
+
+        println(container, FORMAT_DEFAULT);
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#println(org.opencms.i18n.CmsMessageContainer, int)
+     */
+    @Override
+    public void println(CmsMessageContainer container, int format) {
+
+        Entry entry = new Entry();
+        entry.m_container = container;
+        entry.m_format = format;
+        entry.m_newLine = true;
+        addEntry(entry);
+    }
+
+    /**
+     * @see org.opencms.report.I_CmsReport#println(java.lang.Throwable)
+     */
+    public void println(Throwable t) {
+
+        Entry entry = new Entry();
+        entry.m_throwable = t;
+        addEntry(entry);
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#print(java.lang.String, int)
+     */
+    @Override
+    protected void print(String value, int format) {
+
+        Entry entry = new Entry();
+        entry.m_value = value;
+        entry.m_format = format;
+        addEntry(entry);
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#println(java.lang.String, int)
+     */
+    @Override
+    protected void println(String value, int format) {
+
+        Entry entry = new Entry();
+        entry.m_value = value;
+        entry.m_format = format;
+        entry.m_newLine = true;
+        addEntry(entry);
+    }
+
+    /**
+     * Adds an entry to the buffer.<p>
+     *
+     * @param entry the entry to add
+     */
+    private synchronized void addEntry(Entry entry) {
+
+        m_entries.add(entry);
+        setLastEntryTime(System.currentTimeMillis());
+    }
+}
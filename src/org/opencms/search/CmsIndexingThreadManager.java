@@ -31,23 +31,135 @@ import org.opencms.db.CmsPublishedResource;
 import org.opencms.file.CmsResource;
 import org.opencms.i18n.CmsMessageContainer;
 import org.opencms.main.CmsLog;
+import org.opencms.report.CmsBufferedReport;
 import org.opencms.report.CmsLogReport;
 import org.opencms.report.I_CmsReport;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Implements the management of indexing threads.<p>
  *
+ * With a single indexing thread, every document is extracted in its own thread and the manager waits
+ * for it before the next document is started. With more indexing threads, the documents are extracted
+ * in parallel on a shared thread pool, while the report output and the index updates still happen
+ * in the order the resources were handed to the manager.<p>
+ *
  * @since 6.0.0
  */
 public class CmsIndexingThreadManager {
 
+    /**
+     * A document extraction running on the shared thread pool.<p>
+     */
+    private final class CmsIndexingJob implements Runnable {
+
+        /** Flag indicating the extraction has been abandoned after the timeout. */
+        boolean m_abandoned;
+
+        /** The report count of the resource. */
+        final int m_count;
+
+        /** The future of the running extraction. */
+        Future<?> m_future;
+
+        /** The VFS indexer. */
+        final CmsVfsIndexer m_indexer;
+
+        /** Flag indicating the extraction slot of this job has been released. */
+        final AtomicBoolean m_released = new AtomicBoolean();
+
+        /** The buffered report the extraction writes to, or <code>null</code>. */
+        final CmsBufferedReport m_report;
+
+        /** The resource to extract. */
+        final CmsResource m_res;
+
+        /** The time the extraction was started, or 0 if it has not started yet. */
+        volatile long m_startTime;
+
+        /** The extraction thread, which is run by a pool thread and not started itself. */
+        final CmsIndexingThread m_thread;
+
+        /** The index writer. */
+        final I_CmsIndexWriter m_writer;
+
+        /**
+         * Creates a new indexing job.<p>
+         *
+         * @param indexer the VFS indexer
+         * @param writer the index writer
+         * @param res the resource to extract
+         * @param count the report count of the resource
+         */
+        CmsIndexingJob(CmsVfsIndexer indexer, I_CmsIndexWriter writer, CmsResource res, int count) {
+
+            m_indexer = indexer;
+            m_writer = writer;
+            m_res = res;
+            m_count = count;
+            m_report = indexer.getReport() != null ? new CmsBufferedReport(indexer.getReport()) : null;
+            m_thread = new CmsIndexingThread(indexer.getCms(), res, indexer.getIndex(), count, m_report);
+        }
+
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+
+            m_startTime = System.currentTimeMillis();
+            try {
+                m_thread.run();
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * Checks if the extraction has been started and is running longer than the timeout.<p>
+         *
+         * @return <code>true</code> if the extraction has timed out
+         */
+        boolean isTimedOut() {
+
+            long startTime = m_startTime;
+            return !m_future.isDone() && (startTime > 0) && ((System.currentTimeMillis() - startTime) > m_timeout);
+        }
+
+        /**
+         * Releases the extraction slot of this job, if not already done.<p>
+         */
+        void release() {
+
+            if (m_released.compareAndSet(false, true)) {
+                m_slots.release();
+            }
+        }
+    }
+
     /** The log object for this class. */
     private static final Log LOG = CmsLog.getLog(CmsIndexingThreadManager.class);
 
+    /** The thread pool shared by all managers extracting documents in parallel, idle threads are discarded. */
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("OpenCms-indexing-%d").setDaemon(true).setPriority(
+            Thread.MIN_PRIORITY).build());
+
     /** Number of threads abandoned. */
     private int m_abandonedCounter;
 
@@ -60,12 +172,21 @@ public class CmsIndexingThreadManager {
     /** The maximum number of modifications before a commit in the search index is triggered. */
     private int m_maxModificationsBeforeCommit;
 
+    /** The extractions not written to the index yet, in the order they were started. */
+    private final Deque<CmsIndexingJob> m_pending = new ArrayDeque<CmsIndexingJob>();
+
     /** Number of thread returned. */
     private int m_returnedCounter;
 
+    /** The free slots for running extractions, abandoned extractions give up their slot. */
+    private final Semaphore m_slots;
+
     /** Overall number of threads started. */
     private int m_startedCounter;
 
+    /** The number of documents extracted in parallel. */
+    private final int m_threads;
+
     /** Timeout for abandoning threads. */
     private long m_timeout;
 
@@ -77,8 +198,22 @@ public class CmsIndexingThreadManager {
      */
     public CmsIndexingThreadManager(long timeout, int maxModificationsBeforeCommit) {
 
+        this(timeout, maxModificationsBeforeCommit, 1);
+    }
+
+    /**
+     * Creates and starts a thread manager for indexing threads.<p>
+     *
+     * @param timeout timeout after a thread is abandoned
+     * @param maxModificationsBeforeCommit the maximum number of modifications before a commit in the search index is triggered
+     * @param threads the number of documents extracted in parallel
+     */
+    public CmsIndexingThreadManager(long timeout, int maxModificationsBeforeCommit, int threads) {
+
         m_timeout = timeout;
         m_maxModificationsBeforeCommit = maxModificationsBeforeCommit;
+        m_threads = Math.max(1, threads);
+        m_slots = new Semaphore(m_threads);
     }
 
     /**
@@ -89,14 +224,22 @@ public class CmsIndexingThreadManager {
      * value. If the timeout value is reached, the indexing thread is
      * aborted by an interrupt signal.<p>
      *
+     * If more than one indexing thread is configured, the manager only waits
+     * until one of the running extractions has finished, and the document
+     * is written to the index later, at the latest in {@link #isRunning()}.<p>
+     *
      * @param indexer the VFS indexer to create the index thread for
      * @param writer the index writer that can update the index
      * @param res the resource
      */
     public void createIndexingThread(CmsVfsIndexer indexer, I_CmsIndexWriter writer, CmsResource res) {
 
-        I_CmsReport report = indexer.getReport();
         m_startedCounter++;
+        if (m_threads > 1) {
+            startIndexingJob(new CmsIndexingJob(indexer, writer, res, m_startedCounter));
+            return;
+        }
+        I_CmsReport report = indexer.getReport();
         CmsIndexingThread thread = new CmsIndexingThread(
             indexer.getCms(),
             res,
@@ -114,52 +257,28 @@ public class CmsIndexingThreadManager {
             // the thread has not finished - so it must be marked as an abandoned thread
             m_abandonedCounter++;
             thread.interrupt();
-            if (LOG.isWarnEnabled()) {
-                LOG.warn(Messages.get().getBundle().key(Messages.LOG_INDEXING_TIMEOUT_1, res.getRootPath()));
-            }
-            if (report != null) {
-                report.println();
-                report.print(
-                    org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_FAILED_0),
-                    I_CmsReport.FORMAT_WARNING);
-                report.println(
-                    Messages.get().container(Messages.RPT_SEARCH_INDEXING_TIMEOUT_1, res.getRootPath()),
-                    I_CmsReport.FORMAT_WARNING);
-            }
+            reportTimeout(report, res);
         } else {
             // the thread finished normally
             m_returnedCounter++;
         }
-        I_CmsSearchDocument doc = thread.getResult();
-        if (doc != null) {
-            // write the document to the index
-            indexer.updateResource(writer, res.getRootPath(), doc);
-        } else {
-            indexer.deleteResource(writer, new CmsPublishedResource(res));
-        }
-        if ((m_startedCounter % m_maxModificationsBeforeCommit) == 0) {
-            try {
-                writer.commit();
-            } catch (IOException e) {
-                if (LOG.isWarnEnabled()) {
-                    LOG.warn(
-                        Messages.get().getBundle().key(
-                            Messages.LOG_IO_INDEX_WRITER_COMMIT_2,
-                            indexer.getIndex().getName(),
-                            indexer.getIndex().getPath()),
-                        e);
-                }
-            }
-        }
+        writeDocument(indexer, writer, res, thread.getResult(), m_startedCounter);
     }
 
     /**
      * Returns if the indexing manager still have indexing threads.<p>
      *
+     * Documents extracted in parallel are written to the index before this method returns.<p>
+     *
      * @return true if the indexing manager still have indexing threads
      */
     public boolean isRunning() {
 
+        // write the pending documents, waiting for running extractions up to the timeout
+        while (!m_pending.isEmpty()) {
+            finishIndexingJob(m_pending.removeFirst());
+        }
+
         if (m_lastLogErrorTime <= 0) {
             m_lastLogErrorTime = System.currentTimeMillis();
             m_lastLogWarnTime = m_lastLogErrorTime;
@@ -223,4 +342,175 @@ public class CmsIndexingThreadManager {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Abandons the extractions running longer than the timeout.<p>
+     */
+    private void abandonTimedOutJobs() {
+
+        Iterator<CmsIndexingJob> it = m_pending.iterator();
+        while (it.hasNext()) {
+            CmsIndexingJob job = it.next();
+            if (!job.m_abandoned && job.isTimedOut()) {
+                abandonIndexingJob(job);
+            }
+        }
+    }
+
+    /**
+     * Abandons the given extraction, giving up its slot for the next extraction.<p>
+     *
+     * @param job the extraction to abandon
+     */
+    private void abandonIndexingJob(CmsIndexingJob job) {
+
+        job.m_abandoned = true;
+        m_abandonedCounter++;
+        job.m_future.cancel(true);
+        job.release();
+    }
+
+    /**
+     * Waits for the given extraction up to the timeout and writes its document to the index.<p>
+     *
+     * @param job the extraction to finish
+     */
+    private void finishIndexingJob(CmsIndexingJob job) {
+
+        if (!job.m_abandoned) {
+            try {
+                long startTime = job.m_startTime;
+                long wait = startTime > 0 ? m_timeout - (System.currentTimeMillis() - startTime) : m_timeout;
+                job.m_future.get(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+                // the thread finished normally
+                m_returnedCounter++;
+            } catch (TimeoutException e) {
+                // the thread has not finished - so it must be marked as an abandoned thread
+                abandonIndexingJob(job);
+            } catch (InterruptedException e) {
+                // keep the interrupt, so the remaining extractions are abandoned as well
+                Thread.currentThread().interrupt();
+                abandonIndexingJob(job);
+            } catch (ExecutionException e) {
+                // the extraction thread catches everything, so this should not happen
+                m_returnedCounter++;
+                LOG.error(e.getLocalizedMessage(), e);
+            }
+        }
+        if (job.m_report != null) {
+            job.m_report.flush();
+        }
+        if (job.m_abandoned) {
+            reportTimeout(job.m_indexer.getReport(), job.m_res);
+        }
+        writeDocument(job.m_indexer, job.m_writer, job.m_res, job.m_thread.getResult(), job.m_count);
+    }
+
+    /**
+     * Writes the timeout of the extraction of the given resource to the log and the report.<p>
+     *
+     * @param report the report to write to, may be <code>null</code>
+     * @param res the resource
+     */
+    private void reportTimeout(I_CmsReport report, CmsResource res) {
+
+        if (LOG.isWarnEnabled()) {
+            LOG.warn(Messages.get().getBundle().key(Messages.LOG_INDEXING_TIMEOUT_1, res.getRootPath()));
+        }
+        if (report != null) {
+            report.println();
+            report.print(
+                org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_FAILED_0),
+                I_CmsReport.FORMAT_WARNING);
+            report.println(
+                Messages.get().container(Messages.RPT_SEARCH_INDEXING_TIMEOUT_1, res.getRootPath()),
+                I_CmsReport.FORMAT_WARNING);
+        }
+    }
+
+    /**
+     * Starts the given extraction on the thread pool.<p>
+     *
+     * Waits for a free extraction slot first, and writes the documents of finished extractions to the index.
+     * At most twice as many extractions as threads are kept in memory before the oldest one is waited for.<p>
+     *
+     * If the calling thread is interrupted while waiting for a free slot, the extraction is abandoned
+     * without being started, and the interrupt status of the thread is restored.<p>
+     *
+     * @param job the extraction to start
+     */
+    private void startIndexingJob(CmsIndexingJob job) {
+
+        boolean acquired = false;
+        while (!acquired) {
+            try {
+                acquired = m_slots.tryAcquire(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // the indexing is being stopped, don't start the extraction and keep the interrupt for the caller
+                Thread.currentThread().interrupt();
+                m_abandonedCounter++;
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn(
+                        Messages.get().getBundle().key(Messages.LOG_INDEXING_INTERRUPTED_1, job.m_res.getRootPath()));
+                }
+                return;
+            }
+            if (!acquired) {
+                abandonTimedOutJobs();
+            }
+        }
+        // write the documents of the finished extractions in order
+        while (!m_pending.isEmpty() && (m_pending.peekFirst().m_future.isDone() || m_pending.peekFirst().m_abandoned)) {
+            finishIndexingJob(m_pending.removeFirst());
+        }
+        // limit the number of documents kept in memory if the oldest extraction takes long
+        while (m_pending.size() >= (2 * m_threads)) {
+            finishIndexingJob(m_pending.removeFirst());
+        }
+        try {
+            job.m_future = POOL.submit(job);
+        } catch (RuntimeException e) {
+            job.release();
+            throw e;
+        }
+        m_pending.addLast(job);
+    }
+
+    /**
+     * Writes the extracted document to the index, or deletes the resource from the index if there is no document.<p>
+     *
+     * @param indexer the VFS indexer
+     * @param writer the index writer
+     * @param res the resource
+     * @param doc the extracted document, may be <code>null</code>
+     * @param count the report count of the resource, used to trigger commits
+     */
+    private void writeDocument(
+        CmsVfsIndexer indexer,
+        I_CmsIndexWriter writer,
+        CmsResource res,
+        I_CmsSearchDocument doc,
+        int count) {
+
+        if (doc != null) {
+            // write the document to the index
+            indexer.updateResource(writer, res.getRootPath(), doc);
+        } else {
+            indexer.deleteResource(writer, new CmsPublishedResource(res));
+        }
+        if ((count % m_maxModificationsBeforeCommit) == 0) {
+            try {
+                writer.commit();
+            } catch (IOException e) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn(
+                        Messages.get().getBundle().key(
+                            Messages.LOG_IO_INDEX_WRITER_COMMIT_2,
+                            indexer.getIndex().getName(),
+                            indexer.getIndex().getPath()),
+                        e);
+                }
+            }
+        }
+    }
+}
@@ -170,21 +170,29 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
 
     /**
      * Handles offline index generation.<p>
+     *
+     * Changes are coalesced per resource until they are picked up by the {@link CmsSearchOfflineIndexThread}.<p>
      */
     protected class CmsSearchOfflineHandler implements I_CmsEventListener {
 
+        /** The time the oldest pending change has been recorded. */
+        private long m_firstChangeTime;
+
         /** Indicates if the event handlers for the offline search have been already registered. */
         private boolean m_isEventRegistered;
 
-        /** The list of resources to index. */
-        private List<CmsPublishedResource> m_resourcesToIndex;
+        /** The time the latest pending change has been recorded. */
+        private long m_lastChangeTime;
+
+        /** The resources to index by their coalescing key, in the order of their latest change. */
+        private LinkedHashMap<String, CmsPublishedResource> m_resourcesToIndex;
 
         /**
          * Initializes the offline index handler.<p>
          */
         protected CmsSearchOfflineHandler() {
 
-            m_resourcesToIndex = new ArrayList<CmsPublishedResource>();
+            m_resourcesToIndex = new LinkedHashMap<String, CmsPublishedResource>();
         }
 
         /**
@@ -261,7 +269,14 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
          */
         protected synchronized void addResourcesToIndex(List<CmsPublishedResource> resourcesToIndex) {
 
-            m_resourcesToIndex.addAll(resourcesToIndex);
+            long now = System.currentTimeMillis();
+            if (m_resourcesToIndex.isEmpty()) {
+                m_firstChangeTime = now;
+            }
+            m_lastChangeTime = now;
+            coalesce(m_resourcesToIndex, resourcesToIndex);
+            // wake up the offline index thread waiting for changes
+            notifyAll();
         }
 
         /**
@@ -273,8 +288,8 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
 
             List<CmsPublishedResource> result;
             synchronized (this) {
-                result = m_resourcesToIndex;
-                m_resourcesToIndex = new ArrayList<CmsPublishedResource>();
+                result = new ArrayList<CmsPublishedResource>(m_resourcesToIndex.values());
+                m_resourcesToIndex = new LinkedHashMap<String, CmsPublishedResource>();
             }
             try {
                 CmsObject cms = m_adminCms;
@@ -347,10 +362,58 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
                 addResourcesToIndex(resourcesToIndex);
             }
         }
+
+        /**
+         * Waits until the pending changes should be indexed.<p>
+         *
+         * Pending changes are indexed as soon as no further change has been recorded for
+         * {@link #OFFLINE_UPDATE_IDLE_TIME} milliseconds, so single edits show up in the offline indexes right away.
+         * While changes keep coming in, for example during an import, they are collected and coalesced
+         * for at most the given update frequency, counted from the oldest pending change.
+         * Without pending changes, or while offline indexing is paused, this method returns after the update
+         * frequency.<p>
+         *
+         * @param updateFrequency the update frequency of the offline indexes in milliseconds
+         *
+         * @throws InterruptedException if the waiting thread is interrupted
+         */
+        protected synchronized void waitForChanges(long updateFrequency) throws InterruptedException {
+
+            long start = System.currentTimeMillis();
+            long idleTime = Math.min(OFFLINE_UPDATE_IDLE_TIME, updateFrequency);
+            boolean paused = updateFrequency == Long.MAX_VALUE;
+            while (true) {
+                long due;
+                if (paused || m_resourcesToIndex.isEmpty()) {
+                    due = addSaturated(start, updateFrequency);
+                } else {
+                    due = Math.min(m_lastChangeTime + idleTime, addSaturated(m_firstChangeTime, updateFrequency));
+                }
+                long now = System.currentTimeMillis();
+                if (now >= due) {
+                    return;
+                }
+                wait(due - now);
+            }
+        }
+
+        /**
+         * Adds two non-negative times, returning {@link Long#MAX_VALUE} on overflow.<p>
+         *
+         * @param time the first time
+         * @param duration the second time
+         *
+         * @return the sum of both times, at most {@link Long#MAX_VALUE}
+         */
+        private long addSaturated(long time, long duration) {
+
+            return (Long.MAX_VALUE - time) < duration ? Long.MAX_VALUE : time + duration;
+        }
     }
 
     /**
-     * The offline indexer thread runs periodically and indexes all resources added by the event handler.<p>
+     * The offline indexer thread indexes all resources added by the event handler,
+     * shortly after the editors stopped changing resources.<p>
      */
     protected class CmsSearchOfflineIndexThread extends Thread {
 
@@ -414,7 +477,7 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
                 while (m_isAlive) {
                     if (!m_updateTriggered) {
                         try {
-                            sleep(offlineUpdateFrequency);
+                            m_handler.waitForChanges(offlineUpdateFrequency);
                         } catch (InterruptedException e) {
                             // continue the thread after interruption
                             if (!m_isAlive) {
@@ -468,29 +531,10 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
          */
         protected List<CmsPublishedResource> getResourcesToIndex() {
 
-            List<CmsPublishedResource> resourcesToIndex = m_handler.getResourcesToIndex();
-            List<CmsPublishedResource> result = new ArrayList<CmsPublishedResource>(resourcesToIndex.size());
-
-            // Reverse to always keep the last list entries
-            Collections.reverse(resourcesToIndex);
-            for (CmsPublishedResource pubRes : resourcesToIndex) {
-                boolean addResource = true;
-                for (CmsPublishedResource resRes : result) {
-                    if (pubRes.equals(resRes)
-                        && (pubRes.getState() == resRes.getState())
-                        && (pubRes.getMovedState() == resRes.getMovedState())
-                        && pubRes.getRootPath().equals(resRes.getRootPath())) {
-                        // resource already in the update list
-                        addResource = false;
-                        break;
-                    }
-                }
-                if (addResource) {
-                    result.add(pubRes);
-                }
-
-            }
-            Collections.reverse(result);
+            // the handler already coalesced the changes, but additionally affected resources may repeat them
+            Map<String, CmsPublishedResource> resourcesToIndex = new LinkedHashMap<String, CmsPublishedResource>();
+            coalesce(resourcesToIndex, m_handler.getResourcesToIndex());
+            List<CmsPublishedResource> result = new ArrayList<CmsPublishedResource>(resourcesToIndex.values());
             return changeStateOfMoveOriginsToDeleted(result);
         }
 
@@ -660,12 +704,21 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
     /** The default value used for keeping the extraction results in the cache (672 hours = 4 weeks). */
     public static final float DEFAULT_EXTRACTION_CACHE_MAX_AGE = 672.0f;
 
+    /** The default maximum size of the extraction result cache in megabytes (1024). */
+    public static final int DEFAULT_EXTRACTION_CACHE_MAX_SIZE = 1024;
+
+    /** The default number of threads used to extract the documents of an index update (1). */
+    public static final int DEFAULT_INDEXING_THREADS = 1;
+
     /** Default for the maximum number of modifications before a commit in the search index is triggered (500). */
     public static final int DEFAULT_MAX_MODIFICATIONS_BEFORE_COMMIT = 500;
 
     /** The default update frequency for offline indexes (15000 msec = 15 sec). */
     public static final int DEFAULT_OFFLINE_UPDATE_FREQNENCY = 15000;
 
+    /** The time without changes after which pending offline index updates are started (300 msec). */
+    public static final long OFFLINE_UPDATE_IDLE_TIME = 300;
+
     /** The default maximal wait time for re-indexing after editing a content. */
     public static final int DEFAULT_MAX_INDEX_WAITTIME = 30000;
 
@@ -720,6 +773,9 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
     /** The max age for extraction results to remain in the cache. */
     private float m_extractionCacheMaxAge;
 
+    /** The maximum size of the extraction result cache in megabytes. */
+    private int m_extractionCacheMaxSize;
+
     /** The cache for the extraction results. */
     private CmsExtractionResultCache m_extractionResultCache;
 
@@ -735,6 +791,9 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
     /** A list of search indexes. */
     private List<I_CmsSearchIndex> m_indexes;
 
+    /** The number of threads used to extract the documents of an index update. */
+    private int m_indexingThreads;
+
     /** Seconds to wait for an index lock. */
     private int m_indexLockMaxWaitSeconds = 10;
 
@@ -781,10 +840,12 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         m_indexSources = new TreeMap<String, CmsSearchIndexSource>();
         m_offlineHandler = new CmsSearchOfflineHandler();
         m_extractionCacheMaxAge = DEFAULT_EXTRACTION_CACHE_MAX_AGE;
+        m_extractionCacheMaxSize = DEFAULT_EXTRACTION_CACHE_MAX_SIZE;
         m_maxExcerptLength = DEFAULT_EXCERPT_LENGTH;
         m_offlineUpdateFrequency = DEFAULT_OFFLINE_UPDATE_FREQNENCY;
         m_maxIndexWaitTime = DEFAULT_MAX_INDEX_WAITTIME;
         m_maxModificationsBeforeCommit = DEFAULT_MAX_MODIFICATIONS_BEFORE_COMMIT;
+        m_indexingThreads = DEFAULT_INDEXING_THREADS;
 
         m_fieldConfigurations = new HashMap<String, I_CmsSearchFieldConfiguration>();
         // make sure we have a "standard" field configuration
@@ -1424,6 +1485,16 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         return m_extractionCacheMaxAge;
     }
 
+    /**
+     * Returns the maximum size of the text extraction result cache (in megabytes).<p>
+     *
+     * @return the maximum size of the text extraction result cache (in megabytes)
+     */
+    public int getExtractionCacheMaxSize() {
+
+        return m_extractionCacheMaxSize;
+    }
+
     /**
      * Returns the search field configuration with the given name.<p>
      *
@@ -1523,6 +1594,16 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         return null;
     }
 
+    /**
+     * Returns the number of threads used to extract the documents of an index update.<p>
+     *
+     * @return the number of indexing threads
+     */
+    public int getIndexingThreads() {
+
+        return m_indexingThreads;
+    }
+
     /**
      * Returns the seconds to wait for an index lock during an update operation.<p>
      *
@@ -1719,6 +1800,7 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         m_extractionResultCache = new CmsExtractionResultCache(
             OpenCms.getSystemInfo().getAbsoluteRfsPathRelativeToWebInf(getDirectory()),
             "/extractCache");
+        m_extractionResultCache.setMaxSize(m_extractionCacheMaxSize * 1024L * 1024L);
         initializeFieldConfigurations();
         initializeIndexes();
         initOfflineIndexes();
@@ -2362,6 +2444,42 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         }
     }
 
+    /**
+     * Sets the maximum size of the text extraction result cache (in megabytes).<p>
+     *
+     * If the size is exceeded, the least recently used extraction results are removed.
+     * A value less or equal than 0 means no limit.<p>
+     *
+     * @param extractionCacheMaxSize the maximum size of the text extraction result cache to set
+     */
+    public void setExtractionCacheMaxSize(int extractionCacheMaxSize) {
+
+        m_extractionCacheMaxSize = extractionCacheMaxSize;
+        if (m_extractionResultCache != null) {
+            m_extractionResultCache.setMaxSize(extractionCacheMaxSize * 1024L * 1024L);
+        }
+    }
+
+    /**
+     * Sets the maximum size of the text extraction result cache (in megabytes) as a String.<p>
+     *
+     * @param extractionCacheMaxSize the maximum size of the text extraction result cache to set
+     */
+    public void setExtractionCacheMaxSize(String extractionCacheMaxSize) {
+
+        try {
+            setExtractionCacheMaxSize(Integer.parseInt(extractionCacheMaxSize.trim()));
+        } catch (NumberFormatException e) {
+            LOG.error(
+                Messages.get().getBundle().key(
+                    Messages.LOG_PARSE_EXTRACTION_CACHE_SIZE_FAILED_2,
+                    extractionCacheMaxSize,
+                    Integer.valueOf(DEFAULT_EXTRACTION_CACHE_MAX_SIZE)),
+                e);
+            setExtractionCacheMaxSize(DEFAULT_EXTRACTION_CACHE_MAX_SIZE);
+        }
+    }
+
     /**
      * Sets the unlock mode during indexing.<p>
      *
@@ -2389,6 +2507,36 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         }
     }
 
+    /**
+     * Sets the number of threads used to extract the documents of an index update.<p>
+     *
+     * @param indexingThreads the number of indexing threads
+     */
+    public void setIndexingThreads(int indexingThreads) {
+
+        m_indexingThreads = Math.max(1, indexingThreads);
+    }
+
+    /**
+     * Sets the number of threads used to extract the documents of an index update as a String.<p>
+     *
+     * @param value the number of indexing threads
+     */
+    public void setIndexingThreads(String value) {
+
+        try {
+            setIndexingThreads(Integer.parseInt(value.trim()));
+        } catch (Exception e) {
+            LOG.error(
+                Messages.get().getBundle().key(
+                    Messages.LOG_PARSE_INDEXING_THREADS_FAILED_2,
+                    value,
+                    Integer.valueOf(DEFAULT_INDEXING_THREADS)),
+                e);
+            setIndexingThreads(DEFAULT_INDEXING_THREADS);
+        }
+    }
+
     /**
      * Sets the seconds to wait for an index lock during an update operation.<p>
      *
@@ -2810,7 +2958,7 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
      */
     protected CmsIndexingThreadManager getThreadManager() {
 
-        return new CmsIndexingThreadManager(m_timeout, m_maxModificationsBeforeCommit);
+        return new CmsIndexingThreadManager(m_timeout, m_maxModificationsBeforeCommit, m_indexingThreads);
     }
 
     /**
@@ -3460,6 +3608,30 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         }
     }
 
+    /**
+     * Adds the given changes to the map of pending changes, replacing earlier changes of the same kind
+     * to the same resource.<p>
+     *
+     * A replaced change is moved to the end, so the map keeps the order of the latest change per resource.<p>
+     *
+     * @param pending the pending changes, by coalescing key
+     * @param changes the changes to add
+     */
+    private void coalesce(Map<String, CmsPublishedResource> pending, List<CmsPublishedResource> changes) {
+
+        for (CmsPublishedResource pubRes : changes) {
+            String key = (pubRes.getStructureId().isNullUUID() ? pubRes.getResourceId() : pubRes.getStructureId())
+                + "|"
+                + pubRes.getState().getState()
+                + "|"
+                + pubRes.getMovedState().getState()
+                + "|"
+                + pubRes.getRootPath();
+            pending.remove(key);
+            pending.put(key, pubRes);
+        }
+    }
+
     /**
      * Creates the Solr core container.<p>
      *
@@ -307,6 +307,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_INDEXER_CREATION_FAILED_1 = "LOG_INDEXER_CREATION_FAILED_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_INDEXING_INTERRUPTED_1 = "LOG_INDEXING_INTERRUPTED_1";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_INDEXING_TIMEOUT_1 = "LOG_INDEXING_TIMEOUT_1";
 
@@ -370,6 +373,12 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_PARSE_EXTRACTION_CACHE_AGE_FAILED_2 = "LOG_PARSE_EXTRACTION_CACHE_AGE_FAILED_2";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_PARSE_EXTRACTION_CACHE_SIZE_FAILED_2 = "LOG_PARSE_EXTRACTION_CACHE_SIZE_FAILED_2";
+
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_PARSE_INDEXING_THREADS_FAILED_2 = "LOG_PARSE_INDEXING_THREADS_FAILED_2";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_PARSE_MAXCOMMIT_FAILED_2 = "LOG_PARSE_MAXCOMMIT_FAILED_2";
 
@@ -39,6 +39,7 @@ import org.opencms.search.extractors.I_CmsExtractionResult;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 
 import org.apache.commons.logging.Log;
 
@@ -116,24 +117,7 @@ public abstract class A_CmsVfsDocument implements I_CmsDocumentFactory {
         if (index.isExtractingContent()) {
             // do full text content extraction only if required
 
-            // check if caching is enabled for this document type
-            CmsExtractionResultCache cache = getCache();
-            String cacheName = null;
-            if ((cache != null) && (resource.getSiblingCount() > 1)) {
-                // hard drive based caching only makes sense for resources that have siblings,
-                // because the index will also store the content as a blob
-                cacheName = cache.getCacheName(
-                    resource,
-                    isLocaleDependend() ? index.getLocaleForResource(cms, resource, null) : null,
-                    getName());
-                content = cache.getCacheObject(cacheName);
-                if ((content != null) && LOG.isDebugEnabled()) {
-                    LOG.debug("Not re-extracting. Using cached content for '" + resource.getRootPath() + "'.");
-                }
-            }
-
-            if ((content == null) && isOnlyDependentOnContent()) {
-                // extraction result has not been found in the cache
+            if (isOnlyDependentOnContent()) {
                 // use the currently indexed content, if it is still up to date.
                 content = index.getContentIfUnchanged(resource);
                 if ((content != null) && LOG.isDebugEnabled()) {
@@ -142,16 +126,49 @@ public abstract class A_CmsVfsDocument implements I_CmsDocumentFactory {
                 }
             }
 
+            // check if caching is enabled for this document type
+            CmsExtractionResultCache cache = getCache();
+            String cacheName = null;
+            Locale locale = null;
+            CmsResource extractionResource = resource;
+            if ((content == null) && (cache != null) && resource.isFile() && isOnlyDependentOnContent()) {
+                locale = isLocaleDependend() ? index.getLocaleForResource(cms, resource, null) : null;
+                // an unchanged resource is found by its content date, without reading and hashing the content
+                content = cache.getCacheObject(resource, locale, getName());
+                if (content == null) {
+                    // the cache is keyed by the content, so identical binaries are extracted only once
+                    try {
+                        CmsFile file = cms.readFile(resource);
+                        if (file.getLength() > 0) {
+                            // the extraction reuses the content read here
+                            extractionResource = file;
+                            cacheName = cache.getCacheName(file.getContents(), locale, getName());
+                            content = cache.getCacheObject(cacheName);
+                            if (content != null) {
+                                cache.addCacheName(resource, locale, getName(), cacheName);
+                            }
+                        }
+                    } catch (CmsException e) {
+                        // the extraction will read the content again and report the error
+                        LOG.debug(e.getLocalizedMessage(), e);
+                    }
+                }
+                if ((content != null) && LOG.isDebugEnabled()) {
+                    LOG.debug("Not re-extracting. Using cached content for '" + resource.getRootPath() + "'.");
+                }
+            }
+
             if (content == null) {
                 // extraction result has not been attached to the resource
                 try {
-                    content = extractContent(cms, resource, index);
+                    content = extractContent(cms, extractionResource, index);
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Extracting content for '" + resource.getRootPath() + "' successful.");
                     }
-                    if ((cache != null) && (resource.getSiblingCount() > 1)) {
+                    if (cacheName != null) {
                         // save extracted content to the cache
                         cache.saveCacheObject(cacheName, content);
+                        cache.addCacheName(resource, locale, getName(), cacheName);
                     }
                 } catch (CmsIndexNoContentException e) {
                     // there was no content found for the resource
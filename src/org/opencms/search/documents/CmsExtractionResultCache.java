@@ -27,7 +27,6 @@
 
 package org.opencms.search.documents;
 
-import org.opencms.cache.CmsVfsDiskCache;
 import org.opencms.file.CmsResource;
 import org.opencms.main.CmsLog;
 import org.opencms.search.extractors.CmsExtractionResult;
@@ -35,38 +34,136 @@ import org.opencms.search.extractors.I_CmsExtractionResult;
 import org.opencms.util.CmsFileUtil;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 
+import com.google.common.util.concurrent.Striped;
+
 /**
  * Implements a disk cache that stores text extraction results in the RFS.<p>
  *
- * This cache operates on resource file names, plus a hash code calculated from
- * {@link org.opencms.file.CmsResource#getDateLastModified()}
- * and {@link org.opencms.file.CmsResource#getLength()}. Optional a locale can be appended to this name.<p>
+ * This cache operates on a hash of the binary content of a resource, so all resources with identical
+ * content share one cache entry, no matter if they are siblings, copies or the same resource in the online and
+ * the offline project. Optional the name of the document type and a locale are appended to the hash,
+ * since XML contents and XML pages can produce different extraction results per locale.<p>
+ *
+ * To avoid reading and hashing the content of unchanged resources, the cache additionally remembers in memory
+ * which entry belongs to the last known content date of a resource,
+ * see {@link #getCacheObject(CmsResource, Locale, String)}.<p>
  *
- * Since text extraction is done only on the content of a resource, all siblings must have the same content.
- * The difference can be only by the locale setting in case of an XML content or XML page. However,
- * the most problematic contents to extract for the search are in fact the MS Office and PDF formats.
- * For these documents, all siblings must produce the exact same text extraction result.<p>
+ * The entries are spread over sub folders named by the first two characters of the hash.
+ * Entries are written to a temporary file that is renamed when complete, so reading needs no locks.
+ * Writing and removing an entry lock the entry name against each other. The cache keeps the size and
+ * the time of last access of all entries in memory. If the total size exceeds the configured maximum,
+ * the least recently used entries are removed.<p>
  *
- * This cache is usable for resources from the online AND the offline project at the same time,
- * because any change to a resource will result in a changed hash code. This means a resource changed in the offline
- * project will have a new hash code compared to the online project. If the resource is identical in the online and
- * the offline project, the generated hash codes will be the same.<p>
+ * The remembered content dates are released together with the entry they refer to, so they are bounded
+ * by the number of entries.<p>
  *
  * @since 6.2.0
  */
 public class CmsExtractionResultCache {
 
+    /**
+     * The entry known for a content date of a resource.<p>
+     */
+    private static class CmsCacheAlias {
+
+        /** The content date of the resource. */
+        final long m_dateContent;
+
+        /** The RFS name of the entry. */
+        final String m_rfsName;
+
+        /**
+         * Creates a new alias.<p>
+         *
+         * @param dateContent the content date of the resource
+         * @param rfsName the RFS name of the entry
+         */
+        CmsCacheAlias(long dateContent, String rfsName) {
+
+            m_dateContent = dateContent;
+            m_rfsName = rfsName;
+        }
+    }
+
+    /**
+     * The size and last access time of a cache entry.<p>
+     */
+    private static class CmsCacheEntry {
+
+        /** The keys of the aliases which may refer to this entry. */
+        final Set<String> m_aliasKeys = ConcurrentHashMap.newKeySet();
+
+        /** The time of the last access. */
+        volatile long m_lastAccess;
+
+        /** The size of the entry file in bytes. */
+        final long m_size;
+
+        /**
+         * Creates a new cache entry.<p>
+         *
+         * @param size the size of the entry file in bytes
+         * @param lastAccess the time of the last access
+         */
+        CmsCacheEntry(long size, long lastAccess) {
+
+            m_size = size;
+            m_lastAccess = lastAccess;
+        }
+    }
+
+    /** The file extension of the cache entries. */
+    private static final String EXTENSION = ".ext";
+
     /** The log object for this class. */
     private static final Log LOG = CmsLog.getLog(CmsExtractionResultCache.class);
 
+    /** The fraction of the maximum size the cache is reduced to when entries are removed. */
+    private static final double SHRINK_FACTOR = 0.9;
+
+    /** The entries known for the content dates of resources, by resource id, document type and locale. */
+    private Map<String, CmsCacheAlias> m_aliases = new ConcurrentHashMap<String, CmsCacheAlias>();
+
+    /** The cache entries, by RFS name. */
+    private Map<String, CmsCacheEntry> m_entries = new ConcurrentHashMap<String, CmsCacheEntry>();
+
+    /** Lock held while least recently used entries are removed. */
+    private ReentrantLock m_evictionLock = new ReentrantLock();
+
+    /** Locks for the entry names, held while an entry file is written or removed. */
+    private Striped<Lock> m_entryLocks = Striped.lock(64);
+
+    /** Flag indicating if the entries already present in the RFS have been read. */
+    private volatile boolean m_loaded;
+
+    /** The maximum size of all entries in bytes, a value less or equal than 0 means no limit. */
+    private volatile long m_maxSize;
+
     /** The name of the cache base repository folder in the RFS. */
     private String m_rfsRepository;
 
+    /** The current size of all entries in bytes. */
+    private AtomicLong m_size = new AtomicLong();
+
     /**
      * Creates a new disk cache.<p>
      *
@@ -80,46 +177,84 @@ public class CmsExtractionResultCache {
     }
 
     /**
-     * Removes all expired extraction result cache entries from the RFS cache.<p>
+     * Remembers the entry holding the extraction result of the current content of the given resource,
+     * so {@link #getCacheObject(CmsResource, Locale, String)} finds it without reading the content again.<p>
      *
-     * @param maxAge the maximum age of the extraction result cache files in hours (or fractions of hours)
+     * Nothing is remembered if the entry is not in the cache.<p>
      *
-     * @return the total number of deleted resources
+     * @param resource the VFS resource
+     * @param locale the locale of the extraction result (may be <code>null</code>)
+     * @param docTypeName the name of the search document type
+     * @param rfsName the RFS name of the entry, as returned by {@link #getCacheName(byte[], Locale, String)}
      */
-    public synchronized int cleanCache(float maxAge) {
+    public void addCacheName(CmsResource resource, Locale locale, String docTypeName, String rfsName) {
 
-        // calculate oldest possible date for the cache files
+        rfsName = CmsFileUtil.normalizePath(rfsName);
+        CmsCacheEntry entry = m_entries.get(rfsName);
+        if (entry == null) {
+            return;
+        }
+        String key = getAliasKey(resource, locale, docTypeName);
+        CmsCacheAlias alias = new CmsCacheAlias(resource.getDateContent(), rfsName);
+        entry.m_aliasKeys.add(key);
+        m_aliases.put(key, alias);
+        if (m_entries.get(rfsName) != entry) {
+            // the entry has been removed concurrently, its aliases may already have been released
+            m_aliases.remove(key, alias);
+        }
+    }
+
+    /**
+     * Removes all extraction result cache entries that have not been used within the given age from the RFS cache.<p>
+     *
+     * @param maxAge the maximum age of the extraction result cache entries in hours (or fractions of hours)
+     *
+     * @return the total number of deleted entries
+     */
+    public int cleanCache(float maxAge) {
+
+        // calculate oldest possible access date for the cache entries
         long expireDate = System.currentTimeMillis() - (long)(maxAge * 60.0f * 60.0f * 1000.0f);
-        File basedir = new File(m_rfsRepository);
-        // perform the cache cleanup
+        ensureLoaded();
         int count = 0;
-        if (basedir.canRead() && basedir.isDirectory()) {
-            File[] files = basedir.listFiles();
-            if (files != null) {
-                for (int i = 0; i < files.length; i++) {
-                    File f = files[i];
-                    if (f.canWrite()) {
-                        if (f.lastModified() < expireDate) {
-                            try {
-                                f.delete();
-                                count++;
-                            } catch (Exception e) {
-                                if (LOG.isWarnEnabled()) {
-                                    LOG.warn(
-                                        Messages.get().getBundle().key(
-                                            Messages.LOG_EXCERPT_CACHE_DELETE_ERROR_1,
-                                            f.getAbsolutePath()),
-                                        e);
-                                }
-                            }
-                        }
-                    }
-                }
+        for (Map.Entry<String, CmsCacheEntry> entry : m_entries.entrySet()) {
+            if ((entry.getValue().m_lastAccess < expireDate) && remove(entry.getKey(), entry.getValue())) {
+                count++;
             }
         }
         return count;
     }
 
+    /**
+     * Returns the RFS name used for caching the text extraction result of the given content.<p>
+     *
+     * @param content the binary content of the VFS resource to generate the cache name for
+     * @param locale the locale to generate the cache name for (may be <code>null</code>)
+     * @param docTypeName the name of the search document type
+     *
+     * @return the RFS name to use for caching the extraction result of the given content
+     */
+    public String getCacheName(byte[] content, Locale locale, String docTypeName) {
+
+        String hash = DigestUtils.sha256Hex(content);
+        StringBuffer buf = new StringBuffer(m_rfsRepository.length() + 96);
+        buf.append(m_rfsRepository);
+        buf.append(File.separatorChar);
+        buf.append(hash.substring(0, 2));
+        buf.append(File.separatorChar);
+        buf.append(hash);
+        if (docTypeName != null) {
+            buf.append('_');
+            buf.append(docTypeName);
+        }
+        if (locale != null) {
+            buf.append('_');
+            buf.append(locale.toString());
+        }
+        buf.append(EXTENSION);
+        return CmsFileUtil.normalizePath(buf.toString());
+    }
+
     /**
      * Returns the RFS name used for caching an the text extraction result
      * based on the given VFS resource and locale.<p>
@@ -129,7 +264,10 @@ public class CmsExtractionResultCache {
      * @param docTypeName the name of the search document type
      *
      * @return the RFS name to use for caching the given VFS resource with parameters
+     *
+     * @deprecated use {@link #getCacheName(byte[], Locale, String)}, which shares entries between identical contents
      */
+    @Deprecated
     public String getCacheName(CmsResource resource, Locale locale, String docTypeName) {
 
         // create a StringBuffer for the result
@@ -155,13 +293,13 @@ public class CmsExtractionResultCache {
         buf.append(resource.getDateContent());
 
         // finally append the extension
-        buf.append(".ext");
+        buf.append(EXTENSION);
         return buf.toString();
     }
 
     /**
      * Returns the extraction result in the requested file in the disk cache, or <code>null</code> if the
-     * file is not found in the cache, or is found but out-dated.<p>
+     * file is not found in the cache.<p>
      *
      * @param rfsName the file RFS name to look up in the cache
      *
@@ -169,15 +307,32 @@ public class CmsExtractionResultCache {
      */
     public CmsExtractionResult getCacheObject(String rfsName) {
 
+        ensureLoaded();
+        rfsName = CmsFileUtil.normalizePath(rfsName);
         try {
             File f = new File(rfsName);
             if (f.exists()) {
-                long age = f.lastModified();
-                if ((System.currentTimeMillis() - age) > 3600000) {
-                    // file has not been touched for 1 hour, touch the file with the current date
-                    f.setLastModified(System.currentTimeMillis());
-                }
                 byte[] byteContent = CmsFileUtil.readFile(f);
+                long now = System.currentTimeMillis();
+                CmsCacheEntry entry = m_entries.get(rfsName);
+                if (entry != null) {
+                    entry.m_lastAccess = now;
+                } else {
+                    Lock lock = m_entryLocks.get(rfsName);
+                    lock.lock();
+                    try {
+                        // the entry may have been removed since it was read
+                        if (f.exists() && !m_entries.containsKey(rfsName)) {
+                            register(rfsName, new CmsCacheEntry(byteContent.length, now));
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                if ((now - f.lastModified()) > 3600000) {
+                    // file has not been touched for 1 hour, keep the access time for the next startup
+                    f.setLastModified(now);
+                }
                 return CmsExtractionResult.fromBytes(byteContent);
             }
         } catch (IOException e) {
@@ -187,6 +342,46 @@ public class CmsExtractionResultCache {
         return null;
     }
 
+    /**
+     * Returns the extraction result for the given resource if its current content date is known to the cache,
+     * or <code>null</code> otherwise.<p>
+     *
+     * This needs no read of the content, in contrast to looking up the entry by
+     * {@link #getCacheName(byte[], Locale, String)}.<p>
+     *
+     * @param resource the VFS resource
+     * @param locale the locale of the extraction result (may be <code>null</code>)
+     * @param docTypeName the name of the search document type
+     *
+     * @return the extraction result, or <code>null</code>
+     *
+     * @see #addCacheName(CmsResource, Locale, String, String)
+     */
+    public CmsExtractionResult getCacheObject(CmsResource resource, Locale locale, String docTypeName) {
+
+        String key = getAliasKey(resource, locale, docTypeName);
+        CmsCacheAlias alias = m_aliases.get(key);
+        if ((alias == null) || (alias.m_dateContent != resource.getDateContent())) {
+            return null;
+        }
+        CmsExtractionResult result = getCacheObject(alias.m_rfsName);
+        if (result == null) {
+            // the entry has been removed in the meantime
+            m_aliases.remove(key, alias);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the maximum size of all cache entries in bytes.<p>
+     *
+     * @return the maximum size of all cache entries in bytes, a value less or equal than 0 means no limit
+     */
+    public long getMaxSize() {
+
+        return m_maxSize;
+    }
+
     /**
      * Returns the absolute path of the cache repository in the RFS.<p>
      *
@@ -208,8 +403,207 @@ public class CmsExtractionResultCache {
     public void saveCacheObject(String rfsName, I_CmsExtractionResult content) throws IOException {
 
         byte[] byteContent = content.getBytes();
-        if (byteContent != null) {
-            CmsVfsDiskCache.saveFile(rfsName, byteContent);
+        if (byteContent == null) {
+            return;
+        }
+        ensureLoaded();
+        rfsName = CmsFileUtil.normalizePath(rfsName);
+        File f = new File(rfsName);
+        File p = f.getParentFile();
+        if (!p.exists()) {
+            // create parent folders
+            p.mkdirs();
+        }
+        // write to a temporary file first, so readers never see a partially written entry
+        File tmp = File.createTempFile(f.getName(), ".tmp", p);
+        try {
+            try (FileOutputStream fs = new FileOutputStream(tmp)) {
+                fs.write(byteContent);
+            }
+            // a concurrent removal of the same entry must not delete the new file before it is registered
+            Lock lock = m_entryLocks.get(rfsName);
+            lock.lock();
+            try {
+                try {
+                    Files.move(
+                        tmp.toPath(),
+                        f.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                register(rfsName, new CmsCacheEntry(byteContent.length, System.currentTimeMillis()));
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            tmp.delete();
+        }
+        evict();
+    }
+
+    /**
+     * Sets the maximum size of all cache entries in bytes.<p>
+     *
+     * @param maxSize the maximum size of all cache entries in bytes, a value less or equal than 0 means no limit
+     */
+    public void setMaxSize(long maxSize) {
+
+        m_maxSize = maxSize;
+    }
+
+    /**
+     * Returns the number of remembered content dates of resources.<p>
+     *
+     * @return the number of remembered content dates of resources
+     */
+    int getAliasCount() {
+
+        return m_aliases.size();
+    }
+
+    /**
+     * Reads the entries already present in the RFS, once.<p>
+     *
+     * This includes entries in the repository folder itself, as written by older versions of this cache,
+     * so they are removed as soon as they are outdated.<p>
+     */
+    private void ensureLoaded() {
+
+        if (m_loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (m_loaded) {
+                return;
+            }
+            File basedir = new File(m_rfsRepository);
+            File[] files = basedir.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    if (f.isDirectory()) {
+                        File[] subFiles = f.listFiles();
+                        if (subFiles != null) {
+                            for (File subFile : subFiles) {
+                                registerFile(subFile);
+                            }
+                        }
+                    } else {
+                        registerFile(f);
+                    }
+                }
+            }
+            m_loaded = true;
+        }
+        evict();
+    }
+
+    /**
+     * Removes the least recently used entries if the cache exceeds its maximum size.<p>
+     *
+     * Only one thread removes entries at a time, other threads return immediately.<p>
+     */
+    private void evict() {
+
+        long maxSize = m_maxSize;
+        if ((maxSize <= 0) || (m_size.get() <= maxSize) || !m_evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Map.Entry<String, CmsCacheEntry>> entries = new ArrayList<Map.Entry<String, CmsCacheEntry>>(
+                m_entries.entrySet());
+            entries.sort(Comparator.comparingLong(entry -> entry.getValue().m_lastAccess));
+            long targetSize = (long)(maxSize * SHRINK_FACTOR);
+            for (Map.Entry<String, CmsCacheEntry> entry : entries) {
+                if (m_size.get() <= targetSize) {
+                    break;
+                }
+                remove(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            m_evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the key of the alias for the given resource.<p>
+     *
+     * @param resource the VFS resource
+     * @param locale the locale of the extraction result (may be <code>null</code>)
+     * @param docTypeName the name of the search document type
+     *
+     * @return the key of the alias
+     */
+    private String getAliasKey(CmsResource resource, Locale locale, String docTypeName) {
+
+        return resource.getResourceId() + "_" + docTypeName + "_" + locale;
+    }
+
+    /**
+     * Registers the given entry, replacing a previous entry with the same name.<p>
+     *
+     * @param rfsName the RFS name of the entry
+     * @param entry the entry to register
+     */
+    private void register(String rfsName, CmsCacheEntry entry) {
+
+        CmsCacheEntry previous = m_entries.put(rfsName, entry);
+        if (previous != null) {
+            // the aliases of the replaced entry now refer to the new one
+            entry.m_aliasKeys.addAll(previous.m_aliasKeys);
+        }
+        m_size.addAndGet(entry.m_size - (previous != null ? previous.m_size : 0));
+    }
+
+    /**
+     * Registers an entry file found in the RFS.<p>
+     *
+     * @param f the file to register
+     */
+    private void registerFile(File f) {
+
+        if (f.isFile() && f.getName().endsWith(EXTENSION)) {
+            register(
+                CmsFileUtil.normalizePath(f.getAbsolutePath()),
+                new CmsCacheEntry(f.length(), f.lastModified()));
+        }
+    }
+
+    /**
+     * Removes the given entry from the cache and deletes its file.<p>
+     *
+     * @param rfsName the RFS name of the entry
+     * @param entry the entry to remove
+     *
+     * @return <code>true</code> if the entry has been removed
+     */
+    private boolean remove(String rfsName, CmsCacheEntry entry) {
+
+        Lock lock = m_entryLocks.get(rfsName);
+        lock.lock();
+        try {
+            if (!m_entries.remove(rfsName, entry)) {
+                // the entry has been replaced or removed concurrently
+                return false;
+            }
+            m_size.addAndGet(-entry.m_size);
+            for (String key : entry.m_aliasKeys) {
+                // keep aliases which refer to another entry by now
+                m_aliases.computeIfPresent(key, (k, alias) -> rfsName.equals(alias.m_rfsName) ? null : alias);
+            }
+            File f = new File(rfsName);
+            if (f.exists() && !f.delete()) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn(
+                        Messages.get().getBundle().key(
+                            Messages.LOG_EXCERPT_CACHE_DELETE_ERROR_1,
+                            f.getAbsolutePath()));
+                }
+            }
+        } finally {
+            lock.unlock();
         }
+        return true;
     }
-}
\ No newline at end of file
+}
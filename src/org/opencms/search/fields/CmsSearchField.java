@@ -47,6 +47,15 @@ import org.apache.solr.uninverting.UninvertingReader.Type;
  */
 public class CmsSearchField implements Serializable {
 
+    /** Name of the field that contains the ids of the principals denied to read the document's resource. */
+    public static final String FIELD_ACL_DENIED = "acl_denied_mvs";
+
+    /** Name of the field that contains the ids of all principals with an access control entry for the document's resource. */
+    public static final String FIELD_ACL_PRINCIPALS = "acl_principals_mvs";
+
+    /** Name of the field that contains the ids of the principals allowed to read the document's resource. */
+    public static final String FIELD_ACL_READ = "acl_read_mvs";
+
     /** Name of the field that contains the (optional) category of the document (hardcoded). */
     public static final String FIELD_CATEGORY = "category";
 
@@ -45,6 +45,10 @@ import org.opencms.search.CmsSearchUtil;
 import org.opencms.search.I_CmsSearchDocument;
 import org.opencms.search.documents.CmsDocumentDependency;
 import org.opencms.search.fields.CmsSearchField;
+import org.opencms.security.CmsAccessControlEntry;
+import org.opencms.security.CmsAccessControlList;
+import org.opencms.security.CmsPermissionSet;
+import org.opencms.security.CmsPermissionSetCustom;
 import org.opencms.util.CmsStringUtil;
 import org.opencms.util.CmsUUID;
 
@@ -209,6 +213,43 @@ public class CmsSolrDocument implements I_CmsSearchDocument {
         }
     }
 
+    /**
+     * Adds the fields used to filter search results by read permission at query time.<p>
+     *
+     * The id of every principal with an entry in the given access control list is written to
+     * {@link CmsSearchField#FIELD_ACL_PRINCIPALS}. It is additionally written to
+     * {@link CmsSearchField#FIELD_ACL_READ} if the entry allows reading and to
+     * {@link CmsSearchField#FIELD_ACL_DENIED} if the entry denies reading.
+     * The "all others" entry only goes to {@link CmsSearchField#FIELD_ACL_READ}, since it only applies
+     * to users without any entry of their own.<p>
+     *
+     * @param acl the access control list of the resource, including the inherited entries
+     */
+    public void addPermissionFields(CmsAccessControlList acl) {
+
+        for (Map.Entry<CmsUUID, CmsPermissionSetCustom> entry : acl.getPermissionMap().entrySet()) {
+            CmsUUID principalId = entry.getKey();
+            if (CmsAccessControlEntry.PRINCIPAL_OVERWRITE_ALL_ID.equals(principalId)
+                || CmsAccessControlEntry.PRINCIPAL_READALL_ID.equals(principalId)) {
+                continue;
+            }
+            CmsPermissionSet permissions = entry.getValue();
+            boolean denied = (permissions.getDeniedPermissions() & CmsPermissionSet.PERMISSION_READ) > 0;
+            boolean allowed = !denied
+                && ((permissions.getAllowedPermissions() & CmsPermissionSet.PERMISSION_READ) > 0);
+            String id = principalId.toString();
+            if (allowed) {
+                m_doc.addField(CmsSearchField.FIELD_ACL_READ, id);
+            }
+            if (!CmsAccessControlEntry.PRINCIPAL_ALL_OTHERS_ID.equals(principalId)) {
+                m_doc.addField(CmsSearchField.FIELD_ACL_PRINCIPALS, id);
+                if (denied) {
+                    m_doc.addField(CmsSearchField.FIELD_ACL_DENIED, id);
+                }
+            }
+        }
+    }
+
     /**
      * @see org.opencms.search.I_CmsSearchDocument#addResourceLocales(java.util.Collection)
      */
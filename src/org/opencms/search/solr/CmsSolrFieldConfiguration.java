@@ -56,6 +56,7 @@ import org.opencms.search.fields.CmsSearchFieldConfiguration;
 import org.opencms.search.fields.CmsSearchFieldMapping;
 import org.opencms.search.fields.CmsSearchFieldMappingType;
 import org.opencms.search.fields.I_CmsSearchFieldMapping;
+import org.opencms.security.CmsAccessControlList;
 import org.opencms.util.CmsStringUtil;
 import org.opencms.xml.CmsXmlContentDefinition;
 import org.opencms.xml.containerpage.CmsContainerElementBean;
@@ -188,6 +189,8 @@ public class CmsSolrFieldConfiguration extends CmsSearchFieldConfiguration {
 
         document = appendFieldsForListSortOptions(document);
 
+        appendPermissionFields(document, cms, resource);
+
         if (resource.getRootPath().startsWith(OpenCms.getSiteManager().getSharedFolder())
             || (null != OpenCms.getSiteManager().getSiteRoot(resource.getRootPath()))) {
             appendSpellFields(document);
@@ -899,6 +902,28 @@ public class CmsSolrFieldConfiguration extends CmsSearchFieldConfiguration {
         return document;
     }
 
+    /**
+     * Adds the principals allowed and denied to read the resource to the document,
+     * such that search results can be filtered by read permission inside the index.<p>
+     *
+     * @param document the document that gets extended by the permission fields
+     * @param cms the CMS context used for indexing
+     * @param resource the indexed resource
+     */
+    private void appendPermissionFields(I_CmsSearchDocument document, CmsObject cms, CmsResource resource) {
+
+        if (document instanceof CmsSolrDocument) {
+            try {
+                CmsAccessControlList acl = cms.getAccessControlList(
+                    cms.getRequestContext().removeSiteRoot(resource.getRootPath()));
+                ((CmsSolrDocument)document).addPermissionFields(acl);
+            } catch (CmsException e) {
+                // the document is still indexed, query time permission filtering will let it pass to the post check
+                LOG.warn(e.getLocalizedMessage(), e);
+            }
+        }
+    }
+
     /**
      * Copy the content and the title property of the document to a spell field / a language specific spell field.
      * @param document the document that gets extended by the spell fields.
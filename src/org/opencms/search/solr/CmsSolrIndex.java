@@ -34,11 +34,14 @@ package org.opencms.search.solr;
 import org.opencms.configuration.CmsConfigurationException;
 import org.opencms.configuration.CmsParameterConfiguration;
 import org.opencms.file.CmsFile;
+import org.opencms.file.CmsGroup;
 import org.opencms.file.CmsObject;
 import org.opencms.file.CmsProject;
 import org.opencms.file.CmsPropertyDefinition;
 import org.opencms.file.CmsResource;
 import org.opencms.file.CmsResourceFilter;
+import org.opencms.file.CmsUser;
+import org.opencms.flex.CmsFlexRequestContextInfo;
 import org.opencms.i18n.CmsEncoder;
 import org.opencms.i18n.CmsLocaleManager;
 import org.opencms.main.CmsException;
@@ -58,11 +61,13 @@ import org.opencms.search.fields.CmsSearchField;
 import org.opencms.search.galleries.CmsGallerySearchParameters;
 import org.opencms.search.galleries.CmsGallerySearchResult;
 import org.opencms.search.galleries.CmsGallerySearchResultList;
+import org.opencms.security.CmsAccessControlEntry;
 import org.opencms.security.CmsRole;
 import org.opencms.security.CmsRoleViolationException;
 import org.opencms.util.CmsFileUtil;
 import org.opencms.util.CmsRequestUtil;
 import org.opencms.util.CmsStringUtil;
+import org.opencms.util.CmsUUID;
 
 import java.io.IOException;
 import java.io.OutputStreamWriter;
@@ -130,6 +135,19 @@ public class CmsSolrIndex extends CmsSearchIndex {
     **/
     public static final String SOLR_SEARCH_MAX_PROCESSED_RESULTS = "search.solr.maxProcessedResults";
 
+    /**
+     * Constant for additional parameter to set the number of updates and deletes the index writer buffers
+     * and sends to the Solr server in one bulk request. Without it, every operation is sent immediately.
+    **/
+    public static final String SOLR_WRITE_BATCH_SIZE = "search.solr.writeBatchSize";
+
+    /**
+     * Constant for additional parameter to filter search results by the read permissions written to the index,
+     * instead of checking the permissions of every hit up to the requested page. Permission changes on folders
+     * only take effect for the documents below after they are indexed again.
+    **/
+    public static final String SOLR_SEARCH_PERMISSION_FILTER = "search.solr.permissionFilter";
+
     /** Constant for additional parameter to set the fields the select handler should return at maximum. */
     public static final String SOLR_HANDLER_ALLOWED_FIELDS = "handle.solr.allowedFields";
 
@@ -220,6 +238,9 @@ public class CmsSolrIndex extends CmsSearchIndex {
     /** The embedded Solr client for this index. */
     transient SolrClient m_solr;
 
+    /** Flag, indicating if search results are filtered by the read permissions stored in the index. */
+    private boolean m_permissionFilter;
+
     /** The post document manipulator. */
     private transient I_CmsSolrPostSearchProcessor m_postProcessor;
 
@@ -250,6 +271,9 @@ public class CmsSolrIndex extends CmsSearchIndex {
     /** Server URL to use specific for the index. If set, it overwrites all other server settings. */
     private String m_serverUrl;
 
+    /** The number of operations the index writer sends to the Solr server in one request. */
+    private int m_writeBatchSize;
+
     /**
      * Default constructor.<p>
      */
@@ -378,6 +402,25 @@ public class CmsSolrIndex extends CmsSearchIndex {
                     m_serverUrl = value.trim();
                 }
                 break;
+            case SOLR_SEARCH_PERMISSION_FILTER:
+                if (CmsStringUtil.isNotEmptyOrWhitespaceOnly(value)) {
+                    m_permissionFilter = Boolean.parseBoolean(value.trim());
+                }
+                break;
+            case SOLR_WRITE_BATCH_SIZE:
+                if (CmsStringUtil.isNotEmptyOrWhitespaceOnly(value)) {
+                    try {
+                        m_writeBatchSize = Integer.parseInt(value.trim());
+                    } catch (NumberFormatException e) {
+                        LOG.warn(
+                            "Could not parse parameter \""
+                                + SOLR_WRITE_BATCH_SIZE
+                                + "\" for index \""
+                                + getName()
+                                + "\". Updates will be sent to the index one by one.");
+                    }
+                }
+                break;
             default:
                 super.addConfigurationParameter(key, value);
                 break;
@@ -401,7 +444,7 @@ public class CmsSolrIndex extends CmsSearchIndex {
     @Override
     public I_CmsIndexWriter createIndexWriter(boolean create, I_CmsReport report) {
 
-        return new CmsSolrIndexWriter(m_solr, this);
+        return new CmsSolrIndexWriter(m_solr, this, m_writeBatchSize);
     }
 
     /**
@@ -851,6 +894,13 @@ public class CmsSolrIndex extends CmsSearchIndex {
         CmsSolrResultList result = null;
         long startTime = System.currentTimeMillis();
 
+        CmsFlexRequestContextInfo contextInfo = (CmsFlexRequestContextInfo)cms.getRequestContext().getAttribute(
+            CmsRequestUtil.HEADER_LAST_MODIFIED);
+        if (contextInfo != null) {
+            // the search results may change with any published resource, not only with the resources found now
+            contextInfo.setDependenciesUnknown();
+        }
+
         // TODO:
         // - fall back to "last found results" if none are present at the "last page"?
         // - deal with cursorMarks?
@@ -964,6 +1014,9 @@ public class CmsSolrIndex extends CmsSearchIndex {
 
             // initialize the search context
             CmsObject searchCms = OpenCms.initCmsObject(cms);
+            // restrict the hits to readable documents inside the index, the permission check below is only a safety net then
+            String permissionFilterQuery = m_permissionFilter ? getPermissionFilterQuery(searchCms) : null;
+            boolean permissionFiltered = null != permissionFilterQuery;
 
             ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
             //////////////////////// QUERY FOR PERMISSION CHECK, FACETS, SPELLCHECK, SUGGESTIONS ///////////////////////////
@@ -974,19 +1027,27 @@ public class CmsSolrIndex extends CmsSearchIndex {
             // Initialize rows, offset, end and the current page.
             int end = start + rows;
             int itemsToCheck = 0 == end ? 0 : Math.max(10, end + (end / 5)); // request 20 percent more, but at least 10 results if permissions are filtered
+            if (permissionFiltered) {
+                // all hits are expected to be readable, so exactly the requested page is queried directly,
+                // hits rejected by the permission check below are not replaced by hits of the next page,
+                // otherwise consecutive pages would contain the same hits
+                checkQuery.addFilterQuery(permissionFilterQuery);
+                itemsToCheck = rows;
+            }
             // use a set to prevent double entries if multiple check queries are performed.
             Set<String> resultSolrIds = new HashSet<>(rows); // rows are set before definitely.
 
             // counter for the documents found and accessible
-            int cnt = 0;
+            int cnt = permissionFiltered ? start : 0;
             long hitCount = 0;
             long visibleHitCount = 0;
-            int processedResults = 0;
+            int processedResults = permissionFiltered ? start : 0;
             long solrPermissionTime = 0;
             // disable highlighting - it's done in the next query.
             checkQuery.setHighlight(false);
             // adjust rows and start for the permission check.
-            checkQuery.setRows(Integer.valueOf(Math.min(maxNumResults - processedResults, itemsToCheck)));
+            // with a permission filter, start can be beyond the maximal number of processed results
+            checkQuery.setRows(Integer.valueOf(Math.max(0, Math.min(maxNumResults - processedResults, itemsToCheck))));
             checkQuery.setStart(Integer.valueOf(processedResults));
             // return only the fields required for the permission check and for scoring
             checkQuery.setFields(CmsSearchField.FIELD_TYPE, CmsSearchField.FIELD_SOLR_ID, CmsSearchField.FIELD_PATH);
@@ -1033,7 +1094,7 @@ public class CmsSolrIndex extends CmsSearchIndex {
             }
             processedResults += checkQueryResponse.getResults().size();
 
-            if ((resultSolrIds.size() < rows) && (processedResults < maxToProcess)) {
+            if (!permissionFiltered && (resultSolrIds.size() < rows) && (processedResults < maxToProcess)) {
                 CmsSolrQuery secondCheckQuery = checkQuery.clone();
                 // disable all features not necessary, since results are present from the first check query.
                 secondCheckQuery.setFacet(false);
@@ -1173,7 +1234,7 @@ public class CmsSolrIndex extends CmsSearchIndex {
 
             // adjust start, max score and hit count displayed in the result list.
             solrDocumentList.setStart(start);
-            Float finalMaxScore = sortByScoreDesc
+            Float finalMaxScore = sortByScoreDesc && (!permissionFiltered || (start == 0))
             ? Float.valueOf(maxScore)
             : checkQueryResponse.getResults().getMaxScore();
             solrDocumentList.setMaxScore(finalMaxScore);
@@ -1471,6 +1532,62 @@ public class CmsSolrIndex extends CmsSearchIndex {
         return null;
     }
 
+    /**
+     * Returns the filter query restricting hits to the documents the current user can read,
+     * based on the permission fields written to the index.<p>
+     *
+     * Documents indexed without permission fields are not filtered out, they are left to the permission check
+     * on the hits.<p>
+     *
+     * @param cms the current context
+     *
+     * @return the filter query, or <code>null</code> if the hits should not be restricted inside the index
+     */
+    protected String getPermissionFilterQuery(CmsObject cms) {
+
+        if (OpenCms.getRoleManager().hasRole(cms, CmsRole.VFS_MANAGER.forOrgUnit(null))) {
+            // VFS managers can read everything
+            return null;
+        }
+        CmsUser user = cms.getRequestContext().getCurrentUser();
+        List<CmsUUID> principals = new ArrayList<CmsUUID>();
+        principals.add(user.getId());
+        try {
+            for (CmsGroup group : cms.getGroupsOfUser(user.getName(), false)) {
+                principals.add(group.getId());
+            }
+            for (CmsRole role : OpenCms.getRoleManager().getRolesOfUser(cms, user.getName(), "", true, false, true)) {
+                principals.add(role.getId());
+            }
+        } catch (CmsException e) {
+            LOG.warn(e.getLocalizedMessage(), e);
+            return null;
+        }
+        String ids = principals.stream().map(id -> "\"" + id + "\"").collect(Collectors.joining(" OR ", "(", ")"));
+        // the "all others" entry only applies if the user has no entry of its own, see CmsAccessControlList
+        return "("
+            + CmsSearchField.FIELD_ACL_READ
+            + ":"
+            + ids
+            + " AND NOT "
+            + CmsSearchField.FIELD_ACL_DENIED
+            + ":"
+            + ids
+            + ") OR ("
+            + CmsSearchField.FIELD_ACL_READ
+            + ":\""
+            + CmsAccessControlEntry.PRINCIPAL_ALL_OTHERS_ID
+            + "\" AND NOT "
+            + CmsSearchField.FIELD_ACL_PRINCIPALS
+            + ":"
+            + ids
+            + ") OR (*:* AND NOT "
+            + CmsSearchField.FIELD_ACL_READ
+            + ":[* TO *] AND NOT "
+            + CmsSearchField.FIELD_ACL_PRINCIPALS
+            + ":[* TO *])";
+    }
+
     /**
      * Check, if the current user has permissions on the document's resource.
      * @param cms the context
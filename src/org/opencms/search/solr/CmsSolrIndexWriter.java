@@ -40,19 +40,42 @@ import org.opencms.search.fields.CmsSearchField;
 
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Implements the index writer for the Solr server used by OpenCms.<p>
  *
+ * If a batch size greater than 1 is set, updates and deletes are buffered and sent to the Solr server
+ * in bulk requests: first all buffered delete queries in one request, then all buffered documents in
+ * a second request. The buffer is sent when it reaches the batch size, by a timer when the oldest buffered
+ * operation becomes older than the Solr commit time (if a positive commit time is configured),
+ * and on {@link #commit()} and {@link #close()}.
+ * Multiple updates of the same resource within one batch are merged, only the last one is sent.
+ * A failure of a buffered operation is thrown by the operation that sends the buffer, or, if the buffer was
+ * sent by the timer, by the next operation of this writer.<p>
+ *
  * @since 8.5.0
  */
 public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
@@ -60,10 +83,36 @@ public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
     /** The log object for this class. */
     protected static final Log LOG = CmsLog.getLog(CmsSolrIndexWriter.class);
 
+    /** The timer sending the buffers that are older than the Solr commit time. */
+    private static final ScheduledExecutorService FLUSH_TIMER = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("OpenCms-solr-flush-%d").setDaemon(true).build());
+
+    /** The maximum number of buffered operations, with 1 or less every operation is sent immediately. */
+    private int m_batchSize;
+
+    /** The buffered delete queries, in the order they were issued. */
+    private Set<String> m_bufferedDeletes = new LinkedHashSet<String>();
+
+    /** The buffered documents to add, keyed by the structure id of their resource. */
+    private Map<String, List<SolrInputDocument>> m_bufferedDocuments = new LinkedHashMap<String,
+        List<SolrInputDocument>>();
+
+    /** The structure ids of the buffered documents, keyed by the root path of their resource. */
+    private Map<String, String> m_bufferedIds = new HashMap<String, String>();
+
+    /** The time the first operation of the current batch was buffered, or 0 if the buffer is empty. */
+    private long m_bufferStart;
+
     /** The time to wait before a commit is sent to the Solr index.  */
     private int m_commitMs = Long.valueOf(
         OpenCms.getSearchManager().getSolrServerConfiguration().getSolrCommitMs()).intValue();
 
+    /** The failure of the last buffer sent by the timer, thrown by the next operation. */
+    private IOException m_flushFailure;
+
+    /** The pending timer task sending the current buffer. */
+    private ScheduledFuture<?> m_flushTask;
+
     /** The Solr index. */
     private CmsSolrIndex m_index;
 
@@ -92,8 +141,22 @@ public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
      */
     public CmsSolrIndexWriter(SolrClient client, CmsSolrIndex index) {
 
+        this(client, index, 1);
+    }
+
+    /**
+     * Creates a new index writer that buffers up to the given number of operations
+     * before they are sent to the Solr server.<p>
+     *
+     * @param client the Solr client to use
+     * @param index the OpenCms search index instance this writer to supposed to write to
+     * @param batchSize the maximum number of buffered operations, 1 or less to send every operation immediately
+     */
+    public CmsSolrIndexWriter(SolrClient client, CmsSolrIndex index, int batchSize) {
+
         m_index = index;
         m_server = client;
+        m_batchSize = batchSize;
         if (m_index != null) {
             LOG.info(
                 Messages.get().getBundle().key(
@@ -106,16 +169,17 @@ public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
     /**
      * @see org.opencms.search.I_CmsIndexWriter#close()
      */
-    public void close() {
+    public synchronized void close() throws IOException {
 
-        // nothing to do here
+        flush();
     }
 
     /**
      * @see org.opencms.search.I_CmsIndexWriter#commit()
      */
-    public void commit() throws IOException {
+    public synchronized void commit() throws IOException {
 
+        flush();
         if ((m_server != null) && (m_index != null)) {
             try {
                 LOG.info(
@@ -133,8 +197,9 @@ public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
     /**
      * @see org.opencms.search.solr.I_CmsSolrIndexWriter#deleteAllDocuments()
      */
-    public void deleteAllDocuments() throws IOException {
+    public synchronized void deleteAllDocuments() throws IOException {
 
+        flush();
         if ((m_server != null) && (m_index != null)) {
             try {
                 LOG.info(
@@ -152,7 +217,7 @@ public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
     /**
      * @see org.opencms.search.I_CmsIndexWriter#deleteDocument(org.opencms.db.CmsPublishedResource)
      */
-    public void deleteDocument(CmsPublishedResource resource) throws IOException {
+    public synchronized void deleteDocument(CmsPublishedResource resource) throws IOException {
 
         if ((m_server != null) && (m_index != null)) {
             try {
@@ -162,7 +227,13 @@ public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
                         resource.getRootPath(),
                         m_index.getName(),
                         m_index.getPath()));
-                m_server.deleteByQuery(m_index.getCoreName(), "id:" + resource.getStructureId().toString(), m_commitMs);
+                String id = resource.getStructureId().toString();
+                if (m_batchSize > 1) {
+                    removeBufferedDocuments(id);
+                    bufferDelete("id:" + id);
+                    return;
+                }
+                m_server.deleteByQuery(m_index.getCoreName(), "id:" + id, m_commitMs);
             } catch (SolrServerException e) {
                 throw new IOException(e.getLocalizedMessage(), e);
             } catch (SolrException e) {
@@ -185,8 +256,9 @@ public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
      * @param searchDocument the search document.
      * @throws IOException if the update fails
      */
-    public void updateDocument(I_CmsSearchDocument searchDocument) throws IOException {
+    public synchronized void updateDocument(I_CmsSearchDocument searchDocument) throws IOException {
 
+        flush();
         SolrInputDocument inputDoc = (SolrInputDocument)searchDocument.getDocument();
         try {
             m_server.add(m_index.getCoreName(), inputDoc, m_commitMs);
@@ -198,11 +270,33 @@ public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
     /**
      * @see org.opencms.search.I_CmsIndexWriter#updateDocument(java.lang.String, org.opencms.search.I_CmsSearchDocument)
      */
-    public void updateDocument(String rootPath, I_CmsSearchDocument document) throws IOException {
+    public synchronized void updateDocument(String rootPath, I_CmsSearchDocument document) throws IOException {
 
         if ((m_server != null) && (m_index != null)) {
 
             if (document.getDocument() != null) {
+                if (m_batchSize > 1) {
+                    LOG.info(
+                        Messages.get().getBundle().key(
+                            Messages.LOG_SOLR_WRITER_DOC_UPDATE_3,
+                            rootPath,
+                            m_index.getName(),
+                            m_index.getPath()));
+                    // the delete query for the path also replaces a document buffered for this path
+                    String previousId = m_bufferedIds.get(rootPath);
+                    if (previousId != null) {
+                        removeBufferedDocuments(previousId);
+                    }
+                    List<SolrInputDocument> instances = createDocumentInstances(document);
+                    String id = ((SolrInputDocument)document.getDocument()).getFieldValue(
+                        CmsSearchField.FIELD_ID).toString();
+                    // only the last update of a resource within the batch is sent
+                    removeBufferedDocuments(id);
+                    m_bufferedDocuments.put(id, instances);
+                    m_bufferedIds.put(rootPath, id);
+                    bufferDelete("path:\"" + rootPath + "\"");
+                    return;
+                }
                 try {
                     m_server.deleteByQuery(m_index.getCoreName(), "path:\"" + rootPath + "\"", m_commitMs);
                 } catch (Exception e1) {
@@ -215,7 +309,7 @@ public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
                             rootPath,
                             m_index.getName(),
                             m_index.getPath()));
-                    addDocumentInstances(document);
+                    m_server.add(m_index.getCoreName(), createDocumentInstances(document), m_commitMs);
                 } catch (SolrServerException e) {
                     throw new IOException(e.getLocalizedMessage(), e);
                 }
@@ -224,17 +318,60 @@ public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
     }
 
     /**
-     * Adds Solr documents to the index for the {@link I_CmsSearchDocument}.
-     * Documents for serial dates are added for each occurrence once with the date of the respective occurrence.
+     * Adds a failure to the failures already collected while sending the buffer.<p>
+     *
+     * @param failure the first failure collected so far, may be <code>null</code>
+     * @param next the next failure
+     *
+     * @return the first failure, with the next failure added as suppressed
+     */
+    private IOException addFailure(IOException failure, IOException next) {
+
+        if (failure == null) {
+            return next;
+        }
+        failure.addSuppressed(next);
+        return failure;
+    }
+
+    /**
+     * Buffers the given delete query and sends the buffer if it is full or too old.<p>
+     *
+     * @param query the delete query
+     *
+     * @throws IOException if sending the buffer fails
+     */
+    private void bufferDelete(String query) throws IOException {
+
+        if (m_bufferStart == 0) {
+            m_bufferStart = System.currentTimeMillis();
+            if (m_commitMs > 0) {
+                m_flushTask = FLUSH_TIMER.schedule(() -> flushByTimer(), m_commitMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        m_bufferedDeletes.add(query);
+        if (((m_bufferedDeletes.size() + m_bufferedDocuments.size()) >= m_batchSize)
+            || ((m_commitMs > 0) && ((System.currentTimeMillis() - m_bufferStart) >= m_commitMs))) {
+            flush();
+        } else if (m_flushFailure != null) {
+            IOException failure = m_flushFailure;
+            m_flushFailure = null;
+            throw failure;
+        }
+    }
+
+    /**
+     * Creates the Solr documents to add to the index for the {@link I_CmsSearchDocument}.
+     * Documents for serial dates are created for each occurrence once with the date of the respective occurrence.
      * @param document the document for the indexed resource
-     * @throws SolrServerException thrown if adding the document to the index fails
-     * @throws IOException thrown if adding the document to the index fails
+     * @return the Solr documents to add
      */
-    private void addDocumentInstances(I_CmsSearchDocument document) throws SolrServerException, IOException {
+    private List<SolrInputDocument> createDocumentInstances(I_CmsSearchDocument document) {
 
         List<String> serialDates = document.getMultivaluedFieldAsStringList(CmsSearchField.FIELD_SERIESDATES);
         SolrInputDocument inputDoc = (SolrInputDocument)document.getDocument();
         String id = inputDoc.getFieldValue(CmsSearchField.FIELD_ID).toString();
+        List<SolrInputDocument> result = new ArrayList<SolrInputDocument>();
         if (null != serialDates) {
             // NOTE: We can assume the following two arrays have the same length as serialDates.
             List<String> serialDatesEnd = document.getMultivaluedFieldAsStringList(
@@ -291,12 +428,117 @@ public class CmsSolrIndexWriter implements I_CmsSolrIndexWriter {
                 //remove fields that should not be part of the index, but were used to transport extra-information on date series
                 inputDoc.removeField(CmsSearchField.FIELD_SERIESDATES_END);
                 inputDoc.removeField(CmsSearchField.FIELD_SERIESDATES_CURRENT_TILL);
-                m_server.add(m_index.getCoreName(), inputDoc, m_commitMs);
+                // the input document is modified for the next occurrence, so a copy is added
+                result.add(inputDoc.deepCopy());
             }
         } else {
             inputDoc.setField(CmsSearchField.FIELD_SOLR_ID, id);
-            m_server.add(m_index.getCoreName(), inputDoc, m_commitMs);
+            result.add(inputDoc);
         }
+        return result;
+    }
+
+    /**
+     * Sends the buffered delete queries and documents to the Solr server and clears the buffer.<p>
+     *
+     * @throws IOException if sending the documents fails
+     */
+    private void flush() throws IOException {
 
+        if (m_flushTask != null) {
+            m_flushTask.cancel(false);
+            m_flushTask = null;
+        }
+        // a failure of the timer is thrown after the current buffer has been sent
+        IOException failure = m_flushFailure;
+        m_flushFailure = null;
+        if ((m_bufferStart == 0) || (m_server == null) || (m_index == null)) {
+            if (failure != null) {
+                throw failure;
+            }
+            return;
+        }
+        List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+        for (List<SolrInputDocument> instances : m_bufferedDocuments.values()) {
+            documents.addAll(instances);
+        }
+        List<String> deletes = new ArrayList<String>(m_bufferedDeletes);
+        m_bufferedDeletes.clear();
+        m_bufferedDocuments.clear();
+        m_bufferedIds.clear();
+        m_bufferStart = 0;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(
+                Messages.get().getBundle().key(
+                    Messages.LOG_SOLR_WRITER_FLUSH_4,
+                    new Object[] {
+                        Integer.valueOf(deletes.size()),
+                        Integer.valueOf(documents.size()),
+                        m_index.getName(),
+                        m_index.getPath()}));
+        }
+        if (!deletes.isEmpty()) {
+            // the deletes are sent first, so they never remove a document of the same batch
+            try {
+                UpdateRequest request = new UpdateRequest();
+                for (String query : deletes) {
+                    request.deleteByQuery(query);
+                }
+                request.setCommitWithin(m_commitMs);
+                request.process(m_server, m_index.getCoreName());
+            } catch (SolrServerException e) {
+                // the documents are still sent, as without batching, the failure is thrown afterwards
+                failure = addFailure(failure, new IOException(e.getLocalizedMessage(), e));
+            } catch (SolrException e) {
+                failure = addFailure(failure, new IOException(e.getLocalizedMessage(), e));
+            } catch (IOException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        if (!documents.isEmpty()) {
+            try {
+                m_server.add(m_index.getCoreName(), documents, m_commitMs);
+            } catch (SolrServerException e) {
+                failure = addFailure(failure, new IOException(e.getLocalizedMessage(), e));
+            } catch (SolrException e) {
+                failure = addFailure(failure, new IOException(e.getLocalizedMessage(), e));
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
+
+    /**
+     * Sends the buffer from the timer, if it has not been sent in the meantime.<p>
+     *
+     * A failure is kept and thrown by the next operation of this writer.<p>
+     */
+    private synchronized void flushByTimer() {
+
+        if (m_flushTask == null) {
+            return;
+        }
+        m_flushTask = null;
+        try {
+            flush();
+        } catch (IOException e) {
+            // flush() has already taken a previous failure of the timer into the thrown one
+            LOG.error(e.getLocalizedMessage(), e);
+            m_flushFailure = e;
+        }
+    }
+
+    /**
+     * Removes the buffered documents of the resource with the given structure id.<p>
+     *
+     * @param id the structure id of the resource
+     */
+    private void removeBufferedDocuments(String id) {
+
+        if (m_bufferedDocuments.remove(id) != null) {
+            m_bufferedIds.values().removeAll(Collections.singleton(id));
+        }
+    }
+
 }
@@ -112,6 +112,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_SOLR_WRITER_DOC_UPDATE_3 = "LOG_SOLR_WRITER_DOC_UPDATE_3";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_SOLR_WRITER_FLUSH_4 = "LOG_SOLR_WRITER_FLUSH_4";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_SOLR_ERR_MAPPING_TO_INTERNALLY_USED_FIELD_2 = "LOG_SOLR_ERR_MAPPING_TO_INTERNALLY_USED_FIELD_2";
 
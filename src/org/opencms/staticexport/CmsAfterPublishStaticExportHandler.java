@@ -33,6 +33,8 @@ import org.opencms.file.CmsObject;
 import org.opencms.file.CmsResource;
 import org.opencms.file.CmsResourceFilter;
 import org.opencms.file.CmsVfsResourceNotFoundException;
+import org.opencms.flex.CmsFlexCache;
+import org.opencms.flex.CmsFlexRequestContextInfo;
 import org.opencms.loader.I_CmsResourceLoader;
 import org.opencms.main.CmsException;
 import org.opencms.main.CmsLog;
@@ -46,6 +48,7 @@ import org.opencms.workplace.CmsWorkplace;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
@@ -57,6 +60,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletResponse;
@@ -74,6 +79,87 @@ import org.apache.commons.logging.Log;
  */
 public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler {
 
+    /**
+     * A template resource submitted for export.<p>
+     */
+    private static class TemplateExport {
+
+        /** The export data. */
+        private CmsStaticExportData m_data;
+
+        /** Collects the resources read while rendering the resource. */
+        private CmsFlexRequestContextInfo m_dependencies;
+
+        /** The rfs name the dependencies are stored for in the dependency index. */
+        private String m_indexKey;
+
+        /** The future for the in-process export, <code>null</code> if the resource is requested over HTTP. */
+        private Future<Integer> m_result;
+
+        /**
+         * Creates a new template export.<p>
+         *
+         * @param indexKey the rfs name the dependencies are stored for in the dependency index
+         * @param data the export data
+         */
+        TemplateExport(String indexKey, CmsStaticExportData data) {
+
+            m_indexKey = indexKey;
+            m_data = data;
+            m_dependencies = new CmsFlexRequestContextInfo();
+        }
+
+        /**
+         * Returns the export data.<p>
+         *
+         * @return the export data
+         */
+        CmsStaticExportData getData() {
+
+            return m_data;
+        }
+
+        /**
+         * Returns the context info collecting the resources read while rendering the resource.<p>
+         *
+         * @return the context info collecting the resources read
+         */
+        CmsFlexRequestContextInfo getDependencies() {
+
+            return m_dependencies;
+        }
+
+        /**
+         * Returns the rfs name the dependencies are stored for in the dependency index.<p>
+         *
+         * @return the rfs name the dependencies are stored for
+         */
+        String getIndexKey() {
+
+            return m_indexKey;
+        }
+
+        /**
+         * Returns the future for the in-process export.<p>
+         *
+         * @return the future for the in-process export, <code>null</code> if the resource is requested over HTTP
+         */
+        Future<Integer> getResult() {
+
+            return m_result;
+        }
+
+        /**
+         * Sets the future for the in-process export.<p>
+         *
+         * @param result the future for the in-process export
+         */
+        void setResult(Future<Integer> result) {
+
+            m_result = result;
+        }
+    }
+
     /** Header field set-cookie constant. */
     private static final String HEADER_FIELD_SET_COOKIE = "Set-Cookie";
 
@@ -105,10 +191,25 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
         // this will always use the root site
         CmsObject cmsExportObject = OpenCms.initCmsObject(OpenCms.getDefaultUsers().getUserExport());
 
+        CmsStaticExportDependencyIndex dependencyIndex = OpenCms.getStaticExportManager().getDependencyIndex();
+        Set<String> dependentRfsNames = null;
+        if (resources == null) {
+            // full static export, the dependency index is built from scratch
+            dependencyIndex.clear();
+        } else {
+            dependentRfsNames = getDependentRfsNames(cmsExportObject, resources);
+        }
+        // the dependency index only adds pages to export, it can not replace exporting everything
+        // for resources not matching an export rule, since it does not know the results of queries
+        // like reading resources by property value or by relation
         List<CmsPublishedResource> resourcesToExport = getRelatedResources(cmsExportObject, resources);
         // first export all non-template resources
         templatesFound = exportNonTemplateResources(cmsExportObject, resourcesToExport, report);
         LOG.warn("finished exporting non-template resources. ");
+        if ((dependentRfsNames != null) && !dependentRfsNames.isEmpty()) {
+            // the pages depending on the published resources have to be exported in any case
+            templatesFound = true;
+        }
 
         // export template resources (check "plainoptimization" setting)
         if ((templatesFound) || (!OpenCms.getStaticExportManager().getQuickPlainExport())) {
@@ -120,6 +221,10 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
                 String rfsName = manager.getRfsName(cmsExportObject, pubResource.getRootPath());
                 resourceFilter.add(rfsName.substring(manager.getRfsPrefixForRfsName(rfsName).length()));
             }
+            if (dependentRfsNames != null) {
+                // add the pages depending on the published resources according to the dependency index
+                resourceFilter.addAll(dependentRfsNames);
+            }
 
             long timestamp = 0;
             List<String> publishedTemplateResources;
@@ -147,7 +252,8 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
                         Iterator<String> itPubTemplates = publishedTemplateResources.iterator();
                         while (itPubTemplates.hasNext()) {
                             String rfsName = itPubTemplates.next();
-                            if (!resourceFilter.contains(rfsName.substring(0, rfsName.lastIndexOf('_')))) {
+                            if (!resourceFilter.contains(rfsName)
+                                && !resourceFilter.contains(rfsName.substring(0, rfsName.lastIndexOf('_')))) {
                                 itPubTemplates.remove();
                             }
                         }
@@ -163,6 +269,7 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
                 // if no new template links where found we are finished
             } while (newTemplateLinksFound);
         }
+        dependencyIndex.save();
     }
 
     /**
@@ -523,13 +630,7 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
         String rfsName = data.getRfsName();
         CmsStaticExportManager manager = OpenCms.getStaticExportManager();
 
-        String exportUrlStr;
-        if (rfsName.contains(manager.getRfsPrefix(vfsName))) {
-            LOG.info("rfsName " + rfsName + " contains rfsPrefix " + manager.getRfsPrefix(vfsName));
-            exportUrlStr = manager.getExportUrl() + rfsName;
-        } else {
-            exportUrlStr = manager.getExportUrl() + manager.getRfsPrefix(vfsName) + rfsName;
-        }
+        String exportUrlStr = getExportRequestUrl(data);
         if (LOG.isDebugEnabled()) {
             LOG.debug(Messages.get().getBundle().key(Messages.LOG_SENDING_REQUEST_2, rfsName, exportUrlStr));
         }
@@ -611,6 +712,11 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
     /**
      * Exports all template resources found in a list of published resources.<p>
      *
+     * The resources are rendered in-process by a {@link CmsStaticExportRenderer} on several threads.
+     * Only if this is not possible, they are requested from the server over HTTP.<p>
+     *
+     * The resources read while rendering are stored in the static export dependency index.<p>
+     *
      * @param cms the cms context, in the root site as Export user
      * @param publishedTemplateResources list of potential candidates to export
      * @param report an I_CmsReport instance to print output message, or null to write messages to the log file
@@ -628,66 +734,61 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
             Messages.get().container(Messages.RPT_STATICEXPORT_TEMPLATE_RESOURCES_BEGIN_0),
             I_CmsReport.FORMAT_HEADLINE);
 
-        StringBuffer cookies = new StringBuffer();
-        // now loop through all of them and request them from the server
-        Iterator<String> i = publishedTemplateResources.iterator();
-        while (i.hasNext()) {
-            String rfsName = i.next();
-            CmsStaticExportData data = null;
-            try {
-                data = manager.getVfsNameInternal(cms, rfsName);
-            } catch (CmsVfsResourceNotFoundException e) {
-                String rfsBaseName = rfsName;
-                int pos = rfsName.lastIndexOf('_');
-                if (pos >= 0) {
-                    rfsBaseName = rfsName.substring(0, pos);
-                }
-                try {
-                    data = manager.getVfsNameInternal(cms, rfsBaseName);
-                } catch (CmsVfsResourceNotFoundException e2) {
-                    if (LOG.isInfoEnabled()) {
-                        LOG.info(
-                            Messages.get().getBundle().key(
-                                Messages.LOG_NO_INTERNAL_VFS_RESOURCE_FOUND_1,
-                                new String[] {rfsName}));
-                    }
+        // resolve all resources first and hand them to the render threads,
+        // the results are collected afterwards in the original order
+        CmsStaticExportRenderer renderer = new CmsStaticExportRenderer();
+        List<TemplateExport> pages = new ArrayList<TemplateExport>(size);
+        List<TemplateExport> detailPages = new ArrayList<TemplateExport>();
+        try {
+            for (String rfsName : publishedTemplateResources) {
+                CmsStaticExportData data = readTemplateExportData(cms, rfsName);
+                if (data == null) {
+                    // no valid resource found for rfs name (already deleted), skip it
+                    manager.getDependencyIndex().remove(rfsName);
+                    continue;
                 }
-            }
-            if (data != null) {
-                data.setRfsName(rfsName);
-                report.print(
-                    org.opencms.report.Messages.get().container(
-                        org.opencms.report.Messages.RPT_SUCCESSION_2,
-                        Integer.valueOf(count++),
-                        Integer.valueOf(size)),
-                    I_CmsReport.FORMAT_NOTE);
-                report.print(Messages.get().container(Messages.RPT_EXPORTING_0), I_CmsReport.FORMAT_NOTE);
-                report.print(
-                    org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_ARGUMENT_1, rfsName));
-                report.print(org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_DOTS_0));
-            } else {
-                // no valid resource found for rfs name (already deleted), skip it
-                continue;
-            }
-
-            try {
-                CmsResource resource = data.getResource();
                 try {
-                    Collection<String> detailPages = CmsDetailPageUtil.getAllDetailPagesWithUrlName(cms, resource);
-                    for (String detailPageUri : detailPages) {
+                    Collection<String> detailPageUris = CmsDetailPageUtil.getAllDetailPagesWithUrlName(
+                        cms,
+                        data.getResource());
+                    for (String detailPageUri : detailPageUris) {
                         String altRfsName = manager.getRfsName(cms, detailPageUri);
                         CmsStaticExportData detailData = new CmsStaticExportData(
                             data.getVfsName(),
                             altRfsName,
                             data.getResource(),
                             data.getParameters());
-                        exportTemplateResource(detailData, cookies);
+                        detailPages.add(submitTemplateResource(renderer, cms, rfsName, detailData));
                     }
                 } catch (CmsException e) {
                     LOG.error(e.getLocalizedMessage(), e);
                 }
+                pages.add(submitTemplateResource(renderer, cms, rfsName, data));
+            }
+        } finally {
+            renderer.shutdown();
+        }
 
-                int status = exportTemplateResource(data, cookies);
+        StringBuffer cookies = new StringBuffer();
+        // the resources read for each exported page, including its detail pages
+        Map<String, CmsFlexRequestContextInfo> dependencies = new HashMap<String, CmsFlexRequestContextInfo>();
+        for (TemplateExport page : pages) {
+            String rfsName = page.getData().getRfsName();
+            report.print(
+                org.opencms.report.Messages.get().container(
+                    org.opencms.report.Messages.RPT_SUCCESSION_2,
+                    Integer.valueOf(count++),
+                    Integer.valueOf(size)),
+                I_CmsReport.FORMAT_NOTE);
+            report.print(Messages.get().container(Messages.RPT_EXPORTING_0), I_CmsReport.FORMAT_NOTE);
+            report.print(
+                org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_ARGUMENT_1, rfsName));
+            report.print(org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_DOTS_0));
+            try {
+                int status = waitForExport(page, cookies);
+                if (status == HttpServletResponse.SC_OK) {
+                    dependencies.put(page.getIndexKey(), page.getDependencies());
+                }
 
                 // write the report
                 if (status == HttpServletResponse.SC_OK) {
@@ -711,15 +812,94 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
                 }
             } catch (IOException e) {
                 report.println(e);
+                // the export file may be outdated, so export the page again next time
+                page.getDependencies().addDependencies(null);
+                dependencies.put(page.getIndexKey(), page.getDependencies());
+            }
+        }
+        for (TemplateExport detailPage : detailPages) {
+            try {
+                waitForExport(detailPage, cookies);
+            } catch (IOException e) {
+                LOG.error(e.getLocalizedMessage(), e);
+                detailPage.getDependencies().addDependencies(null);
+            }
+            CmsFlexRequestContextInfo pageDependencies = dependencies.get(detailPage.getIndexKey());
+            if (pageDependencies != null) {
+                pageDependencies.addDependencies(detailPage.getDependencies().getDependencies());
+            }
+        }
+
+        // update the dependency index
+        CmsStaticExportDependencyIndex dependencyIndex = manager.getDependencyIndex();
+        for (TemplateExport page : pages) {
+            CmsFlexRequestContextInfo pageDependencies = dependencies.get(page.getIndexKey());
+            if (pageDependencies != null) {
+                dependencyIndex.setDependencies(page.getIndexKey(), pageDependencies.getDependencies());
+            } else {
+                // the page was not exported
+                dependencyIndex.remove(page.getIndexKey());
             }
-            //don't lock up the CPU exclusively - allow other Threads to run as well
-            Thread.yield();
         }
         report.println(
             Messages.get().container(Messages.RPT_STATICEXPORT_TEMPLATE_RESOURCES_END_0),
             I_CmsReport.FORMAT_HEADLINE);
     }
 
+    /**
+     * Returns the rfs names of the exported template resources which depend on one of the published resources,
+     * according to the static export dependency index.<p>
+     *
+     * The published resources are matched against the dependency index the same way as against the
+     * dependencies of Flex cache entries, see {@link CmsFlexCache#getPublishedDependencyIds(CmsObject, List)}.
+     * This includes the ancestor folders of new, deleted or moved resources, since pages listing these folders,
+     * directly or including their subfolders, are affected.<p>
+     *
+     * @param cms the cms context, in the root site as Export user
+     * @param publishedResources the published resources
+     *
+     * @return the dependent rfs names, or <code>null</code> if they can not be determined from the dependency index,
+     *      e.g. because a JSP or a configuration file was published
+     */
+    protected Set<String> getDependentRfsNames(CmsObject cms, List<CmsPublishedResource> publishedResources) {
+
+        for (CmsPublishedResource pubRes : publishedResources) {
+            if (CmsFlexCache.isClearAllResource(pubRes)) {
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("Not using the static export dependency index because of " + pubRes.getRootPath());
+                }
+                return null;
+            }
+        }
+        Set<CmsUUID> publishedIds;
+        try {
+            publishedIds = CmsFlexCache.getPublishedDependencyIds(cms, publishedResources);
+        } catch (CmsException e) {
+            LOG.warn(e.getLocalizedMessage(), e);
+            return null;
+        }
+        return OpenCms.getStaticExportManager().getDependencyIndex().getDependents(publishedIds);
+    }
+
+    /**
+     * Returns the URL used to request a template resource from the server for the static export.<p>
+     *
+     * @param data the export data of the resource
+     *
+     * @return the URL used to request the resource
+     */
+    protected String getExportRequestUrl(CmsStaticExportData data) {
+
+        String vfsName = data.getVfsName();
+        String rfsName = data.getRfsName();
+        CmsStaticExportManager manager = OpenCms.getStaticExportManager();
+        if (rfsName.contains(manager.getRfsPrefix(vfsName))) {
+            LOG.info("rfsName " + rfsName + " contains rfsPrefix " + manager.getRfsPrefix(vfsName));
+            return manager.getExportUrl() + rfsName;
+        }
+        return manager.getExportUrl() + manager.getRfsPrefix(vfsName) + rfsName;
+    }
+
     /**
      * @see org.opencms.staticexport.A_CmsStaticExportHandler#getRelatedFilesToPurge(java.lang.String, java.lang.String)
      */
@@ -906,4 +1086,100 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
 
         return templatesFound;
     }
+
+    /**
+     * Reads the export data for the rfs name of a template resource.<p>
+     *
+     * @param cms the cms context, in the root site as Export user
+     * @param rfsName the rfs name, may contain a parameter suffix
+     *
+     * @return the export data, or <code>null</code> if no resource was found for the rfs name
+     */
+    private CmsStaticExportData readTemplateExportData(CmsObject cms, String rfsName) {
+
+        CmsStaticExportManager manager = OpenCms.getStaticExportManager();
+        CmsStaticExportData data = null;
+        try {
+            data = manager.getVfsNameInternal(cms, rfsName);
+        } catch (CmsVfsResourceNotFoundException e) {
+            String rfsBaseName = rfsName;
+            int pos = rfsName.lastIndexOf('_');
+            if (pos >= 0) {
+                rfsBaseName = rfsName.substring(0, pos);
+            }
+            try {
+                data = manager.getVfsNameInternal(cms, rfsBaseName);
+            } catch (CmsVfsResourceNotFoundException e2) {
+                if (LOG.isInfoEnabled()) {
+                    LOG.info(
+                        Messages.get().getBundle().key(
+                            Messages.LOG_NO_INTERNAL_VFS_RESOURCE_FOUND_1,
+                            new String[] {rfsName}));
+                }
+            }
+        }
+        if (data != null) {
+            data.setRfsName(rfsName);
+        }
+        return data;
+    }
+
+    /**
+     * Submits a template resource to the render threads.<p>
+     *
+     * @param renderer the in-process renderer
+     * @param cms the cms context, in the root site as Export user
+     * @param indexKey the rfs name the dependencies are stored for in the dependency index
+     * @param data the export data of the resource
+     *
+     * @return the submitted template export
+     */
+    private TemplateExport submitTemplateResource(
+        CmsStaticExportRenderer renderer,
+        CmsObject cms,
+        String indexKey,
+        CmsStaticExportData data) {
+
+        TemplateExport export = new TemplateExport(indexKey, data);
+        if (renderer.isAvailable()) {
+            export.setResult(renderer.submit(cms, data, getExportRequestUrl(data), export.getDependencies()));
+        }
+        return export;
+    }
+
+    /**
+     * Waits for the in-process export of a template resource and returns its status.<p>
+     *
+     * If the resource was not rendered in-process, or rendering it failed,
+     * it is requested from the server over HTTP. In this case, the resources read are unknown.<p>
+     *
+     * @param export the template export
+     * @param cookies cookies to keep the session for HTTP requests
+     *
+     * @return the status of the export
+     *
+     * @throws IOException in case of errors requesting the resource, or if the export thread is interrupted
+     */
+    private int waitForExport(TemplateExport export, StringBuffer cookies) throws IOException {
+
+        CmsFlexRequestContextInfo dependencies = export.getDependencies();
+        if (export.getResult() != null) {
+            try {
+                int status = export.getResult().get().intValue();
+                CmsStaticExportDependencyIndex.addRenderedResource(dependencies, export.getData().getResource());
+                return status;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getLocalizedMessage());
+            } catch (ExecutionException e) {
+                LOG.warn(
+                    "In-process export of "
+                        + export.getData().getRfsName()
+                        + " failed, requesting it from the server instead",
+                    e.getCause());
+            }
+        }
+        dependencies.addDependencies(null);
+        return exportTemplateResource(export.getData(), cookies);
+    }
 }
\ No newline at end of file
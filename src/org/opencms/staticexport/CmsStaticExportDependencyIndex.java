@@ -0,0 +1,322 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.staticexport;
+
+import org.opencms.file.CmsResource;
+import org.opencms.flex.CmsFlexRequestContextInfo;
+import org.opencms.main.CmsLog;
+import org.opencms.util.CmsUUID;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Index from the template resources exported to the "real" file system
+ * to the VFS resources they were generated from.<p>
+ *
+ * The index is keyed by the rfs name of the exported resource, as stored in the static export table.
+ * For every rfs name, it contains the structure and resource ids of all resources read while rendering it,
+ * collected the same way as the dependencies of Flex cache entries. After a publish, the rfs names depending on
+ * one of the published resources can be looked up and re-exported.<p>
+ *
+ * The index is stored in a text file, one rfs name per line followed by the ids.<p>
+ *
+ * @see CmsStaticExportManager#getDependencyIndex()
+ */
+public class CmsStaticExportDependencyIndex {
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsStaticExportDependencyIndex.class);
+
+    /** Marker for rfs names with unknown dependencies. */
+    private static final String UNKNOWN_MARKER = "?";
+
+    /** Flag which indicates if the index was changed since it was loaded or saved. */
+    private boolean m_changed;
+
+    /** The ids of the resources each rfs name depends on. */
+    private Map<String, Set<CmsUUID>> m_dependencies;
+
+    /** The rfs names depending on each id. */
+    private Map<CmsUUID, Set<String>> m_dependents;
+
+    /** The file the index is stored in. */
+    private File m_file;
+
+    /** The rfs names with unknown dependencies. */
+    private Set<String> m_unknown;
+
+    /**
+     * Creates a new, empty dependency index.<p>
+     *
+     * @param file the file the index is stored in
+     */
+    public CmsStaticExportDependencyIndex(File file) {
+
+        m_file = file;
+        m_dependencies = new HashMap<String, Set<CmsUUID>>();
+        m_dependents = new HashMap<CmsUUID, Set<String>>();
+        m_unknown = new HashSet<String>();
+    }
+
+    /**
+     * Removes all entries from the index.<p>
+     */
+    public synchronized void clear() {
+
+        m_dependencies.clear();
+        m_dependents.clear();
+        m_unknown.clear();
+        m_changed = true;
+    }
+
+    /**
+     * Returns the rfs names which depend on at least one of the given ids.<p>
+     *
+     * Rfs names with unknown dependencies are always part of the result.<p>
+     *
+     * @param ids the structure and resource ids of the changed resources
+     *
+     * @return the rfs names which have to be exported again
+     */
+    public synchronized Set<String> getDependents(Collection<CmsUUID> ids) {
+
+        Set<String> result = new HashSet<String>(m_unknown);
+        for (CmsUUID id : ids) {
+            Set<String> dependents = m_dependents.get(id);
+            if (dependents != null) {
+                result.addAll(dependents);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the index from its file.<p>
+     *
+     * If the file does not exist or can not be read, the index is empty.<p>
+     */
+    public synchronized void load() {
+
+        clear();
+        m_changed = false;
+        if (!m_file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(m_file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int pos = line.indexOf('\t');
+                if (pos <= 0) {
+                    continue;
+                }
+                String rfsName = line.substring(0, pos);
+                String ids = line.substring(pos + 1);
+                Set<CmsUUID> dependencies = null;
+                if (!UNKNOWN_MARKER.equals(ids)) {
+                    dependencies = new HashSet<CmsUUID>();
+                    for (String id : ids.split(" ")) {
+                        if (CmsUUID.isValidUUID(id)) {
+                            dependencies.add(new CmsUUID(id));
+                        }
+                    }
+                }
+                putDependencies(rfsName, dependencies);
+            }
+        } catch (IOException e) {
+            LOG.error("Could not read static export dependency index " + m_file + ": " + e.getLocalizedMessage(), e);
+            clear();
+        }
+        m_changed = false;
+        if (LOG.isInfoEnabled()) {
+            LOG.info(
+                "Read static export dependency index "
+                    + m_file
+                    + " with "
+                    + m_dependencies.size()
+                    + " entries and "
+                    + m_unknown.size()
+                    + " entries with unknown dependencies");
+        }
+    }
+
+    /**
+     * Removes the given rfs name from the index.<p>
+     *
+     * @param rfsName the rfs name to remove
+     */
+    public synchronized void remove(String rfsName) {
+
+        removeDependencies(rfsName);
+    }
+
+    /**
+     * Writes the index to its file, if it was changed.<p>
+     *
+     * The file is written to a temporary file first and then moved in place.<p>
+     */
+    public synchronized void save() {
+
+        if (!m_changed) {
+            return;
+        }
+        File tempFile = new File(m_file.getParentFile(), m_file.getName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                for (String rfsName : m_unknown) {
+                    writer.write(rfsName);
+                    writer.write('\t');
+                    writer.write(UNKNOWN_MARKER);
+                    writer.newLine();
+                }
+                for (Map.Entry<String, Set<CmsUUID>> entry : m_dependencies.entrySet()) {
+                    writer.write(entry.getKey());
+                    writer.write('\t');
+                    boolean first = true;
+                    for (CmsUUID id : entry.getValue()) {
+                        if (!first) {
+                            writer.write(' ');
+                        }
+                        writer.write(id.toString());
+                        first = false;
+                    }
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(
+                    tempFile.toPath(),
+                    m_file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), m_file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            m_changed = false;
+        } catch (IOException e) {
+            LOG.error("Could not write static export dependency index " + m_file + ": " + e.getLocalizedMessage(), e);
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Sets the dependencies of an exported rfs name, replacing the previous dependencies.<p>
+     *
+     * @param rfsName the rfs name
+     * @param dependencies the structure and resource ids of the resources read, <code>null</code> if they are unknown
+     */
+    public synchronized void setDependencies(String rfsName, Set<CmsUUID> dependencies) {
+
+        if ((rfsName.indexOf('\t') >= 0) || (rfsName.indexOf('\n') >= 0) || (rfsName.indexOf('\r') >= 0)) {
+            // can not be stored in the index file
+            return;
+        }
+        removeDependencies(rfsName);
+        putDependencies(rfsName, dependencies);
+    }
+
+    /**
+     * Completes the dependencies collected while rendering a resource in-process.<p>
+     *
+     * If nothing was collected, e.g. because the resource was not rendered by the JSP loader,
+     * the dependencies are unknown. Otherwise the rendered resource itself is added.<p>
+     *
+     * @param dependencies the dependencies collected while rendering
+     * @param resource the rendered resource
+     */
+    static void addRenderedResource(CmsFlexRequestContextInfo dependencies, CmsResource resource) {
+
+        Set<CmsUUID> ids = dependencies.getDependencies();
+        if ((ids != null) && ids.isEmpty()) {
+            dependencies.setDependenciesUnknown();
+        }
+        dependencies.addDependency(resource);
+    }
+
+    /**
+     * Adds an rfs name to the index, which must not be contained in the index.<p>
+     *
+     * @param rfsName the rfs name
+     * @param dependencies the ids it depends on, <code>null</code> if they are unknown
+     */
+    private void putDependencies(String rfsName, Set<CmsUUID> dependencies) {
+
+        if (dependencies == null) {
+            m_unknown.add(rfsName);
+        } else {
+            Set<CmsUUID> ids = new HashSet<CmsUUID>(dependencies);
+            m_dependencies.put(rfsName, ids);
+            for (CmsUUID id : ids) {
+                Set<String> dependents = m_dependents.get(id);
+                if (dependents == null) {
+                    dependents = new HashSet<String>();
+                    m_dependents.put(id, dependents);
+                }
+                dependents.add(rfsName);
+            }
+        }
+        m_changed = true;
+    }
+
+    /**
+     * Removes an rfs name from the index.<p>
+     *
+     * @param rfsName the rfs name
+     */
+    private void removeDependencies(String rfsName) {
+
+        boolean removed = m_unknown.remove(rfsName);
+        Set<CmsUUID> ids = m_dependencies.remove(rfsName);
+        if (ids != null) {
+            removed = true;
+            for (CmsUUID id : ids) {
+                Set<String> dependents = m_dependents.get(id);
+                if (dependents != null) {
+                    dependents.remove(rfsName);
+                    if (dependents.isEmpty()) {
+                        m_dependents.remove(id);
+                    }
+                }
+            }
+        }
+        m_changed |= removed;
+    }
+}
@@ -70,6 +70,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -124,6 +127,9 @@ public class CmsStaticExportManager implements I_CmsEventListener {
     /** Name for the default work path. */
     public static final String EXPORT_DEFAULT_WORKPATH = CmsSystemInfo.FOLDER_WEBINF + "temp";
 
+    /** Name of the file storing the static export dependency index, relative to the WEB-INF folder. */
+    public static final String EXPORT_DEPENDENCY_INDEX_FILE = "export-dependencies.txt";
+
     /** Flag value for links without parameters. */
     public static final int EXPORT_LINK_WITH_PARAMETER = 2;
 
@@ -175,6 +181,9 @@ public class CmsStaticExportManager implements I_CmsEventListener {
     /** OpenCms default locale header. */
     private String m_defaultAcceptLanguageHeader;
 
+    /** The index of the resources each exported template resource depends on, lazily loaded. */
+    private CmsStaticExportDependencyIndex m_dependencyIndex;
+
     /** Matcher for  selecting those resources which should be part of the static export. */
     private CmsExportFolderMatcher m_exportFolderMatcher;
 
@@ -882,6 +891,23 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         return m_defaultAcceptLanguageHeader;
     }
 
+    /**
+     * Returns the index of the VFS resources each exported template resource depends on.<p>
+     *
+     * The index is read from the file system when this is called for the first time.<p>
+     *
+     * @return the static export dependency index
+     */
+    public synchronized CmsStaticExportDependencyIndex getDependencyIndex() {
+
+        if (m_dependencyIndex == null) {
+            m_dependencyIndex = new CmsStaticExportDependencyIndex(
+                new File(OpenCms.getSystemInfo().getAbsoluteRfsPathRelativeToWebInf(EXPORT_DEPENDENCY_INDEX_FILE)));
+            m_dependencyIndex.load();
+        }
+        return m_dependencyIndex;
+    }
+
     /**
      * Returns the default prefix for exported links in the "real" file system.<p>
      *
@@ -2957,11 +2983,24 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         createExportFolder(exportPath, rfsName);
         // generate export file instance and output stream
         File exportFile = new File(exportFileName);
-        // write new exported file content
+        // write the content to a temporary file in the same folder first and move it in place afterwards,
+        // so the export folder never contains partially written files, even with several export threads
+        File tempFile = new File(
+            exportFile.getParentFile(),
+            "." + exportFile.getName() + "." + Thread.currentThread().getId() + ".tmp");
         try {
-            FileOutputStream exportStream = new FileOutputStream(exportFile);
-            exportStream.write(content);
-            exportStream.close();
+            try (FileOutputStream exportStream = new FileOutputStream(tempFile)) {
+                exportStream.write(content);
+            }
+            try {
+                Files.move(
+                    tempFile.toPath(),
+                    exportFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), exportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
 
             // log export success
             if (LOG.isInfoEnabled()) {
@@ -2973,6 +3012,7 @@ public class CmsStaticExportManager implements I_CmsEventListener {
             }
 
         } catch (Throwable t) {
+            tempFile.delete();
             throw new CmsStaticExportException(
                 Messages.get().container(Messages.ERR_OUTPUT_STREAM_1, exportFileName),
                 t);
@@ -0,0 +1,229 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.staticexport;
+
+import org.opencms.file.CmsObject;
+import org.opencms.flex.CmsFlexRequestContextInfo;
+import org.opencms.main.CmsException;
+import org.opencms.main.CmsLog;
+import org.opencms.main.OpenCms;
+import org.opencms.main.OpenCmsServlet;
+import org.opencms.util.CmsInternalRequestUtil;
+import org.opencms.util.CmsRequestUtil;
+import org.opencms.util.CmsStringUtil;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Renders template resources for the static export inside the running OpenCms instance.<p>
+ *
+ * Instead of requesting each page from the server over HTTP, the resources are rendered through the
+ * resource loaders with internal request and response objects. The work is spread across a bounded pool
+ * of worker threads, the results are written to the "real" file system by
+ * {@link CmsStaticExportManager#export(HttpServletRequest, HttpServletResponse, CmsObject, CmsStaticExportData)}.<p>
+ *
+ * Rendering in-process requires the servlet context, so that JSP includes can be dispatched.
+ * If OpenCms is not running in a servlet container, {@link #isAvailable()} returns <code>false</code>.<p>
+ *
+ * @see CmsAfterPublishStaticExportHandler
+ */
+public class CmsStaticExportRenderer {
+
+    /** Name of the system property to configure the number of render threads. */
+    public static final String PARAM_THREADS = "opencms.staticexport.threads";
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsStaticExportRenderer.class);
+
+    /** The additional request headers. */
+    private Map<String, String> m_headers;
+
+    /** The render thread pool. */
+    private ExecutorService m_pool;
+
+    /** The servlet context used for dispatching JSP includes. */
+    private ServletContext m_servletContext;
+
+    /**
+     * Creates a new renderer.<p>
+     *
+     * The number of render threads is read from the system property {@link #PARAM_THREADS},
+     * it defaults to the number of available processors.<p>
+     */
+    public CmsStaticExportRenderer() {
+
+        this(Integer.getInteger(PARAM_THREADS, Runtime.getRuntime().availableProcessors()).intValue());
+    }
+
+    /**
+     * Creates a new renderer.<p>
+     *
+     * @param threads the maximum number of resources rendered in parallel
+     */
+    public CmsStaticExportRenderer(int threads) {
+
+        this(OpenCms.getSystemInfo().getServletContainerSettings().getServletContext(), threads);
+    }
+
+    /**
+     * Creates a new renderer using the given servlet context.<p>
+     *
+     * @param servletContext the servlet context used for dispatching JSP includes, <code>null</code> if not available
+     * @param threads the maximum number of resources rendered in parallel
+     */
+    CmsStaticExportRenderer(ServletContext servletContext, int threads) {
+
+        m_servletContext = servletContext;
+        m_pool = Executors.newFixedThreadPool(
+            Math.max(1, threads),
+            new ThreadFactoryBuilder().setNameFormat("OpenCms-static-export-%d").setDaemon(true).build());
+
+        CmsStaticExportManager manager = OpenCms.getStaticExportManager();
+        m_headers = new HashMap<String, String>();
+        m_headers.put(CmsRequestUtil.HEADER_OPENCMS_EXPORT, CmsStringUtil.TRUE);
+        m_headers.put(
+            CmsRequestUtil.HEADER_ACCEPT_LANGUAGE,
+            manager.getAcceptLanguageHeader() != null
+            ? manager.getAcceptLanguageHeader()
+            : manager.getDefaultAcceptLanguageHeader());
+        m_headers.put(
+            CmsRequestUtil.HEADER_ACCEPT_CHARSET,
+            manager.getAcceptCharsetHeader() != null
+            ? manager.getAcceptCharsetHeader()
+            : manager.getDefaultAcceptCharsetHeader());
+    }
+
+    /**
+     * Returns if resources can be rendered in-process, i.e. if OpenCms runs in a servlet container.<p>
+     *
+     * @return <code>true</code> if resources can be rendered in-process
+     */
+    public boolean isAvailable() {
+
+        return m_servletContext != null;
+    }
+
+    /**
+     * Renders a single resource and writes it to the export folder.<p>
+     *
+     * This is executed in the calling thread.<p>
+     *
+     * @param cms the cms context, in the root site as export user
+     * @param data the export data of the resource
+     * @param exportUrl the URL the resource would be requested from over HTTP
+     * @param dependencies collects the resources read while rendering the resource, may be <code>null</code>
+     *
+     * @return the status of the export, the same as the HTTP status codes (200, 303, 304)
+     *
+     * @throws CmsException in case of errors accessing the VFS
+     * @throws IOException in case of errors writing to the export folder
+     * @throws ServletException in case of errors rendering the resource
+     */
+    public int render(
+        CmsObject cms,
+        CmsStaticExportData data,
+        String exportUrl,
+        CmsFlexRequestContextInfo dependencies)
+    throws CmsException, IOException, ServletException {
+
+        HttpServletRequest req = new CmsStaticExportRequest(
+            CmsInternalRequestUtil.createRequest(
+                m_servletContext,
+                new URL(exportUrl),
+                OpenCms.getSystemInfo().getContextPath(),
+                OpenCms.getSystemInfo().getServletPath(),
+                m_headers),
+            data);
+        HttpServletResponse res = CmsInternalRequestUtil.createResponse(OpenCms.getSystemInfo().getDefaultEncoding());
+        if (dependencies != null) {
+            req.setAttribute(CmsRequestUtil.ATTRIBUTE_EXPORT_DEPENDENCIES, dependencies);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Rendering " + data.getRfsName() + " in-process as " + exportUrl);
+        }
+        OpenCmsServlet.currentRequestStack.push(req);
+        try {
+            return OpenCms.getStaticExportManager().export(req, res, OpenCms.initCmsObject(cms), data);
+        } finally {
+            OpenCmsServlet.currentRequestStack.pop();
+        }
+    }
+
+    /**
+     * Shuts down the render threads.<p>
+     *
+     * Resources already submitted are still rendered.<p>
+     */
+    public void shutdown() {
+
+        m_pool.shutdown();
+    }
+
+    /**
+     * Submits a resource to be rendered by the render threads.<p>
+     *
+     * @param cms the cms context, in the root site as export user
+     * @param data the export data of the resource
+     * @param exportUrl the URL the resource would be requested from over HTTP
+     * @param dependencies collects the resources read while rendering the resource, may be <code>null</code>
+     *
+     * @return the future for the status of the export
+     *
+     * @see #render(CmsObject, CmsStaticExportData, String, CmsFlexRequestContextInfo)
+     */
+    public Future<Integer> submit(
+        final CmsObject cms,
+        final CmsStaticExportData data,
+        final String exportUrl,
+        final CmsFlexRequestContextInfo dependencies) {
+
+        return m_pool.submit(new Callable<Integer>() {
+
+            public Integer call() throws Exception {
+
+                return Integer.valueOf(render(cms, data, exportUrl, dependencies));
+            }
+        });
+    }
+}
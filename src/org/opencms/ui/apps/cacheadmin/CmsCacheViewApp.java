@@ -27,7 +27,7 @@
 
 package org.opencms.ui.apps.cacheadmin;
 
-import org.opencms.cache.CmsLruCache;
+import org.opencms.cache.I_CmsLruCache;
 import org.opencms.flex.CmsFlexCache;
 import org.opencms.loader.CmsImageLoader;
 import org.opencms.main.OpenCms;
@@ -179,7 +179,7 @@ public class CmsCacheViewApp extends A_CmsWorkplaceApp {
         Map<String, String> infoMap = new LinkedHashMap<String, String>();
 
         CmsFlexCache cache = OpenCms.getFlexCache();
-        CmsLruCache entryLruCache = cache.getEntryLruCache();
+        I_CmsLruCache entryLruCache = cache.getEntryLruCache();
 
         infoMap.put(
             CmsVaadinUtils.getMessageText(Messages.GUI_CACHE_FLEXCACHE_LABEL_STATS_KEYS_0),
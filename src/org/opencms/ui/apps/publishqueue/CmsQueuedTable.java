@@ -812,9 +812,8 @@ public class CmsQueuedTable extends Table {
 
         //a) running jobs
         if (OpenCms.getPublishManager().isRunning()) {
-            CmsPublishJobRunning currentJob = OpenCms.getPublishManager().getCurrentPublishJob();
-            if (currentJob != null) {
-                m_container.addBean(new Row(currentJob, 1));
+            for (CmsPublishJobRunning runningJob : OpenCms.getPublishManager().getRunningPublishJobs()) {
+                m_container.addBean(new Row(runningJob, 1));
             }
         }
 
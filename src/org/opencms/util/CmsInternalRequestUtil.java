@@ -0,0 +1,425 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.util;
+
+import org.opencms.i18n.CmsLocaleManager;
+import org.opencms.main.CmsContextInfo;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Creates request and response objects for processing resources inside OpenCms without a client request.<p>
+ *
+ * This is used to render resources for the static export and to compile JSPs in the background.
+ * The requests hold attributes and headers, everything written to the responses is discarded.<p>
+ */
+public final class CmsInternalRequestUtil {
+
+    /**
+     * Output stream that discards everything written to it.<p>
+     */
+    static class DiscardOutputStream extends ServletOutputStream {
+
+        /**
+         * @see javax.servlet.ServletOutputStream#isReady()
+         */
+        @Override
+        public boolean isReady() {
+
+            return true;
+        }
+
+        /**
+         * @see javax.servlet.ServletOutputStream#setWriteListener(javax.servlet.WriteListener)
+         */
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+
+            // not used
+        }
+
+        /**
+         * @see java.io.OutputStream#write(byte[], int, int)
+         */
+        @Override
+        public void write(byte[] b, int off, int len) {
+
+            // discard
+        }
+
+        /**
+         * @see java.io.OutputStream#write(int)
+         */
+        @Override
+        public void write(int b) {
+
+            // discard
+        }
+    }
+
+    /**
+     * Invocation handler for the internal request.<p>
+     */
+    static class RequestHandler implements InvocationHandler {
+
+        /** The request attributes. */
+        private Map<String, Object> m_attributes = new ConcurrentHashMap<String, Object>();
+
+        /** The context path. */
+        private String m_contextPath;
+
+        /** The request headers. */
+        private Map<String, String> m_headers = new HashMap<String, String>();
+
+        /** The locale of the request. */
+        private Locale m_locale;
+
+        /** The path info. */
+        private String m_pathInfo;
+
+        /** The query string. */
+        private String m_queryString;
+
+        /** The servlet context. */
+        private ServletContext m_servletContext;
+
+        /** The servlet path. */
+        private String m_servletPath;
+
+        /** The URL of the request, may be <code>null</code>. */
+        private URL m_url;
+
+        /**
+         * Creates a new request handler.<p>
+         *
+         * @param servletContext the servlet context, may be <code>null</code>
+         * @param url the URL of the request, may be <code>null</code>
+         * @param contextPath the context path
+         * @param servletPath the servlet path
+         * @param queryString the query string, may be <code>null</code>
+         * @param headers the request headers, may be <code>null</code>
+         */
+        RequestHandler(
+            ServletContext servletContext,
+            URL url,
+            String contextPath,
+            String servletPath,
+            String queryString,
+            Map<String, String> headers) {
+
+            m_servletContext = servletContext;
+            m_url = url;
+            m_contextPath = contextPath;
+            m_servletPath = servletPath;
+            m_queryString = queryString;
+            if (headers != null) {
+                m_headers.putAll(headers);
+            }
+            m_locale = CmsLocaleManager.getDefaultLocale();
+            if (url != null) {
+                String prefix = contextPath + servletPath;
+                if (url.getPath().startsWith(prefix)) {
+                    m_pathInfo = url.getPath().substring(prefix.length());
+                }
+            }
+        }
+
+        /**
+         * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+         */
+        public Object invoke(Object proxy, Method method, Object[] args) {
+
+            switch (method.getName()) {
+                case "getAttribute":
+                    return m_attributes.get(args[0]);
+                case "setAttribute":
+                    if (args[1] == null) {
+                        m_attributes.remove(args[0]);
+                    } else {
+                        m_attributes.put((String)args[0], args[1]);
+                    }
+                    return null;
+                case "removeAttribute":
+                    m_attributes.remove(args[0]);
+                    return null;
+                case "getAttributeNames":
+                    return Collections.enumeration(new ArrayList<String>(m_attributes.keySet()));
+                case "getHeader":
+                    return m_headers.get(args[0]);
+                case "getHeaders":
+                    if (m_headers.containsKey(args[0])) {
+                        return Collections.enumeration(Collections.singletonList(m_headers.get(args[0])));
+                    }
+                    return Collections.emptyEnumeration();
+                case "getHeaderNames":
+                    return Collections.enumeration(new ArrayList<String>(m_headers.keySet()));
+                case "getParameterMap":
+                    return Collections.emptyMap();
+                case "getParameterNames":
+                    return Collections.emptyEnumeration();
+                case "getQueryString":
+                    return m_queryString;
+                case "getLocale":
+                    return m_locale;
+                case "getLocales":
+                    return Collections.enumeration(Collections.singletonList(m_locale));
+                case "getMethod":
+                    return "GET";
+                case "getProtocol":
+                    return "HTTP/1.1";
+                case "getContextPath":
+                    return m_contextPath;
+                case "getServletPath":
+                    return m_servletPath;
+                case "getPathInfo":
+                    return m_pathInfo;
+                case "getRemoteAddr":
+                case "getLocalAddr":
+                    return CmsContextInfo.LOCALHOST;
+                case "getServletContext":
+                    return m_servletContext;
+                case "getRequestDispatcher":
+                    return m_servletContext != null ? m_servletContext.getRequestDispatcher((String)args[0]) : null;
+                case "equals":
+                    return Boolean.valueOf(proxy == args[0]);
+                case "hashCode":
+                    return Integer.valueOf(System.identityHashCode(proxy));
+                case "toString":
+                    return "Internal request " + (m_url != null ? m_url.toExternalForm() : "");
+                default:
+                    break;
+            }
+            if (m_url != null) {
+                switch (method.getName()) {
+                    case "getScheme":
+                        return m_url.getProtocol();
+                    case "getServerName":
+                        return m_url.getHost();
+                    case "getServerPort":
+                        return Integer.valueOf(m_url.getPort() != -1 ? m_url.getPort() : m_url.getDefaultPort());
+                    case "isSecure":
+                        return Boolean.valueOf("https".equals(m_url.getProtocol()));
+                    case "getRequestURI":
+                        return m_url.getPath();
+                    case "getRequestURL":
+                        return new StringBuffer(m_url.toExternalForm());
+                    default:
+                        break;
+                }
+            }
+            return getDefaultValue(method);
+        }
+    }
+
+    /**
+     * Invocation handler for the internal response.<p>
+     */
+    static class ResponseHandler implements InvocationHandler {
+
+        /** The character encoding of the response. */
+        private String m_encoding;
+
+        /** The output stream, everything written to the response is discarded. */
+        private ServletOutputStream m_out = new DiscardOutputStream();
+
+        /** The response status. */
+        private int m_status = HttpServletResponse.SC_OK;
+
+        /** The writer of the response. */
+        private PrintWriter m_writer;
+
+        /**
+         * Creates a new response handler.<p>
+         *
+         * @param encoding the initial character encoding of the response
+         */
+        ResponseHandler(String encoding) {
+
+            m_encoding = encoding;
+        }
+
+        /**
+         * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+         */
+        public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+
+            switch (method.getName()) {
+                case "getOutputStream":
+                    return m_out;
+                case "getWriter":
+                    if (m_writer == null) {
+                        m_writer = new PrintWriter(new OutputStreamWriter(m_out, m_encoding));
+                    }
+                    return m_writer;
+                case "getCharacterEncoding":
+                    return m_encoding;
+                case "setCharacterEncoding":
+                    if (args[0] != null) {
+                        m_encoding = (String)args[0];
+                    }
+                    return null;
+                case "setStatus":
+                case "sendError":
+                    m_status = ((Integer)args[0]).intValue();
+                    return null;
+                case "getStatus":
+                    return Integer.valueOf(m_status);
+                case "encodeURL":
+                case "encodeUrl":
+                case "encodeRedirectURL":
+                case "encodeRedirectUrl":
+                    return args[0];
+                case "getHeaderNames":
+                case "getHeaders":
+                    return Collections.emptyList();
+                case "getLocale":
+                    return CmsLocaleManager.getDefaultLocale();
+                case "equals":
+                    return Boolean.valueOf(proxy == args[0]);
+                case "hashCode":
+                    return Integer.valueOf(System.identityHashCode(proxy));
+                case "toString":
+                    return "Internal response";
+                default:
+                    return getDefaultValue(method);
+            }
+        }
+    }
+
+    /**
+     * Hide constructor for static utility class.<p>
+     */
+    private CmsInternalRequestUtil() {
+
+        // empty
+    }
+
+    /**
+     * Creates a request without a URL, e.g. for updating JSPs in the background.<p>
+     *
+     * @param servletContext the servlet context used for dispatching, may be <code>null</code>
+     * @param queryString the query string of the request, may be <code>null</code>
+     *
+     * @return the request
+     */
+    public static HttpServletRequest createRequest(ServletContext servletContext, String queryString) {
+
+        return createRequest(new RequestHandler(servletContext, null, "", "", queryString, null));
+    }
+
+    /**
+     * Creates a request for the given URL.<p>
+     *
+     * The path info is the path of the URL below the context path and the servlet path.<p>
+     *
+     * @param servletContext the servlet context used for dispatching, may be <code>null</code>
+     * @param url the URL of the request
+     * @param contextPath the context path
+     * @param servletPath the servlet path
+     * @param headers the request headers, may be <code>null</code>
+     *
+     * @return the request
+     */
+    public static HttpServletRequest createRequest(
+        ServletContext servletContext,
+        URL url,
+        String contextPath,
+        String servletPath,
+        Map<String, String> headers) {
+
+        return createRequest(new RequestHandler(servletContext, url, contextPath, servletPath, null, headers));
+    }
+
+    /**
+     * Creates a response discarding everything written to it.<p>
+     *
+     * @param encoding the character encoding of the response
+     *
+     * @return the response
+     */
+    public static HttpServletResponse createResponse(String encoding) {
+
+        return (HttpServletResponse)Proxy.newProxyInstance(
+            CmsInternalRequestUtil.class.getClassLoader(),
+            new Class<?>[] {HttpServletResponse.class},
+            new ResponseHandler(encoding));
+    }
+
+    /**
+     * Returns the default return value for a method of the internal request / response not handled otherwise.<p>
+     *
+     * @param method the invoked method
+     *
+     * @return the default return value
+     */
+    static Object getDefaultValue(Method method) {
+
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        } else if (type == int.class) {
+            return Integer.valueOf(-1);
+        } else if (type == long.class) {
+            return Long.valueOf(-1);
+        }
+        return null;
+    }
+
+    /**
+     * Creates a request proxy for the given handler.<p>
+     *
+     * @param handler the request handler
+     *
+     * @return the request
+     */
+    private static HttpServletRequest createRequest(RequestHandler handler) {
+
+        return (HttpServletRequest)Proxy.newProxyInstance(
+            CmsInternalRequestUtil.class.getClassLoader(),
+            new Class<?>[] {HttpServletRequest.class},
+            handler);
+    }
+}
@@ -77,6 +77,9 @@ public final class CmsRequestUtil {
     /** Request attribute that contains the original error code. */
     public static final String ATTRIBUTE_ERRORCODE = "org.opencms.util.CmsErrorCode";
 
+    /** Request attribute for static export requests that collects the resources read while rendering. */
+    public static final String ATTRIBUTE_EXPORT_DEPENDENCIES = "org.opencms.staticexport.CmsExportDependencies";
+
     /** HTTP Accept Header for the cms:device-tag. */
     public static final String HEADER_ACCEPT = "Accept";
 
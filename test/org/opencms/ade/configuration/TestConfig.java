@@ -29,6 +29,7 @@ package org.opencms.ade.configuration;
 
 import org.opencms.ade.configuration.CmsADEConfigDataInternal.ConfigReferenceInstance;
 import org.opencms.ade.configuration.CmsConfigurationReader.DiscardPropertiesMode;
+import org.opencms.ade.configuration.formatters.CmsFormatterConfigurationCacheState;
 import org.opencms.ade.containerpage.CmsSettingTranslator;
 import org.opencms.ade.detailpage.CmsDetailPageFilter;
 import org.opencms.ade.detailpage.CmsDetailPageInfo;
@@ -45,6 +46,7 @@ import org.opencms.test.OpenCmsTestCase;
 import org.opencms.test.OpenCmsTestProperties;
 import org.opencms.util.CmsStringUtil;
 import org.opencms.util.CmsUUID;
+import org.opencms.xml.containerpage.I_CmsFormatterBean;
 import org.opencms.xml.content.CmsXmlContentProperty;
 
 import java.util.ArrayList;
@@ -939,6 +941,56 @@ public class TestConfig extends OpenCmsTestCase {
         assertEquals(typeConf2.getTypeName(), resourceTypeConfig.get(0).getTypeName());
     }
 
+    /**
+     * Tests that the cache state returns the same wrapped configuration until the formatter configuration changes.<p>
+     *
+     * @throws Exception -
+     */
+    public void testLookupConfigurationMemoized() throws Exception {
+
+        CmsObject cms = rootCms();
+        CmsConfigurationReader configReader = new CmsConfigurationReader(cms);
+        CmsADEConfigDataInternal configDataInternal = configReader.parseSitemapConfiguration(
+            "/sites/default",
+            cms.readResource("/sites/default/test.config"));
+        Map<CmsUUID, CmsADEConfigDataInternal> siteConfigs = new HashMap<CmsUUID, CmsADEConfigDataInternal>();
+        siteConfigs.put(new CmsUUID(), configDataInternal);
+        final CmsFormatterConfigurationCacheState[] formatters = {
+            new CmsFormatterConfigurationCacheState(Collections.<CmsUUID, I_CmsFormatterBean> emptyMap())};
+        CmsADEConfigCacheState cacheState = new CmsADEConfigCacheState(
+            cms,
+            siteConfigs,
+            new ArrayList<CmsADEConfigDataInternal>(),
+            new HashMap<CmsUUID, CmsElementView>(),
+            new HashMap<>(),
+            new HashMap<>()) {
+
+            @Override
+            protected CmsFormatterConfigurationCacheState getCurrentFormatters() {
+
+                return formatters[0];
+            }
+        };
+
+        CmsADEConfigData config = cacheState.lookupConfiguration("/sites/default/folder/file.html");
+        assertEquals("/sites/default", config.getBasePath());
+        assertSame(config, cacheState.lookupConfiguration("/sites/default/other.html"));
+        assertSame(formatters[0], config.getCachedFormatters());
+        CmsADEConfigData moduleConfig = cacheState.lookupConfiguration("/system/");
+        assertNull(moduleConfig.getBasePath());
+        assertSame(moduleConfig, cacheState.lookupConfiguration("/shared/"));
+
+        // a new formatter configuration state replaces the memoized configurations
+        formatters[0] = new CmsFormatterConfigurationCacheState(Collections.<CmsUUID, I_CmsFormatterBean> emptyMap());
+        CmsADEConfigData newConfig = cacheState.lookupConfiguration("/sites/default/folder/file.html");
+        assertNotSame(config, newConfig);
+        assertSame(formatters[0], newConfig.getCachedFormatters());
+        assertSame(newConfig, cacheState.lookupConfiguration("/sites/default/folder/file.html"));
+        CmsADEConfigData newModuleConfig = cacheState.lookupConfiguration("/system/");
+        assertNotSame(moduleConfig, newModuleConfig);
+        assertSame(formatters[0], newModuleConfig.getCachedFormatters());
+    }
+
     /**
      * Tests inheritance of model pages.<p>
      *
@@ -0,0 +1,320 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the segmented LRU cache and compares its throughput under contention with the single lock LRU cache.<p>
+ */
+public class TestCmsSegmentedLruCache extends TestCase {
+
+    /**
+     * Simple cache object used for the tests.<p>
+     */
+    static class TestObject implements I_CmsLruCacheObject {
+
+        /** Counter for the objects currently in a cache. */
+        static final AtomicInteger CACHED = new AtomicInteger();
+
+        /** The cache costs. */
+        private int m_costs;
+
+        /** Flag indicating if the object is cached. */
+        private volatile boolean m_isCached;
+
+        /** The next object. */
+        private I_CmsLruCacheObject m_next;
+
+        /** The previous object. */
+        private I_CmsLruCacheObject m_previous;
+
+        /**
+         * Creates a new test object.<p>
+         *
+         * @param costs the cache costs
+         */
+        TestObject(int costs) {
+
+            m_costs = costs;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#addToLruCache()
+         */
+        public void addToLruCache() {
+
+            m_isCached = true;
+            CACHED.incrementAndGet();
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getLruCacheCosts()
+         */
+        public int getLruCacheCosts() {
+
+            return m_costs;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getNextLruObject()
+         */
+        public I_CmsLruCacheObject getNextLruObject() {
+
+            return m_next;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getPreviousLruObject()
+         */
+        public I_CmsLruCacheObject getPreviousLruObject() {
+
+            return m_previous;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getValue()
+         */
+        public Object getValue() {
+
+            return this;
+        }
+
+        /**
+         * Returns true if the object is currently cached.<p>
+         *
+         * @return true if the object is currently cached
+         */
+        public boolean isCached() {
+
+            return m_isCached;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#removeFromLruCache()
+         */
+        public void removeFromLruCache() {
+
+            m_isCached = false;
+            CACHED.decrementAndGet();
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#setNextLruObject(org.opencms.cache.I_CmsLruCacheObject)
+         */
+        public void setNextLruObject(I_CmsLruCacheObject theNextObject) {
+
+            m_next = theNextObject;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#setPreviousLruObject(org.opencms.cache.I_CmsLruCacheObject)
+         */
+        public void setPreviousLruObject(I_CmsLruCacheObject thePreviousObject) {
+
+            m_previous = thePreviousObject;
+        }
+    }
+
+    /** System property to enable the contention benchmark, which is not run as part of the unit tests. */
+    public static final String PROP_BENCHMARK = "opencms.test.benchmark";
+
+    /** The number of distinct objects used in the benchmark. */
+    private static final int BENCHMARK_OBJECTS = 20000;
+
+    /** The number of cache operations per benchmark run. */
+    private static final int BENCHMARK_OPERATIONS = 400000;
+
+    /**
+     * Compares the throughput of the single lock and the segmented LRU cache with 1 to 64 threads.<p>
+     *
+     * Only runs if the system property {@link #PROP_BENCHMARK} is set to <code>true</code>.<p>
+     *
+     * @throws Exception if something goes wrong
+     */
+    public void testContentionBenchmark() throws Exception {
+
+        if (!Boolean.getBoolean(PROP_BENCHMARK)) {
+            return;
+        }
+        List<TestObject> objects = new ArrayList<TestObject>(BENCHMARK_OBJECTS);
+        Random random = new Random(42);
+        for (int i = 0; i < BENCHMARK_OBJECTS; i++) {
+            objects.add(new TestObject(512 + random.nextInt(4096)));
+        }
+        long maxCosts = 16L * 1024 * 1024;
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            CmsLruCache single = new CmsLruCache(maxCosts, maxCosts / 2, 8192);
+            double singleThroughput = runBenchmark(single, objects, threads);
+            single.clear();
+            CmsSegmentedLruCache segmented = new CmsSegmentedLruCache(
+                maxCosts,
+                maxCosts / 2,
+                8192,
+                CmsSegmentedLruCache.DEFAULT_SEGMENTS);
+            double segmentedThroughput = runBenchmark(segmented, objects, threads);
+            segmented.clear();
+            System.out.println(
+                threads
+                    + " threads: CmsLruCache "
+                    + Math.round(singleThroughput)
+                    + " ops/ms, CmsSegmentedLruCache "
+                    + Math.round(segmentedThroughput)
+                    + " ops/ms");
+            assertTrue(singleThroughput > 0);
+            assertTrue(segmentedThroughput > 0);
+        }
+    }
+
+    /**
+     * Tests that the cost limits are honored by the segmented cache.<p>
+     */
+    public void testCostLimits() {
+
+        CmsSegmentedLruCache cache = new CmsSegmentedLruCache(10000, 5000, 1000, 4);
+        assertEquals(4, cache.getSegmentCount());
+        assertFalse(cache.add(new TestObject(1001)));
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(cache.add(new TestObject(100)));
+            assertTrue(cache.getObjectCosts() <= cache.getMaxCacheCosts());
+        }
+        assertEquals(cache.size() * 100, cache.getObjectCosts());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getObjectCosts());
+    }
+
+    /**
+     * Tests adding, touching and removing objects in the segmented cache.<p>
+     */
+    public void testAddTouchRemove() {
+
+        CmsSegmentedLruCache cache = new CmsSegmentedLruCache(100000, 50000, -1, 8);
+        List<TestObject> objects = new ArrayList<TestObject>();
+        for (int i = 0; i < 50; i++) {
+            TestObject obj = new TestObject(10);
+            objects.add(obj);
+            assertTrue(cache.add(obj));
+            assertTrue(obj.isCached());
+        }
+        assertEquals(50, cache.size());
+        assertEquals(500, cache.getObjectCosts());
+        for (TestObject obj : objects) {
+            assertTrue(cache.touch(obj));
+            // adding the same object again only touches it
+            assertTrue(cache.add(obj));
+        }
+        assertEquals(50, cache.size());
+        for (TestObject obj : objects) {
+            assertSame(obj, cache.remove(obj));
+            assertFalse(obj.isCached());
+            assertNull(cache.remove(obj));
+            assertFalse(cache.touch(obj));
+        }
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getObjectCosts());
+    }
+
+    /**
+     * Tests that the segment count is limited so that the largest object still fits into a segment.<p>
+     */
+    public void testSegmentCount() {
+
+        assertEquals(16, new CmsSegmentedLruCache(1000000, 500000, 1000, 16).getSegmentCount());
+        assertEquals(8, new CmsSegmentedLruCache(1000000, 500000, 1000, 12).getSegmentCount());
+        assertEquals(2, new CmsSegmentedLruCache(3000, 1500, 1000, 16).getSegmentCount());
+        assertEquals(1, new CmsSegmentedLruCache(1000, 500, 1000, 16).getSegmentCount());
+    }
+
+    /**
+     * Runs a mixed add / touch / remove workload on the given cache.<p>
+     *
+     * @param cache the cache to test
+     * @param objects the objects to cache
+     * @param threadCount the number of threads
+     *
+     * @return the throughput in operations per millisecond
+     *
+     * @throws Exception if something goes wrong
+     */
+    private double runBenchmark(final I_CmsLruCache cache, final List<TestObject> objects, int threadCount)
+    throws Exception {
+
+        final int opsPerThread = BENCHMARK_OPERATIONS / threadCount;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        for (int t = 0; t < threadCount; t++) {
+            final long seed = t;
+            Thread thread = new Thread(new Runnable() {
+
+                public void run() {
+
+                    Random random = new Random(seed);
+                    try {
+                        start.await();
+                        for (int i = 0; i < opsPerThread; i++) {
+                            TestObject obj = objects.get(random.nextInt(objects.size()));
+                            int op = random.nextInt(10);
+                            if (op < 7) {
+                                // cache hits are the dominant operation
+                                if (!cache.touch(obj)) {
+                                    cache.add(obj);
+                                }
+                            } else if (op < 9) {
+                                cache.add(obj);
+                            } else {
+                                cache.remove(obj);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            thread.start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        long duration = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertTrue(cache.getObjectCosts() <= cache.getMaxCacheCosts());
+        return (double)(opsPerThread * threadCount) / duration;
+    }
+}
@@ -132,6 +132,48 @@ public class TestAliases extends OpenCmsTestCase {
         assertTrue("At least 3 aliases", aliasManager.getAliasesForSite(cms, "").size() >= 3);
     }
 
+    /**
+     * Tests matching paths against rewrite aliases, and the invalidation of the cached matchers.<p>
+     *
+     * @throws Exception if something goes wrong
+     */
+    public void testRewriteAliasMatcher() throws Exception {
+
+        String siteRoot = "/sites/default";
+        List<CmsRewriteAlias> rules = new ArrayList<CmsRewriteAlias>();
+        rules.add(new CmsRewriteAlias(new CmsUUID(), siteRoot, "/news/(.*)\\.html", "/n/$1", CmsAliasMode.redirect));
+        rules.add(new CmsRewriteAlias(new CmsUUID(), siteRoot, "/news/archive/(.*)", "/a/$1", CmsAliasMode.redirect));
+        rules.add(new CmsRewriteAlias(new CmsUUID(), siteRoot, "(?i)/PRESS/(.*)", "/p/$1", CmsAliasMode.redirect));
+        rules.add(new CmsRewriteAlias(new CmsUUID(), siteRoot, "/(old|legacy)/(.*)", "/$2", CmsAliasMode.redirect));
+        rules.add(new CmsRewriteAlias(new CmsUUID(), siteRoot, "/broken/(", "/x", CmsAliasMode.redirect));
+        rules.add(new CmsRewriteAlias(new CmsUUID(), siteRoot, "/docs?/(.*)", "/d/$1", CmsAliasMode.redirect));
+
+        CmsRewriteAliasMatcher matcher = new CmsRewriteAliasMatcher(rules);
+        // the first matching rule wins, independent of the length of the prefix
+        assertEquals("/n/archive/x", matcher.match("/news/archive/x.html").getNewPath());
+        assertEquals("/a/x", matcher.match("/news/archive/x").getNewPath());
+        assertEquals("/p/x", matcher.match("/press/x").getNewPath());
+        assertEquals("/x", matcher.match("/legacy/x").getNewPath());
+        assertEquals("/d/x", matcher.match("/doc/x").getNewPath());
+        assertEquals("/d/x", matcher.match("/docs/x").getNewPath());
+        assertNull(matcher.match("/news"));
+        assertNull(matcher.match("/broken/("));
+        assertNull(matcher.match("/unknown/x"));
+
+        assertEquals("/foo/", CmsRewriteAliasMatcher.getLiteralPrefix("^/foo/(.*)"));
+        assertEquals("/a.b/", CmsRewriteAliasMatcher.getLiteralPrefix("/a\\.b/\\d+"));
+        assertEquals("/doc", CmsRewriteAliasMatcher.getLiteralPrefix("/docs?/"));
+        assertEquals("", CmsRewriteAliasMatcher.getLiteralPrefix("/a|/b"));
+
+        CmsAliasManager aliasManager = OpenCms.getAliasManager();
+        aliasManager.saveRewriteAliases(getCmsObject(), siteRoot, rules);
+        assertEquals(
+            "/a/x",
+            aliasManager.getRewriteAliasMatcher(getCmsObject(), siteRoot).match("/news/archive/x").getNewPath());
+        aliasManager.saveRewriteAliases(getCmsObject(), siteRoot, Collections.<CmsRewriteAlias> emptyList());
+        assertNull(aliasManager.getRewriteAliasMatcher(getCmsObject(), siteRoot).match("/news/archive/x"));
+    }
+
     /**
      * Tests reading/writing rewrite aliases.<p>
      *
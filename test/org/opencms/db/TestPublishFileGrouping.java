@@ -0,0 +1,145 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.db;
+
+import org.opencms.db.generic.CmsProjectDriver;
+import org.opencms.file.CmsResource;
+import org.opencms.util.CmsUUID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the grouping of the files of a publish list for parallel publishing.<p>
+ */
+public class TestPublishFileGrouping extends TestCase {
+
+    /**
+     * Project driver giving access to the grouping of the publish files.<p>
+     */
+    static class GroupingDriver extends CmsProjectDriver {
+
+        /**
+         * Groups the given files.<p>
+         *
+         * @param files the files
+         * @param originPaths the online root paths of the moved files
+         *
+         * @return the groups of file indexes
+         */
+        List<List<Integer>> group(List<CmsResource> files, Map<CmsUUID, String> originPaths) {
+
+            return internalGroupPublishFiles(files, originPaths);
+        }
+    }
+
+    /**
+     * Tests that files sharing a resource id or a root path are published in one group.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testGroupByResourceIdAndPath() throws Exception {
+
+        CmsUUID sharedResourceId = new CmsUUID();
+        List<CmsResource> files = new ArrayList<CmsResource>();
+        files.add(createFile("/sites/default/a.html", new CmsUUID()));
+        // a sibling of the next file
+        files.add(createFile("/sites/default/b.html", sharedResourceId));
+        files.add(createFile("/sites/default/c.html", new CmsUUID()));
+        files.add(createFile("/sites/default/sibling-of-b.html", sharedResourceId));
+        // a deleted and a new file at the same path
+        files.add(createFile("/sites/default/c.html", new CmsUUID()));
+
+        List<List<Integer>> groups = new GroupingDriver().group(files, Collections.<CmsUUID, String> emptyMap());
+        assertEquals(3, groups.size());
+        assertEquals(Arrays.asList(Integer.valueOf(0)), groups.get(0));
+        assertEquals(Arrays.asList(Integer.valueOf(1), Integer.valueOf(3)), groups.get(1));
+        assertEquals(Arrays.asList(Integer.valueOf(2), Integer.valueOf(4)), groups.get(2));
+    }
+
+    /**
+     * Tests that a file moved away from a path is published in the same group as a new file at that path.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testGroupByOriginPath() throws Exception {
+
+        CmsResource moved = createFile("/sites/default/new-name.html", new CmsUUID());
+        CmsResource created = createFile("/sites/default/old-name.html", new CmsUUID());
+        CmsResource other = createFile("/sites/default/other.html", new CmsUUID());
+        List<CmsResource> files = Arrays.asList(moved, other, created);
+        GroupingDriver driver = new GroupingDriver();
+
+        // without the origin path the files are independent
+        assertEquals(3, driver.group(files, Collections.<CmsUUID, String> emptyMap()).size());
+
+        Map<CmsUUID, String> originPaths = new HashMap<CmsUUID, String>();
+        originPaths.put(moved.getStructureId(), "/sites/default/old-name.html");
+        List<List<Integer>> groups = driver.group(files, originPaths);
+        assertEquals(2, groups.size());
+        assertEquals(Arrays.asList(Integer.valueOf(0), Integer.valueOf(2)), groups.get(0));
+        assertEquals(Arrays.asList(Integer.valueOf(1)), groups.get(1));
+    }
+
+    /**
+     * Creates a file for the publish list.<p>
+     *
+     * @param rootPath the root path
+     * @param resourceId the resource id
+     *
+     * @return the file
+     */
+    private CmsResource createFile(String rootPath, CmsUUID resourceId) {
+
+        return new CmsResource(
+            new CmsUUID(),
+            resourceId,
+            rootPath,
+            1,
+            false,
+            0,
+            null,
+            CmsResource.STATE_CHANGED,
+            0,
+            null,
+            0,
+            null,
+            0,
+            0,
+            1,
+            0,
+            0,
+            0);
+    }
+}
@@ -30,6 +30,8 @@ package org.opencms.file;
 import org.opencms.file.types.CmsResourceTypeFolder;
 import org.opencms.file.types.CmsResourceTypeImage;
 import org.opencms.file.types.CmsResourceTypePlain;
+import org.opencms.main.CmsEvent;
+import org.opencms.main.I_CmsEventListener;
 import org.opencms.main.OpenCms;
 import org.opencms.report.CmsLogReport;
 import org.opencms.security.CmsAccessControlEntry;
@@ -41,7 +43,9 @@ import org.opencms.test.OpenCmsTestCase;
 import org.opencms.test.OpenCmsTestProperties;
 import org.opencms.util.CmsUUID;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -77,6 +81,7 @@ public class TestPermissions extends OpenCmsTestCase {
         suite.addTest(new TestPermissions("testPermissionOverwrite"));
         suite.addTest(new TestPermissions("testPermissionInheritance"));
         suite.addTest(new TestPermissions("testUserDeletion"));
+        suite.addTest(new TestPermissions("testBulkPermissionCheck"));
 
         TestSetup wrapper = new TestSetup(suite) {
 
@@ -106,6 +111,70 @@ public class TestPermissions extends OpenCmsTestCase {
         super(arg0);
     }
 
+    /**
+     * Tests that the bulk permission check used for reading resource lists gives the same results
+     * as checking every resource on its own.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testBulkPermissionCheck() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the bulk permission check against single permission checks");
+
+        String foldername = "/testBulkPermissionCheck";
+        String[] folders = {foldername, foldername + "/a", foldername + "/a/deep", foldername + "/b"};
+        List<String> paths = new ArrayList<String>();
+        for (String folder : folders) {
+            cms.createResource(folder, CmsResourceTypeFolder.getStaticTypeId());
+        }
+        for (String folder : folders) {
+            for (int i = 0; i < 3; i++) {
+                String path = folder + "/file" + i + ".txt";
+                cms.createResource(path, CmsResourceTypePlain.getStaticTypeId());
+                paths.add(path);
+            }
+        }
+        cms.createUser("bulkUser", "secret", "", null);
+        cms.addUserToGroup("bulkUser", OpenCms.getDefaultUsers().getGroupUsers());
+        // not inherited to the sub folders of the folder
+        cms.chacc(foldername + "/a/deep", I_CmsPrincipal.PRINCIPAL_USER, "bulkUser", "-r");
+        // denied for the folder and all resources below
+        cms.chacc(foldername + "/b", I_CmsPrincipal.PRINCIPAL_USER, "bulkUser", "-r+i");
+        // denied for a single file, its siblings in the folder share the parent access control lists
+        cms.chacc(foldername + "/a/file1.txt", I_CmsPrincipal.PRINCIPAL_USER, "bulkUser", "-r");
+
+        List<CmsResource> resources = cms.readResources(foldername, CmsResourceFilter.ALL, true);
+        assertTrue(resources.size() >= paths.size());
+
+        CmsObject userCms = OpenCms.initCmsObject(cms);
+        userCms.loginUser("bulkUser", "secret");
+        userCms.getRequestContext().setCurrentProject(userCms.readProject("Offline"));
+
+        // check every resource on its own first
+        List<String> expected = new ArrayList<String>();
+        for (CmsResource resource : resources) {
+            if (userCms.hasPermissions(resource, CmsPermissionSet.ACCESS_READ, true, CmsResourceFilter.ALL)) {
+                expected.add(resource.getRootPath());
+            }
+        }
+        assertFalse(expected.contains(cms.addSiteRoot(foldername + "/a/file1.txt")));
+        assertTrue(expected.contains(cms.addSiteRoot(foldername + "/a/file2.txt")));
+        assertFalse(expected.contains(cms.addSiteRoot(foldername + "/b/file0.txt")));
+
+        // the cached single results must not hide differences of the bulk check
+        OpenCms.fireCmsEvent(new CmsEvent(I_CmsEventListener.EVENT_CLEAR_CACHES, new HashMap<String, Object>()));
+
+        // reading the resource list checks all resources at once
+        List<String> bulk = new ArrayList<String>();
+        for (CmsResource resource : userCms.readResources(foldername, CmsResourceFilter.ALL, true)) {
+            bulk.add(resource.getRootPath());
+        }
+        Collections.sort(expected);
+        Collections.sort(bulk);
+        assertEquals(expected, bulk);
+    }
+
     /**
      * @throws Throwable if something goes wrong
      */
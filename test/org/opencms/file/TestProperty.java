@@ -27,6 +27,7 @@
 
 package org.opencms.file;
 
+import org.opencms.file.types.CmsResourceTypeFolder;
 import org.opencms.file.types.CmsResourceTypePlain;
 import org.opencms.main.CmsException;
 import org.opencms.main.CmsRuntimeException;
@@ -224,6 +225,7 @@ public class TestProperty extends OpenCmsTestCase {
         suite.addTest(new TestProperty("testCaseSensitiveProperties"));
         suite.addTest(new TestProperty("testReadResourcesWithProperty"));
         suite.addTest(new TestProperty("testReadLocalizedProperty"));
+        suite.addTest(new TestProperty("testSearchedProperties"));
 
         TestSetup wrapper = new TestSetup(suite) {
 
@@ -719,6 +721,67 @@ public class TestProperty extends OpenCmsTestCase {
         assertTrue(result.contains(res));
     }
 
+    /**
+     * Tests that searched properties merge the properties of the resource with those of all parent folders,
+     * for a single resource and for a list of resources.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testSearchedProperties() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing searched properties");
+
+        String folder = "/testSearchedProperties";
+        String subFolder = folder + "/sub";
+        String file = subFolder + "/file.txt";
+        String otherFile = subFolder + "/other.txt";
+        cms.createResource(folder, CmsResourceTypeFolder.getStaticTypeId());
+        cms.createResource(subFolder, CmsResourceTypeFolder.getStaticTypeId());
+        cms.createResource(file, CmsResourceTypePlain.getStaticTypeId());
+        cms.createResource(otherFile, CmsResourceTypePlain.getStaticTypeId());
+        cms.writePropertyObject(folder, new CmsProperty(CmsPropertyDefinition.PROPERTY_TITLE, "folder", null));
+        cms.writePropertyObject(
+            folder,
+            new CmsProperty(CmsPropertyDefinition.PROPERTY_DESCRIPTION, "folder description", null));
+        cms.writePropertyObject(subFolder, new CmsProperty(CmsPropertyDefinition.PROPERTY_TITLE, "sub", null));
+        cms.writePropertyObject(file, new CmsProperty(CmsPropertyDefinition.PROPERTY_KEYWORDS, "file", null));
+        cms.writePropertyObject(otherFile, new CmsProperty(CmsPropertyDefinition.PROPERTY_TITLE, "other", null));
+
+        // the properties of lower folders overwrite those of upper folders, the own properties overwrite all
+        List<CmsProperty> properties = cms.readPropertyObjects(file, true);
+        assertEquals("sub", CmsProperty.get(CmsPropertyDefinition.PROPERTY_TITLE, properties).getValue());
+        assertEquals(
+            "folder description",
+            CmsProperty.get(CmsPropertyDefinition.PROPERTY_DESCRIPTION, properties).getValue());
+        assertEquals("file", CmsProperty.get(CmsPropertyDefinition.PROPERTY_KEYWORDS, properties).getValue());
+        List<CmsProperty> otherProperties = cms.readPropertyObjects(otherFile, true);
+        assertEquals("other", CmsProperty.get(CmsPropertyDefinition.PROPERTY_TITLE, otherProperties).getValue());
+        assertTrue(CmsProperty.get(CmsPropertyDefinition.PROPERTY_KEYWORDS, otherProperties).isNullProperty());
+
+        // the properties of a list of resources are the same as the properties read for each resource
+        List<CmsResource> resources = new ArrayList<CmsResource>();
+        resources.add(cms.readResource(file));
+        resources.add(cms.readResource(otherFile));
+        resources.add(cms.readResource(subFolder));
+        Map<CmsResource, List<CmsProperty>> bulk = cms.readPropertyObjects(resources, true);
+        for (CmsResource resource : resources) {
+            List<CmsProperty> expected = cms.readPropertyObjects(resource, true);
+            List<CmsProperty> actual = bulk.get(resource);
+            assertNotNull(actual);
+            assertEquals(expected.size(), actual.size());
+            assertTrue(actual.containsAll(expected));
+            for (CmsProperty property : expected) {
+                assertEquals(property.getValue(), CmsProperty.get(property.getName(), actual).getValue());
+            }
+        }
+
+        // a changed parent property is visible in the searched properties of the resources below
+        cms.writePropertyObject(subFolder, new CmsProperty(CmsPropertyDefinition.PROPERTY_TITLE, "changed", null));
+        properties = cms.readPropertyObjects(file, true);
+        assertEquals("changed", CmsProperty.get(CmsPropertyDefinition.PROPERTY_TITLE, properties).getValue());
+    }
+
     /**
      * Tests the writePropertyObjects method for removing of multiple properties.<p>
      *
@@ -58,7 +58,9 @@ public final class AllTests {
         TestSuite suite = new TestSuite("Tests for package " + AllTests.class.getPackage().getName());
         OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
         //$JUnit-BEGIN$
+        suite.addTest(TestCmsFlexCacheDependencies.suite());
         suite.addTest(new TestSuite(TestCmsFlexCacheEntry.class));
+        suite.addTest(new TestSuite(TestCmsFlexCacheIndex.class));
         suite.addTest(TestCmsFlexResponse.suite());
         //$JUnit-END$
         return suite;
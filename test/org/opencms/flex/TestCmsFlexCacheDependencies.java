@@ -0,0 +1,200 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import org.opencms.db.CmsPublishedResource;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsResourceFilter;
+import org.opencms.file.types.CmsResourceTypePlain;
+import org.opencms.main.OpenCms;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsRequestUtil;
+import org.opencms.util.CmsUUID;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the dependency based invalidation of Flex cache entries.<p>
+ */
+public class TestCmsFlexCacheDependencies extends OpenCmsTestCase {
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsFlexCacheDependencies(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestCmsFlexCacheDependencies.class.getName());
+
+        suite.addTest(new TestCmsFlexCacheDependencies("testContextDependencies"));
+        suite.addTest(new TestCmsFlexCacheDependencies("testContextDependencyLimit"));
+        suite.addTest(new TestCmsFlexCacheDependencies("testPublishedDependencyIds"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests the dependencies collected while reading resources, folder listings and searched properties.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testContextDependencies() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the dependencies collected in a Flex request context");
+
+        CmsFlexRequestContextInfo info = new CmsFlexRequestContextInfo();
+        cms.getRequestContext().setAttribute(CmsRequestUtil.HEADER_LAST_MODIFIED, info);
+        CmsUUID folderId = cms.readResource("/folder2/").getStructureId();
+
+        cms.readResources("/folder2/", CmsResourceFilter.DEFAULT, true);
+        assertTrue(info.getDependencies().contains(folderId));
+        assertFalse(info.getDependencies().contains(CmsFlexRequestContextInfo.DEPENDENCY_FOLDER_PROPERTIES));
+
+        // searched properties depend on all folders above the resource
+        cms.readPropertyObject("/folder1/page1.html", "Title", true);
+        assertTrue(info.getDependencies().contains(CmsFlexRequestContextInfo.DEPENDENCY_FOLDER_PROPERTIES));
+        // also if the properties are read from the cache
+        CmsFlexRequestContextInfo cachedInfo = new CmsFlexRequestContextInfo();
+        cms.getRequestContext().setAttribute(CmsRequestUtil.HEADER_LAST_MODIFIED, cachedInfo);
+        cms.readPropertyObject("/folder1/page1.html", "Title", true);
+        assertTrue(cachedInfo.getDependencies().contains(CmsFlexRequestContextInfo.DEPENDENCY_FOLDER_PROPERTIES));
+
+        info.merge(cachedInfo);
+        assertTrue(info.hasKnownDependencies());
+        cachedInfo.setDependenciesUnknown();
+        assertFalse(cachedInfo.hasKnownDependencies());
+        assertNull(cachedInfo.getDependencies());
+        info.merge(cachedInfo);
+        assertNull(info.getDependencies());
+        cms.getRequestContext().removeAttribute(CmsRequestUtil.HEADER_LAST_MODIFIED);
+    }
+
+    /**
+     * Tests that the dependencies become unknown if too many resources are read.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testContextDependencyLimit() throws Exception {
+
+        echo("Testing the dependency limit of a Flex request context");
+
+        CmsFlexRequestContextInfo info = new CmsFlexRequestContextInfo();
+        info.addDependencies(Collections.singleton(new CmsUUID()));
+        assertEquals(1, info.getDependencies().size());
+        for (int i = 0; i < CmsFlexRequestContextInfo.MAX_DEPENDENCIES; i++) {
+            info.addDependencies(Collections.singleton(new CmsUUID()));
+        }
+        assertFalse(info.hasKnownDependencies());
+        // once unknown, the dependencies stay unknown
+        info.addFolderPropertiesDependency();
+        info.addDependencies(Collections.singleton(new CmsUUID()));
+        assertNull(info.getDependencies());
+    }
+
+    /**
+     * Tests that a new resource affects all folders above it, but not unrelated folders.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testPublishedDependencyIds() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the ids affected by publishing a new resource");
+
+        String resourcename = "/folder1/subfolder11/subsubfolder111/newfile.txt";
+        cms.createResource(resourcename, CmsResourceTypePlain.getStaticTypeId(), "new".getBytes(), null);
+        cms.unlockResource(resourcename);
+        CmsUUID publishId = OpenCms.getPublishManager().publishProject(cms);
+        OpenCms.getPublishManager().waitWhileRunning();
+        List<CmsPublishedResource> published = cms.readPublishedResources(publishId);
+        assertFalse(published.isEmpty());
+
+        CmsObject rootCms = getCmsObject();
+        rootCms.getRequestContext().setSiteRoot("/");
+        Set<CmsUUID> ids = CmsFlexCache.getPublishedDependencyIds(rootCms, published);
+
+        CmsUUID fileId = rootCms.readResource("/sites/default" + resourcename).getStructureId();
+        assertTrue(ids.contains(fileId));
+        String[] ancestors = {
+            "/sites/default/folder1/subfolder11/subsubfolder111/",
+            "/sites/default/folder1/subfolder11/",
+            "/sites/default/folder1/",
+            "/sites/default/",
+            "/sites/",
+            "/"};
+        for (String ancestor : ancestors) {
+            CmsUUID ancestorId = rootCms.readResource(ancestor).getStructureId();
+            assertTrue(ancestor, ids.contains(ancestorId));
+            assertTrue(CmsFlexCache.isAffectedByPublish(Collections.singleton(ancestorId), ids));
+        }
+        CmsUUID unrelatedId = rootCms.readResource("/sites/default/folder2/").getStructureId();
+        assertFalse(ids.contains(unrelatedId));
+        assertFalse(CmsFlexCache.isAffectedByPublish(Collections.singleton(unrelatedId), ids));
+        // no folder was published, so searched properties are not affected
+        assertFalse(ids.contains(CmsFlexRequestContextInfo.DEPENDENCY_FOLDER_PROPERTIES));
+        // entries with unknown dependencies are always affected
+        assertTrue(CmsFlexCache.isAffectedByPublish(null, ids));
+    }
+}
@@ -27,13 +27,100 @@
 
 package org.opencms.flex;
 
+import org.opencms.flex.CmsFlexOffHeapStore.OffHeapBody;
 import org.opencms.test.OpenCmsTestCase;
 
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Tests for the CmsFlexCacheEntry.<p>
  */
 public class TestCmsFlexCacheEntry extends OpenCmsTestCase {
 
+    /**
+     * Tests moving the output of an entry to an off-heap store and freeing it again.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testOffHeapBodies() throws Exception {
+
+        CmsFlexOffHeapStore store = new CmsFlexOffHeapStore(2 * CmsFlexOffHeapStore.SLAB_SIZE);
+        byte[] bytes = new byte[(CmsFlexOffHeapStore.CHUNK_SIZE * 2) + 17];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)i;
+        }
+        CmsFlexCacheEntry entry = new CmsFlexCacheEntry();
+        entry.add(bytes);
+        entry.complete();
+        int costs = entry.getLruCacheCosts();
+
+        assertTrue(entry.moveToOffHeap(store));
+        assertEquals(costs, entry.getLruCacheCosts());
+        // two full chunks and one chunk of the smallest size class for the remaining 17 bytes
+        int capacity = (CmsFlexOffHeapStore.CHUNK_SIZE * 2) + CmsFlexOffHeapStore.MIN_CHUNK_SIZE;
+        assertEquals(2 * CmsFlexOffHeapStore.SLAB_SIZE, store.getAllocatedBytes());
+        assertEquals(capacity, store.getUsedBytes());
+        assertEquals(capacity, CmsFlexOffHeapStore.getCapacity(bytes.length));
+
+        OffHeapBody body = (OffHeapBody)entry.elements().get(0);
+        assertTrue(Arrays.equals(bytes, body.toByteArray()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        assertTrue(Arrays.equals(bytes, out.toByteArray()));
+
+        // the output must stay available while it is in use
+        assertTrue(entry.acquireBodies());
+        entry.releaseCacheReference();
+        assertEquals(capacity, store.getUsedBytes());
+        entry.releaseBodies();
+        assertEquals(0, store.getUsedBytes());
+        assertFalse(entry.acquireBodies());
+
+        // a full store keeps the output on the heap
+        CmsFlexCacheEntry large = new CmsFlexCacheEntry();
+        large.add(new byte[(2 * CmsFlexOffHeapStore.SLAB_SIZE) + 1]);
+        large.complete();
+        assertFalse(large.moveToOffHeap(store));
+        assertTrue(large.elements().get(0) instanceof byte[]);
+        assertEquals(0, store.getUsedBytes());
+    }
+
+    /**
+     * Tests that small bodies only occupy chunks of the matching size class.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testOffHeapSizeClasses() throws Exception {
+
+        CmsFlexOffHeapStore store = new CmsFlexOffHeapStore(CmsFlexOffHeapStore.SLAB_SIZE);
+        List<OffHeapBody> bodies = new ArrayList<OffHeapBody>();
+        for (int i = 0; i < 100; i++) {
+            bodies.add(store.store(new byte[17]));
+        }
+        assertEquals(100 * CmsFlexOffHeapStore.MIN_CHUNK_SIZE, store.getUsedBytes());
+        OffHeapBody body = store.store("<p>a small fragment</p>".getBytes());
+        assertEquals(CmsFlexOffHeapStore.MIN_CHUNK_SIZE, body.getCapacity());
+        assertEquals("<p>a small fragment</p>", new String(body.toByteArray()));
+        store.free(body);
+        byte[] bytes = new byte[CmsFlexOffHeapStore.CHUNK_SIZE + 300];
+        Arrays.fill(bytes, (byte)'x');
+        assertEquals(CmsFlexOffHeapStore.CHUNK_SIZE + 512, CmsFlexOffHeapStore.getCapacity(bytes.length));
+
+        // the only slab is used by the smallest size class, so larger bodies are split into small chunks
+        body = store.store(bytes);
+        assertNotNull(body);
+        assertEquals(CmsFlexOffHeapStore.SLAB_SIZE, store.getAllocatedBytes());
+        assertTrue(Arrays.equals(bytes, body.toByteArray()));
+        store.free(body);
+        for (OffHeapBody small : bodies) {
+            store.free(small);
+        }
+        assertEquals(0, store.getUsedBytes());
+    }
+
     /**
      * Tests the method getAbsoluteUri.<p>
      */
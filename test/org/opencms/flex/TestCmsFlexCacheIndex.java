@@ -0,0 +1,363 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import org.opencms.cache.CmsLruCache;
+import org.opencms.cache.I_CmsLruCache;
+import org.opencms.cache.I_CmsLruCacheObject;
+import org.opencms.flex.CmsFlexCache.CmsFlexCacheVariation;
+import org.opencms.test.OpenCmsTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests for the concurrent index of the Flex cache.<p>
+ */
+public class TestCmsFlexCacheIndex extends OpenCmsTestCase {
+
+    /** The maximum number of keys for indexes that must not evict keys in the tests. */
+    private static final int MAX_KEYS = 100000;
+
+    /** The number of resource names used in the concurrency tests. */
+    private static final int RESOURCES = 50;
+
+    /** The number of variations per resource name used in the concurrency tests. */
+    private static final int VARIATIONS = 20;
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsFlexCacheIndex(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Tests that clearing while other threads add entries never leaves entries in only one of index and LRU cache.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testConcurrentPutAndClear() throws Exception {
+
+        final CmsLruCache lru = createLruCache();
+        final CmsFlexCacheIndex index = new CmsFlexCacheIndex(MAX_KEYS, lru);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        List<Throwable> errors = runConcurrently(4, new Runnable() {
+
+            public void run() {
+
+                Random random = new Random();
+                while (running.get()) {
+                    CmsFlexCacheKey key = createKey(random.nextInt(RESOURCES));
+                    index.put(key, "v" + random.nextInt(VARIATIONS), createEntry());
+                }
+            }
+        }, new Runnable() {
+
+            public void run() {
+
+                try {
+                    for (int i = 0; i < 200; i++) {
+                        if ((i % 2) == 0) {
+                            index.clearEntries(CmsFlexCache.CACHE_ONLINESUFFIX, (i % 4) == 0);
+                        } else {
+                            index.clear();
+                        }
+                        Thread.yield();
+                    }
+                } finally {
+                    running.set(false);
+                }
+            }
+        });
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertConsistent(index, lru);
+        index.clear();
+        assertEquals(0, lru.size());
+        assertTrue(index.isEmpty());
+    }
+
+    /**
+     * Tests that clearing one half of the cache does not block adding entries to the other half.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testClearDoesNotBlockOtherHalf() throws Exception {
+
+        final CountDownLatch removing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean block = new AtomicBoolean();
+        final CmsLruCache lru = new CmsLruCache(1024L * 1024 * 1024, 512L * 1024 * 1024, -1) {
+
+            @Override
+            public I_CmsLruCacheObject remove(I_CmsLruCacheObject theCacheObject) {
+
+                if (block.get()) {
+                    // wait without holding the lock of the LRU cache
+                    removing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.remove(theCacheObject);
+            }
+        };
+        final CmsFlexCacheIndex index = new CmsFlexCacheIndex(MAX_KEYS, lru);
+        CmsFlexCacheKey offlineKey = new CmsFlexCacheKey("/sites/default/page.jsp", null, false);
+        assertTrue(index.put(offlineKey, "v", createEntry()));
+
+        block.set(true);
+        Thread clearing = new Thread(new Runnable() {
+
+            public void run() {
+
+                index.clearEntries(CmsFlexCache.CACHE_OFFLINESUFFIX, false);
+            }
+        });
+        clearing.start();
+        try {
+            assertTrue(removing.await(10, TimeUnit.SECONDS));
+            // the offline clear is now in progress, adding online entries must not wait for it
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<Boolean> put = executor.submit(new Callable<Boolean>() {
+
+                    public Boolean call() {
+
+                        return Boolean.valueOf(index.put(createKey(1), "v", createEntry()));
+                    }
+                });
+                assertTrue(put.get(10, TimeUnit.SECONDS).booleanValue());
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            block.set(false);
+            release.countDown();
+            clearing.join();
+        }
+        assertNull(index.getVariations(offlineKey.getResource()));
+        assertNotNull(index.getEntry(createKey(1).getResource(), "v"));
+        assertConsistent(index, lru);
+    }
+
+    /**
+     * Tests that concurrent puts for the same variation keep exactly one entry.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testConcurrentPutSameVariation() throws Exception {
+
+        final CmsLruCache lru = createLruCache();
+        final CmsFlexCacheIndex index = new CmsFlexCacheIndex(MAX_KEYS, lru);
+        final List<CmsFlexCacheEntry> added = new ArrayList<CmsFlexCacheEntry>();
+        Runnable writer = new Runnable() {
+
+            public void run() {
+
+                for (int i = 0; i < RESOURCES; i++) {
+                    CmsFlexCacheEntry entry = createEntry();
+                    if (index.put(createKey(i), "v", entry)) {
+                        synchronized (added) {
+                            added.add(entry);
+                        }
+                    }
+                }
+            }
+        };
+        List<Throwable> errors = runConcurrently(8, writer, writer);
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(RESOURCES, added.size());
+        assertEquals(RESOURCES, lru.size());
+        for (int i = 0; i < RESOURCES; i++) {
+            CmsFlexCacheEntry entry = index.getEntry(createKey(i).getResource(), "v");
+            assertTrue(added.contains(entry));
+        }
+        assertConsistent(index, lru);
+    }
+
+    /**
+     * Tests that evicting resource keys releases their entries in the LRU cache.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testKeyEviction() throws Exception {
+
+        CmsLruCache lru = createLruCache();
+        CmsFlexCacheIndex index = new CmsFlexCacheIndex(RESOURCES, lru);
+        assertEquals(RESOURCES, index.getMaxKeys());
+        for (int i = 0; i < (RESOURCES * 4); i++) {
+            for (int v = 0; v < 3; v++) {
+                index.put(createKey(i), "v" + v, createEntry());
+            }
+        }
+        assertTrue(index.size() <= RESOURCES);
+        assertConsistent(index, lru);
+    }
+
+    /**
+     * Tests adding, looking up and removing entries.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testPutAndRemove() throws Exception {
+
+        CmsLruCache lru = createLruCache();
+        CmsFlexCacheIndex index = new CmsFlexCacheIndex(RESOURCES, lru);
+        CmsFlexCacheKey key = createKey(1);
+        CmsFlexCacheEntry entry = createEntry();
+        assertTrue(index.put(key, "v", entry));
+        assertFalse(index.put(key, "v", createEntry()));
+        assertSame(entry, index.getEntry(key.getResource(), "v"));
+        assertNull(index.getEntry(key.getResource(), "other"));
+        assertNull(index.getEntry(createKey(2).getResource(), "v"));
+        assertEquals(1, index.size());
+        assertEquals(1, lru.size());
+
+        index.remove(entry);
+        assertNull(index.getEntry(key.getResource(), "v"));
+        assertEquals(0, lru.size());
+        // the key stays in the index
+        assertNotNull(index.getVariations(key.getResource()));
+
+        assertTrue(index.put(key, "v", createEntry()));
+        assertTrue(index.put(createKey(2), "v", createEntry()));
+        assertEquals(2, index.clearEntries(CmsFlexCache.CACHE_ONLINESUFFIX, true));
+        assertEquals(2, index.size());
+        assertEquals(0, lru.size());
+        assertEquals(0, index.clearEntries(CmsFlexCache.CACHE_OFFLINESUFFIX, false));
+        assertEquals(0, index.clearEntries(CmsFlexCache.CACHE_ONLINESUFFIX, false));
+        assertTrue(index.isEmpty());
+    }
+
+    /**
+     * Asserts that the index and the LRU cache contain the same entries, while no other thread uses the index.<p>
+     *
+     * @param index the index
+     * @param lru the LRU cache of the index
+     */
+    void assertConsistent(CmsFlexCacheIndex index, I_CmsLruCache lru) {
+
+        int indexed = 0;
+        for (CmsFlexCacheVariation variation : index.asMap().values()) {
+            indexed += variation.m_map.size();
+        }
+        assertEquals(indexed, lru.size());
+    }
+
+    /**
+     * Creates a cache entry with some content.<p>
+     *
+     * @return the cache entry
+     */
+    CmsFlexCacheEntry createEntry() {
+
+        CmsFlexCacheEntry entry = new CmsFlexCacheEntry();
+        entry.add(new byte[16]);
+        entry.complete();
+        return entry;
+    }
+
+    /**
+     * Creates a LRU cache large enough to never evict entries in the tests.<p>
+     *
+     * @return the LRU cache
+     */
+    CmsLruCache createLruCache() {
+
+        return new CmsLruCache(1024L * 1024 * 1024, 512L * 1024 * 1024, -1);
+    }
+
+    /**
+     * Creates an online cache key for the resource with the given number.<p>
+     *
+     * @param number the number of the resource
+     *
+     * @return the cache key
+     */
+    CmsFlexCacheKey createKey(int number) {
+
+        return new CmsFlexCacheKey("/sites/default/page" + number + ".jsp", null, true);
+    }
+
+    /**
+     * Runs the given writer in several threads and the given controller in one thread, and waits for all of them.<p>
+     *
+     * @param writers the number of writer threads
+     * @param writer the writer
+     * @param controller the controller, the writers must stop once it has finished
+     *
+     * @return the errors thrown by the threads
+     *
+     * @throws InterruptedException if waiting for the threads is interrupted
+     */
+    private List<Throwable> runConcurrently(int writers, final Runnable writer, final Runnable controller)
+    throws InterruptedException {
+
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i <= writers; i++) {
+            final Runnable task = (i == writers) ? controller : writer;
+            Thread thread = new Thread(new Runnable() {
+
+                public void run() {
+
+                    try {
+                        start.await();
+                        task.run();
+                    } catch (Throwable t) {
+                        synchronized (errors) {
+                            errors.add(t);
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return errors;
+    }
+}
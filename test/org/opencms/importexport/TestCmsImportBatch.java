@@ -0,0 +1,307 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.importexport;
+
+import org.opencms.db.CmsDbPoolV11;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsProperty;
+import org.opencms.file.CmsPropertyDefinition;
+import org.opencms.file.CmsResource;
+import org.opencms.file.types.CmsResourceTypeFolder;
+import org.opencms.file.types.CmsResourceTypePlain;
+import org.opencms.main.OpenCms;
+import org.opencms.module.CmsModule.ExportMode;
+import org.opencms.report.CmsShellReport;
+import org.opencms.report.I_CmsReport;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsUUID;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the import with batched database writes.<p>
+ */
+public class TestCmsImportBatch extends OpenCmsTestCase {
+
+    /**
+     * Import that adds a failing statement to the batch after importing a given resource.<p>
+     */
+    static class FailingImport extends CmsImportVersion10 {
+
+        /** The id of the rows written by the failing statement. */
+        private String m_failingId = new CmsUUID().toString();
+
+        /** The root path of the resource after which the failing statement is added. */
+        private String m_failingPath;
+
+        /**
+         * Creates a new import.<p>
+         *
+         * @param failingPath the root path of the resource after which the failing statement is added
+         */
+        FailingImport(String failingPath) {
+
+            m_failingPath = failingPath;
+        }
+
+        /**
+         * Returns the id of the rows written by the failing statement.<p>
+         *
+         * @return the id of the rows written by the failing statement
+         */
+        String getFailingId() {
+
+            return m_failingId;
+        }
+
+        /**
+         * @see org.opencms.importexport.CmsImportVersion10#importResource()
+         */
+        @Override
+        public void importResource() {
+
+            super.importResource();
+            if ((m_resource == null) || !m_failingPath.equals(m_resource.getRootPath())) {
+                return;
+            }
+            try {
+                // insert the same primary key twice, executing the batch fails
+                String sql = "INSERT INTO CMS_OFFLINE_PROPERTIES "
+                    + "(PROPERTY_ID, PROPERTYDEF_ID, PROPERTY_MAPPING_ID, PROPERTY_MAPPING_TYPE, PROPERTY_VALUE) "
+                    + "VALUES (?, ?, ?, ?, ?)";
+                String poolUrl = CmsDbPoolV11.OPENCMS_URL_PREFIX + OpenCms.getSqlManager().getDefaultDbPoolName();
+                for (int i = 0; i < 2; i++) {
+                    PreparedStatement stmt = m_sqlBatch.prepareStatement(OpenCms.getSqlManager(), poolUrl, sql);
+                    stmt.setString(1, m_failingId);
+                    stmt.setString(2, new CmsUUID().toString());
+                    stmt.setString(3, new CmsUUID().toString());
+                    stmt.setInt(4, CmsProperty.STRUCTURE_RECORD_MAPPING);
+                    stmt.setString(5, "failing");
+                    m_sqlBatch.addBatch(m_resource.getRootPath());
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsImportBatch(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestCmsImportBatch.class.getName());
+
+        suite.addTest(new TestCmsImportBatch("testImportBatch"));
+        suite.addTest(new TestCmsImportBatch("testImportBatchFailure"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests that an import with batched writes restores all resources with their properties.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testImportBatch() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the import with batched database writes");
+
+        String folder = "/batchImport/";
+        String zipExportFilename = exportAndDelete(cms, folder);
+        try {
+            I_CmsReport report = new CmsShellReport(cms.getRequestContext().getLocale());
+            new CmsImportVersion10().importData(cms, report, new CmsImportParameters(zipExportFilename, "/", true));
+
+            assertFalse(report.hasError());
+            assertImported(cms, folder);
+        } finally {
+            new File(zipExportFilename).delete();
+        }
+    }
+
+    /**
+     * Tests that a failing batched write is reported as an import error for the resources written by the batch.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testImportBatchFailure() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the import with a failing batched database write");
+
+        String folder = "/batchImportFailure/";
+        String zipExportFilename = exportAndDelete(cms, folder);
+        String failingPath = cms.getRequestContext().addSiteRoot(folder + "file1.txt");
+        FailingImport importer = new FailingImport(failingPath);
+        try {
+            I_CmsReport report = new CmsShellReport(cms.getRequestContext().getLocale());
+            importer.importData(cms, report, new CmsImportParameters(zipExportFilename, "/", true));
+
+            assertTrue(report.hasError());
+            List<Object> errors = report.getErrors();
+            assertEquals(1, errors.size());
+            String message = ((Throwable)errors.get(0)).getLocalizedMessage();
+            assertTrue(message, message.contains(failingPath));
+            // the resources are still imported
+            assertImported(cms, folder);
+        } finally {
+            Connection conn = OpenCms.getSqlManager().getConnection(OpenCms.getSqlManager().getDefaultDbPoolName());
+            try {
+                PreparedStatement stmt = conn.prepareStatement(
+                    "DELETE FROM CMS_OFFLINE_PROPERTIES WHERE PROPERTY_ID = ?");
+                stmt.setString(1, importer.getFailingId());
+                stmt.executeUpdate();
+                stmt.close();
+            } finally {
+                conn.close();
+            }
+            new File(zipExportFilename).delete();
+        }
+    }
+
+    /**
+     * Asserts that the files created by {@link #exportAndDelete(CmsObject, String)} exist with their properties.<p>
+     *
+     * @param cms the current user context
+     * @param folder the folder of the files
+     *
+     * @throws Exception if something goes wrong
+     */
+    private void assertImported(CmsObject cms, String folder) throws Exception {
+
+        List<CmsResource> files = cms.getFilesInFolder(folder);
+        assertEquals(3, files.size());
+        for (int i = 0; i < 3; i++) {
+            String name = folder + "file" + i + ".txt";
+            assertEquals(
+                "Title " + i,
+                cms.readPropertyObject(name, CmsPropertyDefinition.PROPERTY_TITLE, false).getValue());
+            assertEquals(
+                "Description " + i,
+                cms.readPropertyObject(name, CmsPropertyDefinition.PROPERTY_DESCRIPTION, false).getValue());
+        }
+    }
+
+    /**
+     * Creates a folder with files and properties, exports it and deletes it.<p>
+     *
+     * @param cms the current user context
+     * @param folder the folder to create
+     *
+     * @return the RFS name of the export file
+     *
+     * @throws Exception if something goes wrong
+     */
+    private String exportAndDelete(CmsObject cms, String folder) throws Exception {
+
+        String zipExportFilename = OpenCms.getSystemInfo().getAbsoluteRfsPathRelativeToWebInf(
+            "packages/" + CmsResource.getName(folder).replace("/", "") + ".zip");
+        cms.createResource(folder, CmsResourceTypeFolder.getStaticTypeId());
+        for (int i = 0; i < 3; i++) {
+            List<CmsProperty> properties = new ArrayList<CmsProperty>();
+            properties.add(new CmsProperty(CmsPropertyDefinition.PROPERTY_TITLE, "Title " + i, null));
+            properties.add(new CmsProperty(CmsPropertyDefinition.PROPERTY_DESCRIPTION, null, "Description " + i));
+            cms.createResource(
+                folder + "file" + i + ".txt",
+                CmsResourceTypePlain.getStaticTypeId(),
+                ("content " + i).getBytes(),
+                properties);
+        }
+        cms.unlockResource(folder);
+        OpenCms.getPublishManager().publishResource(cms, folder);
+        OpenCms.getPublishManager().waitWhileRunning();
+
+        CmsVfsImportExportHandler vfsExportHandler = new CmsVfsImportExportHandler();
+        CmsExportParameters params = new CmsExportParameters(
+            zipExportFilename,
+            null,
+            true,
+            false,
+            false,
+            Collections.singletonList(folder),
+            false,
+            true,
+            0,
+            true,
+            false,
+            ExportMode.DEFAULT);
+        vfsExportHandler.setExportParams(params);
+        OpenCms.getImportExportManager().exportData(
+            cms,
+            vfsExportHandler,
+            new CmsShellReport(cms.getRequestContext().getLocale()));
+
+        cms.lockResource(folder);
+        cms.deleteResource(folder, CmsResource.DELETE_PRESERVE_SIBLINGS);
+        OpenCms.getPublishManager().publishResource(cms, folder);
+        OpenCms.getPublishManager().waitWhileRunning();
+        return zipExportFilename;
+    }
+}
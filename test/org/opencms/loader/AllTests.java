@@ -59,6 +59,8 @@ public final class AllTests {
         //$JUnit-BEGIN$
         suite.addTest(new TestSuite(TestCmsImageScaler.class));
         suite.addTest(new TestSuite(TestCmsDefaultFileNameGenerator.class));
+        suite.addTest(TestCmsJspWarmup.suite());
+        suite.addTest(TestCmsImageLoader.suite());
         //$JUnit-END$
         return suite;
     }
@@ -0,0 +1,318 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.loader;
+
+import org.opencms.file.CmsFile;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsResource;
+import org.opencms.main.OpenCms;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Unit tests for scaling images with the image loader.<p>
+ */
+public class TestCmsImageLoader extends OpenCmsTestCase {
+
+    /**
+     * Image scaler which returns a fixed content, optionally waiting until it is released or failing.<p>
+     */
+    private static class TestScaler extends CmsImageScaler {
+
+        /** The number of scale operations. */
+        AtomicInteger m_calls = new AtomicInteger();
+
+        /** The error thrown when scaling the image, or <code>null</code>. */
+        Error m_scaleError;
+
+        /** The error thrown when calculating the size of the image, or <code>null</code>. */
+        Error m_sizeError;
+
+        /** Released when scaling may finish. */
+        CountDownLatch m_release = new CountDownLatch(0);
+
+        /** Released when scaling has started. */
+        CountDownLatch m_started = new CountDownLatch(1);
+
+        /** The scaled content. */
+        private byte[] m_content;
+
+        /**
+         * Creates a new test scaler.<p>
+         *
+         * @param content the scaled content
+         */
+        TestScaler(byte[] content) {
+
+            super("w:20,h:20");
+            m_content = content;
+        }
+
+        /**
+         * @see org.opencms.loader.CmsImageScaler#getPixelCount()
+         */
+        @Override
+        public int getPixelCount() {
+
+            if (m_sizeError != null) {
+                throw m_sizeError;
+            }
+            return super.getPixelCount();
+        }
+
+        /**
+         * @see org.opencms.loader.CmsImageScaler#scaleImage(org.opencms.file.CmsFile)
+         */
+        @Override
+        public byte[] scaleImage(CmsFile file) {
+
+            m_calls.incrementAndGet();
+            m_started.countDown();
+            try {
+                m_release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (m_scaleError != null) {
+                throw m_scaleError;
+            }
+            return m_content;
+        }
+    }
+
+    /** The maximum time to wait for a scale operation. */
+    private static final long WAIT_TIMEOUT = 30000;
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsImageLoader(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestCmsImageLoader.class.getName());
+
+        suite.addTest(new TestCmsImageLoader("testScalingCoalesced"));
+        suite.addTest(new TestCmsImageLoader("testScalingFailure"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests that concurrent requests for the same variant scale the image only once.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testScalingCoalesced() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing that concurrent requests for the same scaled image are coalesced");
+
+        CmsImageLoader loader = getImageLoader();
+        CmsResource resource = cms.readResource("/folder1/image1.gif");
+        String cacheName = CmsImageLoader.m_vfsDiskCache.getCacheName(resource, "coalesced");
+        assertNull(CmsImageLoader.m_vfsDiskCache.getCacheContent(cacheName));
+
+        byte[] content = "scaled".getBytes("UTF-8");
+        TestScaler scaler = new TestScaler(content);
+        scaler.m_release = new CountDownLatch(1);
+        ExecutorService requests = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+            results.add(scale(requests, loader, cms, resource, scaler, cacheName));
+            assertTrue(scaler.m_started.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+
+            // these requests either wait for the running operation, or read the variant from the disk cache
+            List<TestScaler> others = new ArrayList<TestScaler>();
+            for (int i = 0; i < 3; i++) {
+                TestScaler other = new TestScaler("other".getBytes("UTF-8"));
+                others.add(other);
+                results.add(scale(requests, loader, cms, resource, other, cacheName));
+            }
+            scaler.m_release.countDown();
+
+            for (Future<byte[]> result : results) {
+                assertTrue(Arrays.equals(content, result.get(WAIT_TIMEOUT, TimeUnit.MILLISECONDS)));
+            }
+            assertEquals(1, scaler.m_calls.get());
+            for (TestScaler other : others) {
+                assertEquals(0, other.m_calls.get());
+            }
+            assertTrue(Arrays.equals(content, CmsImageLoader.m_vfsDiskCache.getCacheContent(cacheName)));
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that failed scale operations do not block later requests for the same variant.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testScalingFailure() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing that failed scale operations do not block later requests");
+
+        CmsImageLoader loader = getImageLoader();
+        CmsResource resource = cms.readResource("/folder1/image1.gif");
+        byte[] content = "scaled".getBytes("UTF-8");
+        ExecutorService requests = Executors.newFixedThreadPool(1);
+        try {
+            // the operation fails before it is handed to the scaling threads
+            String cacheName = CmsImageLoader.m_vfsDiskCache.getCacheName(resource, "failedBeforeScaling");
+            TestScaler scaler = new TestScaler(content);
+            scaler.m_sizeError = new OutOfMemoryError("Simulated failure before scaling");
+            assertFailure(scale(requests, loader, cms, resource, scaler, cacheName), scaler.m_sizeError);
+            assertEquals(0, scaler.m_calls.get());
+            assertNull(CmsImageLoader.m_vfsDiskCache.getCacheContent(cacheName));
+
+            scaler = new TestScaler(content);
+            byte[] result = scale(requests, loader, cms, resource, scaler, cacheName).get(
+                WAIT_TIMEOUT,
+                TimeUnit.MILLISECONDS);
+            assertTrue(Arrays.equals(content, result));
+            assertEquals(1, scaler.m_calls.get());
+
+            // the operation fails on the scaling thread
+            cacheName = CmsImageLoader.m_vfsDiskCache.getCacheName(resource, "failedScaling");
+            scaler = new TestScaler(content);
+            scaler.m_scaleError = new OutOfMemoryError("Simulated failure while scaling");
+            assertFailure(scale(requests, loader, cms, resource, scaler, cacheName), scaler.m_scaleError);
+            assertEquals(1, scaler.m_calls.get());
+            assertNull(CmsImageLoader.m_vfsDiskCache.getCacheContent(cacheName));
+
+            scaler = new TestScaler(content);
+            result = scale(requests, loader, cms, resource, scaler, cacheName).get(WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+            assertTrue(Arrays.equals(content, result));
+            assertEquals(1, scaler.m_calls.get());
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    /**
+     * Asserts that the given scale operation failed with the given error.<p>
+     *
+     * @param result the result of the scale operation
+     * @param error the expected error
+     *
+     * @throws Exception if waiting for the result fails
+     */
+    private void assertFailure(Future<byte[]> result, Error error) throws Exception {
+
+        try {
+            result.get(WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+            fail("Scale operation did not fail");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    /**
+     * Returns the configured image loader.<p>
+     *
+     * @return the configured image loader
+     *
+     * @throws Exception if the loader can not be read
+     */
+    private CmsImageLoader getImageLoader() throws Exception {
+
+        return (CmsImageLoader)OpenCms.getResourceManager().getLoader(CmsImageLoader.RESOURCE_LOADER_ID_IMAGE_LOADER);
+    }
+
+    /**
+     * Requests the given variant of an image in a separate thread.<p>
+     *
+     * @param requests the thread pool for the requests
+     * @param loader the image loader
+     * @param cms the current users OpenCms context
+     * @param resource the image resource
+     * @param scaler the image scaler
+     * @param cacheName the name of the variant in the disk cache
+     *
+     * @return the result of the request
+     *
+     * @throws Exception if creating the OpenCms context for the request fails
+     */
+    private Future<byte[]> scale(
+        ExecutorService requests,
+        CmsImageLoader loader,
+        CmsObject cms,
+        CmsResource resource,
+        CmsImageScaler scaler,
+        String cacheName)
+    throws Exception {
+
+        CmsObject requestCms = OpenCms.initCmsObject(cms);
+        return requests.submit(() -> loader.getScaledContent(requestCms, resource, scaler, cacheName));
+    }
+}
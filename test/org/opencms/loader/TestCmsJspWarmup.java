@@ -0,0 +1,213 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.loader;
+
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsProject;
+import org.opencms.file.types.CmsResourceTypeJsp;
+import org.opencms.main.OpenCms;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsFileUtil;
+
+import java.io.File;
+import java.util.Collections;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Unit tests for updating JSPs in the background.<p>
+ */
+public class TestCmsJspWarmup extends OpenCmsTestCase {
+
+    /** The maximum time to wait for the background update. */
+    private static final long WAIT_TIMEOUT = 10000;
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsJspWarmup(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestCmsJspWarmup.class.getName());
+
+        suite.addTest(new TestCmsJspWarmup("testWarmUp"));
+        suite.addTest(new TestCmsJspWarmup("testWarmUpAfterPublish"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests that the warm-up writes a missing online JSP to the "real" file system.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testWarmUp() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the JSP warm-up");
+
+        String resourceName = "/testWarmUp.jsp";
+        cms.createResource(resourceName, CmsResourceTypeJsp.getJSPTypeId(), "Warm-up".getBytes("UTF-8"), null);
+        String rootPath = cms.getRequestContext().addSiteRoot(resourceName);
+        publish(cms);
+
+        File jspFile = getOnlineJspFile(rootPath);
+        // the publish itself may already have updated the JSP
+        waitForFile(jspFile);
+        assertTrue(jspFile.delete());
+        assertFalse(jspFile.exists());
+
+        getLoader().warmUp(getOnlineCms(cms), Collections.singletonList(rootPath));
+        assertTrue("Warm-up did not update " + rootPath, waitForFile(jspFile));
+
+        // paths of resources that are no JSPs are ignored
+        getLoader().warmUp(getOnlineCms(cms), Collections.singletonList("/sites/default/index.html"));
+    }
+
+    /**
+     * Tests that publishing a JSP writes it to the "real" file system without a request.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testWarmUpAfterPublish() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the JSP warm-up after publishing");
+
+        String resourceName = "/testWarmUpAfterPublish.jsp";
+        cms.createResource(resourceName, CmsResourceTypeJsp.getJSPTypeId(), "Published".getBytes("UTF-8"), null);
+        String rootPath = cms.getRequestContext().addSiteRoot(resourceName);
+        File jspFile = getOnlineJspFile(rootPath);
+        assertFalse(jspFile.exists());
+
+        publish(cms);
+        assertTrue("Publishing did not update " + rootPath, waitForFile(jspFile));
+    }
+
+    /**
+     * Returns the JSP loader.<p>
+     *
+     * @return the JSP loader
+     */
+    private CmsJspLoader getLoader() {
+
+        return (CmsJspLoader)OpenCms.getResourceManager().getLoader(CmsJspLoader.RESOURCE_LOADER_ID);
+    }
+
+    /**
+     * Returns a user context for the online project.<p>
+     *
+     * @param cms the current user context
+     *
+     * @return the online user context
+     *
+     * @throws Exception if something goes wrong
+     */
+    private CmsObject getOnlineCms(CmsObject cms) throws Exception {
+
+        CmsObject onlineCms = OpenCms.initCmsObject(cms);
+        onlineCms.getRequestContext().setCurrentProject(cms.readProject(CmsProject.ONLINE_PROJECT_ID));
+        return onlineCms;
+    }
+
+    /**
+     * Returns the file of an online JSP in the "real" file system.<p>
+     *
+     * @param rootPath the root path of the JSP
+     *
+     * @return the file in the "real" file system
+     */
+    private File getOnlineJspFile(String rootPath) {
+
+        return new File(CmsFileUtil.getRepositoryName(getLoader().getJspRepository(), rootPath, true));
+    }
+
+    /**
+     * Publishes the current project and waits until publishing has finished.<p>
+     *
+     * @param cms the current user context
+     *
+     * @throws Exception if something goes wrong
+     */
+    private void publish(CmsObject cms) throws Exception {
+
+        cms.unlockProject(cms.getRequestContext().getCurrentProject().getUuid());
+        OpenCms.getPublishManager().publishProject(cms);
+        OpenCms.getPublishManager().waitWhileRunning();
+    }
+
+    /**
+     * Waits until the given file exists.<p>
+     *
+     * @param file the file to wait for
+     *
+     * @return <code>true</code> if the file exists
+     *
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private boolean waitForFile(File file) throws InterruptedException {
+
+        long end = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while (!file.exists() && (System.currentTimeMillis() < end)) {
+            Thread.sleep(50);
+        }
+        return file.exists();
+    }
+}
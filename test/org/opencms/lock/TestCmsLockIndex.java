@@ -0,0 +1,192 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.lock;
+
+import org.opencms.file.CmsProject;
+import org.opencms.util.CmsUUID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the path tree index over the cached resource locks.<p>
+ */
+public class TestCmsLockIndex extends TestCase {
+
+    /** The project used for the locks. */
+    private CmsProject m_project;
+
+    /** The user used for the locks. */
+    private CmsUUID m_userId;
+
+    /**
+     * Tests the lookup of the locks of the ancestor folders.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testAncestorLocks() throws Exception {
+
+        CmsLockIndex index = new CmsLockIndex();
+        CmsLock root = createLock("/sites/", CmsLockType.EXCLUSIVE);
+        CmsLock folder = createLock("/sites/default/folder/", CmsLockType.EXCLUSIVE);
+        CmsLock file = createLock("/sites/default/folder/sub/file.html", CmsLockType.EXCLUSIVE);
+        index.put(root);
+        index.put(folder);
+        index.put(file);
+        index.put(createLock("/sites/other/", CmsLockType.EXCLUSIVE));
+
+        // the nearest ancestor first, the lock of the path itself is not included
+        List<CmsLock> expected = new ArrayList<CmsLock>();
+        expected.add(folder);
+        expected.add(root);
+        assertEquals(expected, index.getAncestorLocks("/sites/default/folder/sub/file.html"));
+        assertEquals(expected, index.getAncestorLocks("/sites/default/folder/sub/"));
+        assertEquals(Collections.singletonList(root), index.getAncestorLocks("/sites/default/folder/"));
+        assertEquals(Collections.singletonList(root), index.getAncestorLocks("/sites/default/unknown/file.html"));
+        assertTrue(index.getAncestorLocks("/sites/").isEmpty());
+        assertTrue(index.getAncestorLocks("/system/file.html").isEmpty());
+
+        index.remove("/sites/default/folder/");
+        assertEquals(Collections.singletonList(root), index.getAncestorLocks("/sites/default/folder/sub/file.html"));
+        index.remove("/sites/");
+        assertTrue(index.getAncestorLocks("/sites/default/folder/sub/file.html").isEmpty());
+    }
+
+    /**
+     * Tests the lookup of the locks in a subtree and of the system locks below a path.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testDescendantLocks() throws Exception {
+
+        CmsLockIndex index = new CmsLockIndex();
+        CmsLock folder = createLock("/sites/default/folder/", CmsLockType.EXCLUSIVE);
+        CmsLock file1 = createLock("/sites/default/folder/file1.html", CmsLockType.EXCLUSIVE);
+        CmsLock file2 = createLock("/sites/default/folder/sub/file2.html", CmsLockType.EXCLUSIVE);
+        CmsLock other = createLock("/sites/default/folder2/file.html", CmsLockType.EXCLUSIVE);
+        index.put(folder);
+        index.put(file1);
+        index.put(file2);
+        index.put(other);
+        assertEquals(4, index.size());
+
+        List<CmsLock> descendants = index.getDescendantLocks("/sites/default/folder/");
+        assertEquals(2, descendants.size());
+        assertTrue(descendants.contains(file1));
+        assertTrue(descendants.contains(file2));
+        // a sibling with a common name prefix is not part of the subtree
+        assertFalse(descendants.contains(other));
+        assertEquals(4, index.getDescendantLocks("/sites/").size());
+        assertTrue(index.getDescendantLocks("/sites/default/folder/file1.html").isEmpty());
+        assertTrue(index.getDescendantLocks("/system/").isEmpty());
+        assertFalse(index.hasSystemLocks("/sites/"));
+
+        // a publish lock is a system lock with the former lock as related edition lock
+        CmsLock publish = createLock("/sites/default/folder/sub/file2.html", CmsLockType.PUBLISH);
+        publish.setRelatedLock(file2);
+        index.put(publish);
+        assertEquals(4, index.size());
+        assertTrue(index.hasSystemLocks("/sites/"));
+        assertTrue(index.hasSystemLocks("/sites/default/folder/sub/"));
+        assertTrue(index.hasSystemLocks("/sites/default/folder/sub/file2.html"));
+        assertFalse(index.hasSystemLocks("/sites/default/folder2/"));
+        assertTrue(index.getDescendantLocks("/sites/default/folder/sub/").contains(publish));
+
+        // replacing the system lock with a plain lock removes it from the counters again
+        index.put(createLock("/sites/default/folder/sub/file2.html", CmsLockType.EXCLUSIVE));
+        assertFalse(index.hasSystemLocks("/sites/"));
+
+        index.remove("/sites/default/folder/sub/file2.html");
+        index.remove("/sites/default/folder/file1.html");
+        assertTrue(index.getDescendantLocks("/sites/default/folder/").isEmpty());
+        assertEquals(2, index.size());
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.getDescendantLocks("/").isEmpty());
+    }
+
+    /**
+     * Tests the lookup of the locks by project and user.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testLocksByOwner() throws Exception {
+
+        CmsLockIndex index = new CmsLockIndex();
+        CmsLock lock1 = createLock("/sites/default/file1.html", CmsLockType.EXCLUSIVE);
+        CmsLock lock2 = createLock("/sites/default/file2.html", CmsLockType.EXCLUSIVE);
+        CmsUUID otherUser = new CmsUUID();
+        CmsLock lock3 = new CmsLock("/sites/default/file3.html", otherUser, m_project, CmsLockType.EXCLUSIVE);
+        index.putAll(Arrays.asList(lock1, lock2, lock3));
+
+        assertEquals(3, index.getLocksByOwner(m_project.getUuid()).size());
+        assertEquals(2, index.getLocksByOwner(m_userId).size());
+        assertEquals(Collections.singletonList(lock3), index.getLocksByOwner(otherUser));
+
+        index.remove("/sites/default/file3.html");
+        assertTrue(index.getLocksByOwner(otherUser).isEmpty());
+        assertEquals(2, index.getLocksByOwner(m_project.getUuid()).size());
+    }
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+
+        super.setUp();
+        m_userId = new CmsUUID();
+        m_project = new CmsProject(
+            new CmsUUID(),
+            "test",
+            "test project",
+            m_userId,
+            new CmsUUID(),
+            new CmsUUID(),
+            0,
+            System.currentTimeMillis(),
+            CmsProject.PROJECT_TYPE_NORMAL);
+    }
+
+    /**
+     * Creates a lock of the test user in the test project.<p>
+     *
+     * @param rootPath the root path of the locked resource
+     * @param type the lock type
+     *
+     * @return the lock
+     */
+    private CmsLock createLock(String rootPath, CmsLockType type) {
+
+        return new CmsLock(rootPath, m_userId, m_project, type);
+    }
+}
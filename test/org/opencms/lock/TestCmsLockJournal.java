@@ -0,0 +1,118 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.lock;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the journal of the changed resource locks.<p>
+ */
+public class TestCmsLockJournal extends TestCase {
+
+    /**
+     * Tests that draining hands over the recorded changes and empties the journal.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testDrain() throws Exception {
+
+        CmsLockJournal journal = new CmsLockJournal();
+        assertTrue(journal.isEmpty());
+        journal.recordChange("/a");
+        journal.recordChange("/b");
+        journal.recordChange("/a");
+
+        CmsLockJournal changes = journal.drain();
+        assertTrue(journal.isEmpty());
+        assertFalse(changes.isFullWrite());
+        assertEquals(Arrays.asList("/a", "/b"), changes.getChangedPaths());
+
+        // changes recorded while the drained ones are written go to the next write
+        journal.recordChange("/c");
+        assertEquals(Arrays.asList("/c"), journal.getChangedPaths());
+        assertEquals(Arrays.asList("/a", "/b"), changes.getChangedPaths());
+    }
+
+    /**
+     * Tests that a reset requires a full write and makes single changes obsolete.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testFullWrite() throws Exception {
+
+        CmsLockJournal journal = new CmsLockJournal();
+        journal.recordChange("/a");
+        journal.recordReset();
+        journal.recordChange("/b");
+        assertFalse(journal.isEmpty());
+        assertTrue(journal.isFullWrite());
+        assertTrue(journal.getChangedPaths().isEmpty());
+
+        CmsLockJournal changes = journal.drain();
+        assertTrue(changes.isFullWrite());
+        assertTrue(journal.isEmpty());
+        assertFalse(journal.isFullWrite());
+    }
+
+    /**
+     * Tests that the changes of a failed write are merged back with the changes recorded meanwhile.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testMergeAfterFailedWrite() throws Exception {
+
+        CmsLockJournal journal = new CmsLockJournal();
+        journal.recordChange("/a");
+        journal.recordChange("/b");
+        CmsLockJournal changes = journal.drain();
+        journal.recordChange("/b");
+        journal.recordChange("/c");
+
+        // writing the drained changes failed
+        journal.merge(changes);
+        assertEquals(3, journal.getChangedPaths().size());
+        assertTrue(journal.getChangedPaths().containsAll(Arrays.asList("/a", "/b", "/c")));
+
+        // a failed full write requires a full write again
+        changes = journal.drain();
+        changes.recordReset();
+        journal.recordChange("/d");
+        journal.merge(changes);
+        assertTrue(journal.isFullWrite());
+        assertTrue(journal.getChangedPaths().isEmpty());
+
+        // a pending full write covers the changes of a failed write
+        CmsLockJournal failed = new CmsLockJournal();
+        failed.recordChange("/e");
+        journal.merge(failed);
+        assertTrue(journal.isFullWrite());
+        assertTrue(journal.getChangedPaths().isEmpty());
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.lock;
+
+import org.opencms.db.CmsDbContext;
+import org.opencms.db.CmsDbSqlException;
+import org.opencms.db.generic.CmsProjectDriver;
+import org.opencms.db.generic.Messages;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsProject;
+import org.opencms.main.CmsException;
+import org.opencms.main.OpenCms;
+import org.opencms.monitor.CmsMemoryMonitor;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsUUID;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests writing the changed resource locks to the database and reading them back.<p>
+ */
+public class TestCmsLockPersistence extends OpenCmsTestCase {
+
+    /**
+     * Project driver keeping the lock table in memory, with the same rows as the database lock table.<p>
+     */
+    static class TestProjectDriver extends CmsProjectDriver {
+
+        /** Flag indicating that writing locks fails. */
+        boolean m_fail;
+
+        /** The rows of the lock table. */
+        final List<CmsLock> m_rows = new ArrayList<CmsLock>();
+
+        /**
+         * @see org.opencms.db.generic.CmsProjectDriver#readLocks(org.opencms.db.CmsDbContext)
+         */
+        @Override
+        public List<CmsLock> readLocks(CmsDbContext dbc) {
+
+            List<CmsLock> result = new ArrayList<CmsLock>();
+            for (CmsLock row : m_rows) {
+                result.add(new CmsLock(row.getResourceName(), row.getUserId(), row.getProject(), row.getType()));
+            }
+            return result;
+        }
+
+        /**
+         * @see org.opencms.db.generic.CmsProjectDriver#writeLockChanges(org.opencms.db.CmsDbContext, java.util.Collection, java.util.List)
+         */
+        @Override
+        public void writeLockChanges(CmsDbContext dbc, Collection<String> changedPaths, List<CmsLock> locks)
+        throws CmsDbSqlException {
+
+            checkFailure();
+            Iterator<CmsLock> it = m_rows.iterator();
+            while (it.hasNext()) {
+                if (changedPaths.contains(it.next().getResourceName())) {
+                    it.remove();
+                }
+            }
+            addRows(locks);
+        }
+
+        /**
+         * @see org.opencms.db.generic.CmsProjectDriver#writeLocks(org.opencms.db.CmsDbContext, java.util.List)
+         */
+        @Override
+        public void writeLocks(CmsDbContext dbc, List<CmsLock> locks) throws CmsDbSqlException {
+
+            checkFailure();
+            m_rows.clear();
+            addRows(locks);
+        }
+
+        /**
+         * Adds the rows for the persistent parts of the given locks.<p>
+         *
+         * @param locks the locks
+         */
+        private void addRows(List<CmsLock> locks) {
+
+            for (CmsLock lock : locks) {
+                if (lock.getSystemLock().isPersistent()) {
+                    m_rows.add(lock.getSystemLock());
+                }
+                if (lock.getEditionLock().isPersistent()) {
+                    m_rows.add(lock.getEditionLock());
+                }
+            }
+        }
+
+        /**
+         * Throws an exception if writing locks should fail.<p>
+         *
+         * @throws CmsDbSqlException if writing locks should fail
+         */
+        private void checkFailure() throws CmsDbSqlException {
+
+            if (m_fail) {
+                throw new CmsDbSqlException(Messages.get().container(Messages.ERR_GENERIC_SQL_1, "test"));
+            }
+        }
+    }
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsLockPersistence(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestCmsLockPersistence.class.getName());
+        suite.addTest(new TestCmsLockPersistence("testChangedLocksSurviveReadLocks"));
+        suite.addTest(new TestCmsLockPersistence("testFailedWriteKeepsChanges"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests that locks added, changed and removed between two writes are restored by reading the locks.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testChangedLocksSurviveReadLocks() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing that changed locks survive reading the locks");
+
+        CmsMemoryMonitor monitor = OpenCms.getMemoryMonitor();
+        CmsLockManager lockManager = new CmsLockManager(null);
+        TestProjectDriver driver = new TestProjectDriver();
+        CmsDbContext dbc = new CmsDbContext();
+        CmsProject project = cms.getRequestContext().getCurrentProject();
+        CmsUUID user = cms.getRequestContext().getCurrentUser().getId();
+        CmsUUID otherUser = new CmsUUID();
+        try {
+            monitor.cacheLock(new CmsLock("/sites/default/a.html", user, project, CmsLockType.EXCLUSIVE));
+            monitor.cacheLock(new CmsLock("/sites/default/b.html", user, project, CmsLockType.EXCLUSIVE));
+            monitor.cacheLock(new CmsLock("/sites/default/c.html", user, project, CmsLockType.TEMPORARY));
+            lockManager.writeLocks(dbc, driver);
+            // the temporary lock is not persistent
+            assertEquals(2, driver.m_rows.size());
+            assertTrue(monitor.getCachedLockJournal().isEmpty());
+
+            // added
+            monitor.cacheLock(new CmsLock("/sites/default/d.html", user, project, CmsLockType.EXCLUSIVE));
+            // changed
+            monitor.cacheLock(new CmsLock("/sites/default/a.html", otherUser, project, CmsLockType.EXCLUSIVE));
+            // removed
+            monitor.uncacheLock("/sites/default/b.html");
+            assertEquals(3, monitor.getCachedLockJournal().getChangedPaths().size());
+            lockManager.writeLocks(dbc, driver);
+            assertEquals(2, driver.m_rows.size());
+
+            // simulate a restart
+            monitor.flushLocks(Collections.<String, CmsLock> emptyMap());
+            lockManager.readLocks(dbc, driver);
+            assertTrue(monitor.getCachedLockJournal().isEmpty());
+            assertEquals(2, monitor.getAllCachedLocks().size());
+            assertEquals(otherUser, monitor.getCachedLock("/sites/default/a.html").getUserId());
+            assertNull(monitor.getCachedLock("/sites/default/b.html"));
+            assertNull(monitor.getCachedLock("/sites/default/c.html"));
+            assertEquals(user, monitor.getCachedLock("/sites/default/d.html").getUserId());
+        } finally {
+            monitor.flushLocks(Collections.<String, CmsLock> emptyMap());
+            monitor.getCachedLockJournal().drain();
+        }
+    }
+
+    /**
+     * Tests that the changes of a failed write are kept in the journal and written with the next write.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testFailedWriteKeepsChanges() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing that a failed write keeps the lock changes");
+
+        CmsMemoryMonitor monitor = OpenCms.getMemoryMonitor();
+        CmsLockManager lockManager = new CmsLockManager(null);
+        TestProjectDriver driver = new TestProjectDriver();
+        CmsDbContext dbc = new CmsDbContext();
+        CmsProject project = cms.getRequestContext().getCurrentProject();
+        CmsUUID user = cms.getRequestContext().getCurrentUser().getId();
+        try {
+            monitor.getCachedLockJournal().drain();
+            monitor.cacheLock(new CmsLock("/sites/default/a.html", user, project, CmsLockType.EXCLUSIVE));
+            driver.m_fail = true;
+            try {
+                lockManager.writeLocks(dbc, driver);
+                fail("Writing the locks did not fail");
+            } catch (CmsException e) {
+                // expected
+            }
+            assertTrue(driver.m_rows.isEmpty());
+            assertTrue(monitor.getCachedLockJournal().getChangedPaths().contains("/sites/default/a.html"));
+
+            // a change recorded after the failure is written together with the failed one
+            monitor.cacheLock(new CmsLock("/sites/default/b.html", user, project, CmsLockType.EXCLUSIVE));
+            driver.m_fail = false;
+            lockManager.writeLocks(dbc, driver);
+            assertEquals(2, driver.m_rows.size());
+            assertTrue(monitor.getCachedLockJournal().isEmpty());
+        } finally {
+            monitor.flushLocks(Collections.<String, CmsLock> emptyMap());
+            monitor.getCachedLockJournal().drain();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.monitor;
+
+import org.opencms.security.CmsAccessControlList;
+import org.opencms.util.CmsUUID;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the tree organized cache for access control lists.<p>
+ */
+public class TestCmsAclTreeCache extends TestCase {
+
+    /**
+     * Tests that the least recently used leaves are removed when the cache is full, keeping their ancestors.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testEviction() throws Exception {
+
+        // "/", "/folder/" and 8 files fill the cache
+        CmsAclTreeCache cache = new CmsAclTreeCache(10);
+        CmsUUID[] ids = new CmsUUID[10];
+        CmsAccessControlList[] acls = new CmsAccessControlList[10];
+        for (int i = 0; i < 8; i++) {
+            ids[i] = new CmsUUID();
+            acls[i] = new CmsAccessControlList();
+            cache.put(false, "/folder/" + i + ".txt", ids[i], 0, acls[i]);
+        }
+        assertEquals(10, cache.size());
+
+        // file 0 is the oldest entry, reading it makes file 1 the least recently used one
+        assertSame(acls[0], cache.get(false, "/folder/0.txt", ids[0], 0));
+
+        ids[8] = new CmsUUID();
+        acls[8] = new CmsAccessControlList();
+        cache.put(false, "/folder/8.txt", ids[8], 0, acls[8]);
+        assertEquals(10, cache.size());
+        assertNull(cache.get(false, "/folder/1.txt", ids[1], 0));
+        assertSame(acls[0], cache.get(false, "/folder/0.txt", ids[0], 0));
+        assertSame(acls[8], cache.get(false, "/folder/8.txt", ids[8], 0));
+        for (int i = 2; i < 8; i++) {
+            assertSame(acls[i], cache.get(false, "/folder/" + i + ".txt", ids[i], 0));
+        }
+
+        // the ancestors of the remaining entries are still in the tree, so removing a subtree removes them all
+        cache.removeSubtree("/folder/");
+        assertEquals(1, cache.size());
+        assertNull(cache.get(false, "/folder/0.txt", ids[0], 0));
+    }
+
+    /**
+     * Tests that entries are found by root path, structure id and slot only.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testGetAndPut() throws Exception {
+
+        CmsAclTreeCache cache = new CmsAclTreeCache(100);
+        CmsUUID id = new CmsUUID();
+        CmsAccessControlList acl = new CmsAccessControlList();
+        int slot = CmsAclTreeCache.getSlot(false, false, 0);
+        assertNull(cache.get(false, "/a/b.txt", id, slot));
+
+        cache.put(false, "/a/b.txt", id, slot, acl);
+        assertSame(acl, cache.get(false, "/a/b.txt", id, slot));
+        // the ancestors are created as well
+        assertEquals(3, cache.size());
+
+        // other slots, other resources under the same path and the other project are not affected
+        assertNull(cache.get(false, "/a/b.txt", id, CmsAclTreeCache.getSlot(true, false, 0)));
+        assertNull(cache.get(false, "/a/b.txt", new CmsUUID(), slot));
+        assertNull(cache.get(true, "/a/b.txt", id, slot));
+
+        // depths greater than 1 share a slot
+        assertEquals(CmsAclTreeCache.getSlot(false, true, 2), CmsAclTreeCache.getSlot(false, true, 5));
+        assertTrue(CmsAclTreeCache.getSlot(true, true, 2) < CmsAclTreeCache.SLOTS);
+
+        CmsAccessControlList other = new CmsAccessControlList();
+        cache.put(false, "/a/b.txt", id, slot, other);
+        assertSame(other, cache.get(false, "/a/b.txt", id, slot));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(false, "/a/b.txt", id, slot));
+    }
+
+    /**
+     * Tests that removing a subtree removes the entries at and below the path in both projects only.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testRemoveSubtree() throws Exception {
+
+        CmsAclTreeCache cache = new CmsAclTreeCache(100);
+        CmsUUID folderId = new CmsUUID();
+        CmsUUID fileId = new CmsUUID();
+        CmsUUID otherId = new CmsUUID();
+        CmsAccessControlList acl = new CmsAccessControlList();
+        for (boolean online : new boolean[] {false, true}) {
+            cache.put(online, "/a/", folderId, 0, acl);
+            cache.put(online, "/a/sub/file.txt", fileId, 0, acl);
+            cache.put(online, "/ab/file.txt", otherId, 0, acl);
+        }
+
+        // a folder path without trailing slash denotes the folder
+        cache.removeSubtree("/a");
+        for (boolean online : new boolean[] {false, true}) {
+            assertNull(cache.get(online, "/a/", folderId, 0));
+            assertNull(cache.get(online, "/a/sub/file.txt", fileId, 0));
+            // a sibling with the same prefix is kept
+            assertSame(acl, cache.get(online, "/ab/file.txt", otherId, 0));
+        }
+
+        cache.removeSubtree("/ab/file.txt");
+        assertNull(cache.get(false, "/ab/file.txt", otherId, 0));
+        // removing a path that is not cached does nothing
+        cache.removeSubtree("/unknown/");
+        assertEquals(4, cache.size());
+    }
+}
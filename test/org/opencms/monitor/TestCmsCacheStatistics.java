@@ -0,0 +1,148 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.monitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the statistics and the weigher of the bounded system caches of the memory monitor.<p>
+ */
+public class TestCmsCacheStatistics extends TestCase {
+
+    /**
+     * Tests that evictions are counted with their weight.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testEvictionStatistics() throws Exception {
+
+        Cache<String, Object> cache = createCache(10);
+        for (int i = 0; i < 20; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        cache.cleanUp();
+
+        CmsCacheStatistics stats = CmsMemoryMonitor.createStatistics("test", cache);
+        assertEquals(10, stats.getMaximumWeight());
+        assertTrue(stats.getWeight() <= 10);
+        assertEquals(20 - stats.getSize(), stats.getEvictionCount());
+        // every string weighs 1
+        assertEquals(stats.getEvictionCount(), stats.getEvictionWeight());
+    }
+
+    /**
+     * Tests that hits and misses are recorded and reported.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testHitStatistics() throws Exception {
+
+        Cache<String, Object> cache = createCache(100);
+        cache.put("a", "value");
+        cache.put("b", createList(64));
+        assertNotNull(cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("x"));
+        assertNull(cache.getIfPresent("y"));
+        cache.cleanUp();
+
+        CmsCacheStatistics stats = CmsMemoryMonitor.createStatistics("test", cache);
+        assertEquals("test", stats.getName());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(1.0 / 3.0, stats.getHitRate(), 0.0001);
+        assertEquals(0, stats.getEvictionCount());
+        assertEquals(2, stats.getSize());
+        // the string weighs 1, the list with 64 elements weighs 3
+        assertEquals(4, stats.getWeight());
+        assertEquals(100, stats.getMaximumWeight());
+        assertTrue(stats.toString().startsWith("test"));
+    }
+
+    /**
+     * Tests the weight of the cached values.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testWeigher() throws Exception {
+
+        // lists weigh 1 plus 1 for every 32 elements
+        assertEquals(1, CmsMemoryMonitor.getCacheWeight(createList(0)));
+        assertEquals(1, CmsMemoryMonitor.getCacheWeight(createList(31)));
+        assertEquals(2, CmsMemoryMonitor.getCacheWeight(createList(32)));
+        assertEquals(4, CmsMemoryMonitor.getCacheWeight(createList(100)));
+        // all other values weigh 1
+        assertEquals(1, CmsMemoryMonitor.getCacheWeight("value"));
+        assertEquals(1, CmsMemoryMonitor.getCacheWeight(Collections.singletonMap("a", createList(100))));
+
+        // a cache of large lists holds fewer entries
+        Cache<String, Object> cache = createCache(10);
+        for (int i = 0; i < 5; i++) {
+            cache.put("key" + i, createList(64));
+        }
+        cache.cleanUp();
+        assertTrue(cache.estimatedSize() <= 3);
+        assertTrue(CmsMemoryMonitor.createStatistics("test", cache).getWeight() <= 10);
+    }
+
+    /**
+     * Creates a cache configured like the bounded system caches, evicting in the calling thread.<p>
+     *
+     * @param capacity the maximum weight
+     *
+     * @return the cache
+     */
+    private Cache<String, Object> createCache(int capacity) {
+
+        return Caffeine.newBuilder().maximumWeight(capacity).weigher(
+            (String key, Object value) -> CmsMemoryMonitor.getCacheWeight(value)).executor(
+                Runnable::run).recordStats().build();
+    }
+
+    /**
+     * Creates a list with the given number of elements.<p>
+     *
+     * @param size the number of elements
+     *
+     * @return the list
+     */
+    private List<String> createList(int size) {
+
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < size; i++) {
+            result.add("value" + i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.monitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the sampling memory size estimation of the memory monitor.<p>
+ */
+public class TestCmsMemorySizeEstimator extends TestCase {
+
+    /**
+     * Tests that a weighted cache is estimated from the size per weight unit and the running total weight.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testEstimateByWeight() throws Exception {
+
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("a", createList(10));
+        map.put("b", createList(10));
+        long entrySize = CmsMemorySizeEstimator.getEntrySize("a", map.get("a"));
+        assertTrue(entrySize > 0);
+
+        // every list has a weight of 5, the cache reports a total weight of 50 for 10 such lists
+        long size = CmsMemorySizeEstimator.estimate(map, 50, value -> 5, CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE);
+        assertEquals(10 * entrySize, size);
+
+        // the count of the entries does not matter, only their weight
+        size = CmsMemorySizeEstimator.estimate(map, 5, value -> 5, CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE);
+        assertEquals(entrySize, size);
+
+        assertEquals(0, CmsMemorySizeEstimator.estimate(map, 0, value -> 5, 1));
+        assertEquals(0, CmsMemorySizeEstimator.estimate(new HashMap<String, Object>(), 10, value -> 1, 1));
+    }
+
+    /**
+     * Tests that only the entries currently contained in a map are taken into account.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testOnlyLiveEntries() throws Exception {
+
+        Map<String, Object> map = new HashMap<String, Object>();
+        for (int i = 0; i < 10; i++) {
+            map.put("key" + i, new byte[10000]);
+        }
+        long large = CmsMemorySizeEstimator.sample(map, CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE);
+        for (int i = 0; i < 10; i++) {
+            map.put("key" + i, new byte[10]);
+        }
+        long small = CmsMemorySizeEstimator.sample(map, CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE);
+        assertTrue(small < (large / 100));
+
+        map.clear();
+        assertEquals(0, CmsMemorySizeEstimator.sample(map, CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE));
+    }
+
+    /**
+     * Tests that large collections are estimated from a bounded sample.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testSample() throws Exception {
+
+        Map<String, Object> map = new HashMap<String, Object>();
+        List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < 1000; i++) {
+            // keys of the same length, so all entries have the same size
+            map.put(String.valueOf(1000 + i), new byte[100]);
+            list.add(new byte[100]);
+        }
+        long entrySize = CmsMemorySizeEstimator.getEntrySize("1000", new byte[100]);
+        assertEquals(1000 * entrySize, CmsMemorySizeEstimator.sample(map, 10));
+        assertEquals(1000 * CmsMemoryMonitor.getMemorySize(new byte[100]), CmsMemorySizeEstimator.sample(list, 10));
+    }
+
+    /**
+     * Tests that the sample is not biased by the iteration order, so that a collection
+     * whose later entries are much larger is not underestimated.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testSampleWithLargeLaterEntries() throws Exception {
+
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        List<Object> list = new ArrayList<Object>();
+        long mapSize = 0;
+        long listSize = 0;
+        for (int i = 0; i < 1000; i++) {
+            // the first 100 entries are small, all later entries are large
+            byte[] value = new byte[i < 100 ? 10 : 10000];
+            String key = String.valueOf(1000 + i);
+            map.put(key, value);
+            list.add(value);
+            mapSize += CmsMemorySizeEstimator.getEntrySize(key, value);
+            listSize += CmsMemoryMonitor.getMemorySize(value);
+        }
+        // sampling only the first 64 entries would estimate about 1/1000 of the real size
+        long size = CmsMemorySizeEstimator.sample(map, CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE);
+        assertTrue(size > (mapSize / 2));
+        assertTrue(size < (mapSize * 2));
+        size = CmsMemorySizeEstimator.sample(list, CmsMemorySizeEstimator.DEFAULT_SAMPLE_SIZE);
+        assertTrue(size > (listSize / 2));
+        assertTrue(size < (listSize * 2));
+    }
+
+    /**
+     * Creates a list of strings.<p>
+     *
+     * @param size the number of strings
+     *
+     * @return the list
+     */
+    private List<String> createList(int size) {
+
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < size; i++) {
+            result.add("value" + i);
+        }
+        return result;
+    }
+}
@@ -57,6 +57,7 @@ public final class AllTests {
         TestSuite suite = new TestSuite("Tests for package " + AllTests.class.getPackage().getName());
         OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
         //$JUnit-BEGIN$
+        suite.addTest(new TestSuite(TestCmsPublishJobFootprint.class));
         suite.addTest(TestPublishManager.suite());
         //$JUnit-END$
         return suite;
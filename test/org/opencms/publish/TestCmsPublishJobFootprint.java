@@ -0,0 +1,169 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.publish;
+
+import org.opencms.file.CmsResource;
+import org.opencms.util.CmsUUID;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the conflict detection between publish jobs.<p>
+ */
+public class TestCmsPublishJobFootprint extends TestCase {
+
+    /** Empty list of origin paths. */
+    private static final List<String> NO_ORIGINS = Collections.emptyList();
+
+    /**
+     * Tests conflicts between folders and the resources below them.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testFolderConflicts() throws Exception {
+
+        CmsPublishJobFootprint footprint = new CmsPublishJobFootprint();
+        footprint.add(Arrays.asList(createResource("/sites/default/folder/sub/page.html")), NO_ORIGINS);
+
+        // a folder above a resource of the footprint
+        assertTrue(footprint.conflicts(Arrays.asList(createResource("/sites/default/folder/")), NO_ORIGINS));
+        // a sibling folder with a common name prefix
+        assertFalse(footprint.conflicts(Arrays.asList(createResource("/sites/default/fold/")), NO_ORIGINS));
+        assertFalse(footprint.conflicts(Arrays.asList(createResource("/sites/default/folder/su/")), NO_ORIGINS));
+
+        footprint = new CmsPublishJobFootprint();
+        footprint.add(Arrays.asList(createResource("/sites/default/folder/")), NO_ORIGINS);
+        // a resource below a folder of the footprint
+        assertTrue(footprint.conflicts(Arrays.asList(createResource("/sites/default/folder/a/b.html")), NO_ORIGINS));
+        assertFalse(footprint.conflicts(Arrays.asList(createResource("/sites/default/folder2/b.html")), NO_ORIGINS));
+    }
+
+    /**
+     * Tests conflicts through the online paths moved resources are moved away from.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testOriginPathConflicts() throws Exception {
+
+        List<CmsResource> moved = Arrays.asList(createResource("/sites/default/new-name.html"));
+        List<String> origins = Arrays.asList("/sites/default/old-name.html");
+        List<CmsResource> created = Arrays.asList(createResource("/sites/default/old-name.html"));
+
+        CmsPublishJobFootprint footprint = new CmsPublishJobFootprint();
+        footprint.add(moved, NO_ORIGINS);
+        assertFalse(footprint.conflicts(created, NO_ORIGINS));
+
+        // a new resource at the path a running job moves a resource away from
+        footprint = new CmsPublishJobFootprint();
+        footprint.add(moved, origins);
+        assertTrue(footprint.conflicts(created, NO_ORIGINS));
+
+        // a resource moved away from the path of a resource of a running job
+        footprint = new CmsPublishJobFootprint();
+        footprint.add(created, NO_ORIGINS);
+        assertTrue(footprint.conflicts(moved, origins));
+
+        // a resource moved away from a folder of a running job
+        footprint = new CmsPublishJobFootprint();
+        footprint.add(Arrays.asList(createResource("/sites/default/")), NO_ORIGINS);
+        assertTrue(
+            footprint.conflicts(
+                Arrays.asList(createResource("/sites/other/page.html")),
+                Arrays.asList("/sites/default/page.html")));
+    }
+
+    /**
+     * Tests conflicts between identical resources and siblings.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testResourceConflicts() throws Exception {
+
+        CmsResource resource = createResource("/sites/default/a.html");
+        CmsPublishJobFootprint footprint = new CmsPublishJobFootprint();
+        assertFalse(footprint.conflicts(Arrays.asList(resource), NO_ORIGINS));
+
+        footprint.add(Arrays.asList(resource), NO_ORIGINS);
+        assertTrue(footprint.conflicts(Arrays.asList(resource), NO_ORIGINS));
+        CmsResource sibling = new CmsResource(
+            new CmsUUID(),
+            resource.getResourceId(),
+            "/sites/other/b.html",
+            1,
+            false,
+            0,
+            null,
+            CmsResource.STATE_CHANGED,
+            0,
+            null,
+            0,
+            null,
+            0,
+            0,
+            2,
+            0,
+            0,
+            0);
+        assertTrue(footprint.conflicts(Arrays.asList(sibling), NO_ORIGINS));
+        assertFalse(footprint.conflicts(Arrays.asList(createResource("/sites/default/b.html")), NO_ORIGINS));
+    }
+
+    /**
+     * Creates a resource.<p>
+     *
+     * @param rootPath the root path, ending with a slash for folders
+     *
+     * @return the resource
+     */
+    private CmsResource createResource(String rootPath) {
+
+        return new CmsResource(
+            new CmsUUID(),
+            new CmsUUID(),
+            rootPath,
+            1,
+            CmsResource.isFolder(rootPath),
+            0,
+            null,
+            CmsResource.STATE_CHANGED,
+            0,
+            null,
+            0,
+            null,
+            0,
+            0,
+            1,
+            0,
+            0,
+            0);
+    }
+}
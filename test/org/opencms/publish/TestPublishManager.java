@@ -39,7 +39,10 @@ import org.opencms.security.CmsSecurityException;
 import org.opencms.security.I_CmsPrincipal;
 import org.opencms.test.OpenCmsTestCase;
 import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsUUID;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -81,6 +84,7 @@ public class TestPublishManager extends OpenCmsTestCase {
         suite.addTest(new TestPublishManager("testListener"));
         suite.addTest(new TestPublishManager("testInitialization1"));
         suite.addTest(new TestPublishManager("testInitialization2"));
+        suite.addTest(new TestPublishManager("testNextPublishJob"));
 
         TestSetup wrapper = new TestSetup(suite) {
 
@@ -439,6 +443,65 @@ public class TestPublishManager extends OpenCmsTestCase {
         OpenCms.getPublishManager().waitWhileRunning();
     }
 
+    /**
+     * Tests the selection of the next publish job that does not conflict with the running publish jobs.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testNextPublishJob() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the selection of the next publish job that can run in parallel");
+
+        // stop the publish engine in order to perform the checks
+        OpenCms.getPublishManager().stopPublishing();
+
+        String source = "/folder2/subfolder21/image1.gif";
+        String fileA = "/folder1/next_a.gif";
+        String siblingB = "/folder2/next_a_sibling.gif";
+        String fileC = "/folder2/next_c.gif";
+        String movedD = "/folder1/page1_moved.html";
+        String newE = "/folder1/page1.html";
+
+        cms.copyResource(source, fileA, CmsResource.COPY_AS_NEW);
+        cms.createSibling(fileA, siblingB, null);
+        cms.copyResource(source, fileC, CmsResource.COPY_AS_NEW);
+        // a moved file, and a new file at the path it was moved away from
+        cms.lockResource(newE);
+        cms.moveResource(newE, movedD);
+        cms.copyResource("/folder1/page2.html", newE, CmsResource.COPY_AS_NEW);
+
+        CmsPublishJobInfoBean jobA = getEnqueuedJob(OpenCms.getPublishManager().publishResource(cms, fileA));
+        CmsPublishJobInfoBean jobB = getEnqueuedJob(OpenCms.getPublishManager().publishResource(cms, siblingB));
+        CmsPublishJobInfoBean jobC = getEnqueuedJob(OpenCms.getPublishManager().publishResource(cms, fileC));
+        CmsPublishJobInfoBean jobD = getEnqueuedJob(OpenCms.getPublishManager().publishResource(cms, movedD));
+        CmsPublishJobInfoBean jobE = getEnqueuedJob(OpenCms.getPublishManager().publishResource(cms, newE));
+        assertEquals(Collections.singleton(cms.getRequestContext().addSiteRoot(newE)), jobD.getOriginPaths());
+        CmsPublishQueue queue = OpenCms.getPublishManager().getEngine().getPublishQueue();
+
+        // the sibling of a running job has to wait, the independent job may overtake it
+        assertSame(jobC, queue.next(Arrays.asList(jobA)));
+        OpenCms.getMemoryMonitor().cachePublishJob(jobC);
+
+        // the new file conflicts with the moved file by the path the file was moved away from
+        assertNull(queue.next(Arrays.asList(jobA, jobC, jobD)));
+
+        assertSame(jobD, queue.next(Arrays.asList(jobA, jobC)));
+        OpenCms.getMemoryMonitor().cachePublishJob(jobD);
+        assertSame(jobE, queue.next(Arrays.asList(jobB)));
+        OpenCms.getMemoryMonitor().cachePublishJob(jobE);
+        assertEquals(5, OpenCms.getMemoryMonitor().getAllCachedPublishJobs().size());
+
+        // start the background publishing again
+        OpenCms.getPublishManager().startPublishing();
+        // wait until everything get published
+        OpenCms.getPublishManager().waitWhileRunning();
+
+        for (String path : new String[] {fileA, siblingB, fileC, movedD, newE}) {
+            assertState(cms, path, CmsResource.STATE_UNCHANGED);
+        }
+    }
+
     /**
      * Tests the publish report stored in the database.<p>
      *
@@ -624,4 +687,22 @@ public class TestPublishManager extends OpenCmsTestCase {
         OpenCms.getPublishManager().publishProject(cms);
         OpenCms.getPublishManager().waitWhileRunning();
     }
+
+    /**
+     * Returns the enqueued publish job with the given publish history id.<p>
+     *
+     * @param publishHistoryId the publish history id
+     *
+     * @return the enqueued publish job
+     */
+    private CmsPublishJobInfoBean getEnqueuedJob(CmsUUID publishHistoryId) {
+
+        for (CmsPublishJobInfoBean publishJob : OpenCms.getMemoryMonitor().getAllCachedPublishJobs()) {
+            if (publishJob.getPublishHistoryId().equals(publishHistoryId)) {
+                return publishJob;
+            }
+        }
+        fail("publish job " + publishHistoryId + " is not enqueued");
+        return null;
+    }
 }
\ No newline at end of file
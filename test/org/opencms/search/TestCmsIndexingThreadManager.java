@@ -0,0 +1,410 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.search;
+
+import org.opencms.db.CmsPublishedResource;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsResource;
+import org.opencms.main.CmsException;
+import org.opencms.search.documents.A_CmsVfsDocument;
+import org.opencms.search.documents.I_CmsDocumentFactory;
+import org.opencms.search.extractors.I_CmsExtractionResult;
+import org.opencms.search.fields.CmsSearchFieldConfiguration;
+import org.opencms.search.fields.I_CmsSearchFieldConfiguration;
+import org.opencms.util.CmsUUID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.document.Document;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the parallel document extraction of the indexing thread manager.<p>
+ */
+public class TestCmsIndexingThreadManager extends TestCase {
+
+    /**
+     * Document factory which waits for the configured time before creating a document.<p>
+     */
+    private static class TestDocumentFactory extends A_CmsVfsDocument {
+
+        /** The extraction times by root path. */
+        final Map<String, Long> m_delays = new ConcurrentHashMap<String, Long>();
+
+        /** The number of interrupted extractions. */
+        final AtomicInteger m_interrupted = new AtomicInteger();
+
+        /** The maximum number of extractions running at the same time. */
+        final AtomicInteger m_maxRunning = new AtomicInteger();
+
+        /** The number of extractions currently running. */
+        final AtomicInteger m_running = new AtomicInteger();
+
+        /**
+         * Creates a new test document factory.<p>
+         */
+        TestDocumentFactory() {
+
+            super("test");
+        }
+
+        /**
+         * @see org.opencms.search.documents.A_CmsVfsDocument#createDocument(org.opencms.file.CmsObject, org.opencms.file.CmsResource, org.opencms.search.I_CmsSearchIndex)
+         */
+        @Override
+        public I_CmsSearchDocument createDocument(CmsObject cms, CmsResource resource, I_CmsSearchIndex index) {
+
+            int running = m_running.incrementAndGet();
+            m_maxRunning.accumulateAndGet(running, Math::max);
+            try {
+                Long delay = m_delays.get(resource.getRootPath());
+                if (delay != null) {
+                    Thread.sleep(delay.longValue());
+                }
+                return new CmsLuceneDocument(new Document());
+            } catch (InterruptedException e) {
+                m_interrupted.incrementAndGet();
+                return null;
+            } finally {
+                m_running.decrementAndGet();
+            }
+        }
+
+        /**
+         * @see org.opencms.search.documents.I_CmsSearchExtractor#extractContent(org.opencms.file.CmsObject, org.opencms.file.CmsResource, org.opencms.search.I_CmsSearchIndex)
+         */
+        public I_CmsExtractionResult extractContent(CmsObject cms, CmsResource resource, I_CmsSearchIndex index) {
+
+            return null;
+        }
+
+        /**
+         * @see org.opencms.search.documents.I_CmsDocumentFactory#isLocaleDependend()
+         */
+        public boolean isLocaleDependend() {
+
+            return false;
+        }
+
+        /**
+         * @see org.opencms.search.documents.I_CmsDocumentFactory#isUsingCache()
+         */
+        public boolean isUsingCache() {
+
+            return false;
+        }
+    }
+
+    /**
+     * Field configuration which creates no default documents, so abandoned resources are deleted from the index.<p>
+     */
+    private static class TestFieldConfiguration extends CmsSearchFieldConfiguration {
+
+        /** The serial version id. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * @see org.opencms.search.fields.CmsSearchFieldConfiguration#createDocument(org.opencms.file.CmsObject, org.opencms.file.CmsResource, org.opencms.search.I_CmsSearchIndex, org.opencms.search.extractors.I_CmsExtractionResult)
+         */
+        @Override
+        public I_CmsSearchDocument createDocument(
+            CmsObject cms,
+            CmsResource resource,
+            I_CmsSearchIndex index,
+            I_CmsExtractionResult extraction) {
+
+            return null;
+        }
+    }
+
+    /**
+     * Search index which indexes every resource with the given document factory.<p>
+     */
+    private static class TestIndex extends CmsSearchIndex {
+
+        /** The serial version id. */
+        private static final long serialVersionUID = 1L;
+
+        /** The document factory. */
+        private final transient I_CmsDocumentFactory m_factory;
+
+        /**
+         * Creates a new test index.<p>
+         *
+         * @param factory the document factory
+         */
+        TestIndex(I_CmsDocumentFactory factory) {
+
+            m_factory = factory;
+        }
+
+        /**
+         * @see org.opencms.search.A_CmsSearchIndex#excludeFromIndex(org.opencms.file.CmsObject, org.opencms.file.CmsResource)
+         */
+        @Override
+        public boolean excludeFromIndex(CmsObject cms, CmsResource resource) {
+
+            return false;
+        }
+
+        /**
+         * @see org.opencms.search.A_CmsSearchIndex#getDocumentFactory(org.opencms.file.CmsResource)
+         */
+        @Override
+        public I_CmsDocumentFactory getDocumentFactory(CmsResource res) {
+
+            return m_factory;
+        }
+
+        /**
+         * @see org.opencms.search.A_CmsSearchIndex#getFieldConfiguration()
+         */
+        @Override
+        public I_CmsSearchFieldConfiguration getFieldConfiguration() {
+
+            return new TestFieldConfiguration();
+        }
+    }
+
+    /**
+     * VFS indexer for the test index, without report.<p>
+     */
+    private static class TestIndexer extends CmsVfsIndexer {
+
+        /**
+         * Creates a new test indexer.<p>
+         *
+         * @param index the index
+         */
+        TestIndexer(I_CmsSearchIndex index) {
+
+            m_index = index;
+        }
+    }
+
+    /**
+     * Index writer which records the updated and deleted root paths.<p>
+     */
+    private static class TestIndexWriter implements I_CmsIndexWriter {
+
+        /** The updated root paths, and the deleted root paths with a "delete:" prefix. */
+        final List<String> m_written = Collections.synchronizedList(new ArrayList<String>());
+
+        /**
+         * @see org.opencms.search.I_CmsIndexWriter#close()
+         */
+        public void close() {
+
+            // noop
+        }
+
+        /**
+         * @see org.opencms.search.I_CmsIndexWriter#commit()
+         */
+        public void commit() {
+
+            // noop
+        }
+
+        /**
+         * @see org.opencms.search.I_CmsIndexWriter#deleteDocument(org.opencms.db.CmsPublishedResource)
+         */
+        public void deleteDocument(CmsPublishedResource resource) {
+
+            m_written.add("delete:" + resource.getRootPath());
+        }
+
+        /**
+         * @see org.opencms.search.I_CmsIndexWriter#optimize()
+         */
+        public void optimize() {
+
+            // noop
+        }
+
+        /**
+         * @see org.opencms.search.I_CmsIndexWriter#updateDocument(java.lang.String, org.opencms.search.I_CmsSearchDocument)
+         */
+        public void updateDocument(String rootPath, I_CmsSearchDocument document) {
+
+            m_written.add(rootPath);
+        }
+    }
+
+    /**
+     * Tests that an extraction running longer than the timeout is abandoned and gives up its slot.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testAbandonment() throws Exception {
+
+        TestDocumentFactory factory = new TestDocumentFactory();
+        TestIndexer indexer = new TestIndexer(new TestIndex(factory));
+        TestIndexWriter writer = new TestIndexWriter();
+        CmsIndexingThreadManager manager = new CmsIndexingThreadManager(300, 1000, 2);
+
+        factory.m_delays.put("/hang1", Long.valueOf(60000));
+        factory.m_delays.put("/hang2", Long.valueOf(60000));
+        List<String> paths = Arrays.asList("/hang1", "/a", "/hang2", "/b", "/c", "/d");
+        long start = System.currentTimeMillis();
+        for (String path : paths) {
+            manager.createIndexingThread(indexer, writer, createResource(path));
+        }
+        assertFalse(manager.isRunning());
+        long time = System.currentTimeMillis() - start;
+
+        // both hanging extractions block a slot until they are abandoned, the others still get written
+        assertTrue("Indexing took " + time + " ms", time < 10000);
+        assertEquals(Arrays.asList("delete:/hang1", "/a", "delete:/hang2", "/b", "/c", "/d"), writer.m_written);
+
+        // the abandoned extractions are interrupted
+        for (int i = 0; (i < 50) && (factory.m_interrupted.get() < 2); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(2, factory.m_interrupted.get());
+    }
+
+    /**
+     * Tests that no more extractions than configured run at the same time.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testConcurrencyBound() throws Exception {
+
+        TestDocumentFactory factory = new TestDocumentFactory();
+        TestIndexer indexer = new TestIndexer(new TestIndex(factory));
+        TestIndexWriter writer = new TestIndexWriter();
+        CmsIndexingThreadManager manager = new CmsIndexingThreadManager(60000, 1000, 3);
+
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < 12; i++) {
+            String path = "/file" + i;
+            paths.add(path);
+            factory.m_delays.put(path, Long.valueOf(100));
+            manager.createIndexingThread(indexer, writer, createResource(path));
+            assertTrue(factory.m_running.get() <= 3);
+        }
+        assertFalse(manager.isRunning());
+
+        assertTrue(factory.m_maxRunning.get() <= 3);
+        assertTrue(factory.m_maxRunning.get() > 1);
+        assertEquals(paths, writer.m_written);
+    }
+
+    /**
+     * Tests that the documents are written in the order the resources were handed to the manager,
+     * even if later extractions finish first.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testInOrderWriting() throws Exception {
+
+        TestDocumentFactory factory = new TestDocumentFactory();
+        TestIndexer indexer = new TestIndexer(new TestIndex(factory));
+        TestIndexWriter writer = new TestIndexWriter();
+        CmsIndexingThreadManager manager = new CmsIndexingThreadManager(60000, 1000, 4);
+
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < 8; i++) {
+            String path = "/file" + i;
+            paths.add(path);
+            // the earlier resources take longer
+            factory.m_delays.put(path, Long.valueOf((8 - i) * 30));
+            manager.createIndexingThread(indexer, writer, createResource(path));
+        }
+        assertFalse(manager.isRunning());
+
+        assertEquals(paths, writer.m_written);
+    }
+
+    /**
+     * Tests that an interrupt while waiting for a free slot skips the resource and is kept for the caller.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testInterruptWhileWaiting() throws Exception {
+
+        TestDocumentFactory factory = new TestDocumentFactory();
+        TestIndexer indexer = new TestIndexer(new TestIndex(factory));
+        TestIndexWriter writer = new TestIndexWriter();
+        CmsIndexingThreadManager manager = new CmsIndexingThreadManager(60000, 1000, 2);
+
+        factory.m_delays.put("/slow1", Long.valueOf(500));
+        factory.m_delays.put("/slow2", Long.valueOf(500));
+        manager.createIndexingThread(indexer, writer, createResource("/slow1"));
+        manager.createIndexingThread(indexer, writer, createResource("/slow2"));
+        try {
+            // both slots are taken, so the manager has to wait for the next resource
+            Thread.currentThread().interrupt();
+            manager.createIndexingThread(indexer, writer, createResource("/skipped"));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertFalse(manager.isRunning());
+
+        assertEquals(Arrays.asList("/slow1", "/slow2"), writer.m_written);
+    }
+
+    /**
+     * Creates a file resource with the given root path.<p>
+     *
+     * @param rootPath the root path
+     *
+     * @return the resource
+     */
+    private CmsResource createResource(String rootPath) {
+
+        return new CmsResource(
+            CmsUUID.getNullUUID(),
+            CmsUUID.getNullUUID(),
+            rootPath,
+            1,
+            false,
+            0,
+            CmsUUID.getNullUUID(),
+            CmsResource.STATE_NEW,
+            0,
+            CmsUUID.getNullUUID(),
+            0,
+            CmsUUID.getNullUUID(),
+            CmsResource.DATE_RELEASED_DEFAULT,
+            CmsResource.DATE_EXPIRED_DEFAULT,
+            1,
+            0,
+            0,
+            0);
+    }
+}
@@ -27,20 +27,28 @@
 
 package org.opencms.search;
 
+import org.opencms.db.CmsPublishedResource;
 import org.opencms.file.CmsObject;
 import org.opencms.file.CmsProperty;
 import org.opencms.file.CmsPropertyDefinition;
 import org.opencms.file.CmsResource;
 import org.opencms.file.types.CmsResourceTypeFolder;
 import org.opencms.file.types.CmsResourceTypePlain;
+import org.opencms.main.CmsEvent;
+import org.opencms.main.I_CmsEventListener;
 import org.opencms.main.OpenCms;
 import org.opencms.report.CmsShellReport;
 import org.opencms.report.I_CmsReport;
 import org.opencms.test.OpenCmsTestCase;
 import org.opencms.test.OpenCmsTestProperties;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import junit.extensions.TestSetup;
 import junit.framework.Test;
@@ -78,6 +86,9 @@ public class TestCmsSearchOffline extends OpenCmsTestCase {
 
         suite.addTest(new TestCmsSearchOffline("testSearchIndexSetup"));
         suite.addTest(new TestCmsSearchOffline("testIndexUpdateOnModification"));
+        suite.addTest(new TestCmsSearchOffline("testOfflineChangesCoalesced"));
+        suite.addTest(new TestCmsSearchOffline("testOfflineChangesDispatchedWhenIdle"));
+        suite.addTest(new TestCmsSearchOffline("testOfflineChangesBoundedDuringImport"));
 
         TestSetup wrapper = new TestSetup(suite) {
 
@@ -208,6 +219,116 @@ public class TestCmsSearchOffline extends OpenCmsTestCase {
         echo("Move Test - end");
     }
 
+    /**
+     * Tests that changes arriving without a pause, as during an import, are dispatched
+     * at the latest after the update frequency, and are coalesced per resource meanwhile.<p>
+     *
+     * @throws Exception in case the test fails
+     */
+    public void testOfflineChangesBoundedDuringImport() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the dispatch of offline changes during an import");
+
+        CmsSearchManager manager = OpenCms.getSearchManager();
+        final CmsSearchManager.CmsSearchOfflineHandler handler = manager.new CmsSearchOfflineHandler();
+        final List<CmsResource> resources = Arrays.asList(
+            cms.readResource("/index.html"),
+            cms.readResource("/folder1/page1.html"),
+            cms.readResource("/folder1/page2.html"));
+        final AtomicBoolean importing = new AtomicBoolean(true);
+        Thread importer = new Thread(() -> {
+            // a change every 50 ms, so the editors are never idle
+            for (int i = 0; importing.get(); i++) {
+                handler.reIndexResources(Collections.singletonList(resources.get(i % resources.size())));
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        long start = System.currentTimeMillis();
+        importer.start();
+        long time;
+        try {
+            handler.waitForChanges(1000);
+            time = System.currentTimeMillis() - start;
+        } finally {
+            importing.set(false);
+            importer.join();
+        }
+        assertTrue("Changes were dispatched after " + time + " ms", time >= 1000);
+        assertTrue("Changes were dispatched after " + time + " ms", time < 3000);
+
+        // about 20 changes were recorded, but only one per resource is pending
+        List<CmsPublishedResource> changes = handler.getResourcesToIndex();
+        for (CmsResource res : resources) {
+            assertEquals(1, countChanges(changes, res.getRootPath()));
+        }
+    }
+
+    /**
+     * Tests that repeated changes of the same resource result in a single update.<p>
+     *
+     * @throws Exception in case the test fails
+     */
+    public void testOfflineChangesCoalesced() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the coalescing of repeated offline changes");
+
+        CmsSearchManager.CmsSearchOfflineHandler handler = OpenCms.getSearchManager().new CmsSearchOfflineHandler();
+        CmsResource res = cms.readResource("/index.html");
+        CmsResource other = cms.readResource("/folder1/page1.html");
+        for (int i = 0; i < 10; i++) {
+            Map<String, Object> data = new HashMap<String, Object>();
+            data.put(I_CmsEventListener.KEY_RESOURCE, res);
+            handler.cmsEvent(new CmsEvent(I_CmsEventListener.EVENT_RESOURCE_MODIFIED, data));
+        }
+        handler.reIndexResources(Collections.singletonList(other));
+        handler.reIndexResources(Collections.singletonList(res));
+
+        List<CmsPublishedResource> changes = handler.getResourcesToIndex();
+        assertEquals(1, countChanges(changes, res.getRootPath()));
+        assertEquals(1, countChanges(changes, other.getRootPath()));
+
+        // the pending changes have been handed over
+        changes = handler.getResourcesToIndex();
+        assertEquals(0, countChanges(changes, res.getRootPath()));
+        assertEquals(0, countChanges(changes, other.getRootPath()));
+    }
+
+    /**
+     * Tests that a single change is dispatched once no further change arrived for the idle time,
+     * without waiting for the update frequency.<p>
+     *
+     * @throws Exception in case the test fails
+     */
+    public void testOfflineChangesDispatchedWhenIdle() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the dispatch of offline changes after the idle time");
+
+        CmsSearchManager.CmsSearchOfflineHandler handler = OpenCms.getSearchManager().new CmsSearchOfflineHandler();
+        CmsResource res = cms.readResource("/index.html");
+
+        long start = System.currentTimeMillis();
+        handler.reIndexResources(Collections.singletonList(res));
+        handler.waitForChanges(60000);
+        long time = System.currentTimeMillis() - start;
+        assertTrue("Changes were dispatched after " + time + " ms", time >= CmsSearchManager.OFFLINE_UPDATE_IDLE_TIME);
+        assertTrue("Changes were dispatched after " + time + " ms", time < 5000);
+
+        // without changes, the handler waits for the update frequency
+        start = System.currentTimeMillis();
+        handler.getResourcesToIndex();
+        handler.waitForChanges(500);
+        time = System.currentTimeMillis() - start;
+        assertTrue("Handler returned after " + time + " ms", time >= 500);
+    }
+
     /**
      * Creates a new search index setup for this test.<p>
      *
@@ -256,4 +377,23 @@ public class TestCmsSearchOffline extends OpenCmsTestCase {
         // wait for the offline index
         Thread.sleep(OpenCms.getSearchManager().getOfflineUpdateFrequency() * 2);
     }
+
+    /**
+     * Counts the changes of the resource with the given root path.<p>
+     *
+     * @param changes the changes
+     * @param rootPath the root path of the resource
+     *
+     * @return the number of changes of the resource
+     */
+    private int countChanges(List<CmsPublishedResource> changes, String rootPath) {
+
+        int count = 0;
+        for (CmsPublishedResource change : changes) {
+            if (change.getRootPath().equals(rootPath)) {
+                count++;
+            }
+        }
+        return count;
+    }
 }
\ No newline at end of file
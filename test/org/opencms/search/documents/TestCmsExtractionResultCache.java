@@ -0,0 +1,357 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.search.documents;
+
+import org.opencms.file.CmsResource;
+import org.opencms.search.extractors.CmsExtractionResult;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.util.CmsFileUtil;
+import org.opencms.util.CmsUUID;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Test cases for the disk cache of text extraction results.<p>
+ */
+public class TestCmsExtractionResultCache extends OpenCmsTestCase {
+
+    /** The fraction of the maximum size the cache is reduced to, see the cache implementation. */
+    private static final double SHRINK_FACTOR = 0.9;
+
+    /** The base folder of the caches used in the tests. */
+    private File m_baseFolder;
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsExtractionResultCache(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Tests concurrently saving and reading entries while the cache removes entries.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testConcurrentSaveAndRead() throws Exception {
+
+        final CmsExtractionResultCache cache = createCache();
+        try {
+            final int names = 10;
+            final int versions = 5;
+            final List<String> rfsNames = new ArrayList<String>();
+            final List<List<String>> contents = new ArrayList<List<String>>();
+            for (int i = 0; i < names; i++) {
+                rfsNames.add(cache.getCacheName(("document " + i).getBytes("UTF-8"), null, "pdf"));
+                List<String> nameContents = new ArrayList<String>();
+                for (int v = 0; v < versions; v++) {
+                    nameContents.add(createContent(i * versions + v));
+                }
+                contents.add(nameContents);
+            }
+            // room for about half of the entries, so entries are removed while they are written and read
+            cache.setMaxSize((names / 2) * getSize(createContent(0)));
+
+            final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int t = 0; t < 8; t++) {
+                final boolean writer = (t % 2) == 0;
+                Thread thread = new Thread(new Runnable() {
+
+                    public void run() {
+
+                        Random random = new Random();
+                        try {
+                            start.await();
+                            for (int i = 0; i < 500; i++) {
+                                int name = random.nextInt(names);
+                                if (writer) {
+                                    String content = contents.get(name).get(random.nextInt(versions));
+                                    cache.saveCacheObject(rfsNames.get(name), new CmsExtractionResult(content));
+                                } else {
+                                    CmsExtractionResult result = cache.getCacheObject(rfsNames.get(name));
+                                    // an entry is either missing or one of the complete versions written
+                                    if ((result != null) && !contents.get(name).contains(result.getContent())) {
+                                        throw new AssertionError("Unexpected content " + result.getContent());
+                                    }
+                                }
+                            }
+                        } catch (Throwable e) {
+                            errors.add(e);
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(errors.toString(), errors.isEmpty());
+
+            // saving one more entry removes entries again, if the cache still exceeds its maximum size
+            cache.saveCacheObject(rfsNames.get(0), new CmsExtractionResult(contents.get(0).get(0)));
+
+            // all entries in the RFS are complete, and no temporary files are left
+            List<File> files = listFiles();
+            long size = 0;
+            for (File file : files) {
+                assertTrue(file.getName(), file.getName().endsWith(".ext"));
+                size += file.length();
+                String rfsName = CmsFileUtil.normalizePath(file.getAbsolutePath());
+                int name = rfsNames.indexOf(rfsName);
+                assertTrue(rfsName, name >= 0);
+                assertTrue(contents.get(name).contains(cache.getCacheObject(rfsName).getContent()));
+            }
+            assertTrue(size <= cache.getMaxSize());
+        } finally {
+            cleanUp();
+        }
+    }
+
+    /**
+     * Tests that resources with identical content share one entry.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testContentHashSharing() throws Exception {
+
+        CmsExtractionResultCache cache = createCache();
+        try {
+            byte[] content = "identical content".getBytes("UTF-8");
+            CmsUUID resourceId = new CmsUUID();
+            CmsResource resource = createResource(resourceId, 1000);
+            CmsResource sibling = createResource(resourceId, 1000);
+            CmsResource copy = createResource(new CmsUUID(), 2000);
+
+            String rfsName = cache.getCacheName(content, Locale.ENGLISH, "xmlcontent");
+            assertEquals(rfsName, cache.getCacheName(content.clone(), Locale.ENGLISH, "xmlcontent"));
+            assertFalse(rfsName.equals(cache.getCacheName(content, Locale.GERMAN, "xmlcontent")));
+            assertFalse(rfsName.equals(cache.getCacheName(content, Locale.ENGLISH, "xmlpage")));
+            assertFalse(rfsName.equals(cache.getCacheName("other".getBytes("UTF-8"), Locale.ENGLISH, "xmlcontent")));
+
+            // nothing is remembered for entries not in the cache
+            cache.addCacheName(resource, Locale.ENGLISH, "xmlcontent", rfsName);
+            assertEquals(0, cache.getAliasCount());
+            assertNull(cache.getCacheObject(resource, Locale.ENGLISH, "xmlcontent"));
+
+            cache.saveCacheObject(rfsName, new CmsExtractionResult("extracted"));
+            cache.addCacheName(resource, Locale.ENGLISH, "xmlcontent", rfsName);
+            assertEquals("extracted", cache.getCacheObject(resource, Locale.ENGLISH, "xmlcontent").getContent());
+            // siblings share the resource id, and so the remembered content date
+            assertEquals("extracted", cache.getCacheObject(sibling, Locale.ENGLISH, "xmlcontent").getContent());
+            assertNull(cache.getCacheObject(resource, Locale.GERMAN, "xmlcontent"));
+
+            // a copy finds the entry by the hash of its content
+            assertNull(cache.getCacheObject(copy, Locale.ENGLISH, "xmlcontent"));
+            assertEquals("extracted", cache.getCacheObject(rfsName).getContent());
+            cache.addCacheName(copy, Locale.ENGLISH, "xmlcontent", rfsName);
+            assertEquals("extracted", cache.getCacheObject(copy, Locale.ENGLISH, "xmlcontent").getContent());
+            assertEquals(2, cache.getAliasCount());
+            assertEquals(1, listFiles().size());
+
+            // a changed content date is not found without reading the content
+            assertNull(cache.getCacheObject(createResource(resourceId, 3000), Locale.ENGLISH, "xmlcontent"));
+
+            // removing the entry releases its aliases
+            assertEquals(1, cache.cleanCache(-1));
+            assertEquals(0, cache.getAliasCount());
+            assertNull(cache.getCacheObject(copy, Locale.ENGLISH, "xmlcontent"));
+        } finally {
+            cleanUp();
+        }
+    }
+
+    /**
+     * Tests that the least recently used entries are removed if the cache exceeds its maximum size.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testLruEviction() throws Exception {
+
+        CmsExtractionResultCache cache = createCache();
+        try {
+            long entrySize = getSize(createContent(0));
+            // room for ten entries, but not for ten entries after shrinking
+            cache.setMaxSize((10 * entrySize) + (entrySize / 2));
+            List<String> rfsNames = new ArrayList<String>();
+            for (int i = 0; i < 11; i++) {
+                rfsNames.add(cache.getCacheName(("document " + i).getBytes("UTF-8"), null, "pdf"));
+            }
+
+            // fill the cache up to its maximum size
+            for (int i = 0; i < 10; i++) {
+                cache.saveCacheObject(rfsNames.get(i), new CmsExtractionResult(createContent(i)));
+                cache.addCacheName(createResource(new CmsUUID(), i), null, "pdf", rfsNames.get(i));
+                Thread.sleep(10);
+            }
+            assertEquals(10, listFiles().size());
+            // use the oldest entry again
+            assertEquals(createContent(0), cache.getCacheObject(rfsNames.get(0)).getContent());
+            Thread.sleep(10);
+
+            // exceeding the maximum size removes the least recently used entries
+            cache.saveCacheObject(rfsNames.get(10), new CmsExtractionResult(createContent(10)));
+            cache.addCacheName(createResource(new CmsUUID(), 10), null, "pdf", rfsNames.get(10));
+            List<File> files = listFiles();
+            long size = 0;
+            for (File file : files) {
+                size += file.length();
+            }
+            assertTrue(size <= (long)(cache.getMaxSize() * SHRINK_FACTOR));
+            assertEquals(9, files.size());
+            assertNull(cache.getCacheObject(rfsNames.get(1)));
+            assertNull(cache.getCacheObject(rfsNames.get(2)));
+            assertNotNull(cache.getCacheObject(rfsNames.get(0)));
+            for (int i = 3; i < 11; i++) {
+                assertEquals(createContent(i), cache.getCacheObject(rfsNames.get(i)).getContent());
+            }
+            // the aliases of the removed entries are released
+            assertEquals(9, cache.getAliasCount());
+
+            // a new cache instance reads the remaining entries from the RFS
+            CmsExtractionResultCache reloaded = new CmsExtractionResultCache(
+                m_baseFolder.getAbsolutePath() + File.separator,
+                "cache");
+            reloaded.setMaxSize(cache.getMaxSize());
+            assertEquals(createContent(5), reloaded.getCacheObject(rfsNames.get(5)).getContent());
+            assertEquals(9, listFiles().size());
+        } finally {
+            cleanUp();
+        }
+    }
+
+    /**
+     * Deletes the folder of the cache.<p>
+     */
+    private void cleanUp() {
+
+        if (m_baseFolder != null) {
+            CmsFileUtil.purgeDirectory(m_baseFolder);
+            m_baseFolder = null;
+        }
+    }
+
+    /**
+     * Creates a cache in a new temporary folder.<p>
+     *
+     * @return the cache
+     */
+    private CmsExtractionResultCache createCache() {
+
+        m_baseFolder = new File(System.getProperty("java.io.tmpdir"), "opencms-extraction-" + new CmsUUID());
+        m_baseFolder.mkdirs();
+        return new CmsExtractionResultCache(m_baseFolder.getAbsolutePath() + File.separator, "cache");
+    }
+
+    /**
+     * Creates an extracted text, all texts have the same length.<p>
+     *
+     * @param number the number of the text
+     *
+     * @return the extracted text
+     */
+    private String createContent(int number) {
+
+        return String.format("extracted text %05d", Integer.valueOf(number));
+    }
+
+    /**
+     * Creates a resource with the given resource id and content date.<p>
+     *
+     * @param resourceId the resource id
+     * @param dateContent the content date
+     *
+     * @return the resource
+     */
+    private CmsResource createResource(CmsUUID resourceId, long dateContent) {
+
+        return new CmsResource(
+            new CmsUUID(),
+            resourceId,
+            "/sites/default/document.pdf",
+            0,
+            false,
+            0,
+            CmsUUID.getNullUUID(),
+            CmsResource.STATE_UNCHANGED,
+            dateContent,
+            CmsUUID.getNullUUID(),
+            dateContent,
+            CmsUUID.getNullUUID(),
+            CmsResource.DATE_RELEASED_DEFAULT,
+            CmsResource.DATE_EXPIRED_DEFAULT,
+            1,
+            0,
+            dateContent,
+            0);
+    }
+
+    /**
+     * Returns the size of the cache entry for the given text.<p>
+     *
+     * @param content the extracted text
+     *
+     * @return the size of the cache entry
+     */
+    private long getSize(String content) {
+
+        return new CmsExtractionResult(content).getBytes().length;
+    }
+
+    /**
+     * Returns all files in the folder of the cache.<p>
+     *
+     * @return all files in the folder of the cache
+     */
+    private List<File> listFiles() {
+
+        List<File> result = new ArrayList<File>();
+        File[] folders = new File(m_baseFolder, "cache").listFiles();
+        if (folders != null) {
+            for (File folder : folders) {
+                File[] files = folder.listFiles();
+                if (files != null) {
+                    Collections.addAll(result, files);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -124,8 +124,10 @@ public final class AllTests {
         suite.addTest(TestSolrConfiguration.suite());
         suite.addTest(TestSolrFieldConfiguration.suite());
         suite.addTest(TestSolrSearch.suite());
+        suite.addTest(TestSolrPermissionFilter.suite());
         suite.addTest(TestCmsSolrCollector.suite());
         suite.addTest(TestSolrSerialDateIndexing.suite());
+        suite.addTest(TestCmsSolrIndexWriter.suite());
         //$JUnit-END$
         return suite;
     }
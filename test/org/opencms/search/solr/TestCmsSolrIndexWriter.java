@@ -0,0 +1,340 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.search.solr;
+
+import org.opencms.db.CmsPublishedResource;
+import org.opencms.file.CmsResource;
+import org.opencms.main.OpenCms;
+import org.opencms.search.I_CmsSearchDocument;
+import org.opencms.search.fields.CmsSearchField;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsUUID;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the buffered mode of the Solr index writer.<p>
+ */
+public class TestCmsSolrIndexWriter extends OpenCmsTestCase {
+
+    /**
+     * Solr client which records the update requests instead of sending them.<p>
+     */
+    private static class TestSolrClient extends SolrClient {
+
+        /** The serial version id. */
+        private static final long serialVersionUID = 1L;
+
+        /** Flag indicating requests with delete queries fail. */
+        volatile boolean m_failDeletes;
+
+        /** The recorded update requests, in the order they were sent. */
+        final List<UpdateRequest> m_requests = Collections.synchronizedList(new ArrayList<UpdateRequest>());
+
+        /**
+         * @see org.apache.solr.client.solrj.SolrClient#close()
+         */
+        @Override
+        public void close() {
+
+            // noop
+        }
+
+        /**
+         * @see org.apache.solr.client.solrj.SolrClient#request(org.apache.solr.client.solrj.SolrRequest, java.lang.String)
+         */
+        @Override
+        @SuppressWarnings("rawtypes")
+        public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException {
+
+            UpdateRequest update = (UpdateRequest)request;
+            if (m_failDeletes && (update.getDeleteQuery() != null)) {
+                throw new SolrServerException("Delete failed");
+            }
+            m_requests.add(update);
+            return new NamedList<Object>();
+        }
+    }
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsSolrIndexWriter(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestCmsSolrIndexWriter.class.getName());
+        suite.addTest(new TestCmsSolrIndexWriter("testBatchBySize"));
+        suite.addTest(new TestCmsSolrIndexWriter("testBatchByTime"));
+        suite.addTest(new TestCmsSolrIndexWriter("testDeletesBeforeAdds"));
+        suite.addTest(new TestCmsSolrIndexWriter("testFailedDeleteRethrown"));
+        suite.addTest(new TestCmsSolrIndexWriter("testMergeUpdates"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("solrtest", "", "/../org/opencms/search/solr");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests that the buffer is sent when it reaches the batch size.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testBatchBySize() throws Exception {
+
+        TestSolrClient client = new TestSolrClient();
+        CmsSolrIndexWriter writer = createWriter(client, 4, 60000);
+
+        // every update buffers a delete query for the path and the document
+        writer.updateDocument("/sites/default/a.txt", createDocument("/sites/default/a.txt", "a"));
+        assertTrue(client.m_requests.isEmpty());
+        writer.updateDocument("/sites/default/b.txt", createDocument("/sites/default/b.txt", "b"));
+        assertEquals(2, client.m_requests.size());
+        assertEquals(2, client.m_requests.get(0).getDeleteQuery().size());
+        assertEquals(2, client.m_requests.get(1).getDocuments().size());
+
+        writer.updateDocument("/sites/default/c.txt", createDocument("/sites/default/c.txt", "c"));
+        assertEquals(2, client.m_requests.size());
+        writer.close();
+        assertEquals(4, client.m_requests.size());
+    }
+
+    /**
+     * Tests that the buffer is sent by the timer when it becomes older than the commit time.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testBatchByTime() throws Exception {
+
+        TestSolrClient client = new TestSolrClient();
+        CmsSolrIndexWriter writer = createWriter(client, 100, 300);
+
+        long start = System.currentTimeMillis();
+        writer.updateDocument("/sites/default/a.txt", createDocument("/sites/default/a.txt", "a"));
+        assertTrue(client.m_requests.isEmpty());
+        for (int i = 0; (i < 50) && (client.m_requests.size() < 2); i++) {
+            Thread.sleep(100);
+        }
+        long time = System.currentTimeMillis() - start;
+        assertEquals(2, client.m_requests.size());
+        assertTrue("Buffer was sent after " + time + " ms", time >= 300);
+
+        // nothing left to send
+        writer.close();
+        assertEquals(2, client.m_requests.size());
+    }
+
+    /**
+     * Tests that all buffered delete queries are sent before the buffered documents.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testDeletesBeforeAdds() throws Exception {
+
+        TestSolrClient client = new TestSolrClient();
+        CmsSolrIndexWriter writer = createWriter(client, 100, 60000);
+
+        CmsUUID deletedId = new CmsUUID();
+        writer.updateDocument("/sites/default/a.txt", createDocument("/sites/default/a.txt", "a"));
+        writer.deleteDocument(createPublishedResource(deletedId, "/sites/default/b.txt"));
+        writer.updateDocument("/sites/default/c.txt", createDocument("/sites/default/c.txt", "c"));
+        assertTrue(client.m_requests.isEmpty());
+        writer.close();
+
+        assertEquals(2, client.m_requests.size());
+        UpdateRequest deletes = client.m_requests.get(0);
+        assertNull(deletes.getDocuments());
+        assertEquals(
+            Arrays.asList(
+                "path:\"/sites/default/a.txt\"",
+                "id:" + deletedId,
+                "path:\"/sites/default/c.txt\""),
+            deletes.getDeleteQuery());
+        UpdateRequest adds = client.m_requests.get(1);
+        assertNull(adds.getDeleteQuery());
+        assertEquals(2, adds.getDocuments().size());
+    }
+
+    /**
+     * Tests that a failed bulk delete is thrown, after the buffered documents have been sent.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testFailedDeleteRethrown() throws Exception {
+
+        TestSolrClient client = new TestSolrClient();
+        client.m_failDeletes = true;
+        CmsSolrIndexWriter writer = createWriter(client, 100, 60000);
+
+        writer.updateDocument("/sites/default/a.txt", createDocument("/sites/default/a.txt", "a"));
+        try {
+            writer.close();
+            fail("Failed delete was not thrown");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof SolrServerException);
+        }
+        assertEquals(1, client.m_requests.size());
+        assertEquals(1, client.m_requests.get(0).getDocuments().size());
+    }
+
+    /**
+     * Tests that multiple updates of the same resource within one batch are merged by structure id.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testMergeUpdates() throws Exception {
+
+        TestSolrClient client = new TestSolrClient();
+        CmsSolrIndexWriter writer = createWriter(client, 100, 60000);
+
+        CmsUUID id = new CmsUUID();
+        writer.updateDocument("/sites/default/a.txt", createDocument(id, "/sites/default/a.txt", "first"));
+        writer.updateDocument("/sites/default/a.txt", createDocument(id, "/sites/default/a.txt", "second"));
+        // the resource was moved, the document for the old path must not be sent
+        writer.updateDocument("/sites/default/b.txt", createDocument(id, "/sites/default/b.txt", "third"));
+        // a resource that is updated and deleted within the batch is only deleted
+        CmsUUID deletedId = new CmsUUID();
+        writer.updateDocument("/sites/default/c.txt", createDocument(deletedId, "/sites/default/c.txt", "c"));
+        writer.deleteDocument(createPublishedResource(deletedId, "/sites/default/c.txt"));
+        writer.close();
+
+        assertEquals(2, client.m_requests.size());
+        List<SolrInputDocument> documents = client.m_requests.get(1).getDocuments();
+        assertEquals(1, documents.size());
+        assertEquals(id.toString(), documents.get(0).getFieldValue(CmsSearchField.FIELD_ID).toString());
+        assertEquals("third", documents.get(0).getFieldValue(CmsSearchField.FIELD_TITLE));
+    }
+
+    /**
+     * Creates a search document with a new structure id.<p>
+     *
+     * @param rootPath the root path of the resource
+     * @param title the title
+     *
+     * @return the search document
+     */
+    private I_CmsSearchDocument createDocument(String rootPath, String title) {
+
+        return createDocument(new CmsUUID(), rootPath, title);
+    }
+
+    /**
+     * Creates a search document.<p>
+     *
+     * @param id the structure id of the resource
+     * @param rootPath the root path of the resource
+     * @param title the title
+     *
+     * @return the search document
+     */
+    private I_CmsSearchDocument createDocument(CmsUUID id, String rootPath, String title) {
+
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField(CmsSearchField.FIELD_ID, id.toString());
+        doc.addField(CmsSearchField.FIELD_PATH, rootPath);
+        doc.addField(CmsSearchField.FIELD_TITLE, title);
+        return new CmsSolrDocument(doc);
+    }
+
+    /**
+     * Creates a published resource to delete.<p>
+     *
+     * @param id the structure id of the resource
+     * @param rootPath the root path of the resource
+     *
+     * @return the published resource
+     */
+    private CmsPublishedResource createPublishedResource(CmsUUID id, String rootPath) {
+
+        return new CmsPublishedResource(id, new CmsUUID(), -1, rootPath, 1, false, CmsResource.STATE_DELETED, 1);
+    }
+
+    /**
+     * Creates a buffering index writer for the online Solr index.<p>
+     *
+     * @param client the Solr client
+     * @param batchSize the batch size
+     * @param commitMs the Solr commit time
+     *
+     * @return the index writer
+     */
+    private CmsSolrIndexWriter createWriter(SolrClient client, int batchSize, long commitMs) {
+
+        CmsSolrConfiguration conf = OpenCms.getSearchManager().getSolrServerConfiguration();
+        long previous = conf.getSolrCommitMs();
+        conf.setSolrCommitMs(String.valueOf(commitMs));
+        try {
+            CmsSolrIndex index = OpenCms.getSearchManager().getIndexSolr(AllTests.SOLR_ONLINE);
+            return new CmsSolrIndexWriter(client, index, batchSize);
+        } finally {
+            conf.setSolrCommitMs(String.valueOf(previous));
+        }
+    }
+}
@@ -159,9 +159,14 @@ public class TestSolrConfiguration extends OpenCmsTestCase {
         docTypeName = "pdf";
         factory = OpenCms.getSearchManager().getDocumentFactoryForName(docTypeName);
         cache = factory.getCache();
-        String cacheName = cache.getCacheName(res, null, docTypeName);
+        String cacheName = cache.getCacheName(cms.readFile(res).getContents(), null, docTypeName);
         CmsExtractionResult result = cache.getCacheObject(cacheName);
         assertNotNull(result);
+
+        // a copy with identical content shares the cache entry
+        cms.copyResource("/helloworld.pdf", "/copy_helloworld.pdf");
+        res = cms.readResource("/copy_helloworld.pdf");
+        assertEquals(cacheName, cache.getCacheName(cms.readFile(res).getContents(), null, docTypeName));
     }
 
     /**
@@ -0,0 +1,346 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.search.solr;
+
+import org.opencms.file.CmsGroup;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsProject;
+import org.opencms.file.CmsUser;
+import org.opencms.file.types.CmsResourceTypeFolder;
+import org.opencms.file.types.CmsResourceTypePlain;
+import org.opencms.file.types.I_CmsResourceType;
+import org.opencms.main.OpenCms;
+import org.opencms.report.CmsShellReport;
+import org.opencms.search.CmsSearchResource;
+import org.opencms.search.I_CmsSearchIndex;
+import org.opencms.search.fields.CmsSearchField;
+import org.opencms.security.CmsAccessControlEntry;
+import org.opencms.security.CmsAccessControlList;
+import org.opencms.security.CmsPermissionSet;
+import org.opencms.security.I_CmsPrincipal;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsUUID;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.solr.client.solrj.SolrQuery.ORDER;
+import org.apache.solr.common.SolrInputDocument;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the filtering of Solr search hits by the read permissions stored in the index.<p>
+ */
+public class TestSolrPermissionFilter extends OpenCmsTestCase {
+
+    /** The folder containing the test resources. */
+    private static final String FOLDER = "permissionfilter";
+
+    /** The password of the test user. */
+    private static final String PASSWORD = "password";
+
+    /** The name of the test user. */
+    private static final String USER = "permissionFilterUser";
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestSolrPermissionFilter(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestSolrPermissionFilter.class.getName());
+
+        suite.addTest(new TestSolrPermissionFilter("testAddPermissionFields"));
+        suite.addTest(new TestSolrPermissionFilter("testPermissionFilterQuery"));
+        suite.addTest(new TestSolrPermissionFilter("testPermissionFilterPaging"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/", "/../org/opencms/search/solr");
+                // disable all lucene indexes
+                for (String indexName : OpenCms.getSearchManager().getIndexNames()) {
+                    if (!indexName.equalsIgnoreCase(AllTests.SOLR_ONLINE)) {
+                        I_CmsSearchIndex index = OpenCms.getSearchManager().getIndex(indexName);
+                        if (index != null) {
+                            index.setEnabled(false);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests the permission fields written to a Solr document for an access control list.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testAddPermissionFields() throws Throwable {
+
+        echo("Testing the permission fields of a Solr document");
+
+        CmsUUID resourceId = new CmsUUID();
+        CmsUUID reader = new CmsUUID();
+        CmsUUID denied = new CmsUUID();
+        CmsUUID writer = new CmsUUID();
+        CmsAccessControlList acl = new CmsAccessControlList();
+        acl.add(
+            new CmsAccessControlEntry(
+                resourceId,
+                reader,
+                CmsPermissionSet.PERMISSION_READ,
+                0,
+                CmsAccessControlEntry.ACCESS_FLAGS_USER));
+        // a denied read permission wins over an allowed one of the same principal
+        acl.add(
+            new CmsAccessControlEntry(
+                resourceId,
+                denied,
+                CmsPermissionSet.PERMISSION_READ,
+                0,
+                CmsAccessControlEntry.ACCESS_FLAGS_GROUP));
+        acl.add(
+            new CmsAccessControlEntry(
+                resourceId,
+                denied,
+                0,
+                CmsPermissionSet.PERMISSION_READ,
+                CmsAccessControlEntry.ACCESS_FLAGS_GROUP));
+        acl.add(
+            new CmsAccessControlEntry(
+                resourceId,
+                writer,
+                CmsPermissionSet.PERMISSION_WRITE,
+                0,
+                CmsAccessControlEntry.ACCESS_FLAGS_USER));
+        acl.add(
+            new CmsAccessControlEntry(
+                resourceId,
+                CmsAccessControlEntry.PRINCIPAL_ALL_OTHERS_ID,
+                CmsPermissionSet.PERMISSION_READ,
+                0,
+                CmsAccessControlEntry.ACCESS_FLAGS_ALLOTHERS));
+        acl.add(
+            new CmsAccessControlEntry(
+                resourceId,
+                CmsAccessControlEntry.PRINCIPAL_OVERWRITE_ALL_ID,
+                CmsPermissionSet.PERMISSION_READ,
+                0,
+                CmsAccessControlEntry.ACCESS_FLAGS_OVERWRITE_ALL));
+
+        SolrInputDocument input = new SolrInputDocument();
+        new CmsSolrDocument(input).addPermissionFields(acl);
+
+        assertEquals(
+            ids(reader, CmsAccessControlEntry.PRINCIPAL_ALL_OTHERS_ID),
+            values(input, CmsSearchField.FIELD_ACL_READ));
+        assertEquals(ids(denied), values(input, CmsSearchField.FIELD_ACL_DENIED));
+        // the "all others" and "overwrite all" entries are no principals of their own
+        assertEquals(ids(reader, denied, writer), values(input, CmsSearchField.FIELD_ACL_PRINCIPALS));
+
+        SolrInputDocument empty = new SolrInputDocument();
+        new CmsSolrDocument(empty).addPermissionFields(new CmsAccessControlList());
+        assertTrue(values(empty, CmsSearchField.FIELD_ACL_READ).isEmpty());
+        assertTrue(values(empty, CmsSearchField.FIELD_ACL_PRINCIPALS).isEmpty());
+    }
+
+    /**
+     * Tests that paging through the hits with the permission filter returns every readable hit exactly once,
+     * and that a start beyond the processing limit returns an empty page.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testPermissionFilterPaging() throws Throwable {
+
+        echo("Testing paging with the permission filter");
+
+        CmsObject adminCms = OpenCms.initCmsObject(getCmsObject());
+        adminCms.getRequestContext().setSiteRoot("/sites/default/");
+        I_CmsResourceType folderType = OpenCms.getResourceManager().getResourceType(
+            CmsResourceTypeFolder.getStaticTypeName());
+        I_CmsResourceType plainType = OpenCms.getResourceManager().getResourceType(
+            CmsResourceTypePlain.getStaticTypeName());
+        adminCms.createResource(FOLDER, folderType);
+        for (int i = 10; i < 40; i++) {
+            String path = FOLDER + "/" + i + ".txt";
+            adminCms.createResource(path, plainType);
+            if ((i % 3) == 0) {
+                adminCms.chacc(path, I_CmsPrincipal.PRINCIPAL_USER, USER, "-r");
+            }
+        }
+        OpenCms.getPublishManager().publishProject(
+            adminCms,
+            new CmsShellReport(adminCms.getRequestContext().getLocale()));
+        OpenCms.getPublishManager().waitWhileRunning();
+
+        CmsObject userCms = OpenCms.initCmsObject(adminCms);
+        userCms.getRequestContext().setCurrentProject(userCms.readProject(CmsProject.ONLINE_PROJECT_ID));
+        userCms.loginUser(USER, PASSWORD);
+
+        CmsSolrIndex index = OpenCms.getSearchManager().getIndexSolr(AllTests.SOLR_ONLINE);
+        CmsSolrQuery query = new CmsSolrQuery(getCmsObject(), null);
+        query.addFilterQuery("parent-folders:\"/sites/default/" + FOLDER + "/\"");
+        query.addFilterQuery(CmsSearchField.FIELD_TYPE + ":" + CmsResourceTypePlain.getStaticTypeName());
+        query.setSort(CmsSearchField.FIELD_PATH, ORDER.asc);
+        query.setRows(Integer.valueOf(100));
+        List<String> expected = paths(index.search(userCms, query));
+        assertEquals(20, expected.size());
+
+        index.addConfigurationParameter(CmsSolrIndex.SOLR_SEARCH_PERMISSION_FILTER, "true");
+        try {
+            List<String> paged = new ArrayList<String>();
+            query.setRows(Integer.valueOf(7));
+            for (int start = 0; start < 30; start += 7) {
+                query.setStart(Integer.valueOf(start));
+                CmsSolrResultList page = index.search(userCms, query);
+                assertEquals(20, page.getNumFound());
+                paged.addAll(paths(page));
+            }
+            assertEquals(expected, paged);
+
+            query.setStart(Integer.valueOf(60));
+            CmsSolrResultList beyondLimit = index.search(userCms, query, false, null, false, null, 55);
+            assertEquals(0, beyondLimit.size());
+        } finally {
+            index.addConfigurationParameter(CmsSolrIndex.SOLR_SEARCH_PERMISSION_FILTER, "false");
+        }
+    }
+
+    /**
+     * Tests the filter query built for the current user.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testPermissionFilterQuery() throws Throwable {
+
+        echo("Testing the permission filter query");
+
+        CmsObject adminCms = OpenCms.initCmsObject(getCmsObject());
+        CmsSolrIndex index = OpenCms.getSearchManager().getIndexSolr(AllTests.SOLR_ONLINE);
+        assertNull("VFS managers must not be filtered", index.getPermissionFilterQuery(adminCms));
+
+        CmsUser user = adminCms.createUser(USER, PASSWORD, "Test user for the permission filter", null);
+        CmsGroup group = adminCms.createGroup("permissionFilterGroup", "Test group for the permission filter", 0, null);
+        adminCms.addUserToGroup(USER, group.getName());
+
+        CmsObject userCms = OpenCms.initCmsObject(adminCms);
+        userCms.loginUser(USER, PASSWORD);
+        String filterQuery = index.getPermissionFilterQuery(userCms);
+        assertNotNull(filterQuery);
+        assertTrue(filterQuery.contains("\"" + user.getId() + "\""));
+        assertTrue(filterQuery.contains("\"" + group.getId() + "\""));
+        assertTrue(filterQuery.contains("\"" + CmsAccessControlEntry.PRINCIPAL_ALL_OTHERS_ID + "\""));
+        assertTrue(filterQuery.contains(CmsSearchField.FIELD_ACL_READ));
+        assertTrue(filterQuery.contains(CmsSearchField.FIELD_ACL_DENIED));
+        assertTrue(filterQuery.contains(CmsSearchField.FIELD_ACL_PRINCIPALS));
+    }
+
+    /**
+     * Returns the string representations of the given ids.<p>
+     *
+     * @param ids the ids
+     *
+     * @return the string representations of the ids
+     */
+    private Set<String> ids(CmsUUID... ids) {
+
+        Set<String> result = new HashSet<String>();
+        for (CmsUUID id : ids) {
+            result.add(id.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the root paths of the search results.<p>
+     *
+     * @param results the search results
+     *
+     * @return the root paths of the search results
+     */
+    private List<String> paths(CmsSolrResultList results) {
+
+        List<String> result = new ArrayList<String>();
+        for (CmsSearchResource resource : results) {
+            result.add(resource.getRootPath());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of a field of the given document.<p>
+     *
+     * @param doc the document
+     * @param fieldName the field name
+     *
+     * @return the values of the field
+     */
+    private Set<String> values(SolrInputDocument doc, String fieldName) {
+
+        Set<String> result = new HashSet<String>();
+        Collection<Object> values = doc.getFieldValues(fieldName);
+        if (values != null) {
+            for (Object value : values) {
+                result.add(value.toString());
+            }
+        }
+        return result;
+    }
+}
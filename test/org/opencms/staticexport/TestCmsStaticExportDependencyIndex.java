@@ -0,0 +1,267 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.staticexport;
+
+import org.opencms.file.CmsResource;
+import org.opencms.file.types.CmsResourceTypePlain;
+import org.opencms.flex.CmsFlexRequestContextInfo;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.util.CmsUUID;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Test cases for the static export dependency index.<p>
+ */
+public class TestCmsStaticExportDependencyIndex extends OpenCmsTestCase {
+
+    /**
+     * Tests looking up the rfs names depending on changed resources.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testGetDependents() throws Exception {
+
+        CmsUUID id1 = new CmsUUID();
+        CmsUUID id2 = new CmsUUID();
+        CmsUUID id3 = new CmsUUID();
+        CmsStaticExportDependencyIndex index = new CmsStaticExportDependencyIndex(createIndexFile());
+        index.setDependencies("/a.html", ids(id1, id2));
+        index.setDependencies("/b.html", ids(id2));
+
+        assertEquals(names("/a.html"), index.getDependents(Arrays.asList(id1)));
+        assertEquals(names("/a.html", "/b.html"), index.getDependents(Arrays.asList(id2)));
+        assertEquals(names("/a.html", "/b.html"), index.getDependents(Arrays.asList(id1, id2, id3)));
+        assertEquals(names(), index.getDependents(Arrays.asList(id3)));
+        assertEquals(names(), index.getDependents(Collections.<CmsUUID> emptyList()));
+
+        // setting the dependencies again replaces the previous ones
+        index.setDependencies("/a.html", ids(id3));
+        assertEquals(names(), index.getDependents(Arrays.asList(id1)));
+        assertEquals(names("/b.html"), index.getDependents(Arrays.asList(id2)));
+        assertEquals(names("/a.html"), index.getDependents(Arrays.asList(id3)));
+
+        // changing the returned set or the given dependencies does not change the index
+        Set<CmsUUID> dependencies = ids(id1);
+        index.setDependencies("/c.html", dependencies);
+        dependencies.add(id2);
+        index.getDependents(Arrays.asList(id1)).clear();
+        assertEquals(names("/b.html"), index.getDependents(Arrays.asList(id2)));
+        assertEquals(names("/c.html"), index.getDependents(Arrays.asList(id1)));
+
+        index.remove("/a.html");
+        assertEquals(names(), index.getDependents(Arrays.asList(id3)));
+
+        // rfs names which can not be stored in the index file are ignored
+        index.setDependencies("/d\t.html", ids(id3));
+        assertEquals(names(), index.getDependents(Arrays.asList(id3)));
+
+        index.clear();
+        assertEquals(names(), index.getDependents(Arrays.asList(id1, id2, id3)));
+    }
+
+    /**
+     * Tests writing the index to its file and reading it again.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testLoadSave() throws Exception {
+
+        CmsUUID id1 = new CmsUUID();
+        CmsUUID id2 = new CmsUUID();
+        File file = createIndexFile();
+        file.delete();
+
+        // a missing file results in an empty index
+        CmsStaticExportDependencyIndex index = new CmsStaticExportDependencyIndex(file);
+        index.load();
+        assertEquals(names(), index.getDependents(Arrays.asList(id1)));
+
+        index.setDependencies("/a.html", ids(id1, id2));
+        index.setDependencies("/folder/b.html", ids(id2));
+        index.setDependencies("/folder/c.html", new HashSet<CmsUUID>());
+        index.setDependencies("/unknown.html", null);
+        index.save();
+        assertTrue(file.exists());
+        assertFalse(new File(file.getParentFile(), file.getName() + ".tmp").exists());
+
+        CmsStaticExportDependencyIndex loaded = new CmsStaticExportDependencyIndex(file);
+        loaded.load();
+        assertEquals(names("/a.html", "/unknown.html"), loaded.getDependents(Arrays.asList(id1)));
+        assertEquals(names("/a.html", "/folder/b.html", "/unknown.html"), loaded.getDependents(Arrays.asList(id2)));
+
+        // loading the index into an existing index replaces its content
+        loaded.remove("/a.html");
+        loaded.save();
+        index.load();
+        assertEquals(names("/unknown.html"), index.getDependents(Arrays.asList(id1)));
+        assertEquals(names("/folder/b.html", "/unknown.html"), index.getDependents(Arrays.asList(id2)));
+
+        // lines which can not be parsed are skipped
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(
+                ("# comment\n" + "no-tab\n" + "\t" + id1 + "\n" + "/x.html\tinvalid " + id1 + "\n").getBytes("UTF-8"));
+        }
+        index.load();
+        assertEquals(names("/x.html"), index.getDependents(Arrays.asList(id1)));
+        assertEquals(names(), index.getDependents(Arrays.asList(id2)));
+        file.delete();
+    }
+
+    /**
+     * Tests completing the dependencies collected while rendering a resource in-process.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testRenderedDependencies() throws Exception {
+
+        CmsResource resource = createResource();
+        CmsResource folder = createResource();
+
+        // nothing collected, the dependencies are unknown
+        CmsFlexRequestContextInfo dependencies = new CmsFlexRequestContextInfo();
+        CmsStaticExportDependencyIndex.addRenderedResource(dependencies, resource);
+        assertFalse(dependencies.hasKnownDependencies());
+
+        // collected dependencies are completed with the rendered resource
+        dependencies = new CmsFlexRequestContextInfo();
+        dependencies.addDependency(folder);
+        CmsStaticExportDependencyIndex.addRenderedResource(dependencies, resource);
+        assertTrue(dependencies.hasKnownDependencies());
+        assertEquals(
+            ids(folder.getStructureId(), folder.getResourceId(), resource.getStructureId(), resource.getResourceId()),
+            dependencies.getDependencies());
+
+        // unknown dependencies stay unknown
+        dependencies = new CmsFlexRequestContextInfo();
+        dependencies.setDependenciesUnknown();
+        CmsStaticExportDependencyIndex.addRenderedResource(dependencies, resource);
+        assertFalse(dependencies.hasKnownDependencies());
+    }
+
+    /**
+     * Tests rfs names with unknown dependencies.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testUnknownDependencies() throws Exception {
+
+        CmsUUID id1 = new CmsUUID();
+        CmsUUID id2 = new CmsUUID();
+        CmsStaticExportDependencyIndex index = new CmsStaticExportDependencyIndex(createIndexFile());
+        index.setDependencies("/a.html", ids(id1));
+        index.setDependencies("/unknown.html", null);
+
+        // rfs names with unknown dependencies depend on everything
+        assertEquals(names("/a.html", "/unknown.html"), index.getDependents(Arrays.asList(id1)));
+        assertEquals(names("/unknown.html"), index.getDependents(Arrays.asList(id2)));
+        assertEquals(names("/unknown.html"), index.getDependents(Collections.<CmsUUID> emptyList()));
+
+        // known dependencies replace unknown dependencies and vice versa
+        index.setDependencies("/unknown.html", ids(id2));
+        assertEquals(names("/a.html"), index.getDependents(Arrays.asList(id1)));
+        index.setDependencies("/a.html", null);
+        assertEquals(names("/a.html", "/unknown.html"), index.getDependents(Arrays.asList(id2)));
+        assertEquals(names("/a.html"), index.getDependents(Arrays.asList(id1)));
+
+        index.remove("/a.html");
+        assertEquals(names(), index.getDependents(Arrays.asList(id1)));
+    }
+
+    /**
+     * Creates a resource with new ids, not stored in the VFS.<p>
+     *
+     * @return the resource
+     */
+    private CmsResource createResource() {
+
+        return new CmsResource(
+            new CmsUUID(),
+            new CmsUUID(),
+            "/sites/default/index.html",
+            CmsResourceTypePlain.getStaticTypeId(),
+            false,
+            0,
+            CmsUUID.getNullUUID(),
+            CmsResource.STATE_UNCHANGED,
+            0,
+            CmsUUID.getNullUUID(),
+            0,
+            CmsUUID.getNullUUID(),
+            CmsResource.DATE_RELEASED_DEFAULT,
+            CmsResource.DATE_EXPIRED_DEFAULT,
+            1,
+            0,
+            0,
+            0);
+    }
+
+    /**
+     * Creates a temporary file for the index.<p>
+     *
+     * @return the temporary file
+     *
+     * @throws IOException if creating the file fails
+     */
+    private File createIndexFile() throws IOException {
+
+        File file = File.createTempFile("export-dependencies", ".txt");
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Returns a modifiable set of the given ids.<p>
+     *
+     * @param ids the ids
+     *
+     * @return the set of ids
+     */
+    private Set<CmsUUID> ids(CmsUUID... ids) {
+
+        return new HashSet<CmsUUID>(Arrays.asList(ids));
+    }
+
+    /**
+     * Returns a set of the given rfs names.<p>
+     *
+     * @param rfsNames the rfs names
+     *
+     * @return the set of rfs names
+     */
+    private Set<String> names(String... rfsNames) {
+
+        return new HashSet<String>(Arrays.asList(rfsNames));
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.staticexport;
+
+import org.opencms.file.CmsFile;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsResource;
+import org.opencms.flex.CmsFlexRequestContextInfo;
+import org.opencms.main.OpenCms;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsFileUtil;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the in-process rendering of the static export.<p>
+ */
+public class TestCmsStaticExportRenderer extends OpenCmsTestCase {
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsStaticExportRenderer(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestCmsStaticExportRenderer.class.getName());
+
+        suite.addTest(new TestCmsStaticExportRenderer("testRender"));
+        suite.addTest(new TestCmsStaticExportRenderer("testRendererUnavailable"));
+        suite.addTest(new TestCmsStaticExportRenderer("testWriteResourceAtomic"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/", "../org/opencms/staticexport/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests rendering a resource in-process with the internal request and response objects.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testRender() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the in-process rendering of the static export");
+
+        String resourcename = "/folder1/image1.gif";
+        CmsFile file = cms.readFile(resourcename);
+        String rootPath = cms.getRequestContext().addSiteRoot(resourcename);
+        File exportFile = new File(
+            CmsFileUtil.normalizePath(OpenCms.getStaticExportManager().getExportPath(rootPath) + rootPath));
+        exportFile.delete();
+
+        CmsStaticExportData data = new CmsStaticExportData(rootPath, rootPath, file, null);
+        String exportUrl = new CmsAfterPublishStaticExportHandler().getExportRequestUrl(data);
+        CmsObject exportCms = OpenCms.initCmsObject(OpenCms.getDefaultUsers().getUserExport());
+
+        CmsStaticExportRenderer renderer = new CmsStaticExportRenderer(createServletContext(), 2);
+        try {
+            assertTrue(renderer.isAvailable());
+
+            // rendered in the calling thread
+            int status = renderer.render(exportCms, data, exportUrl, new CmsFlexRequestContextInfo());
+            assertEquals(HttpServletResponse.SC_OK, status);
+            assertTrue(exportFile.isFile());
+            assertTrue(Arrays.equals(file.getContents(), CmsFileUtil.readFile(exportFile)));
+
+            // rendered by the render threads
+            exportFile.delete();
+            status = renderer.submit(exportCms, data, exportUrl, null).get().intValue();
+            assertEquals(HttpServletResponse.SC_OK, status);
+            assertTrue(exportFile.isFile());
+            assertTrue(Arrays.equals(file.getContents(), CmsFileUtil.readFile(exportFile)));
+        } finally {
+            renderer.shutdown();
+        }
+    }
+
+    /**
+     * Tests that the renderer is not available outside a servlet container.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testRendererUnavailable() throws Exception {
+
+        echo("Testing the availability of the in-process static export");
+
+        CmsStaticExportRenderer renderer = new CmsStaticExportRenderer(1);
+        try {
+            assertFalse(renderer.isAvailable());
+        } finally {
+            renderer.shutdown();
+        }
+    }
+
+    /**
+     * Tests that exported files are replaced atomically, even if written by several threads.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testWriteResourceAtomic() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the atomic writing of exported files");
+
+        final CmsStaticExportManager manager = OpenCms.getStaticExportManager();
+        final CmsResource resource = cms.readResource("/index.html");
+        final File exportFolder = new File(System.getProperty("java.io.tmpdir"), "opencms-export-atomic");
+        final String exportPath = exportFolder.getAbsolutePath();
+        final String rfsName = "/atomic/test.html";
+        File exportFile = new File(exportFolder, "atomic" + File.separator + "test.html");
+
+        CmsFileUtil.purgeDirectory(exportFolder);
+        try {
+            int threads = 8;
+            final List<String> contents = new ArrayList<String>();
+            for (int i = 0; i < threads; i++) {
+                StringBuffer content = new StringBuffer();
+                for (int j = 0; j < 10000; j++) {
+                    content.append((char)('a' + i));
+                }
+                contents.add(content.toString());
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> results = new ArrayList<Future<?>>();
+                for (int i = 0; i < threads; i++) {
+                    final byte[] content = contents.get(i).getBytes("UTF-8");
+                    results.add(pool.submit(() -> {
+                        for (int j = 0; j < 20; j++) {
+                            manager.writeResource(null, exportPath, rfsName, resource, content);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            // the file contains exactly one of the written versions
+            assertTrue(exportFile.isFile());
+            assertTrue(contents.contains(new String(CmsFileUtil.readFile(exportFile), "UTF-8")));
+            assertEquals((resource.getDateLastModified() / 1000) * 1000, exportFile.lastModified());
+
+            // no temporary files are left over
+            assertEquals(Arrays.asList("test.html"), Arrays.asList(exportFile.getParentFile().list()));
+
+            // existing files are overwritten
+            manager.writeResource(null, exportPath, rfsName, resource, "replaced".getBytes("UTF-8"));
+            assertEquals("replaced", new String(CmsFileUtil.readFile(exportFile), "UTF-8"));
+            assertEquals(Arrays.asList("test.html"), Arrays.asList(exportFile.getParentFile().list()));
+        } finally {
+            CmsFileUtil.purgeDirectory(exportFolder);
+        }
+    }
+
+    /**
+     * Creates a servlet context which returns default values for all methods.<p>
+     *
+     * @return the servlet context
+     */
+    private ServletContext createServletContext() {
+
+        return (ServletContext)Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[] {ServletContext.class},
+            (proxy, method, args) -> {
+                Class<?> type = method.getReturnType();
+                if (type == boolean.class) {
+                    return Boolean.FALSE;
+                } else if (type == int.class) {
+                    return Integer.valueOf(-1);
+                }
+                return null;
+            });
+    }
+}
\ No newline at end of file
@@ -106,14 +106,17 @@ public final class AllTests {
         suite.addTest(org.opencms.jsp.search.config.parser.simplesearch.preconfiguredrestrictions.AllTests.suite());
         suite.addTest(org.opencms.jsp.util.AllTests.suite());
         suite.addTest(org.opencms.loader.AllTests.suite());
+        suite.addTest(org.opencms.lock.AllTests.suite());
         suite.addTest(org.opencms.mail.AllTests.suite());
         suite.addTest(org.opencms.main.AllTests.suite());
+        suite.addTest(org.opencms.monitor.AllTests.suite());
         suite.addTest(org.opencms.module.AllTests.suite());
         suite.addTest(org.opencms.notification.AllTests.suite());
         suite.addTest(org.opencms.publish.AllTests.suite());
         suite.addTest(org.opencms.relations.AllTests.suite());
         suite.addTest(org.opencms.scheduler.AllTests.suite());
         suite.addTest(org.opencms.search.AllTests.suite());
+        suite.addTest(org.opencms.search.documents.AllTests.suite());
         suite.addTest(org.opencms.search.extractors.AllTests.suite());
         suite.addTest(org.opencms.search.gallery.AllTests.suite());
         suite.addTest(org.opencms.search.solr.AllTests.suite());
@@ -0,0 +1,165 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.util;
+
+import org.opencms.test.OpenCmsTestCase;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Test cases for the internal request and response objects.<p>
+ */
+public class TestCmsInternalRequestUtil extends OpenCmsTestCase {
+
+    /**
+     * Tests the request used for updating JSPs in the background.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testBackgroundRequest() throws Exception {
+
+        HttpServletRequest req = CmsInternalRequestUtil.createRequest(null, "jsp_precompile");
+        assertEquals("jsp_precompile", req.getQueryString());
+        assertEquals("GET", req.getMethod());
+        assertEquals("", req.getContextPath());
+        assertNull(req.getPathInfo());
+        assertNull(req.getServletContext());
+        assertNull(req.getRequestDispatcher("/WEB-INF/jsp/online/test.jsp"));
+        assertNull(req.getRequestURI());
+        assertNull(req.getHeader(CmsRequestUtil.HEADER_ACCEPT_LANGUAGE));
+        assertFalse(req.getHeaderNames().hasMoreElements());
+        assertTrue(req.getParameterMap().isEmpty());
+        assertFalse(req.isSecure());
+        assertEquals(-1, req.getServerPort());
+        assertEquals(-1, req.getContentLength());
+
+        req.setAttribute("a", "b");
+        assertEquals("b", req.getAttribute("a"));
+        assertEquals(Collections.singletonList("a"), Collections.list(req.getAttributeNames()));
+        req.setAttribute("a", null);
+        assertNull(req.getAttribute("a"));
+        req.setAttribute("a", "b");
+        req.removeAttribute("a");
+        assertFalse(req.getAttributeNames().hasMoreElements());
+
+        assertTrue(req.equals(req));
+        assertFalse(req.equals(CmsInternalRequestUtil.createRequest(null, null)));
+    }
+
+    /**
+     * Tests the mapping of the URL to the request, as used by the in-process static export.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testRequestMapping() throws Exception {
+
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(CmsRequestUtil.HEADER_ACCEPT_LANGUAGE, "de");
+        HttpServletRequest req = CmsInternalRequestUtil.createRequest(
+            null,
+            new URL("https://www.example.org:8443/opencms/opencms/index.html"),
+            "/opencms",
+            "/opencms",
+            headers);
+        assertEquals("https", req.getScheme());
+        assertTrue(req.isSecure());
+        assertEquals("www.example.org", req.getServerName());
+        assertEquals(8443, req.getServerPort());
+        assertEquals("/opencms", req.getContextPath());
+        assertEquals("/opencms", req.getServletPath());
+        assertEquals("/index.html", req.getPathInfo());
+        assertEquals("/opencms/opencms/index.html", req.getRequestURI());
+        assertEquals("https://www.example.org:8443/opencms/opencms/index.html", req.getRequestURL().toString());
+        assertNull(req.getQueryString());
+        assertEquals("de", req.getHeader(CmsRequestUtil.HEADER_ACCEPT_LANGUAGE));
+        assertEquals(
+            Collections.singletonList("de"),
+            Collections.list(req.getHeaders(CmsRequestUtil.HEADER_ACCEPT_LANGUAGE)));
+        assertEquals(
+            Collections.singletonList(CmsRequestUtil.HEADER_ACCEPT_LANGUAGE),
+            Collections.list(req.getHeaderNames()));
+        assertFalse(req.getHeaders(CmsRequestUtil.HEADER_ACCEPT_CHARSET).hasMoreElements());
+
+        // later changes of the given headers must not affect the request
+        headers.put(CmsRequestUtil.HEADER_ACCEPT_CHARSET, "UTF-8");
+        assertNull(req.getHeader(CmsRequestUtil.HEADER_ACCEPT_CHARSET));
+
+        // the default port of the protocol is used if the URL has none
+        req = CmsInternalRequestUtil.createRequest(
+            null,
+            new URL("http://localhost/opencms/opencms/a/b.html"),
+            "/opencms",
+            "/opencms",
+            null);
+        assertEquals("http", req.getScheme());
+        assertFalse(req.isSecure());
+        assertEquals(80, req.getServerPort());
+        assertEquals("/a/b.html", req.getPathInfo());
+        assertFalse(req.getHeaderNames().hasMoreElements());
+
+        // URLs outside the servlet have no path info
+        req = CmsInternalRequestUtil.createRequest(
+            null,
+            new URL("http://localhost/export/a/b.html"),
+            "/opencms",
+            "/opencms",
+            null);
+        assertNull(req.getPathInfo());
+        assertEquals("/export/a/b.html", req.getRequestURI());
+    }
+
+    /**
+     * Tests the response discarding its content.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testResponse() throws Exception {
+
+        HttpServletResponse res = CmsInternalRequestUtil.createResponse("UTF-8");
+        assertEquals("UTF-8", res.getCharacterEncoding());
+        assertEquals(HttpServletResponse.SC_OK, res.getStatus());
+        assertFalse(res.isCommitted());
+
+        res.getOutputStream().write("discarded".getBytes("UTF-8"));
+        res.getWriter().write("discarded");
+        res.getWriter().flush();
+        assertSame(res.getWriter(), res.getWriter());
+
+        res.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, res.getStatus());
+        res.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, res.getStatus());
+        assertEquals("/a/b.html", res.encodeURL("/a/b.html"));
+    }
+}